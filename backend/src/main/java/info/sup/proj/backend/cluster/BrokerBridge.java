@@ -0,0 +1,47 @@
+package info.sup.proj.backend.cluster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * Fans broker messages out to the other nodes. Installed on the {@code brokerChannel}: game topics and user
+ * destinations published here are also handed to every peer, which delivers them to the clients connected to
+ * it. Players therefore get the state and replies of a game no matter which node holds their WebSocket.
+ * Messages that arrived from a peer are delivered locally only.
+ */
+public class BrokerBridge implements ChannelInterceptor {
+
+    static final String BRIDGED_FROM = "clusterBridgedFrom";
+
+    private static final String TOPIC_GAME = "/topic/game/";
+    private static final String USER_PREFIX = "/user/";
+
+    private final String nodeId;
+    private final ClusterTransport transport;
+    private final Counter bridged;
+
+    public BrokerBridge(String nodeId, ClusterTransport transport, MeterRegistry meterRegistry) {
+        this.nodeId = nodeId;
+        this.transport = transport;
+        this.bridged = meterRegistry.counter("cluster.messages.forwarded", "direction", "broker");
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (message.getHeaders().containsKey(BRIDGED_FROM)) {
+            return message;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination != null && (destination.startsWith(TOPIC_GAME) || destination.startsWith(USER_PREFIX))) {
+            transport.broadcast(nodeId, MessageBuilder.fromMessage(message).setHeader(BRIDGED_FROM, nodeId).build());
+            bridged.increment();
+        }
+        return message;
+    }
+}
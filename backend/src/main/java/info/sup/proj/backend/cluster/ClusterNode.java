@@ -0,0 +1,160 @@
+package info.sup.proj.backend.cluster;
+
+import info.sup.proj.backend.events.GameCreatedEvent;
+import info.sup.proj.backend.events.LateEvaluationEvent;
+import info.sup.proj.backend.model.Game;
+import info.sup.proj.backend.services.GameService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * One backend instance in a cluster. Games are placed by consistent hashing of their id: a game created here by
+ * matchmaking but owned by another node is handed over straight away, and when membership changes every node
+ * hands off exactly the games the new ring assigns elsewhere. {@link GameRouter} and {@link BrokerBridge} move
+ * the STOMP traffic to and from the owner.
+ */
+public class ClusterNode implements ClusterTransport.Peer {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterNode.class);
+
+    private final String nodeId;
+    private final HashRing ring;
+    private final ClusterTransport transport;
+    private final GameService gameService;
+    private final MessageChannel clientInboundChannel;
+    private final MessageChannel brokerChannel;
+    private final Counter transferred;
+
+    public ClusterNode(String nodeId, HashRing ring, ClusterTransport transport, GameService gameService,
+                       MessageChannel clientInboundChannel, MessageChannel brokerChannel, MeterRegistry meterRegistry) {
+        this.nodeId = nodeId;
+        this.ring = ring;
+        this.transport = transport;
+        this.gameService = gameService;
+        this.clientInboundChannel = clientInboundChannel;
+        this.brokerChannel = brokerChannel;
+        this.transferred = meterRegistry.counter("cluster.games.transferred");
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void start() {
+        transport.join(nodeId, this);
+    }
+
+    /**
+     * Leaves the cluster and hands every hosted game to its owner among the remaining nodes.
+     */
+    public void stop() {
+        transport.leave(nodeId);
+
+        Set<String> remaining = new HashSet<>(ring.nodes());
+        remaining.remove(nodeId);
+        ring.setNodes(remaining);
+        if (remaining.isEmpty()) {
+            logger.warn("Node {} was the last cluster member, its live games are dropped", nodeId);
+            return;
+        }
+        rebalance();
+    }
+
+    public boolean owns(String gameId) {
+        return nodeId.equals(ring.ownerOf(gameId));
+    }
+
+    @EventListener
+    public void onGameCreated(GameCreatedEvent event) {
+        // Only games this node's service created; in tests several nodes share one event publisher
+        if (event.getSource() == gameService) {
+            handOffIfForeign(event.getGame().getId());
+        }
+    }
+
+    /**
+     * Sends a score that finished after its game left this node to the game's owner.
+     */
+    @EventListener
+    public void onLateEvaluation(LateEvaluationEvent event) {
+        if (event.getSource() != gameService) {
+            return;
+        }
+        GameService.ScoredSubmission submission = event.getSubmission();
+        String owner = ring.ownerOf(submission.gameId());
+        if (owner == null || owner.equals(nodeId)) {
+            // Ended and removed here, or not adopted back yet; either way there is no copy to score
+            logger.warn("Dropping the score of player {} for game {}, which has no other owner",
+                submission.playerId(), submission.gameId());
+            return;
+        }
+        try {
+            transport.forwardEvaluation(owner, submission);
+        } catch (RuntimeException e) {
+            logger.error("Could not forward the score of player {} to node {}", submission.playerId(), owner, e);
+        }
+    }
+
+    @Override
+    public void onMembershipChanged(Set<String> nodes) {
+        if (!nodes.contains(nodeId)) {
+            return;
+        }
+        ring.setNodes(nodes);
+        rebalance();
+    }
+
+    @Override
+    public void receiveInbound(Message<?> message) {
+        clientInboundChannel.send(message);
+    }
+
+    @Override
+    public void receiveBroadcast(Message<?> message) {
+        brokerChannel.send(message);
+    }
+
+    @Override
+    public void adoptGame(GameService.ReleasedGame released) {
+        gameService.adoptGame(released.game(), released.stateSequence());
+        logger.info("Node {} took over game {}", nodeId, released.game().getId());
+    }
+
+    @Override
+    public void receiveEvaluation(GameService.ScoredSubmission submission) {
+        gameService.applyForwardedEvaluation(submission);
+    }
+
+    private void rebalance() {
+        for (Game game : gameService.listAllGames()) {
+            handOffIfForeign(game.getId());
+        }
+    }
+
+    private void handOffIfForeign(String gameId) {
+        String owner = ring.ownerOf(gameId);
+        if (owner == null || owner.equals(nodeId)) {
+            return;
+        }
+
+        GameService.ReleasedGame released = gameService.releaseGame(gameId);
+        if (released == null) {
+            return;
+        }
+        try {
+            transport.transferGame(owner, released);
+            transferred.increment();
+        } catch (RuntimeException e) {
+            // Keep serving the game here rather than losing it; the next membership change retries
+            logger.error("Could not hand game {} to node {}", gameId, owner, e);
+            gameService.adoptGame(released.game(), released.stateSequence());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package info.sup.proj.backend.cluster;
+
+import info.sup.proj.backend.services.GameService;
+import org.springframework.messaging.Message;
+
+import java.util.Set;
+
+/**
+ * Carries traffic between the nodes of a cluster: client messages forwarded to the node owning their game,
+ * broker messages fanned out to every other node, games handed over when ownership moves, and scores that
+ * finished after their game moved. The transport
+ * also tracks membership and tells every node when it changes.
+ */
+public interface ClusterTransport {
+
+    /**
+     * Receiving side of a node.
+     */
+    interface Peer {
+
+        void onMembershipChanged(Set<String> nodes);
+
+        /**
+         * Handles a client message another node forwarded because this node owns its game.
+         */
+        void receiveInbound(Message<?> message);
+
+        /**
+         * Delivers a broker message published on another node to the clients connected here.
+         */
+        void receiveBroadcast(Message<?> message);
+
+        void adoptGame(GameService.ReleasedGame released);
+
+        /**
+         * Applies the score of a submission that another node evaluated after this node took its game over.
+         */
+        void receiveEvaluation(GameService.ScoredSubmission submission);
+    }
+
+    /**
+     * Adds {@code nodeId} to the cluster; every member, including the new one, then sees the new membership.
+     */
+    void join(String nodeId, Peer peer);
+
+    void leave(String nodeId);
+
+    void forward(String targetNodeId, Message<?> message);
+
+    void broadcast(String sourceNodeId, Message<?> message);
+
+    void transferGame(String targetNodeId, GameService.ReleasedGame released);
+
+    void forwardEvaluation(String targetNodeId, GameService.ScoredSubmission submission);
+}
@@ -0,0 +1,87 @@
+package info.sup.proj.backend.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Sends client messages for a game to the node that owns it. Installed on the {@code clientInboundChannel}:
+ * a {@code /app/game/...} message whose game hashes to another node is forwarded there and dropped locally, so
+ * the owner's {@code GameController} handles it against the live game. The game id comes from the destination
+ * ({@code /app/game/{gameId}/...}) or, for {@code join} and {@code prompt}, from the JSON body.
+ */
+public class GameRouter implements ChannelInterceptor {
+    private static final Logger logger = LoggerFactory.getLogger(GameRouter.class);
+
+    static final String FORWARDED_FROM = "clusterForwardedFrom";
+
+    private static final String GAME_PREFIX = "/app/game/";
+
+    private final String nodeId;
+    private final HashRing ring;
+    private final ClusterTransport transport;
+    private final ObjectMapper objectMapper;
+    private final Counter forwarded;
+
+    public GameRouter(String nodeId, HashRing ring, ClusterTransport transport, ObjectMapper objectMapper,
+                      MeterRegistry meterRegistry) {
+        this.nodeId = nodeId;
+        this.ring = ring;
+        this.transport = transport;
+        this.objectMapper = objectMapper;
+        this.forwarded = meterRegistry.counter("cluster.messages.forwarded", "direction", "inbound");
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (message.getHeaders().containsKey(FORWARDED_FROM)
+            || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !destination.startsWith(GAME_PREFIX)) {
+            return message;
+        }
+
+        String gameId = gameIdOf(destination, message.getPayload());
+        String owner = gameId != null ? ring.ownerOf(gameId) : null;
+        if (owner == null || owner.equals(nodeId)) {
+            return message;
+        }
+
+        transport.forward(owner, MessageBuilder.fromMessage(message).setHeader(FORWARDED_FROM, nodeId).build());
+        forwarded.increment();
+        return null;
+    }
+
+    String gameIdOf(String destination, Object payload) {
+        String path = destination.substring(GAME_PREFIX.length());
+        int slash = path.indexOf('/');
+        if (slash > 0) {
+            return path.substring(0, slash);
+        }
+
+        // /app/game/join and /app/game/prompt name the game in their body
+        if (payload instanceof byte[] body) {
+            try {
+                Object gameId = objectMapper.readValue(body, Map.class).get("gameId");
+                return gameId != null ? gameId.toString() : null;
+            } catch (IOException e) {
+                logger.debug("Cannot read game id from message to {}", destination, e);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,79 @@
+package info.sup.proj.backend.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Consistent-hash ring that places games on nodes. Each node is hashed onto the ring {@code virtualNodes} times
+ * and a key belongs to the first node point at or after its own hash. Adding or removing a node therefore only
+ * moves the keys in the arcs that node gains or loses; every other key keeps its owner.
+ * <p>
+ * Lookups read an immutable snapshot of the ring, so they never block while membership changes.
+ */
+public class HashRing {
+
+    private final int virtualNodes;
+    private volatile Snapshot snapshot = new Snapshot(new TreeMap<>(), Set.of());
+
+    private record Snapshot(NavigableMap<Long, String> points, Set<String> nodes) {}
+
+    public HashRing(int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be at least 1");
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * Replaces the ring membership with {@code nodes}.
+     */
+    public synchronized void setNodes(Collection<String> nodes) {
+        NavigableMap<Long, String> points = new TreeMap<>();
+        for (String node : new TreeSet<>(nodes)) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // On the rare hash collision the node that sorts first keeps the point, on every member alike
+                points.putIfAbsent(hash(node + "#" + i), node);
+            }
+        }
+        snapshot = new Snapshot(points, Set.copyOf(nodes));
+    }
+
+    public Set<String> nodes() {
+        return snapshot.nodes();
+    }
+
+    /**
+     * Returns the node owning {@code key}, or {@code null} while the ring is empty.
+     */
+    public String ownerOf(String key) {
+        NavigableMap<Long, String> points = snapshot.points();
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = points.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : points.firstEntry().getValue();
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer so that similar keys such as
+     * {@code node#1} and {@code node#2} still land far apart on the ring.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
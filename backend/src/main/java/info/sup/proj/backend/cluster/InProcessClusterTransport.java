@@ -0,0 +1,70 @@
+package info.sup.proj.backend.cluster;
+
+import info.sup.proj.backend.services.GameService;
+import org.springframework.messaging.Message;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transport between nodes living in the same JVM. Messages and games are handed over by reference on the
+ * calling thread. It backs a single-node deployment with {@code app.cluster.enabled=true} and lets tests run
+ * several nodes side by side.
+ */
+public class InProcessClusterTransport implements ClusterTransport {
+
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+
+    @Override
+    public synchronized void join(String nodeId, Peer peer) {
+        if (peers.putIfAbsent(nodeId, peer) != null) {
+            throw new IllegalStateException("Node already joined: " + nodeId);
+        }
+        notifyMembership();
+    }
+
+    @Override
+    public synchronized void leave(String nodeId) {
+        if (peers.remove(nodeId) != null) {
+            notifyMembership();
+        }
+    }
+
+    @Override
+    public void forward(String targetNodeId, Message<?> message) {
+        peerOf(targetNodeId).receiveInbound(message);
+    }
+
+    @Override
+    public void broadcast(String sourceNodeId, Message<?> message) {
+        peers.forEach((nodeId, peer) -> {
+            if (!nodeId.equals(sourceNodeId)) {
+                peer.receiveBroadcast(message);
+            }
+        });
+    }
+
+    @Override
+    public void transferGame(String targetNodeId, GameService.ReleasedGame released) {
+        peerOf(targetNodeId).adoptGame(released);
+    }
+
+    @Override
+    public void forwardEvaluation(String targetNodeId, GameService.ScoredSubmission submission) {
+        peerOf(targetNodeId).receiveEvaluation(submission);
+    }
+
+    private Peer peerOf(String nodeId) {
+        Peer peer = peers.get(nodeId);
+        if (peer == null) {
+            throw new IllegalStateException("Unknown node: " + nodeId);
+        }
+        return peer;
+    }
+
+    private void notifyMembership() {
+        Set<String> nodes = Set.copyOf(peers.keySet());
+        peers.values().forEach(peer -> peer.onMembershipChanged(nodes));
+    }
+}
@@ -0,0 +1,23 @@
+package info.sup.proj.backend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Limits of {@code AiRequestScheduler}, the gate in front of the AI deployment. {@code tokensPerMinute} should stay
+ * a little below the token-per-minute quota of the deployment; {@code burstTokens} is how much of it may be spent at
+ * once after a quiet period.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.ai.scheduler")
+@Data
+public class AiSchedulerConfig {
+    private long tokensPerMinute = 120_000;
+    private long burstTokens = 20_000;
+    private int maxConcurrent = 64;
+    private int maxQueued = 2_000;
+    private Duration maxWait = Duration.ofSeconds(60);
+}
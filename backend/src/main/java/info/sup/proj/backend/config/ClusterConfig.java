@@ -0,0 +1,68 @@
+package info.sup.proj.backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.sup.proj.backend.cluster.BrokerBridge;
+import info.sup.proj.backend.cluster.ClusterNode;
+import info.sup.proj.backend.cluster.ClusterTransport;
+import info.sup.proj.backend.cluster.GameRouter;
+import info.sup.proj.backend.cluster.HashRing;
+import info.sup.proj.backend.cluster.InProcessClusterTransport;
+import info.sup.proj.backend.services.GameService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.MessageChannel;
+
+import java.util.UUID;
+
+/**
+ * Multi-node mode, enabled with {@code app.cluster.enabled=true}. Games are placed on nodes by consistent hashing
+ * of their id ({@code app.cluster.virtual-nodes} points per node). The router and bridge have no dependency on
+ * {@code GameService}, so {@code WebSocketConfig} can install them on the message channels it builds.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.cluster.enabled", havingValue = "true")
+public class ClusterConfig {
+
+    private final String nodeId;
+
+    public ClusterConfig(@Value("${app.cluster.node-id:}") String nodeId) {
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+    }
+
+    @Bean
+    public HashRing hashRing(@Value("${app.cluster.virtual-nodes:128}") int virtualNodes) {
+        return new HashRing(virtualNodes);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ClusterTransport clusterTransport() {
+        return new InProcessClusterTransport();
+    }
+
+    @Bean
+    public GameRouter gameRouter(HashRing hashRing, ClusterTransport clusterTransport, ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) {
+        return new GameRouter(nodeId, hashRing, clusterTransport, objectMapper, meterRegistry);
+    }
+
+    @Bean
+    public BrokerBridge brokerBridge(ClusterTransport clusterTransport, MeterRegistry meterRegistry) {
+        return new BrokerBridge(nodeId, clusterTransport, meterRegistry);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public ClusterNode clusterNode(HashRing hashRing, ClusterTransport clusterTransport, GameService gameService,
+                                   @Lazy @Qualifier("clientInboundChannel") MessageChannel clientInboundChannel,
+                                   @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel,
+                                   MeterRegistry meterRegistry) {
+        return new ClusterNode(nodeId, hashRing, clusterTransport, gameService, clientInboundChannel,
+            brokerChannel, meterRegistry);
+    }
+}
@@ -32,7 +32,7 @@ public class DataInitializer implements CommandLineRunner {
             // Check if database is empty or force initialization is enabled
             if (forceInitialization || puzzleService.getAllPuzzles().isEmpty()) {
                 logger.info("Seeding puzzle data into database");
-                seedPuzzles().forEach(puzzleService::savePuzzle);
+                puzzleService.savePuzzles(seedPuzzles());
                 logger.info("Database initialization completed successfully");
             } else {
                 logger.info("Database already contains puzzles, skipping initialization");
@@ -1,15 +1,71 @@
 package info.sup.proj.backend.config;
 
+import info.sup.proj.backend.services.TimingWheel;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class ExecutorConfig {
-    
+
+    /**
+     * Matchmaking ticks, code sync flushes and expired game timers. With {@code spring.threads.virtual.enabled}
+     * its two workers are virtual threads, so a tick blocked on the database does not hold a platform thread.
+     */
     @Bean
-    public ScheduledExecutorService scheduledExecutorService() {
+    public ScheduledExecutorService scheduledExecutorService(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return Executors.newScheduledThreadPool(2, Thread.ofVirtual().name("scheduler-", 0).factory());
+        }
         return Executors.newScheduledThreadPool(2);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Round timeouts, next-round delays and game expiry. Expired timers run on the scheduled executor, so the
+     * wheel thread only keeps time.
+     */
+    @Bean(destroyMethod = "stop")
+    public TimingWheel gameTimingWheel(
+            @Value("${app.game.timers.tick:PT0.1S}") Duration tick,
+            @Value("${app.game.timers.wheel-size:512}") int wheelSize,
+            ScheduledExecutorService scheduledExecutorService) {
+        return new TimingWheel(tick, wheelSize, scheduledExecutorService);
+    }
+
+    /**
+     * Drains the per-game mailboxes of {@code GameMailboxes}, one virtual thread per drain.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService gameExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("game-", 0).factory());
+    }
+
+    /**
+     * Runs AI evaluations of game submissions off the STOMP inbound threads. Workers are virtual threads,
+     * capped at {@code max-concurrent} in-flight evaluations with a bounded backlog; anything beyond that
+     * is rejected so a slow AI endpoint cannot pile up unbounded work.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService evaluationExecutor(
+            @Value("${app.game.evaluation.max-concurrent:32}") int maxConcurrent,
+            @Value("${app.game.evaluation.queue-capacity:256}") int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            maxConcurrent,
+            maxConcurrent,
+            30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            Thread.ofVirtual().name("evaluation-", 0).factory(),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
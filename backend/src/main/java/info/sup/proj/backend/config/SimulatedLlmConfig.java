@@ -0,0 +1,26 @@
+package info.sup.proj.backend.config;
+
+import info.sup.proj.backend.model.Puzzle;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Settings of the in-process LLM stand-in used when {@code app.ai.provider=simulated}. Latency follows a
+ * log-normal distribution fitted to the configured median and 99th percentile.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.ai.simulated")
+@Data
+public class SimulatedLlmConfig {
+    private Duration latencyMedian = Duration.ofMillis(800);
+    private Duration latencyP99 = Duration.ofSeconds(3);
+    private double errorRate = 0.0;
+    private int streamChunkChars = 12;
+    private Long seed;
+    private Map<Puzzle.Type, String> responses = new EnumMap<>(Puzzle.Type.class);
+}
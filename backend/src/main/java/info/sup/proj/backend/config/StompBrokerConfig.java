@@ -0,0 +1,40 @@
+package info.sup.proj.backend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Message broker behind the STOMP endpoints, chosen with {@code app.websocket.broker.mode}: {@code simple} (default)
+ * keeps subscriptions and fan-out in this JVM, {@code relay} forwards them to an external STOMP broker such as
+ * RabbitMQ or ActiveMQ Artemis so every backend instance shares the same subscriptions.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.websocket.broker")
+@Data
+public class StompBrokerConfig {
+
+    public enum Mode {
+        SIMPLE,
+        RELAY
+    }
+
+    private Mode mode = Mode.SIMPLE;
+    private Relay relay = new Relay();
+
+    @Data
+    public static class Relay {
+        private String host = "localhost";
+        private int port = 61613;
+        private String virtualHost;
+        private String clientLogin = "guest";
+        private String clientPasscode = "guest";
+        private String systemLogin = "guest";
+        private String systemPasscode = "guest";
+        // Heartbeats of the shared system connection; client sessions negotiate their own with the broker
+        private Duration heartbeatSendInterval = Duration.ofSeconds(10);
+        private Duration heartbeatReceiveInterval = Duration.ofSeconds(10);
+    }
+}
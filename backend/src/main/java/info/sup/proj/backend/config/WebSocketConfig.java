@@ -1,7 +1,12 @@
 package info.sup.proj.backend.config;
 
+import info.sup.proj.backend.cluster.BrokerBridge;
+import info.sup.proj.backend.cluster.GameRouter;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
@@ -14,15 +19,70 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Value("${app.cors.allowed-origins:http://localhost:5173,https://localhost:5173,https://promptmaster-frontend.braveforest-8e4d5d0c.westeurope.azurecontainerapps.io}")
     private String[] allowedOrigins;
 
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Only present in multi-node mode (app.cluster.enabled)
+    private final ObjectProvider<GameRouter> gameRouter;
+    private final ObjectProvider<BrokerBridge> brokerBridge;
+
+    private final StompBrokerConfig brokerConfig;
+
+    public WebSocketConfig(ObjectProvider<GameRouter> gameRouter, ObjectProvider<BrokerBridge> brokerBridge,
+                           StompBrokerConfig brokerConfig) {
+        this.gameRouter = gameRouter;
+        this.brokerBridge = brokerBridge;
+        this.brokerConfig = brokerConfig;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue", "/user");
+        if (brokerConfig.getMode() == StompBrokerConfig.Mode.RELAY) {
+            enableBrokerRelay(config);
+        } else {
+            config.enableSimpleBroker("/topic", "/queue", "/user");
+            // The external broker of the relay is shared by all nodes; only local brokers need bridging
+            brokerBridge.ifAvailable(bridge -> config.configureBrokerChannel().interceptors(bridge));
+        }
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
+        // Game state deltas carry sequence numbers, so each session must receive frames in publish order
+        config.setPreservePublishOrder(true);
+    }
+
+    private void enableBrokerRelay(MessageBrokerRegistry config) {
+        StompBrokerConfig.Relay relay = brokerConfig.getRelay();
+        config.enableStompBrokerRelay("/topic", "/queue")
+            .setRelayHost(relay.getHost())
+            .setRelayPort(relay.getPort())
+            .setVirtualHost(relay.getVirtualHost())
+            .setClientLogin(relay.getClientLogin())
+            .setClientPasscode(relay.getClientPasscode())
+            .setSystemLogin(relay.getSystemLogin())
+            .setSystemPasscode(relay.getSystemPasscode())
+            .setSystemHeartbeatSendInterval(relay.getHeartbeatSendInterval().toMillis())
+            .setSystemHeartbeatReceiveInterval(relay.getHeartbeatReceiveInterval().toMillis())
+            // Lets an instance deliver to users whose WebSocket is connected to another instance
+            .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+            .setUserRegistryBroadcast("/topic/simp-user-registry");
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        gameRouter.ifAvailable(registration::interceptors);
+        if (virtualThreads) {
+            // One virtual thread per inbound frame instead of the default pool of two threads per core, so frames
+            // blocked on the AI endpoint or the database no longer queue up everything behind them
+            registration.executor(new VirtualThreadTaskExecutor("stomp-inbound-"));
+        }
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Frames of a session reach the inbound executor one at a time, so code syncs cannot overtake each other
+        // on the virtual thread executor and leave an older frame in CodeSyncCoalescer
+        registry.setPreserveReceiveOrder(true);
+
         registry.addEndpoint("/game")
                 .setAllowedOriginPatterns("*");
 
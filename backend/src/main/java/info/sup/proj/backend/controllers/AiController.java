@@ -1,17 +1,28 @@
 package info.sup.proj.backend.controllers;
 
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import info.sup.proj.backend.model.Puzzle;
 import info.sup.proj.backend.services.AiService;
 import info.sup.proj.backend.services.PuzzleService;
 import info.sup.proj.backend.services.PuzzleSessionService;
 import info.sup.proj.backend.services.AiService.ChatResponse;
+import info.sup.proj.backend.services.llm.AiRequestScheduler;
 import info.sup.proj.backend.dto.ApiResponse;
+import info.sup.proj.backend.dto.InteractionPageDto;
 import info.sup.proj.backend.dto.SolveResponseDto;
 import info.sup.proj.backend.dto.SessionMetricsDto;
 import org.slf4j.Logger;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/ai")
 public class AiController {
@@ -20,6 +31,9 @@ public class AiController {
     private final PuzzleSessionService sessionService;
     private final Logger logger = LoggerFactory.getLogger(AiController.class);
 
+    private static final long STREAM_TIMEOUT_MS = 120_000;
+    private static final Thread.Builder STREAM_THREADS = Thread.ofVirtual().name("solve-stream-", 0);
+
     public AiController(AiService aiService, PuzzleService puzzleService, PuzzleSessionService sessionService) {
         this.aiService = aiService;
         this.puzzleService = puzzleService;
@@ -36,12 +50,13 @@ public class AiController {
                 );
 
                 ChatResponse response = aiService.generateResponse(
+                    AiRequestScheduler.Caller.practice(request.getUserId()),
                     request.getUserInput(),
                     currentCode,
                     puzzle.getType()
                 );
 
-                sessionService.addInteraction(
+                String updatedCode = sessionService.addInteraction(
                     request.getPuzzleId(),
                     request.getUserId(),
                     request.getUserInput(),
@@ -52,7 +67,7 @@ public class AiController {
                 SolveResponseDto solveResponse = new SolveResponseDto(
                     response.getText(),
                     response.getCode(),
-                    sessionService.getCurrentCode(request.getPuzzleId(), request.getUserId())
+                    updatedCode
                 );
 
                 return ResponseEntity.ok(solveResponse);
@@ -60,6 +75,63 @@ public class AiController {
             .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Server-sent-events variant of {@link #solve}: emits {@code delta} events while the AI response
+     * streams in and a final {@code response} event with the same body as {@code /ai/solve}.
+     */
+    @PostMapping(value = "/solve/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> solveStream(@RequestBody SolveRequest request) {
+        return puzzleService.getPuzzleById(request.getPuzzleId())
+            .map(puzzle -> {
+                SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+                STREAM_THREADS.start(() -> streamSolve(request, puzzle.getType(), emitter));
+                return ResponseEntity.ok(emitter);
+            })
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    private void streamSolve(SolveRequest request, Puzzle.Type puzzleType, SseEmitter emitter) {
+        try {
+            String currentCode = sessionService.getCurrentCode(request.getPuzzleId(), request.getUserId());
+
+            ChatResponse response = aiService.generateResponseStream(
+                AiRequestScheduler.Caller.practice(request.getUserId()),
+                request.getUserInput(),
+                currentCode,
+                puzzleType,
+                delta -> {
+                    try {
+                        emitter.send(SseEmitter.event()
+                            .name("delta")
+                            .data(Map.of("channel", delta.channel(), "delta", delta.content())));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            );
+
+            String updatedCode = sessionService.addInteraction(
+                request.getPuzzleId(),
+                request.getUserId(),
+                request.getUserInput(),
+                response.getText(),
+                response.getCode()
+            );
+
+            emitter.send(SseEmitter.event()
+                .name("response")
+                .data(new SolveResponseDto(
+                    response.getText(),
+                    response.getCode(),
+                    updatedCode
+                )));
+            emitter.complete();
+        } catch (Exception e) {
+            logger.error("Streaming solve failed [puzzleId={}, userId={}]", request.getPuzzleId(), request.getUserId(), e);
+            emitter.completeWithError(e);
+        }
+    }
+
     @PostMapping("/reset")
     public ResponseEntity<ApiResponse<Void>> resetSession(@RequestBody ResetSessionRequest request) {
         try {
@@ -111,6 +183,34 @@ public class AiController {
         }
     }
 
+    /**
+     * A page of the session's interactions; pass {@code after} or {@code before} from the previous page's
+     * {@code nextAfter} or {@code nextBefore}, or neither for the newest ones.
+     */
+    @GetMapping("/history/{puzzleId}/{userId}")
+    public ResponseEntity<ApiResponse<InteractionPageDto>> getInteractionHistory(
+            @PathVariable Integer puzzleId,
+            @PathVariable Long userId,
+            @RequestParam(required = false) Integer after,
+            @RequestParam(required = false) Integer before,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            InteractionPageDto page = sessionService.getInteractionHistory(puzzleId, userId, after, before, limit);
+            return ResponseEntity.ok(new ApiResponse<>(true, "History retrieved successfully", page));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new ApiResponse<>(false, "Failed to get history: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * The AI request scheduler turned the prompt away because the deployment is saturated.
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<ApiResponse<Void>> handleAiBusy(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .body(new ApiResponse<>(false, "The AI is busy, please try again in a moment"));
+    }
+
     public static class SolveRequest {
         private Integer puzzleId;
         private Long userId;
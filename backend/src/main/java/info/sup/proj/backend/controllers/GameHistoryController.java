@@ -0,0 +1,24 @@
+package info.sup.proj.backend.controllers;
+
+import info.sup.proj.backend.dto.GameTimelineDto;
+import info.sup.proj.backend.services.GameReplayService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/games")
+public class GameHistoryController {
+
+    private final GameReplayService gameReplayService;
+
+    public GameHistoryController(GameReplayService gameReplayService) {
+        this.gameReplayService = gameReplayService;
+    }
+
+    @GetMapping("/{gameId}/replay")
+    public ResponseEntity<GameTimelineDto> getReplay(@PathVariable String gameId) {
+        return gameReplayService.replay(gameId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,53 @@
+package info.sup.proj.backend.dto;
+
+import info.sup.proj.backend.model.GameEvent;
+import info.sup.proj.backend.model.Player;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A duel as rebuilt from its event log: the players, every round with what happened in it, and the scores.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+public class GameTimelineDto {
+    private String gameId;
+    private List<Player> players = new ArrayList<>();
+    private int totalRounds;
+    private Long startedAt;
+    private Long endedAt;
+    private String forfeitedBy;
+    private Map<String, Integer> finalScores = new LinkedHashMap<>();
+    private List<Round> rounds = new ArrayList<>();
+
+    @Setter
+    @Getter
+    @NoArgsConstructor
+    public static class Round {
+        private int number;
+        private Integer puzzleId;
+        private String puzzleName;
+        private String puzzleType;
+        private Long startedAt;
+        // Running totals once the round's submissions are scored
+        private Map<String, Integer> scores = new LinkedHashMap<>();
+        private List<Entry> entries = new ArrayList<>();
+    }
+
+    @Setter
+    @Getter
+    @NoArgsConstructor
+    public static class Entry {
+        private GameEvent.Type type;
+        private String playerId;
+        private long occurredAt;
+        private Map<String, Object> details;
+    }
+}
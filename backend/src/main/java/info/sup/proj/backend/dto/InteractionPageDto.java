@@ -0,0 +1,37 @@
+package info.sup.proj.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A page of a practice session's interactions, oldest first. {@code nextAfter} and {@code nextBefore} are the
+ * cursors for the pages after and before this one, {@code null} when there is none.
+ */
+@Setter
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InteractionPageDto {
+    private List<Item> items;
+    private Integer nextAfter;
+    private Integer nextBefore;
+
+    @Setter
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private Integer seq;
+        private String userInput;
+        private String aiTextResponse;
+        private String aiCodeResponse;
+        private LocalDateTime createdAt;
+    }
+}
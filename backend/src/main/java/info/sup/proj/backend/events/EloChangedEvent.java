@@ -0,0 +1,17 @@
+package info.sup.proj.backend.events;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+@Getter
+public class EloChangedEvent extends ApplicationEvent {
+    private final Long userId;
+    private final int elo;
+
+    public EloChangedEvent(Object source, Long userId, int elo) {
+        super(source);
+        this.userId = userId;
+        this.elo = elo;
+    }
+
+}
@@ -0,0 +1,16 @@
+package info.sup.proj.backend.events;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+import info.sup.proj.backend.model.Game;
+
+@Getter
+public class GameCreatedEvent extends ApplicationEvent {
+    private final Game game;
+
+    public GameCreatedEvent(Object source, Game game) {
+        super(source);
+        this.game = game;
+    }
+
+}
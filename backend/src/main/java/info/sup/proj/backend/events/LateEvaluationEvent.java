@@ -0,0 +1,19 @@
+package info.sup.proj.backend.events;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+import info.sup.proj.backend.services.GameService;
+
+/**
+ * A submission finished scoring after its game stopped being hosted by the node that scored it.
+ */
+@Getter
+public class LateEvaluationEvent extends ApplicationEvent {
+    private final GameService.ScoredSubmission submission;
+
+    public LateEvaluationEvent(Object source, GameService.ScoredSubmission submission) {
+        super(source);
+        this.submission = submission;
+    }
+
+}
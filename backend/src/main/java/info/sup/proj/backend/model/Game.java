@@ -5,6 +5,10 @@ import lombok.Setter;
 
 import java.util.*;
 
+/**
+ * State of one duel. Not thread-safe: {@code GameService} only mutates a game from that game's mailbox
+ * ({@code GameMailboxes}), which runs one task at a time.
+ */
 @Getter
 public class Game {
     private final String id;
@@ -155,6 +159,41 @@ public class Game {
         players.forEach(player -> playerCode.put(player.getId(), ""));
     }
 
+    /**
+     * Copies the state needed to rebuild this game after a restart. The puzzle is referenced by id.
+     */
+    public Snapshot snapshot() {
+        Map<String, PlayerSnapshot> statuses = new LinkedHashMap<>();
+        for (Player player : players) {
+            PlayerStatus status = playerStatus.get(player.getId());
+            statuses.put(player.getId(), new PlayerSnapshot(status.getScore(), status.isHasCompleted(),
+                status.isHasForfeit(), status.getCode()));
+        }
+        return new Snapshot(id, List.copyOf(players), totalRounds, currentRound, currentTurn,
+            currentPuzzle != null ? currentPuzzle.getId() : null, state, roundStartTime, statuses);
+    }
+
+    /**
+     * Rebuilds a game from {@link #snapshot()}, with {@code puzzle} as its current puzzle.
+     */
+    public static Game restore(Snapshot snapshot, Puzzle puzzle) {
+        Game game = new Game(snapshot.id(), snapshot.players(), puzzle, snapshot.totalRounds());
+        game.currentRound = snapshot.currentRound();
+        game.currentTurn = snapshot.currentTurn();
+        game.state = snapshot.state();
+        game.roundStartTime = snapshot.roundStartTime();
+        snapshot.statuses().forEach((playerId, saved) -> {
+            PlayerStatus status = game.playerStatus.get(playerId);
+            if (status != null) {
+                status.setScore(saved.score());
+                status.setHasCompleted(saved.completed());
+                status.setHasForfeit(saved.forfeit());
+                status.setCode(saved.code());
+            }
+        });
+        return game;
+    }
+
     public void forfeit(String playerId) {
         PlayerStatus status = playerStatus.get(playerId);
         if (status != null) {
@@ -220,6 +259,12 @@ public class Game {
         }
     }
 
+    public record Snapshot(String id, List<Player> players, int totalRounds, int currentRound, String currentTurn,
+                           Integer puzzleId, GameState state, long roundStartTime,
+                           Map<String, PlayerSnapshot> statuses) {}
+
+    public record PlayerSnapshot(int score, boolean completed, boolean forfeit, String code) {}
+
     public enum GameState {
         IN_PROGRESS,
         ENDED
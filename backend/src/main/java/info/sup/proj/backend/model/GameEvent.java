@@ -0,0 +1,62 @@
+package info.sup.proj.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One entry of the append-only game event log. Rows are never updated; the details of an event are kept as a
+ * compact JSON object in {@code payload}, so new event kinds need no schema change.
+ */
+@Entity
+@Table(name = "game_events", indexes = {
+    @Index(name = "idx_game_events_game", columnList = "game_id, occurred_at")
+})
+@Data
+@NoArgsConstructor
+public class GameEvent {
+
+    // Sequence ids are handed out in blocks, so a batch of events is inserted in one JDBC batch
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "game_event_seq")
+    @SequenceGenerator(name = "game_event_seq", sequenceName = "game_event_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "game_id", nullable = false, length = 36)
+    private String gameId;
+
+    @Column(name = "occurred_at", nullable = false)
+    private long occurredAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Type type;
+
+    @Column(name = "round_number", nullable = false)
+    private int round;
+
+    private String playerId;
+
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    public GameEvent(String gameId, long occurredAt, Type type, int round, String playerId, String payload) {
+        this.gameId = gameId;
+        this.occurredAt = occurredAt;
+        this.type = type;
+        this.round = round;
+        this.playerId = playerId;
+        this.payload = payload;
+    }
+
+    public enum Type {
+        GAME_STARTED,
+        ROUND_STARTED,
+        PROMPT,
+        CODE_SNAPSHOT,
+        SUBMISSION,
+        PLAYER_COMPLETED,
+        FORFEIT,
+        GAME_ENDED
+    }
+}
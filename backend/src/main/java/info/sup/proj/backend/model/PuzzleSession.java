@@ -2,9 +2,6 @@ package info.sup.proj.backend.model;
 
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
 
 @Entity
 @Table(name = "puzzle_sessions", uniqueConstraints = {
@@ -15,18 +12,19 @@ public class PuzzleSession {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    // Lazy, so loading a session for its code or counters is a single-row select
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "puzzle_id", nullable = false)
     private Puzzle puzzle;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @ElementCollection
-    @CollectionTable(name = "session_interactions", joinColumns = @JoinColumn(name = "session_id"))
-    @OrderColumn(name = "interaction_order")
-    private List<Interaction> interactions = new ArrayList<>();
+    // Interactions live in their own table (SessionInteraction). Their number is kept here and only ever raised by
+    // the SQL that inserts them, so saving a session loaded earlier cannot set it back
+    @Column(updatable = false)
+    private Integer interactionCount = 0;
 
     @Column(columnDefinition = "TEXT")
     private String currentCode = "";
@@ -49,50 +47,6 @@ public class PuzzleSession {
         lastUpdatedAt = LocalDateTime.now();
     }
 
-    @Embeddable
-    public static class Interaction {
-        private String userInput;
-
-        @Column(columnDefinition = "TEXT")
-        private String aiTextResponse;
-
-        @Column(columnDefinition = "TEXT")
-        private String aiCodeResponse;
-
-        public Interaction() {
-        }
-
-        public Interaction(String userInput, String aiTextResponse, String aiCodeResponse) {
-            this.userInput = userInput;
-            this.aiTextResponse = aiTextResponse;
-            this.aiCodeResponse = aiCodeResponse;
-        }
-
-        public String getUserInput() {
-            return userInput;
-        }
-
-        public void setUserInput(String userInput) {
-            this.userInput = userInput;
-        }
-
-        public String getAiTextResponse() {
-            return aiTextResponse;
-        }
-
-        public void setAiTextResponse(String aiTextResponse) {
-            this.aiTextResponse = aiTextResponse;
-        }
-
-        public String getAiCodeResponse() {
-            return aiCodeResponse;
-        }
-
-        public void setAiCodeResponse(String aiCodeResponse) {
-            this.aiCodeResponse = aiCodeResponse;
-        }
-    }
-
     public Long getId() {
         return id;
     }
@@ -117,16 +71,12 @@ public class PuzzleSession {
         this.user = user;
     }
 
-    public List<Interaction> getInteractions() {
-        return interactions;
-    }
-
-    public void setInteractions(List<Interaction> interactions) {
-        this.interactions = interactions;
+    public Integer getInteractionCount() {
+        return interactionCount;
     }
 
-    public void addInteraction(String userInput, String aiTextResponse, String aiCodeResponse) {
-        this.interactions.add(new Interaction(userInput, aiTextResponse, aiCodeResponse));
+    public void setInteractionCount(Integer interactionCount) {
+        this.interactionCount = interactionCount;
     }
 
     public String getCurrentCode() {
@@ -183,13 +133,13 @@ public class PuzzleSession {
 
     private boolean isValidCompletedSession() {
         return isCompleted
-                && Objects.nonNull(interactions)
-                && !interactions.isEmpty();
+                && interactionCount != null
+                && interactionCount > 0;
     }
 
     public void updateBestMetrics() {
         if (isValidCompletedSession()) {
-            int currentInteractionCount = interactions.size();
+            int currentInteractionCount = interactionCount;
             
             long currentTimeSeconds = java.time.Duration.between(createdAt, lastUpdatedAt).getSeconds();
             
@@ -0,0 +1,62 @@
+package info.sup.proj.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * One prompt of a practice session and the AI reply to it. Interactions are only ever inserted: {@code seq} numbers
+ * them from 0 within their session and (session_id, seq) is the primary key, so a page of a session's history is a
+ * range scan of that index. The table and its {@code interaction_order} column are the ones the former
+ * {@code @ElementCollection} on {@link PuzzleSession} wrote, so existing histories carry over unchanged.
+ */
+@Entity
+@Immutable
+@IdClass(SessionInteraction.Key.class)
+@Table(name = "session_interactions")
+@Data
+@NoArgsConstructor
+public class SessionInteraction {
+
+    @Id
+    @Column(name = "session_id")
+    private Long sessionId;
+
+    @Id
+    @Column(name = "interaction_order")
+    private Integer seq;
+
+    @Column(columnDefinition = "TEXT")
+    private String userInput;
+
+    @Column(columnDefinition = "TEXT")
+    private String aiTextResponse;
+
+    @Column(columnDefinition = "TEXT")
+    private String aiCodeResponse;
+
+    private LocalDateTime createdAt;
+
+    public SessionInteraction(Long sessionId, Integer seq, String userInput, String aiTextResponse,
+                              String aiCodeResponse, LocalDateTime createdAt) {
+        this.sessionId = sessionId;
+        this.seq = seq;
+        this.userInput = userInput;
+        this.aiTextResponse = aiTextResponse;
+        this.aiCodeResponse = aiCodeResponse;
+        this.createdAt = createdAt;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long sessionId;
+        private Integer seq;
+    }
+}
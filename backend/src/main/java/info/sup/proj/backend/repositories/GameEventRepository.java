@@ -0,0 +1,11 @@
+package info.sup.proj.backend.repositories;
+
+import info.sup.proj.backend.model.GameEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface GameEventRepository extends JpaRepository<GameEvent, Long> {
+    List<GameEvent> findByGameIdOrderByOccurredAtAscIdAsc(String gameId);
+}
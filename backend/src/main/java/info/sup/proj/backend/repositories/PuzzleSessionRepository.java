@@ -2,6 +2,9 @@ package info.sup.proj.backend.repositories;
 
 import info.sup.proj.backend.model.PuzzleSession;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
@@ -9,4 +12,14 @@ import java.util.Optional;
 public interface PuzzleSessionRepository extends JpaRepository<PuzzleSession, Long> {
     Optional<PuzzleSession> findByPuzzleId(Integer puzzleId);
     Optional<PuzzleSession> findByPuzzleIdAndUserId(Integer puzzleId, Long userId);
+
+    @Query("select s.id from PuzzleSession s where s.puzzle.id = :puzzleId and s.user.id = :userId")
+    Optional<Long> findIdByPuzzleIdAndUserId(@Param("puzzleId") Integer puzzleId, @Param("userId") Long userId);
+
+    // Sessions created before the interaction counter existed get it from their stored interactions
+    @Modifying
+    @Query(value = "UPDATE puzzle_sessions SET interaction_count = "
+        + "(SELECT COUNT(*) FROM session_interactions i WHERE i.session_id = puzzle_sessions.id) "
+        + "WHERE interaction_count IS NULL", nativeQuery = true)
+    int backfillInteractionCounts();
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package info.sup.proj.backend.repositories;
+
+import info.sup.proj.backend.model.SessionInteraction;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SessionInteractionRepository extends JpaRepository<SessionInteraction, SessionInteraction.Key> {
+    List<SessionInteraction> findBySessionIdAndSeqGreaterThanOrderBySeqAsc(Long sessionId, Integer seq, Limit limit);
+
+    List<SessionInteraction> findBySessionIdAndSeqLessThanOrderBySeqDesc(Long sessionId, Integer seq, Limit limit);
+
+    // Native, since interactions are immutable to Hibernate; only used when a session is reset
+    @Modifying
+    @Query(value = "DELETE FROM session_interactions WHERE session_id = :sessionId", nativeQuery = true)
+    int deleteBySessionId(@Param("sessionId") Long sessionId);
+}
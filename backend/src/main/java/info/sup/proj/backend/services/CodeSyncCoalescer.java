@@ -0,0 +1,91 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Game;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the code updates a player sends while typing. The first update for a player opens a window of
+ * {@code app.code-sync.window}; later updates in that window only replace the pending code, and when the window
+ * closes the latest version is stored and published as one state delta. Intermediate versions are dropped, as
+ * is a pending update whose round has ended by the time it is flushed.
+ * <p>
+ * Updates received and emitted are counted as {@code code.sync.received} and {@code code.sync.emitted}.
+ */
+@Component
+public class CodeSyncCoalescer {
+
+    private record Key(String gameId, String playerId) {}
+
+    private record PendingCode(String code, int round) {}
+
+    private final GameService gameService;
+    private final ScheduledExecutorService scheduler;
+    private final long windowMillis;
+    private final Map<Key, PendingCode> pending = new ConcurrentHashMap<>();
+    private final Counter received;
+    private final Counter emitted;
+
+    public CodeSyncCoalescer(
+            GameService gameService,
+            ScheduledExecutorService scheduler,
+            @Value("${app.code-sync.window:PT0.15S}") Duration window,
+            MeterRegistry meterRegistry) {
+        this.gameService = gameService;
+        this.scheduler = scheduler;
+        this.windowMillis = window.toMillis();
+        this.received = meterRegistry.counter("code.sync.received");
+        this.emitted = meterRegistry.counter("code.sync.emitted");
+    }
+
+    public void submit(String gameId, String playerId, String code) {
+        received.increment();
+
+        Game game = gameService.getGame(gameId);
+        if (game == null || !game.hasPlayer(playerId)) {
+            return;
+        }
+
+        if (windowMillis <= 0) {
+            gameService.updatePlayerCode(gameId, playerId, code);
+            emitted.increment();
+            return;
+        }
+
+        Key key = new Key(gameId, playerId);
+        // Only the update that opens the window schedules a flush; the flush takes whatever is pending by then
+        if (pending.put(key, new PendingCode(code, game.getCurrentRound())) == null) {
+            scheduler.schedule(() -> flush(key), windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Drops the pending update of a player, for when a submission already carries their latest code.
+     */
+    public void discard(String gameId, String playerId) {
+        pending.remove(new Key(gameId, playerId));
+    }
+
+    private void flush(Key key) {
+        PendingCode update = pending.remove(key);
+        if (update == null) {
+            return;
+        }
+
+        Game game = gameService.getGame(key.gameId());
+        if (game == null || game.getCurrentRound() != update.round()) {
+            return;
+        }
+
+        gameService.updatePlayerCode(key.gameId(), key.playerId(), update.code());
+        emitted.increment();
+    }
+}
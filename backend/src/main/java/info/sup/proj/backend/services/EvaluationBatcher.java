@@ -0,0 +1,157 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Puzzle;
+import info.sup.proj.backend.services.llm.AiRequestScheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the code evaluations of game submissions into micro-batches. At round end both players of every game
+ * submit at about the same time; instead of one AI call per submission, each carrying the evaluator instructions,
+ * the submissions arriving within {@code app.game.evaluation.batch-window} of the first are scored in a single call
+ * of up to {@code app.game.evaluation.max-batch} submissions, and each result is handed back to the submission
+ * waiting for it. A batch is sent early once it is full; a batch of one is an ordinary evaluation, and a batch whose
+ * reply cannot be split per submission is re-evaluated one submission at a time.
+ * <p>
+ * AI calls and submissions are counted as {@code evaluation.batch.calls} and {@code evaluation.batch.submissions},
+ * and batch sizes are recorded in {@code evaluation.batch.size}.
+ */
+@Component
+public class EvaluationBatcher {
+    private static final Logger logger = LoggerFactory.getLogger(EvaluationBatcher.class);
+
+    // Batches mix players, so the scheduler sees them as one flow of in-game evaluations
+    private static final AiRequestScheduler.Caller BATCH_CALLER = AiRequestScheduler.Caller.gameEvaluation("evaluation-batch");
+
+    private record Pending(String playerId, AiService.CodeSubmission submission, CompletableFuture<String> result) {}
+
+    private final AiService aiService;
+    private final ExecutorService evaluationExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final long windowMillis;
+    private final int maxBatch;
+    private final Counter calls;
+    private final Counter submissions;
+    private final DistributionSummary batchSizes;
+
+    private final Object lock = new Object();
+    private List<Pending> pending = new ArrayList<>();
+
+    public EvaluationBatcher(
+            AiService aiService,
+            @Qualifier("evaluationExecutor") ExecutorService evaluationExecutor,
+            ScheduledExecutorService scheduler,
+            @Value("${app.game.evaluation.batch-window:PT0.25S}") Duration window,
+            @Value("${app.game.evaluation.max-batch:8}") int maxBatch,
+            MeterRegistry meterRegistry) {
+        this.aiService = aiService;
+        this.evaluationExecutor = evaluationExecutor;
+        this.scheduler = scheduler;
+        this.windowMillis = window.toMillis();
+        this.maxBatch = Math.max(1, maxBatch);
+        this.calls = meterRegistry.counter("evaluation.batch.calls");
+        this.submissions = meterRegistry.counter("evaluation.batch.submissions");
+        this.batchSizes = meterRegistry.summary("evaluation.batch.size");
+    }
+
+    /**
+     * Queues a submission for evaluation. The future completes with the raw score object of the submission, or
+     * exceptionally with a {@link RejectedExecutionException} when the evaluation executor is saturated.
+     */
+    public CompletableFuture<String> evaluate(String playerId, String evaluationPrompt, String code,
+                                              Puzzle.Type puzzleType) {
+        Pending submission = new Pending(playerId, new AiService.CodeSubmission(evaluationPrompt, code, puzzleType),
+            new CompletableFuture<>());
+
+        List<Pending> batch = null;
+        synchronized (lock) {
+            pending.add(submission);
+            if (pending.size() >= maxBatch || windowMillis <= 0) {
+                batch = takePending();
+            } else if (pending.size() == 1) {
+                // Only the submission that opens the window schedules a flush; the flush takes whatever is pending
+                scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (batch != null) {
+            dispatch(batch);
+        }
+        return submission.result();
+    }
+
+    private void flush() {
+        List<Pending> batch;
+        synchronized (lock) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    private List<Pending> takePending() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void dispatch(List<Pending> batch) {
+        try {
+            evaluationExecutor.execute(() -> evaluateBatch(batch));
+        } catch (RejectedExecutionException e) {
+            batch.forEach(submission -> submission.result().completeExceptionally(e));
+        }
+    }
+
+    private void evaluateBatch(List<Pending> batch) {
+        submissions.increment(batch.size());
+        batchSizes.record(batch.size());
+        try {
+            if (batch.size() == 1) {
+                evaluateAlone(batch.getFirst());
+                return;
+            }
+
+            calls.increment();
+            List<String> evaluations = aiService.getCodeEvaluations(BATCH_CALLER,
+                batch.stream().map(Pending::submission).toList());
+            if (evaluations == null) {
+                logger.warn("Batch evaluation reply did not match {} submissions, evaluating them one by one", batch.size());
+                batch.forEach(this::evaluateAlone);
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(evaluations.get(i));
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(submission -> submission.result().completeExceptionally(e));
+        }
+    }
+
+    private void evaluateAlone(Pending pending) {
+        calls.increment();
+        AiService.CodeSubmission submission = pending.submission();
+        pending.result().complete(aiService.getCodeEvaluation(
+            AiRequestScheduler.Caller.gameEvaluation(pending.playerId()),
+            submission.evaluationPrompt(),
+            submission.code(),
+            submission.puzzleType()
+        ));
+    }
+}
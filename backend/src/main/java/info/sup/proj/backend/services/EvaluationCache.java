@@ -0,0 +1,171 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.dto.CodeEvaluationDto;
+import info.sup.proj.backend.model.Puzzle;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, time-limited cache of AI code evaluations so that resubmitting the same code for the same puzzle
+ * (or re-scoring a completed session) does not trigger another LLM call. Entries are keyed by puzzle id,
+ * puzzle type and a SHA-256 of the code without trailing whitespace or blank lines; the least recently
+ * used entry is evicted once {@code max-entries} is reached and entries expire after {@code ttl}.
+ * <p>
+ * Hits, misses and evictions are published as {@code evaluation.cache.*} meters and are visible under
+ * {@code /actuator/metrics}.
+ */
+@Component
+public class EvaluationCache {
+    private static final String METRIC_PREFIX = "evaluation.cache.";
+
+    public record Key(Integer puzzleId, Puzzle.Type puzzleType, String codeHash) {}
+
+    private record Entry(int correctness, int quality, long expiresAtNanos) {}
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier nanoTime;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+    private final LinkedHashMap<Key, Entry> entries;
+
+    @Autowired
+    public EvaluationCache(
+            @Value("${app.evaluation-cache.max-entries:10000}") int maxEntries,
+            @Value("${app.evaluation-cache.ttl:PT30M}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        this(maxEntries, ttl, meterRegistry, System::nanoTime);
+    }
+
+    EvaluationCache(int maxEntries, Duration ttl, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Evaluation cache needs at least one entry");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoTime = nanoTime;
+        this.hits = meterRegistry.counter(METRIC_PREFIX + "hits");
+        this.misses = meterRegistry.counter(METRIC_PREFIX + "misses");
+        this.sizeEvictions = meterRegistry.counter(METRIC_PREFIX + "evictions", "cause", "size");
+        this.expiredEvictions = meterRegistry.counter(METRIC_PREFIX + "evictions", "cause", "expired");
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > EvaluationCache.this.maxEntries) {
+                    sizeEvictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        meterRegistry.gauge(METRIC_PREFIX + "size", this, EvaluationCache::size);
+    }
+
+    public static Key keyFor(Puzzle puzzle, String code) {
+        return new Key(puzzle.getId(), puzzle.getType(), hash(normalize(code)));
+    }
+
+    /**
+     * Returns the cached evaluation, or {@code null} when there is none (counted as a miss).
+     */
+    public CodeEvaluationDto getIfPresent(Key key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAtNanos() - nanoTime.getAsLong() <= 0) {
+                entries.remove(key);
+                expiredEvictions.increment();
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return toDto(entry);
+    }
+
+    public void put(Key key, CodeEvaluationDto evaluation) {
+        Entry entry = new Entry(evaluation.getCorrectness(), evaluation.getQuality(), nanoTime.getAsLong() + ttlNanos);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Returns the cached evaluation or runs {@code loader} and caches its result. The loader runs outside the
+     * lock, so two concurrent misses for the same key may both call the AI; the later result wins. Exceptions
+     * and {@code null} results are passed through without being cached.
+     */
+    public CodeEvaluationDto getOrCompute(Key key, Supplier<CodeEvaluationDto> loader) {
+        CodeEvaluationDto cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CodeEvaluationDto evaluation = loader.get();
+        if (evaluation != null && evaluation.getCorrectness() != null && evaluation.getQuality() != null) {
+            put(key, evaluation);
+        }
+        return evaluation;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Drops trailing whitespace, blank lines and line-ending differences, so re-pasting the same code maps to the
+     * same key. Indentation and comments are left alone: puzzles come in several languages, and in Python both
+     * leading whitespace and {@code //} (floor division) carry meaning.
+     */
+    static String normalize(String code) {
+        if (code == null) {
+            return "";
+        }
+
+        StringBuilder normalized = new StringBuilder(code.length());
+        for (String line : code.split("\\R")) {
+            String trimmed = line.stripTrailing();
+            if (!trimmed.isEmpty()) {
+                normalized.append(trimmed).append('\n');
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static String hash(String normalizedCode) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalizedCode.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static CodeEvaluationDto toDto(Entry entry) {
+        return CodeEvaluationDto.builder()
+            .correctness(entry.correctness())
+            .quality(entry.quality())
+            .build();
+    }
+}
@@ -0,0 +1,223 @@
+package info.sup.proj.backend.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.sup.proj.backend.model.Game;
+import info.sup.proj.backend.model.GameEvent;
+import info.sup.proj.backend.model.Puzzle;
+import info.sup.proj.backend.repositories.GameEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only log of what happens in a duel: round starts, in-game prompts, the code of each player at the end of
+ * a round, scored submissions, completions, forfeits and the final scores. {@code GameService} records events from
+ * the game's mailbox; recording only serializes the event and queues it, and a writer thread of its own writes the
+ * queue every {@code app.game.events.flush-interval}, or as soon as {@code app.game.events.batch-size} events are
+ * waiting, in batches of that size. Writes block on the database, so they stay off the shared scheduler.
+ * <p>
+ * The log is for analysis and replay, not for running games: when more than {@code app.game.events.max-pending}
+ * events are waiting, or a batch fails to write, those events are dropped rather than slowing a game down.
+ * Written, dropped and failed events are counted as {@code game.events.written}, {@code game.events.dropped} and
+ * {@code game.events.failed}; {@code game.events.pending} is the queue length.
+ */
+@Component
+public class GameEventLog {
+    private static final Logger logger = LoggerFactory.getLogger(GameEventLog.class);
+
+    private final GameEventRepository repository;
+    private final ObjectMapper objectMapper;
+    private final Duration flushInterval;
+    private final int batchSize;
+    private final BlockingQueue<GameEvent> pending;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter failed;
+    private volatile boolean running;
+    private Thread writer;
+
+    public GameEventLog(
+            GameEventRepository repository,
+            ObjectMapper objectMapper,
+            @Value("${app.game.events.flush-interval:PT1S}") Duration flushInterval,
+            @Value("${app.game.events.batch-size:200}") int batchSize,
+            @Value("${app.game.events.max-pending:10000}") int maxPending,
+            MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.flushInterval = flushInterval;
+        this.batchSize = Math.max(1, batchSize);
+        this.pending = new ArrayBlockingQueue<>(Math.max(1, maxPending));
+        this.written = meterRegistry.counter("game.events.written");
+        this.dropped = meterRegistry.counter("game.events.dropped");
+        this.failed = meterRegistry.counter("game.events.failed");
+        meterRegistry.gauge("game.events.pending", pending, Collection::size);
+    }
+
+    @PostConstruct
+    public void startFlushing() {
+        running = true;
+        writer = Thread.ofVirtual().name("game-event-writer").start(this::writeLoop);
+    }
+
+    @PreDestroy
+    public void stopFlushing() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            writer.join();
+            writer = null;
+        }
+        flush();
+    }
+
+    public void gameStarted(Game game) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("totalRounds", game.getTotalRounds());
+        details.put("players", game.getPlayers());
+        append(game, GameEvent.Type.GAME_STARTED, null, details);
+    }
+
+    public void roundStarted(Game game) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        Puzzle puzzle = game.getCurrentPuzzle();
+        if (puzzle != null) {
+            details.put("puzzleId", puzzle.getId());
+            details.put("puzzleName", puzzle.getName());
+            details.put("puzzleType", puzzle.getType());
+        }
+        append(game, GameEvent.Type.ROUND_STARTED, null, details);
+    }
+
+    public void prompt(Game game, String playerId, String prompt, String responseText, String responseCode) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("prompt", prompt);
+        details.put("text", responseText);
+        details.put("code", responseCode);
+        append(game, GameEvent.Type.PROMPT, playerId, details);
+    }
+
+    public void codeSnapshot(Game game, String playerId, String code) {
+        append(game, GameEvent.Type.CODE_SNAPSHOT, playerId, Map.of("code", code != null ? code : ""));
+    }
+
+    public void submission(Game game, String playerId, String code, int correctness, int quality, int timeBonus,
+                           int score) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("code", code);
+        details.put("correctness", correctness);
+        details.put("quality", quality);
+        details.put("timeBonus", timeBonus);
+        details.put("score", score);
+        append(game, GameEvent.Type.SUBMISSION, playerId, details);
+    }
+
+    public void playerCompleted(Game game, String playerId) {
+        append(game, GameEvent.Type.PLAYER_COMPLETED, playerId, Map.of());
+    }
+
+    public void forfeit(Game game, String playerId) {
+        append(game, GameEvent.Type.FORFEIT, playerId, Map.of());
+    }
+
+    public void gameEnded(Game game) {
+        Map<String, Integer> scores = new LinkedHashMap<>();
+        game.getPlayers().forEach(player ->
+            scores.put(player.getId(), game.getPlayerStatus().get(player.getId()).getScore()));
+        append(game, GameEvent.Type.GAME_ENDED, null, Map.of("scores", scores));
+    }
+
+    /**
+     * All events of {@code gameId} in the order they happened: the ones written, then the ones still queued. Nothing
+     * is written for the read; a batch the writer is saving at that moment shows up on the next read.
+     */
+    public List<GameEvent> events(String gameId) {
+        // The table first: an event still queued afterwards was not written yet, so none is returned twice
+        List<GameEvent> events = new ArrayList<>(repository.findByGameIdOrderByOccurredAtAscIdAsc(gameId));
+        for (GameEvent event : pending) {
+            if (gameId.equals(event.getGameId())) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    int pending() {
+        return pending.size();
+    }
+
+    private void append(Game game, GameEvent.Type type, String playerId, Map<String, ?> details) {
+        String payload;
+        try {
+            // Serialized right away, so the event holds the game as it is now and not as it is at flush time
+            payload = objectMapper.writeValueAsString(details);
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not serialize {} event of game {}: {}", type, game.getId(), e.getMessage());
+            return;
+        }
+
+        GameEvent event = new GameEvent(game.getId(), System.currentTimeMillis(), type, game.getCurrentRound(),
+            playerId, payload);
+        if (!pending.offer(event)) {
+            dropped.increment();
+            return;
+        }
+
+        if (pending.size() >= batchSize && flushRequested.compareAndSet(false, true) && writer != null) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void writeLoop() {
+        long intervalNanos = flushInterval.toNanos();
+        while (running) {
+            // Woken early by a full batch or by shutdown; a spurious wakeup only writes a little sooner
+            if (intervalNanos > 0) {
+                LockSupport.parkNanos(this, intervalNanos);
+            } else {
+                LockSupport.park(this);
+            }
+            if (running) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Writes the queue in batches. Runs on the writer thread, and once more on shutdown after the writer stopped.
+     */
+    void flush() {
+        flushRequested.set(false);
+        while (!pending.isEmpty()) {
+            List<GameEvent> batch = new ArrayList<>(batchSize);
+            pending.drainTo(batch, batchSize);
+            try {
+                repository.saveAll(batch);
+                written.increment(batch.size());
+            } catch (RuntimeException e) {
+                // An exception would end the writer, so log and try the next batch on the next run
+                failed.increment(batch.size());
+                logger.error("Failed to write {} game events: {}", batch.size(), e.getMessage(), e);
+                return;
+            }
+        }
+    }
+}
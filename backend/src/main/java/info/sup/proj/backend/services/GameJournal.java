@@ -0,0 +1,834 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Game;
+import info.sup.proj.backend.model.Player;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead journal of the games hosted by this instance, so a restart does not lose the duels in progress.
+ * <p>
+ * {@code GameService} reports every mutation of a game from the game's mailbox. Reporting only encodes a small
+ * record (the new code, the points scored, the round that started, ...) and queues it; a single writer thread
+ * appends queued records to the current {@code wal-<n>.log} and forces them to disk once per batch. Every
+ * {@code app.game.journal.checkpoint-interval} a checkpoint thread of its own rotates the WAL and snapshots the games
+ * changed since the last checkpoint on their mailboxes into {@code snapshot-<n>.bin}, together with the ids of games
+ * that went away; the WAL files the snapshot covers are then deleted. A checkpoint waits on the mailboxes and the
+ * disk, so it stays off the shared scheduler that fires game timers. Every {@code app.game.journal.max-segments} checkpoints the
+ * snapshot covers all live games, so older snapshot files can be deleted as well.
+ * <p>
+ * On startup the newest full snapshot, the incremental ones after it and the WAL written since are read back into
+ * the games returned by {@link #recover()}, and immediately compacted into a single full snapshot. A torn record at
+ * the end of a WAL file (the process died mid-write) ends the replay of that file.
+ * <p>
+ * Records, bytes and checkpoints are measured as {@code game.journal.records}, {@code game.journal.bytes},
+ * {@code game.journal.checkpoint} (time) and {@code game.journal.checkpoint.games}; {@code game.journal.pending}
+ * is the write queue length and {@code game.journal.errors} counts failed writes. The journal is off unless
+ * {@code app.game.journal.enabled} is set.
+ */
+@Component
+public class GameJournal {
+    private static final Logger logger = LoggerFactory.getLogger(GameJournal.class);
+
+    private static final String WAL_PREFIX = "wal-";
+    private static final String WAL_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private static final int SNAPSHOT_MAGIC = 0x474A534E;
+    private static final byte SEGMENT_FULL = 1;
+    private static final byte SEGMENT_INCREMENTAL = 2;
+    private static final byte ENTRY_IMAGE = 1;
+    private static final byte ENTRY_TOMBSTONE = 2;
+    private static final byte ENTRY_END = 0;
+
+    enum Op { CREATED, CODE, SCORED, COMPLETED, ROUND_STARTED, FORFEIT, ENDED, REMOVED }
+
+    /**
+     * A live game with the sequence number of its last record and of the record its last snapshot includes, and
+     * the last state sequence broadcast to its players.
+     */
+    private static final class Tracked {
+        private final Game game;
+        private volatile long version;
+        private long snapshotVersion;
+        private volatile long stateSequence;
+        private long snapshotStateSequence;
+
+        private Tracked(Game game) {
+            this.game = game;
+        }
+    }
+
+    private record Captured(Tracked tracked, Game.Snapshot snapshot, long version, long stateSequence) {}
+
+    private record Rotation(CompletableFuture<Long> rotated) {}
+
+    private static final Object STOP = new Object();
+
+    @FunctionalInterface
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final Duration checkpointInterval;
+    private final int maxSegments;
+    private final boolean fsync;
+    private final GameMailboxes mailboxes;
+
+    // One sequence for all games, so a record can always be told apart from an older state of the same game
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Tracked> tracked = new ConcurrentHashMap<>();
+    private final Set<String> removedSinceCheckpoint = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> recoveredVersions = new ConcurrentHashMap<>();
+    private final Map<String, Long> recoveredStateSequences = new ConcurrentHashMap<>();
+    private final BlockingQueue<Object> writes = new LinkedBlockingQueue<>();
+    private List<Game.Snapshot> recovered = List.of();
+    private int incrementalSegments;
+    private Thread writer;
+    private Thread checkpointer;
+    private CountDownLatch checkpointsStopped;
+
+    private final Counter records;
+    private final Counter bytes;
+    private final Counter errors;
+    private final Timer checkpointTimer;
+    private final DistributionSummary checkpointGames;
+
+    public GameJournal(
+            @Value("${app.game.journal.enabled:false}") boolean enabled,
+            @Value("${app.game.journal.dir:game-journal}") String directory,
+            @Value("${app.game.journal.checkpoint-interval:PT30S}") Duration checkpointInterval,
+            @Value("${app.game.journal.max-segments:8}") int maxSegments,
+            @Value("${app.game.journal.fsync:true}") boolean fsync,
+            GameMailboxes mailboxes,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.checkpointInterval = checkpointInterval;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.fsync = fsync;
+        this.mailboxes = mailboxes;
+        this.records = meterRegistry.counter("game.journal.records");
+        this.bytes = meterRegistry.counter("game.journal.bytes");
+        this.errors = meterRegistry.counter("game.journal.errors");
+        this.checkpointTimer = meterRegistry.timer("game.journal.checkpoint");
+        this.checkpointGames = meterRegistry.summary("game.journal.checkpoint.games");
+        meterRegistry.gauge("game.journal.pending", writes, Collection::size);
+    }
+
+    /**
+     * Reads back what the previous run left in the journal directory, compacts it and starts a new WAL file.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        Files.createDirectories(directory);
+        long generation = load();
+        writer = Thread.ofVirtual().name("game-journal-writer").start(() -> writeLoop(generation + 1));
+
+        if (checkpointInterval.toMillis() > 0) {
+            CountDownLatch stopped = new CountDownLatch(1);
+            checkpointsStopped = stopped;
+            // A platform thread: checkpoint() waits for the writer while holding its monitor, which would pin the
+            // carrier of a virtual thread and could leave none for the writer
+            checkpointer = Thread.ofPlatform().name("game-journal-checkpointer").daemon()
+                .start(() -> checkpointLoop(stopped));
+        }
+    }
+
+    /**
+     * Writes out the queued records and stops the writer. Games keep running on their own; the next start
+     * recovers them from the WAL.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (checkpointer != null) {
+            // Lets a running checkpoint finish, it still needs the writer to rotate the WAL
+            checkpointsStopped.countDown();
+            checkpointer.join();
+            checkpointer = null;
+        }
+        if (writer != null) {
+            writes.add(STOP);
+            writer.join();
+            writer = null;
+        }
+    }
+
+    /**
+     * The games recovered when the journal was opened, each once. Their sequence numbers are kept until they are
+     * handed back through {@link #track}.
+     */
+    public synchronized List<Game.Snapshot> recover() {
+        List<Game.Snapshot> games = recovered;
+        recovered = List.of();
+        return games;
+    }
+
+    /**
+     * Starts journaling a recovered game without writing it again; the compacted snapshot already holds it.
+     * Returns the state sequence to resume broadcasting from: one past the last one journaled, since the publish
+     * that follows a record is not journaled itself. Players that did not see that publish notice the gap and
+     * resync.
+     */
+    public long track(Game game) {
+        if (!enabled) {
+            return 0;
+        }
+        Long version = recoveredVersions.remove(game.getId());
+        Long stateSequence = recoveredStateSequences.remove(game.getId());
+        Tracked entry = new Tracked(game);
+        entry.version = version != null ? version : 0;
+        entry.snapshotVersion = entry.version;
+        entry.snapshotStateSequence = stateSequence != null ? stateSequence : 0;
+        entry.stateSequence = stateSequence != null ? stateSequence + 1 : 0;
+        tracked.put(game.getId(), entry);
+        return entry.stateSequence;
+    }
+
+    public void created(Game game) {
+        created(game, 0);
+    }
+
+    /**
+     * Journals a new game, or one taken over from another node whose players have seen {@code stateSequence}.
+     */
+    public void created(Game game, long stateSequence) {
+        if (!enabled) {
+            return;
+        }
+        Tracked entry = new Tracked(game);
+        entry.stateSequence = stateSequence;
+        tracked.put(game.getId(), entry);
+        Game.Snapshot snapshot = game.snapshot();
+        append(entry, Op.CREATED, game.getId(), out -> writeSnapshot(out, snapshot));
+    }
+
+    public void codeUpdated(Game game, String playerId, String code) {
+        append(game, Op.CODE, out -> {
+            writeString(out, playerId);
+            writeString(out, code);
+        });
+    }
+
+    public void scored(Game game, String playerId, int points) {
+        append(game, Op.SCORED, out -> {
+            writeString(out, playerId);
+            out.writeInt(points);
+        });
+    }
+
+    public void completed(Game game, String playerId) {
+        append(game, Op.COMPLETED, out -> writeString(out, playerId));
+    }
+
+    public void roundStarted(Game game) {
+        int round = game.getCurrentRound();
+        Integer puzzleId = game.getCurrentPuzzle() != null ? game.getCurrentPuzzle().getId() : null;
+        long roundStartTime = game.getRoundStartTime();
+        append(game, Op.ROUND_STARTED, out -> {
+            out.writeInt(round);
+            writeInteger(out, puzzleId);
+            out.writeLong(roundStartTime);
+        });
+    }
+
+    public void forfeited(Game game, String playerId) {
+        append(game, Op.FORFEIT, out -> writeString(out, playerId));
+    }
+
+    public void ended(Game game) {
+        append(game, Op.ENDED, out -> {});
+    }
+
+    /**
+     * Notes the state sequence last broadcast for {@code game}. Nothing is written for it; the next record and
+     * snapshot of the game carry it.
+     */
+    public void published(Game game, long stateSequence) {
+        if (!enabled) {
+            return;
+        }
+        Tracked entry = tracked.get(game.getId());
+        if (entry != null && entry.game == game) {
+            entry.stateSequence = stateSequence;
+        }
+    }
+
+    /**
+     * The game is no longer hosted here, because it expired or moved to another node.
+     */
+    public void removed(String gameId) {
+        if (!enabled) {
+            return;
+        }
+        Tracked entry = tracked.remove(gameId);
+        if (entry != null) {
+            removedSinceCheckpoint.add(gameId);
+            append(entry, Op.REMOVED, gameId, out -> {});
+        }
+    }
+
+    private void append(Game game, Op op, Body body) {
+        if (!enabled) {
+            return;
+        }
+        Tracked entry = tracked.get(game.getId());
+        if (entry != null && entry.game == game) {
+            append(entry, op, game.getId(), body);
+        }
+    }
+
+    private void append(Tracked entry, Op op, String gameId, Body body) {
+        long version = sequence.incrementAndGet();
+        entry.version = version;
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(record)) {
+            out.writeByte(op.ordinal());
+            writeString(out, gameId);
+            out.writeLong(version);
+            out.writeLong(entry.stateSequence);
+            body.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        writes.add(record.toByteArray());
+    }
+
+    private void checkpointLoop(CountDownLatch stopped) {
+        long intervalMillis = checkpointInterval.toMillis();
+        try {
+            while (!stopped.await(intervalMillis, TimeUnit.MILLISECONDS)) {
+                checkpointQuietly();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (Exception e) {
+            // An exception would end the checkpoint thread, so log it and try again next time
+            errors.increment();
+            logger.error("Game journal checkpoint failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rotates the WAL, snapshots the games changed since the last checkpoint (all games every
+     * {@code max-segments} checkpoints) and deletes the files the new snapshot covers.
+     */
+    synchronized void checkpoint() throws IOException {
+        if (!enabled || writer == null) {
+            return;
+        }
+
+        Timer.Sample sample = Timer.start();
+        long covered = rotate();
+        boolean full = incrementalSegments + 1 >= maxSegments;
+        Set<String> removed = new HashSet<>(removedSinceCheckpoint);
+        removedSinceCheckpoint.removeAll(removed);
+
+        // Each game is copied on its own mailbox, so the copy is consistent without stopping other games
+        List<CompletableFuture<Captured>> captures = new ArrayList<>();
+        for (Tracked entry : tracked.values()) {
+            // A snapshot sent to a joining player can move the sequence on without a record
+            if (full || entry.version > entry.snapshotVersion || entry.stateSequence > entry.snapshotStateSequence) {
+                String gameId = entry.game.getId();
+                captures.add(mailboxes.submit(gameId, () -> tracked.get(gameId) == entry
+                    ? new Captured(entry, entry.game.snapshot(), entry.version, entry.stateSequence)
+                    : null));
+            }
+        }
+        List<Captured> captured = new ArrayList<>(captures.size());
+        for (CompletableFuture<Captured> capture : captures) {
+            // Games removed while waiting are left out; their tombstone goes into the next checkpoint
+            Captured game = capture.join();
+            if (game != null) {
+                captured.add(game);
+            }
+        }
+
+        try {
+            writeSegment(covered, full, captured, full ? Set.of() : removed);
+        } catch (IOException e) {
+            removedSinceCheckpoint.addAll(removed);
+            throw e;
+        }
+
+        captured.forEach(capture -> {
+            capture.tracked().snapshotVersion = capture.version();
+            capture.tracked().snapshotStateSequence = capture.stateSequence();
+        });
+        incrementalSegments = full ? 0 : incrementalSegments + 1;
+        deleteFiles(WAL_PREFIX, WAL_SUFFIX, generation -> generation <= covered);
+        if (full) {
+            deleteFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX, generation -> generation < covered);
+        }
+
+        checkpointGames.record(captured.size());
+        sample.stop(checkpointTimer);
+    }
+
+    /**
+     * Switches the writer to the next WAL file and returns the generation of the one it closed.
+     */
+    private long rotate() {
+        Rotation rotation = new Rotation(new CompletableFuture<>());
+        writes.add(rotation);
+        return rotation.rotated().join();
+    }
+
+    private void writeLoop(long firstGeneration) {
+        long generation = firstGeneration;
+        List<Object> batch = new ArrayList<>();
+        FileOutputStream file = null;
+        DataOutputStream out = null;
+        CRC32C crc = new CRC32C();
+        boolean stopping = false;
+
+        while (!stopping) {
+            try {
+                batch.add(writes.take());
+                writes.drainTo(batch);
+                if (file == null) {
+                    file = new FileOutputStream(walFile(generation).toFile(), true);
+                    out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+                }
+
+                for (Object item : batch) {
+                    if (item instanceof byte[] record) {
+                        crc.reset();
+                        crc.update(record);
+                        out.writeInt(record.length);
+                        out.writeInt((int) crc.getValue());
+                        out.write(record);
+                        records.increment();
+                        bytes.increment(record.length + 8);
+                    } else if (item instanceof Rotation rotation) {
+                        sync(file, out);
+                        out.close();
+                        rotation.rotated().complete(generation++);
+                        file = new FileOutputStream(walFile(generation).toFile(), true);
+                        out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+                    } else if (item == STOP) {
+                        stopping = true;
+                    }
+                }
+                // One forced write per batch of records, whatever the batch size
+                sync(file, out);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopping = true;
+            } catch (IOException e) {
+                errors.increment();
+                logger.error("Failed to write the game journal: {}", e.getMessage(), e);
+                for (Object item : batch) {
+                    if (item instanceof Rotation rotation) {
+                        rotation.rotated().completeExceptionally(e);
+                    }
+                    stopping |= item == STOP;
+                }
+                closeQuietly(out);
+                file = null;
+                out = null;
+            } finally {
+                batch.clear();
+            }
+        }
+        closeQuietly(out);
+    }
+
+    private void sync(FileOutputStream file, DataOutputStream out) throws IOException {
+        out.flush();
+        if (fsync) {
+            file.getChannel().force(false);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            logger.warn("Could not close game journal file: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds the games left by the previous run into {@link #recovered}, writes them as one full snapshot and
+     * removes the files that went into it. Returns the generation of that snapshot.
+     */
+    private long load() throws IOException {
+        long started = System.nanoTime();
+        NavigableMap<Long, Path> segments = files(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        NavigableMap<Long, Path> wals = files(WAL_PREFIX, WAL_SUFFIX);
+        Map<String, Image> images = new HashMap<>();
+
+        // The newest full snapshot is the base; incremental ones after it replace or remove its games
+        Long base = null;
+        for (Map.Entry<Long, Path> segment : segments.descendingMap().entrySet()) {
+            if (isFullSegment(segment.getValue())) {
+                base = segment.getKey();
+                break;
+            }
+        }
+        if (base != null) {
+            for (Path segment : segments.tailMap(base, true).values()) {
+                readSegment(segment, images);
+            }
+        }
+
+        // WAL files up to the newest snapshot are covered by it, even if a crash kept them from being deleted
+        long covered = segments.isEmpty() ? 0 : segments.lastKey();
+        for (Path wal : wals.tailMap(covered, false).values()) {
+            replayWal(wal, images);
+        }
+
+        long generation = Math.max(covered, wals.isEmpty() ? 0 : wals.lastKey());
+        List<Captured> compacted = new ArrayList<>(images.size());
+        List<Game.Snapshot> games = new ArrayList<>(images.size());
+        for (Image image : images.values()) {
+            Game.Snapshot snapshot = image.toSnapshot();
+            compacted.add(new Captured(null, snapshot, image.version, image.stateSequence));
+            games.add(snapshot);
+            recoveredVersions.put(image.id, image.version);
+            recoveredStateSequences.put(image.id, image.stateSequence);
+        }
+        writeSegment(generation, true, compacted, Set.of());
+        deleteFiles(WAL_PREFIX, WAL_SUFFIX, g -> true);
+        deleteFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX, g -> g != generation);
+
+        synchronized (this) {
+            recovered = games;
+        }
+        if (!games.isEmpty()) {
+            logger.info("Recovered {} games from the game journal in {} ms", games.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+        return generation;
+    }
+
+    private void writeSegment(long generation, boolean full, List<Captured> games, Set<String> tombstones)
+            throws IOException {
+        Path target = directory.resolve(SNAPSHOT_PREFIX + generation + SNAPSHOT_SUFFIX);
+        Path temporary = directory.resolve(SNAPSHOT_PREFIX + generation + SNAPSHOT_SUFFIX + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeByte(full ? SEGMENT_FULL : SEGMENT_INCREMENTAL);
+            out.writeLong(sequence.get());
+            for (String gameId : tombstones) {
+                out.writeByte(ENTRY_TOMBSTONE);
+                writeString(out, gameId);
+            }
+            for (Captured game : games) {
+                out.writeByte(ENTRY_IMAGE);
+                out.writeLong(game.version());
+                out.writeLong(game.stateSequence());
+                writeSnapshot(out, game.snapshot());
+            }
+            out.writeByte(ENTRY_END);
+            out.flush();
+            if (fsync) {
+                file.getChannel().force(false);
+            }
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private boolean isFullSegment(Path segment) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            return in.readInt() == SNAPSHOT_MAGIC && in.readByte() == SEGMENT_FULL;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private void readSegment(Path segment, Map<String, Image> images) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                logger.warn("Skipping {}, not a game journal snapshot", segment.getFileName());
+                return;
+            }
+            in.readByte();
+            sequence.accumulateAndGet(in.readLong(), Math::max);
+            for (byte entry = in.readByte(); entry != ENTRY_END; entry = in.readByte()) {
+                if (entry == ENTRY_TOMBSTONE) {
+                    images.remove(readString(in));
+                } else {
+                    long version = in.readLong();
+                    long stateSequence = in.readLong();
+                    Image image = Image.of(readSnapshot(in), version, stateSequence);
+                    images.put(image.id, image);
+                }
+            }
+        } catch (EOFException e) {
+            logger.warn("Snapshot {} is truncated, using the games read before the cut", segment.getFileName());
+        }
+    }
+
+    private void replayWal(Path wal, Map<String, Image> images) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(wal), 1 << 16))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                int checksum = in.readInt();
+                byte[] record = new byte[length];
+                in.readFully(record);
+                crc.reset();
+                crc.update(record);
+                if ((int) crc.getValue() != checksum) {
+                    logger.warn("Corrupt record in {}, ignoring the rest of the file", wal.getFileName());
+                    return;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(record)), images);
+            }
+        } catch (EOFException e) {
+            logger.warn("{} ends in a torn record, replayed up to it", wal.getFileName());
+        }
+    }
+
+    private void apply(DataInputStream in, Map<String, Image> images) throws IOException {
+        Op op = Op.values()[in.readByte()];
+        String gameId = readString(in);
+        long version = in.readLong();
+        long stateSequence = in.readLong();
+        sequence.accumulateAndGet(version, Math::max);
+
+        Image image = images.get(gameId);
+        if (op == Op.CREATED) {
+            if (image == null || version > image.version) {
+                images.put(gameId, Image.of(readSnapshot(in), version, stateSequence));
+            }
+            return;
+        }
+        // Records the snapshot already includes, or for games it no longer holds, are skipped
+        if (image == null || version <= image.version) {
+            return;
+        }
+        image.version = version;
+        image.stateSequence = Math.max(image.stateSequence, stateSequence);
+
+        switch (op) {
+            case CODE -> {
+                String playerId = readString(in);
+                String code = readString(in);
+                image.update(playerId, status -> new Game.PlayerSnapshot(status.score(), status.completed(),
+                    status.forfeit(), code));
+            }
+            case SCORED -> {
+                String playerId = readString(in);
+                int points = in.readInt();
+                image.update(playerId, status -> new Game.PlayerSnapshot(status.score() + points, status.completed(),
+                    status.forfeit(), status.code()));
+            }
+            case COMPLETED -> image.update(readString(in), status -> new Game.PlayerSnapshot(status.score(), true,
+                status.forfeit(), status.code()));
+            case ROUND_STARTED -> {
+                image.currentRound = in.readInt();
+                image.puzzleId = readInteger(in);
+                image.roundStartTime = in.readLong();
+                image.statuses.replaceAll((playerId, status) ->
+                    new Game.PlayerSnapshot(status.score(), false, status.forfeit(), ""));
+            }
+            case FORFEIT -> {
+                image.update(readString(in), status -> new Game.PlayerSnapshot(status.score(), true, true,
+                    status.code()));
+                image.state = Game.GameState.ENDED;
+            }
+            case ENDED -> image.state = Game.GameState.ENDED;
+            case REMOVED -> images.remove(gameId);
+            default -> throw new IllegalStateException("Unexpected journal record " + op);
+        }
+    }
+
+    private Path walFile(long generation) {
+        return directory.resolve(WAL_PREFIX + generation + WAL_SUFFIX);
+    }
+
+    private NavigableMap<Long, Path> files(String prefix, String suffix) throws IOException {
+        NavigableMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(suffix)) {
+                    try {
+                        files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), path);
+                    } catch (NumberFormatException e) {
+                        // Not one of ours
+                    }
+                }
+            });
+        }
+        return files;
+    }
+
+    private void deleteFiles(String prefix, String suffix, LongPredicate generations)
+            throws IOException {
+        for (Map.Entry<Long, Path> file : files(prefix, suffix).entrySet()) {
+            if (generations.test(file.getKey())) {
+                Files.deleteIfExists(file.getValue());
+            }
+        }
+    }
+
+    /**
+     * Mutable copy of a game's state, for replaying WAL records onto a snapshot.
+     */
+    private static final class Image {
+        private String id;
+        private List<Player> players;
+        private int totalRounds;
+        private int currentRound;
+        private String currentTurn;
+        private Integer puzzleId;
+        private Game.GameState state;
+        private long roundStartTime;
+        private Map<String, Game.PlayerSnapshot> statuses;
+        private long version;
+        private long stateSequence;
+
+        static Image of(Game.Snapshot snapshot, long version, long stateSequence) {
+            Image image = new Image();
+            image.id = snapshot.id();
+            image.players = snapshot.players();
+            image.totalRounds = snapshot.totalRounds();
+            image.currentRound = snapshot.currentRound();
+            image.currentTurn = snapshot.currentTurn();
+            image.puzzleId = snapshot.puzzleId();
+            image.state = snapshot.state();
+            image.roundStartTime = snapshot.roundStartTime();
+            image.statuses = new LinkedHashMap<>(snapshot.statuses());
+            image.version = version;
+            image.stateSequence = stateSequence;
+            return image;
+        }
+
+        void update(String playerId, UnaryOperator<Game.PlayerSnapshot> change) {
+            statuses.computeIfPresent(playerId, (id, status) -> change.apply(status));
+        }
+
+        Game.Snapshot toSnapshot() {
+            return new Game.Snapshot(id, players, totalRounds, currentRound, currentTurn, puzzleId, state,
+                roundStartTime, new LinkedHashMap<>(statuses));
+        }
+    }
+
+    static void writeSnapshot(DataOutputStream out, Game.Snapshot snapshot) throws IOException {
+        writeString(out, snapshot.id());
+        out.writeShort(snapshot.players().size());
+        for (Player player : snapshot.players()) {
+            writeString(out, player.getId());
+            writeString(out, player.getUsername());
+            writeString(out, player.getPicture());
+        }
+        out.writeShort(snapshot.totalRounds());
+        out.writeShort(snapshot.currentRound());
+        writeString(out, snapshot.currentTurn());
+        writeInteger(out, snapshot.puzzleId());
+        out.writeByte(snapshot.state().ordinal());
+        out.writeLong(snapshot.roundStartTime());
+        out.writeShort(snapshot.statuses().size());
+        for (Map.Entry<String, Game.PlayerSnapshot> status : snapshot.statuses().entrySet()) {
+            writeString(out, status.getKey());
+            out.writeInt(status.getValue().score());
+            out.writeBoolean(status.getValue().completed());
+            out.writeBoolean(status.getValue().forfeit());
+            writeString(out, status.getValue().code());
+        }
+    }
+
+    static Game.Snapshot readSnapshot(DataInputStream in) throws IOException {
+        String id = readString(in);
+        int playerCount = in.readShort();
+        List<Player> players = new ArrayList<>(playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            players.add(new Player(readString(in), readString(in), readString(in)));
+        }
+        int totalRounds = in.readShort();
+        int currentRound = in.readShort();
+        String currentTurn = readString(in);
+        Integer puzzleId = readInteger(in);
+        Game.GameState state = Game.GameState.values()[in.readByte()];
+        long roundStartTime = in.readLong();
+        int statusCount = in.readShort();
+        Map<String, Game.PlayerSnapshot> statuses = new LinkedHashMap<>();
+        for (int i = 0; i < statusCount; i++) {
+            statuses.put(readString(in), new Game.PlayerSnapshot(in.readInt(), in.readBoolean(), in.readBoolean(),
+                readString(in)));
+        }
+        return new Game.Snapshot(id, players, totalRounds, currentRound, currentTurn, puzzleId, state, roundStartTime,
+            statuses);
+    }
+
+    // Length-prefixed UTF-8 rather than writeUTF, which is limited to 64 KB; -1 stands for null
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] encoded = new byte[length];
+        in.readFully(encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+}
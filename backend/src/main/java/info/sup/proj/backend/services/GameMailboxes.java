@@ -0,0 +1,195 @@
+package info.sup.proj.backend.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * One mailbox per live game, so that everything mutating a {@code Game} runs one task at a time without a lock
+ * shared between games. A mailbox is a queue drained by at most one task on {@code executor} at any moment; the
+ * drain is only scheduled when the first task arrives at an idle mailbox, and gives the thread back after
+ * {@value #MAX_BATCH} tasks so a busy game cannot hold on to it. Different games drain on different threads and
+ * run fully in parallel.
+ * <p>
+ * A task that calls back into its own game (a round timeout completing the puzzle of each player, for instance)
+ * runs inline instead of queueing behind itself.
+ * <p>
+ * A closed mailbox stays in place until it has run everything queued on it, including tasks that arrive after the
+ * close, so a game never has two mailboxes draining at once. Once idle it is retired, and a task arriving after that
+ * gets a new mailbox.
+ */
+@Component
+public class GameMailboxes {
+    private static final Logger logger = LoggerFactory.getLogger(GameMailboxes.class);
+
+    private static final int MAX_BATCH = 64;
+    private static final ThreadLocal<Mailbox> CURRENT = new ThreadLocal<>();
+
+    private final Executor executor;
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    public GameMailboxes(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Autowired
+    public GameMailboxes(@Qualifier("gameExecutor") Executor executor, MeterRegistry meterRegistry) {
+        this(executor);
+        meterRegistry.gaugeMapSize("game.mailboxes", Tags.empty(), mailboxes);
+    }
+
+    /**
+     * Queues {@code task} on the mailbox of {@code gameId} without waiting for it.
+     */
+    public void execute(String gameId, Runnable task) {
+        // A mailbox retired between the lookup and the enqueue is already out of the map, so the retry gets a new one
+        while (!mailboxFor(gameId).enqueue(task)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(String gameId, Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        execute(gameId, () -> {
+            try {
+                result.complete(task.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs {@code task} on the mailbox of {@code gameId} and waits for its result. Exceptions thrown by the task
+     * reach the caller unchanged.
+     */
+    public <T> T call(String gameId, Supplier<T> task) {
+        Mailbox mailbox = mailboxFor(gameId);
+        if (CURRENT.get() == mailbox) {
+            return task.get();
+        }
+
+        try {
+            return submit(gameId, task).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public void run(String gameId, Runnable task) {
+        call(gameId, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Forgets the mailbox of a game that is no longer hosted here, once it has run the tasks queued on it.
+     */
+    public void close(String gameId) {
+        Mailbox mailbox = mailboxes.get(gameId);
+        if (mailbox != null) {
+            mailbox.closing = true;
+            mailbox.retireIfIdle();
+        }
+    }
+
+    private Mailbox mailboxFor(String gameId) {
+        return mailboxes.computeIfAbsent(gameId, Mailbox::new);
+    }
+
+    private final class Mailbox implements Runnable {
+        private final String gameId;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closing;
+        private boolean retired;
+
+        Mailbox(String gameId) {
+            this.gameId = gameId;
+        }
+
+        /**
+         * Returns {@code false}, without queueing the task, when the mailbox has already been retired.
+         */
+        boolean enqueue(Runnable task) {
+            synchronized (this) {
+                if (retired) {
+                    return false;
+                }
+                tasks.add(task);
+            }
+            schedule();
+            return true;
+        }
+
+        synchronized void retireIfIdle() {
+            if (closing && !retired && !scheduled.get() && tasks.isEmpty()) {
+                retired = true;
+                mailboxes.remove(gameId, this);
+            }
+        }
+
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public void run() {
+            // A direct executor drains a nested mailbox on the caller's thread, so restore the caller's afterwards
+            Mailbox caller = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                for (int i = 0; i < MAX_BATCH; i++) {
+                    Runnable task = tasks.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        logger.error("Game task failed", e);
+                    }
+                }
+            } finally {
+                CURRENT.set(caller);
+                scheduled.set(false);
+            }
+
+            if (closing) {
+                retireIfIdle();
+            }
+            // Tasks that arrived after the last poll, or beyond the batch, get a fresh drain
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package info.sup.proj.backend.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.sup.proj.backend.dto.GameTimelineDto;
+import info.sup.proj.backend.model.GameEvent;
+import info.sup.proj.backend.model.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Rebuilds the timeline of a duel from {@link GameEventLog}. Only the log is read, never the games hosted by
+ * {@code GameService}, so a replay works the same for a game that is still running, one that has ended and one
+ * that was hosted on another node.
+ */
+@Service
+public class GameReplayService {
+    private static final Logger logger = LoggerFactory.getLogger(GameReplayService.class);
+
+    private static final TypeReference<Map<String, Object>> DETAILS = new TypeReference<>() {};
+    private static final TypeReference<List<Player>> PLAYERS = new TypeReference<>() {};
+    private static final TypeReference<Map<String, Integer>> SCORES = new TypeReference<>() {};
+
+    private final GameEventLog eventLog;
+    private final ObjectMapper objectMapper;
+
+    public GameReplayService(GameEventLog eventLog, ObjectMapper objectMapper) {
+        this.eventLog = eventLog;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * The timeline of {@code gameId}, or empty when the log holds nothing for it.
+     */
+    public Optional<GameTimelineDto> replay(String gameId) {
+        List<GameEvent> events = eventLog.events(gameId);
+        if (events.isEmpty()) {
+            return Optional.empty();
+        }
+
+        GameTimelineDto timeline = new GameTimelineDto();
+        timeline.setGameId(gameId);
+        Map<Integer, GameTimelineDto.Round> rounds = new TreeMap<>();
+
+        for (GameEvent event : events) {
+            Map<String, Object> details = details(event);
+            switch (event.getType()) {
+                case GAME_STARTED -> {
+                    timeline.setStartedAt(event.getOccurredAt());
+                    timeline.setTotalRounds(((Number) details.getOrDefault("totalRounds", 0)).intValue());
+                    if (details.get("players") != null) {
+                        timeline.setPlayers(objectMapper.convertValue(details.get("players"), PLAYERS));
+                    }
+                }
+                case ROUND_STARTED -> {
+                    GameTimelineDto.Round round = roundOf(rounds, event.getRound());
+                    round.setStartedAt(event.getOccurredAt());
+                    if (details.get("puzzleId") instanceof Number puzzleId) {
+                        round.setPuzzleId(puzzleId.intValue());
+                    }
+                    round.setPuzzleName((String) details.get("puzzleName"));
+                    round.setPuzzleType((String) details.get("puzzleType"));
+                }
+                case FORFEIT -> {
+                    timeline.setForfeitedBy(event.getPlayerId());
+                    addEntry(roundOf(rounds, event.getRound()), event, details);
+                }
+                case GAME_ENDED -> {
+                    timeline.setEndedAt(event.getOccurredAt());
+                    if (details.get("scores") != null) {
+                        timeline.setFinalScores(objectMapper.convertValue(details.get("scores"), SCORES));
+                    }
+                }
+                default -> addEntry(roundOf(rounds, event.getRound()), event, details);
+            }
+        }
+
+        // Submissions are scored as they come in, so a round's scores are the running totals after its submissions
+        Map<String, Integer> totals = new LinkedHashMap<>();
+        timeline.getPlayers().forEach(player -> totals.put(player.getId(), 0));
+        for (GameTimelineDto.Round round : rounds.values()) {
+            for (GameTimelineDto.Entry entry : round.getEntries()) {
+                if (entry.getType() == GameEvent.Type.SUBMISSION && entry.getDetails().get("score") instanceof Number score) {
+                    totals.merge(entry.getPlayerId(), score.intValue(), Integer::sum);
+                }
+            }
+            round.setScores(new LinkedHashMap<>(totals));
+        }
+        if (timeline.getFinalScores().isEmpty()) {
+            timeline.setFinalScores(totals);
+        }
+
+        timeline.setRounds(List.copyOf(rounds.values()));
+        return Optional.of(timeline);
+    }
+
+    private static GameTimelineDto.Round roundOf(Map<Integer, GameTimelineDto.Round> rounds, int number) {
+        return rounds.computeIfAbsent(number, n -> {
+            GameTimelineDto.Round round = new GameTimelineDto.Round();
+            round.setNumber(n);
+            return round;
+        });
+    }
+
+    private static void addEntry(GameTimelineDto.Round round, GameEvent event, Map<String, Object> details) {
+        GameTimelineDto.Entry entry = new GameTimelineDto.Entry();
+        entry.setType(event.getType());
+        entry.setPlayerId(event.getPlayerId());
+        entry.setOccurredAt(event.getOccurredAt());
+        entry.setDetails(details);
+        round.getEntries().add(entry);
+    }
+
+    private Map<String, Object> details(GameEvent event) {
+        if (event.getPayload() == null || event.getPayload().isEmpty()) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(event.getPayload(), DETAILS);
+        } catch (JsonProcessingException e) {
+            logger.warn("Skipping unreadable payload of game event {}: {}", event.getId(), e.getMessage());
+            return Map.of();
+        }
+    }
+}
@@ -1,51 +1,92 @@
 package info.sup.proj.backend.services;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import info.sup.proj.backend.model.Game;
 import info.sup.proj.backend.model.Player;
 import info.sup.proj.backend.model.Puzzle;
-import info.sup.proj.backend.repositories.PuzzleRepository;
+import info.sup.proj.backend.events.EloChangedEvent;
+import info.sup.proj.backend.events.GameCreatedEvent;
 import info.sup.proj.backend.events.GameStateChangeEvent;
+import info.sup.proj.backend.events.LateEvaluationEvent;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import info.sup.proj.backend.model.User;
+import info.sup.proj.backend.dto.CodeEvaluationDto;
 import info.sup.proj.backend.repositories.UserRepository;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 @Service
 public class GameService {
+    private static final Logger logger = LoggerFactory.getLogger(GameService.class);
+
     private final Map<String, Game> activeGames = new ConcurrentHashMap<>();
-    private final Map<String, ScheduledFuture<?>> gameTimers = new ConcurrentHashMap<>();
-    private final PuzzleRepository puzzleRepository;
-    private final AiService aiService;
+    private final Map<String, String> playerGames = new ConcurrentHashMap<>();
+    private final Map<String, TimingWheel.Timeout> gameTimers = new ConcurrentHashMap<>();
+    private final PuzzleCatalog puzzleCatalog;
     private final ApplicationEventPublisher eventPublisher;
     private final SimpMessagingTemplate messagingTemplate;
-    private final ScheduledExecutorService scheduler;
+    private final GameStateBroadcaster gameStateBroadcaster;
+    private final TimingWheel timers;
+    private final EvaluationBatcher evaluationBatcher;
+    private final EvaluationCache evaluationCache;
+    private final GameMailboxes mailboxes;
+    private final GameEventLog eventLog;
+    private final GameJournal journal;
+    private final Set<String> pendingEvaluations = ConcurrentHashMap.newKeySet();
     private UserRepository userRepository;
 
     private static final String CORRECTNESS = "correctness";
     private static final String QUALITY = "quality";
+    private static final Map<String, Integer> UNSCORED = Map.of(CORRECTNESS, 75, QUALITY, 70);
+    private static final String GAME_ID = "gameId";
+    private static final String PLAYER_ID = "playerId";
+    private static final String QUEUE_GAME = "/queue/game";
     private static final int ROUND_TIME_LIMIT = 300; // 5 minutes
-    private final Random r = new Random();
+
+    /**
+     * A game leaving this node, with the state sequence number its players have seen so far.
+     */
+    public record ReleasedGame(Game game, long stateSequence) {}
+
+    /**
+     * The scores of a submission, on their way to the node that now hosts its game.
+     */
+    public record ScoredSubmission(String gameId, String playerId, String code, CodeEvaluationDto scores,
+                                   int timeBonus) {}
 
     public GameService(
-        PuzzleRepository puzzleRepository, 
-        AiService aiService,
+        PuzzleCatalog puzzleCatalog,
         ApplicationEventPublisher eventPublisher,
         SimpMessagingTemplate messagingTemplate,
-        ScheduledExecutorService scheduler,
+        GameStateBroadcaster gameStateBroadcaster,
+        TimingWheel timers,
+        EvaluationBatcher evaluationBatcher,
+        EvaluationCache evaluationCache,
+        GameMailboxes mailboxes,
+        GameEventLog eventLog,
+        GameJournal journal,
         UserRepository userRepository
     ) {
-        this.puzzleRepository = puzzleRepository;
-        this.aiService = aiService;
+        this.puzzleCatalog = puzzleCatalog;
         this.eventPublisher = eventPublisher;
         this.messagingTemplate = messagingTemplate;
-        this.scheduler = scheduler;
+        this.gameStateBroadcaster = gameStateBroadcaster;
+        this.timers = timers;
+        this.evaluationBatcher = evaluationBatcher;
+        this.evaluationCache = evaluationCache;
+        this.mailboxes = mailboxes;
+        this.eventLog = eventLog;
+        this.journal = journal;
         this.userRepository = userRepository;
     }
 
@@ -61,30 +102,118 @@ public class GameService {
             puzzle,
             3
         );
+        eventLog.gameStarted(game);
+        eventLog.roundStarted(game);
+        journal.created(game);
 
         activeGames.put(game.getId(), game);
+        game.getPlayers().forEach(player -> playerGames.put(player.getId(), game.getId()));
         startRoundTimer(game.getId());
         publishGameState(game);
+        eventPublisher.publishEvent(new GameCreatedEvent(this, game));
         return game;
     }
 
+    /**
+     * Stops hosting {@code gameId} so another node can take it over: its round timer is cancelled and it is
+     * dropped from the local indexes. Returns {@code null} if the game is not hosted here.
+     */
+    public ReleasedGame releaseGame(String gameId) {
+        ReleasedGame released = mailboxes.call(gameId, () -> {
+            Game game = activeGames.remove(gameId);
+            if (game == null) {
+                return null;
+            }
+
+            stopRoundTimer(gameId);
+            game.getPlayers().forEach(player -> playerGames.remove(player.getId(), gameId));
+            long stateSequence = gameStateBroadcaster.sequence(gameId);
+            gameStateBroadcaster.forget(gameId);
+            journal.removed(gameId);
+            return new ReleasedGame(game, stateSequence);
+        });
+        mailboxes.close(gameId);
+        return released;
+    }
+
+    /**
+     * Hosts a game released by another node. State deltas continue from {@code stateSequence} so connected
+     * clients do not see a gap, and the round timer resumes with the time the round had left.
+     */
+    public void adoptGame(Game game, long stateSequence) {
+        mailboxes.run(game.getId(), () -> {
+            journal.created(game, stateSequence);
+            host(game, stateSequence);
+        });
+    }
+
+    /**
+     * Hosts the games the journal recovered from before a restart. As with adopted games, round timers resume
+     * with the time their round had left; rounds that ran out while the instance was down time out right away.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverGames() {
+        List<Game.Snapshot> snapshots = journal.recover();
+        int recovered = 0;
+        for (Game.Snapshot snapshot : snapshots) {
+            Puzzle puzzle = snapshot.puzzleId() != null
+                ? puzzleCatalog.current().findById(snapshot.puzzleId()).orElse(null)
+                : null;
+            if (puzzle == null) {
+                logger.warn("Not recovering game {}, its puzzle {} no longer exists", snapshot.id(), snapshot.puzzleId());
+                continue;
+            }
+
+            Game game = Game.restore(snapshot, puzzle);
+            // Players reconnecting after the restart still hold the sequence they saw, so it carries on from there
+            mailboxes.run(game.getId(), () -> host(game, journal.track(game)));
+            recovered++;
+        }
+        if (recovered > 0) {
+            logger.info("Hosting {} games recovered from the game journal", recovered);
+        }
+    }
+
+    private void host(Game game, long stateSequence) {
+        activeGames.put(game.getId(), game);
+        game.getPlayers().forEach(player -> playerGames.put(player.getId(), game.getId()));
+        gameStateBroadcaster.adopt(game, stateSequence);
+
+        if (game.isEnded()) {
+            scheduleRemoval(game);
+        } else if (game.allPlayersCompleted()) {
+            scheduleNextRound(game);
+        } else {
+            long elapsed = System.currentTimeMillis() - game.getRoundStartTime();
+            startRoundTimer(game.getId(), Math.max(0, TimeUnit.SECONDS.toMillis(ROUND_TIME_LIMIT) - elapsed));
+        }
+    }
+
+    private boolean isHosted(Game game) {
+        return activeGames.get(game.getId()) == game;
+    }
+
     private void startRoundTimer(String gameId) {
+        startRoundTimer(gameId, TimeUnit.SECONDS.toMillis(ROUND_TIME_LIMIT));
+    }
+
+    private void startRoundTimer(String gameId, long delayMillis) {
         stopRoundTimer(gameId);
         
-        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+        TimingWheel.Timeout timer = timers.schedule(() -> mailboxes.execute(gameId, () -> {
             Game game = getGame(gameId);
             if (game != null && !game.isEnded()) {
                 handleRoundTimeout(game);
             }
-        }, ROUND_TIME_LIMIT, TimeUnit.SECONDS);
+        }), delayMillis, TimeUnit.MILLISECONDS);
         
         gameTimers.put(gameId, timer);
     }
 
     private void stopRoundTimer(String gameId) {
-        ScheduledFuture<?> timer = gameTimers.remove(gameId);
+        TimingWheel.Timeout timer = gameTimers.remove(gameId);
         if (timer != null) {
-            timer.cancel(false);
+            timer.cancel();
         }
     }
 
@@ -104,32 +233,30 @@ public class GameService {
 
     private Puzzle getNextDifferentPuzzle(Game game) {
         Puzzle currentPuzzle = game.getCurrentPuzzle();
-        Puzzle nextPuzzle;
-        int attempts = 0;
-        do {
-            nextPuzzle = getRandomPuzzle();
-            attempts++;
-        } while (nextPuzzle != null && 
-                 currentPuzzle != null && 
-                 nextPuzzle.getId().equals(currentPuzzle.getId()) && 
-                 attempts < 5);
-        
-        if (nextPuzzle == null || (currentPuzzle != null && nextPuzzle.getId().equals(currentPuzzle.getId()))) {
+        Puzzle nextPuzzle = currentPuzzle != null
+            ? puzzleCatalog.randomPuzzleExcluding(Set.of(currentPuzzle.getId()))
+            : puzzleCatalog.randomPuzzle();
+
+        if (nextPuzzle == null) {
             throw new IllegalStateException("Could not find a different puzzle");
         }
         return nextPuzzle;
     }
 
     public void startNextRound(String gameId) {
-        Game game = getGame(gameId);
-        if (game == null || game.isEnded()) {
-            return;
-        }
+        mailboxes.run(gameId, () -> {
+            Game game = getGame(gameId);
+            if (game == null || game.isEnded()) {
+                return;
+            }
 
-        Puzzle nextPuzzle = getNextDifferentPuzzle(game);
-        game.startNextRound(nextPuzzle);
-        startRoundTimer(gameId);
-        publishGameState(game);
+            Puzzle nextPuzzle = getNextDifferentPuzzle(game);
+            game.startNextRound(nextPuzzle);
+            eventLog.roundStarted(game);
+            journal.roundStarted(game);
+            startRoundTimer(gameId);
+            publishGameState(game);
+        });
     }
 
     public Game startNextRound(String gameId, String playerId) {
@@ -138,40 +265,86 @@ public class GameService {
             throw new IllegalStateException("Game not found or player not in game");
         }
 
-        if (game.isEnded()) {
-            return game;
-        }
+        return mailboxes.call(gameId, () -> {
+            if (game.isEnded()) {
+                return game;
+            }
 
-        Puzzle nextPuzzle = getNextDifferentPuzzle(game);
-        game.startNextRound(nextPuzzle);
-        startRoundTimer(gameId);
-        publishGameState(game);
-        return game;
+            Puzzle nextPuzzle = getNextDifferentPuzzle(game);
+            game.startNextRound(nextPuzzle);
+            eventLog.roundStarted(game);
+            journal.roundStarted(game);
+            startRoundTimer(gameId);
+            publishGameState(game);
+            return game;
+        });
     }
 
     private void endGame(Game game) {
         game.endGame();
+        eventLog.gameEnded(game);
+        journal.ended(game);
         stopRoundTimer(game.getId());
         updatePlayerElo(game);
         publishGameState(game);
 
-        scheduler.schedule(() -> activeGames.remove(game.getId()), 5, TimeUnit.MINUTES);
+        scheduleRemoval(game);
+    }
+
+    private void scheduleRemoval(Game game) {
+        timers.schedule(() -> mailboxes.execute(game.getId(), () -> removeGame(game)), 5, TimeUnit.MINUTES);
+    }
+
+    private void removeGame(Game game) {
+        if (!activeGames.remove(game.getId(), game)) {
+            // Handed to another node in the meantime
+            return;
+        }
+        gameStateBroadcaster.forget(game.getId());
+        journal.removed(game.getId());
+        // Only drop the index entry if the player has not started another game since
+        game.getPlayers().forEach(player -> playerGames.remove(player.getId(), game.getId()));
+        mailboxes.close(game.getId());
     }
 
     public Game getGame(String gameId) {
         return activeGames.get(gameId);
     }
 
-    public Map<String, Object> submitSolution(String playerId, String code) {
+    /**
+     * Stores the submitted code and hands the AI evaluation to the evaluation batcher. The player
+     * immediately receives a {@code SCORING} acknowledgement; the final score is pushed to
+     * {@code /queue/game} when the evaluation completes. A player can only have one submission
+     * being scored at a time, and submissions are rejected while the evaluation executor is saturated.
+     */
+    public CompletableFuture<Map<String, Object>> submitSolution(String playerId, String code) {
         var game = findGameByPlayerId(playerId);
         if (game == null) {
             throw new IllegalStateException("Player not in any active game");
         }
 
-        game.updateCurrentCode(playerId, code);
-        publishGameState(game);
+        if (!pendingEvaluations.add(playerId)) {
+            sendSubmissionRejected(game, playerId, "Your previous submission is still being scored");
+            return CompletableFuture.failedFuture(new IllegalStateException("Submission already being scored"));
+        }
 
-        Puzzle currentPuzzle = game.getCurrentPuzzle();
+        try {
+            return scoreSubmission(game, playerId, code);
+        } catch (RuntimeException e) {
+            // Failed before its evaluation was queued, so nothing will clear the pending entry later
+            pendingEvaluations.remove(playerId);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<Map<String, Object>> scoreSubmission(Game game, String playerId, String code) {
+        Puzzle currentPuzzle = mailboxes.call(game.getId(), () -> {
+            game.updateCurrentCode(playerId, code);
+            journal.codeUpdated(game, playerId, code);
+            publishGameState(game);
+            return game.getCurrentPuzzle();
+        });
+        int timeBonus = calculateTimeBonus(game.getRoundStartTime());
         
         String evaluationPrompt = String.format(
             """
@@ -186,12 +359,94 @@ public class GameService {
             currentPuzzle.getDescription()
         );
 
-        String evaluationResponse = aiService.getCodeEvaluation(evaluationPrompt, code, currentPuzzle.getType());
-        Map<String, Integer> scores = parseAiEvaluation(evaluationResponse);
+        Map<String, Object> acknowledgement = new HashMap<>();
+        acknowledgement.put("type", "SCORING");
+        acknowledgement.put(GAME_ID, game.getId());
+        acknowledgement.put(PLAYER_ID, playerId);
+        messagingTemplate.convertAndSendToUser(playerId, QUEUE_GAME, acknowledgement);
 
-        int correctnessScore = scores.get(CORRECTNESS);
-        int qualityScore = scores.get(QUALITY);
-        int timeBonus = calculateTimeBonus(game.getRoundStartTime());
+        // Resubmitting code that was already scored for this puzzle is answered from the cache without an AI call
+        EvaluationCache.Key cacheKey = EvaluationCache.keyFor(currentPuzzle, code);
+        CodeEvaluationDto cached = evaluationCache.getIfPresent(cacheKey);
+
+        CompletableFuture<CodeEvaluationDto> evaluation;
+        if (cached != null) {
+            evaluation = CompletableFuture.completedFuture(cached);
+        } else {
+            // Submissions arriving together, typically at round end, are scored in one batched AI call
+            evaluation = evaluationBatcher.evaluate(playerId, evaluationPrompt, code, currentPuzzle.getType())
+                .thenApply(response -> {
+                    Map<String, Integer> parsed = parseAiEvaluation(response);
+                    if (parsed == null) {
+                        // Not cached, so submitting the same code again asks the AI again
+                        logger.warn("No scores in the evaluation of player {}, using the default scores", playerId);
+                        return toEvaluation(UNSCORED);
+                    }
+                    CodeEvaluationDto scores = toEvaluation(parsed);
+                    evaluationCache.put(cacheKey, scores);
+                    return scores;
+                });
+        }
+
+        return evaluation
+            // The score lands on the game's mailbox like every other mutation
+            .thenCompose(scores -> {
+                // A game that left this node gets no new mailbox here; applyEvaluation checks again on the mailbox
+                if (!isHosted(game)) {
+                    forwardEvaluation(game, playerId, code, scores, timeBonus);
+                    return CompletableFuture.completedFuture(null);
+                }
+                return mailboxes.submit(game.getId(), () -> applyEvaluation(game, playerId, code, scores, timeBonus));
+            })
+            .whenComplete((result, error) -> {
+                pendingEvaluations.remove(playerId);
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                if (cause instanceof RejectedExecutionException) {
+                    sendSubmissionRejected(game, playerId, "Scoring is busy, please submit again in a moment");
+                } else if (error != null) {
+                    logger.error("Failed to score submission of player {} in game {}", playerId, game.getId(), error);
+                    Map<String, Object> errorResponse = new HashMap<>();
+                    errorResponse.put("type", "ERROR");
+                    errorResponse.put("payload", Map.of("message", "Could not score your submission, please try again"));
+                    messagingTemplate.convertAndSendToUser(playerId, QUEUE_GAME, errorResponse);
+                }
+            });
+    }
+
+    /**
+     * Applies a score forwarded by the node that evaluated the submission before the game moved here.
+     */
+    public void applyForwardedEvaluation(ScoredSubmission submission) {
+        Game game = getGame(submission.gameId());
+        if (game == null) {
+            logger.warn("Dropping the score of player {} for game {}, which is not hosted here",
+                submission.playerId(), submission.gameId());
+            return;
+        }
+        mailboxes.execute(game.getId(), () -> applyEvaluation(game, submission.playerId(), submission.code(),
+            submission.scores(), submission.timeBonus()));
+    }
+
+    private void forwardEvaluation(Game game, String playerId, String code, CodeEvaluationDto scores, int timeBonus) {
+        logger.info("Game {} left this node while player {} was being scored, forwarding the score", game.getId(),
+            playerId);
+        eventPublisher.publishEvent(new LateEvaluationEvent(this,
+            new ScoredSubmission(game.getId(), playerId, code, scores, timeBonus)));
+    }
+
+    private Map<String, Object> applyEvaluation(Game game, String playerId, String code, CodeEvaluationDto scores,
+                                                int timeBonus) {
+        if (!isHosted(game)) {
+            // Released while this task was queued: the new owner applies the score to its own copy
+            forwardEvaluation(game, playerId, code, scores, timeBonus);
+            if (getGame(game.getId()) == null) {
+                mailboxes.close(game.getId());
+            }
+            return null;
+        }
+
+        int correctnessScore = scores.getCorrectness();
+        int qualityScore = scores.getQuality();
         
         int totalScore = (int) Math.round(
             correctnessScore * 0.4 +
@@ -200,35 +455,85 @@ public class GameService {
         );
 
         game.updatePlayerScore(playerId, totalScore);
+        journal.scored(game, playerId, totalScore);
+        eventLog.submission(game, playerId, code, correctnessScore, qualityScore, timeBonus, totalScore);
         publishGameState(game);
 
         var result = new HashMap<String, Object>();
+        result.put("type", "SUBMISSION_SCORED");
         result.put("success", true);
         result.put("score", totalScore);
         result.put("correctnessScore", correctnessScore);
         result.put("qualityScore", qualityScore);
         result.put("timeBonus", timeBonus);
-        result.put("playerId", playerId);
+        result.put(PLAYER_ID, playerId);
+        result.put(GAME_ID, game.getId());
         
         // Send individual score update to player
         messagingTemplate.convertAndSendToUser(
             playerId,
-            "/queue/game",
+            QUEUE_GAME,
             result
         );
         
         return result;
     }
 
+    private void sendSubmissionRejected(Game game, String playerId, String message) {
+        Map<String, Object> rejection = new HashMap<>();
+        rejection.put("type", "SUBMISSION_REJECTED");
+        rejection.put(GAME_ID, game.getId());
+        rejection.put(PLAYER_ID, playerId);
+        rejection.put("message", message);
+        messagingTemplate.convertAndSendToUser(playerId, QUEUE_GAME, rejection);
+    }
+
     private void publishGameState(Game game) {
+        if (!isHosted(game)) {
+            // An evaluation finished after the game moved to another node, which publishes from now on
+            return;
+        }
+
         GameStateChangeEvent event = new GameStateChangeEvent(this, game);
         eventPublisher.publishEvent(event);
-        
-        // Broadcast game state to all players
-        messagingTemplate.convertAndSend(
-            "/topic/game/" + game.getId(),
-            Map.of("type", "GAME_STATE", "payload", game)
-        );
+
+        gameStateBroadcaster.publish(game);
+        journal.published(game, gameStateBroadcaster.sequence(game.getId()));
+    }
+
+    public void updatePlayerCode(String gameId, String playerId, String code) {
+        Game game = getGame(gameId);
+        if (game == null || !game.hasPlayer(playerId)) {
+            return;
+        }
+
+        mailboxes.run(gameId, () -> {
+            game.updateCurrentCode(playerId, code);
+            journal.codeUpdated(game, playerId, code);
+            publishGameState(game);
+        });
+    }
+
+    /**
+     * Adds an in-game prompt and the AI reply to it to the event log of the game.
+     */
+    public void recordPrompt(String gameId, String playerId, String prompt, AiService.ChatResponse response) {
+        Game game = getGame(gameId);
+        if (game == null || !game.hasPlayer(playerId)) {
+            return;
+        }
+
+        mailboxes.execute(gameId, () -> eventLog.prompt(game, playerId, prompt, response.getText(), response.getCode()));
+    }
+
+    /**
+     * Sends the full game state to one player, for the initial join and for clients that missed a delta.
+     */
+    public void sendGameState(Game game, String playerId) {
+        mailboxes.run(game.getId(), () -> {
+            gameStateBroadcaster.sendSnapshot(game, playerId);
+            journal.published(game, gameStateBroadcaster.sequence(game.getId()));
+        });
     }
 
     private int calculateTimeBonus(long startTime) {
@@ -253,7 +558,21 @@ public class GameService {
         }
     }
 
-    private Map<String, Integer> parseAiEvaluation(String evaluationResponse) {
+    private static CodeEvaluationDto toEvaluation(Map<String, Integer> scores) {
+        return CodeEvaluationDto.builder()
+            .correctness(scores.get(CORRECTNESS))
+            .quality(scores.get(QUALITY))
+            .build();
+    }
+
+    /**
+     * Reads both scores out of an evaluation reply, or returns {@code null} when the AI gave no reply or the
+     * reply does not hold both of them.
+     */
+    Map<String, Integer> parseAiEvaluation(String evaluationResponse) {
+        if (evaluationResponse == null) {
+            return null;
+        }
         Map<String, Integer> result = new HashMap<>();
         
         try {
@@ -271,14 +590,10 @@ public class GameService {
                 result.put(QUALITY, Integer.parseInt(qualityStr));
             }
         } catch (Exception e) {
-            result.put(CORRECTNESS, 75);
-            result.put(QUALITY, 70);
+            return null;
         }
         
-        result.computeIfAbsent(CORRECTNESS, k -> 75);
-        result.computeIfAbsent(QUALITY, k -> 70);
-        
-        return result;
+        return result.containsKey(CORRECTNESS) && result.containsKey(QUALITY) ? result : null;
     }
 
     public Game completePuzzle(String playerId) {
@@ -286,39 +601,56 @@ public class GameService {
         if (game == null) {
             throw new IllegalStateException("Player not in any active game");
         }
-        
-        game.markPlayerCompleted(playerId);
-        
-        // Send completion status to all players
-        Map<String, Object> completionStatus = new HashMap<>();
-        completionStatus.put("type", "PLAYER_COMPLETION");
-        completionStatus.put("playerId", playerId);
-        completionStatus.put("allCompleted", game.allPlayersCompleted());
-        
-        messagingTemplate.convertAndSend(
-            "/topic/game/" + game.getId(),
-            completionStatus
-        );
-        
-        publishGameState(game);
-        
-        if (game.allPlayersCompleted()) {
-            if (game.getCurrentRound() >= game.getTotalRounds()) {
-                endGame(game);
-            } else {
-                // Add a small delay before starting the next round to ensure proper synchronization
-                scheduler.schedule(() -> {
-                    Puzzle nextPuzzle = getNextDifferentPuzzle(game);
-                    if (nextPuzzle != null) {
-                        game.startNextRoundWithExplicitNumber(nextPuzzle, game.getCurrentRound() + 1);
-                        startRoundTimer(game.getId());
-                        publishGameState(game);
-                    }
-                }, 2, TimeUnit.SECONDS);
+
+        return mailboxes.call(game.getId(), () -> {
+            if (!game.hasPlayerCompleted(playerId)) {
+                // The code a player ends the round with, whether they completed it or ran out of time
+                eventLog.codeSnapshot(game, playerId, game.getPlayerStatus().get(playerId).getCode());
+                eventLog.playerCompleted(game, playerId);
             }
-        }
-        
-        return game;
+            game.markPlayerCompleted(playerId);
+            journal.completed(game, playerId);
+
+            // Send completion status to all players
+            Map<String, Object> completionStatus = new HashMap<>();
+            completionStatus.put("type", "PLAYER_COMPLETION");
+            completionStatus.put("playerId", playerId);
+            completionStatus.put("allCompleted", game.allPlayersCompleted());
+
+            messagingTemplate.convertAndSend(
+                "/topic/game/" + game.getId(),
+                completionStatus
+            );
+
+            publishGameState(game);
+
+            if (game.allPlayersCompleted()) {
+                if (game.getCurrentRound() >= game.getTotalRounds()) {
+                    endGame(game);
+                } else {
+                    scheduleNextRound(game);
+                }
+            }
+
+            return game;
+        });
+    }
+
+    private void scheduleNextRound(Game game) {
+        // Add a small delay before starting the next round to ensure proper synchronization
+        timers.schedule(() -> mailboxes.execute(game.getId(), () -> {
+            if (!isHosted(game)) {
+                return;
+            }
+            Puzzle nextPuzzle = getNextDifferentPuzzle(game);
+            if (nextPuzzle != null) {
+                game.startNextRoundWithExplicitNumber(nextPuzzle, game.getCurrentRound() + 1);
+                eventLog.roundStarted(game);
+                journal.roundStarted(game);
+                startRoundTimer(game.getId());
+                publishGameState(game);
+            }
+        }), 2, TimeUnit.SECONDS);
     }
 
     public Game forfeitGame(String playerId) {
@@ -327,16 +659,18 @@ public class GameService {
             throw new IllegalStateException("Player not in any active game");
         }
 
-        game.forfeit(playerId);
-        endGame(game);
-        return game;
+        return mailboxes.call(game.getId(), () -> {
+            eventLog.forfeit(game, playerId);
+            game.forfeit(playerId);
+            journal.forfeited(game, playerId);
+            endGame(game);
+            return game;
+        });
     }
 
     public Game findGameByPlayerId(String playerId) {
-        return activeGames.values().stream()
-            .filter(game -> game.hasPlayer(playerId))
-            .findFirst()
-            .orElse(null);
+        String gameId = playerGames.get(playerId);
+        return gameId != null ? activeGames.get(gameId) : null;
     }
 
     public List<Game> listAllGames() {
@@ -344,12 +678,7 @@ public class GameService {
     }
 
     private Puzzle getRandomPuzzle() {
-        var puzzles = puzzleRepository.findAll();
-        if (puzzles.isEmpty()) {
-            return null;
-        }
-        int randomIndex = (this.r.nextInt(puzzles.size()));
-        return puzzles.get(randomIndex);
+        return puzzleCatalog.randomPuzzle();
     }
 
     public Game initializeGameWithPuzzle(String gameId) {
@@ -358,12 +687,15 @@ public class GameService {
             throw new IllegalStateException("Game not found: " + gameId);
         }
 
-        if (game.getCurrentPuzzle() == null) {
-            Puzzle puzzle = getRandomPuzzle();
-            game.startNextRound(puzzle);
-        }
-
-        return game;
+        return mailboxes.call(gameId, () -> {
+            if (game.getCurrentPuzzle() == null) {
+                Puzzle puzzle = getRandomPuzzle();
+                game.startNextRound(puzzle);
+                eventLog.roundStarted(game);
+                journal.roundStarted(game);
+            }
+            return game;
+        });
     }
 
     private void updatePlayerElo(Game game) {
@@ -393,6 +725,8 @@ public class GameService {
         
         userRepository.save(user1);
         userRepository.save(user2);
+        eventPublisher.publishEvent(new EloChangedEvent(this, user1.getId(), user1.getElo()));
+        eventPublisher.publishEvent(new EloChangedEvent(this, user2.getId(), user2.getElo()));
         
         // Notify players of ELO changes
         for (Player player : game.getPlayers()) {
@@ -0,0 +1,227 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Game;
+import info.sup.proj.backend.model.Puzzle;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Publishes game state to {@code /topic/game/{id}} as versioned deltas. Every game keeps a sequence number and
+ * the last published view of its state; each publish sends only the fields that changed since that view
+ * ({@code GAME_STATE_DELTA}), with the player code as a splice against the previous code. A full
+ * {@code GAME_STATE} snapshot carrying the current sequence number is sent to a single player when they join or
+ * ask for a resync after noticing a gap in the sequence.
+ * <p>
+ * Computing and sending happen under a per-game lock, so frames leave in sequence order; the broker must
+ * preserve publish order for clients to see them that way.
+ */
+@Component
+public class GameStateBroadcaster {
+    static final String GAME_STATE = "GAME_STATE";
+    static final String GAME_STATE_DELTA = "GAME_STATE_DELTA";
+
+    private static final String TOPIC_GAME = "/topic/game/";
+    private static final String QUEUE_GAME = "/queue/game";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final Map<String, TrackedGame> trackedGames = new ConcurrentHashMap<>();
+    private final Counter deltas;
+    private final Counter snapshots;
+
+    public GameStateBroadcaster(SimpMessagingTemplate messagingTemplate, MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.deltas = meterRegistry.counter("game.state.messages", "kind", "delta");
+        this.snapshots = meterRegistry.counter("game.state.messages", "kind", "snapshot");
+    }
+
+    /**
+     * Broadcasts what changed in {@code game} since the last publish. Nothing is sent when the state is
+     * unchanged; the first publish of a game is a full snapshot.
+     */
+    public void publish(Game game) {
+        TrackedGame tracked = trackedGames.computeIfAbsent(game.getId(), id -> new TrackedGame());
+        synchronized (tracked) {
+            publishLocked(game, tracked);
+        }
+    }
+
+    /**
+     * Sends the full state of {@code game} to one player, tagged with the sequence number of the last delta it
+     * includes. Pending changes are broadcast as a delta first so the other players stay on the same sequence.
+     */
+    public void sendSnapshot(Game game, String playerId) {
+        TrackedGame tracked = trackedGames.computeIfAbsent(game.getId(), id -> new TrackedGame());
+        synchronized (tracked) {
+            publishLocked(game, tracked);
+            messagingTemplate.convertAndSendToUser(playerId, QUEUE_GAME, snapshotMessage(game, tracked.sequence));
+            snapshots.increment();
+        }
+    }
+
+    public void forget(String gameId) {
+        trackedGames.remove(gameId);
+    }
+
+    /**
+     * Starts tracking a game taken over from another node at {@code sequence}, with its current state as the
+     * last published view, so the next publish is a delta that continues the sequence the players already follow.
+     */
+    void adopt(Game game, long sequence) {
+        TrackedGame tracked = new TrackedGame();
+        // A game that was never published still starts with a full snapshot
+        tracked.view = sequence > 0 ? View.of(game) : null;
+        tracked.sequence = sequence;
+        trackedGames.put(game.getId(), tracked);
+    }
+
+    long sequence(String gameId) {
+        TrackedGame tracked = trackedGames.get(gameId);
+        return tracked != null ? tracked.sequence : 0;
+    }
+
+    private void publishLocked(Game game, TrackedGame tracked) {
+        View current = View.of(game);
+        if (tracked.view == null) {
+            tracked.view = current;
+            tracked.sequence++;
+            messagingTemplate.convertAndSend(TOPIC_GAME + game.getId(), snapshotMessage(game, tracked.sequence));
+            snapshots.increment();
+            return;
+        }
+
+        Map<String, Object> changes = diff(tracked.view, current);
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        tracked.view = current;
+        tracked.sequence++;
+
+        Map<String, Object> delta = new LinkedHashMap<>();
+        delta.put("type", GAME_STATE_DELTA);
+        delta.put("gameId", game.getId());
+        delta.put("seq", tracked.sequence);
+        delta.putAll(changes);
+        messagingTemplate.convertAndSend(TOPIC_GAME + game.getId(), delta);
+        deltas.increment();
+    }
+
+    private static Map<String, Object> snapshotMessage(Game game, long sequence) {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("type", GAME_STATE);
+        snapshot.put("seq", sequence);
+        snapshot.put("payload", game);
+        return snapshot;
+    }
+
+    static Map<String, Object> diff(View previous, View current) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        if (previous.currentRound() != current.currentRound()) {
+            changes.put("currentRound", current.currentRound());
+        }
+        if (!Objects.equals(previous.currentTurn(), current.currentTurn())) {
+            changes.put("currentTurn", current.currentTurn());
+        }
+        // Puzzles are shared catalog instances, so a different instance means the round moved on
+        if (previous.puzzle() != current.puzzle()) {
+            changes.put("currentPuzzle", current.puzzle());
+        }
+        if (previous.state() != current.state()) {
+            changes.put("state", current.state());
+        }
+        if (previous.roundStartTime() != current.roundStartTime()) {
+            changes.put("roundStartTime", current.roundStartTime());
+        }
+
+        Map<String, Object> playerChanges = new LinkedHashMap<>();
+        current.players().forEach((playerId, player) -> {
+            Map<String, Object> changed = player.diff(previous.players().get(playerId));
+            if (!changed.isEmpty()) {
+                playerChanges.put(playerId, changed);
+            }
+        });
+        if (!playerChanges.isEmpty()) {
+            changes.put("playerStatus", playerChanges);
+        }
+        return changes;
+    }
+
+    private static final class TrackedGame {
+        private View view;
+        private long sequence;
+    }
+
+    record View(int currentRound, String currentTurn, Puzzle puzzle, Game.GameState state, long roundStartTime,
+                Map<String, PlayerView> players) {
+
+        static View of(Game game) {
+            Map<String, PlayerView> players = new HashMap<>();
+            game.getPlayerStatus().forEach((playerId, status) -> players.put(playerId, new PlayerView(
+                status.getScore(), status.isHasCompleted(), status.isHasForfeit(), status.getCode()
+            )));
+            return new View(game.getCurrentRound(), game.getCurrentTurn(), game.getCurrentPuzzle(), game.getState(),
+                game.getRoundStartTime(), players);
+        }
+    }
+
+    record PlayerView(int score, boolean hasCompleted, boolean hasForfeit, String code) {
+
+        Map<String, Object> diff(PlayerView previous) {
+            Map<String, Object> changed = new LinkedHashMap<>();
+            if (previous == null || previous.score != score) {
+                changed.put("score", score);
+            }
+            if (previous == null || previous.hasCompleted != hasCompleted) {
+                changed.put("hasCompleted", hasCompleted);
+            }
+            if (previous == null || previous.hasForfeit != hasForfeit) {
+                changed.put("hasForfeit", hasForfeit);
+            }
+            String before = previous != null ? previous.code : null;
+            if (!Objects.equals(before, code)) {
+                changed.put("codeDiff", CodeDiff.between(before, code));
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Replaces {@code deleteCount} characters at {@code start} with {@code insert}. Computed from the common
+     * prefix and suffix of the two versions, which covers a typing burst or a paste in one splice.
+     */
+    public record CodeDiff(int start, int deleteCount, String insert) {
+
+        public static CodeDiff between(String before, String after) {
+            String from = before != null ? before : "";
+            String to = after != null ? after : "";
+
+            int maxPrefix = Math.min(from.length(), to.length());
+            int prefix = 0;
+            while (prefix < maxPrefix && from.charAt(prefix) == to.charAt(prefix)) {
+                prefix++;
+            }
+
+            int maxSuffix = maxPrefix - prefix;
+            int suffix = 0;
+            while (suffix < maxSuffix
+                && from.charAt(from.length() - 1 - suffix) == to.charAt(to.length() - 1 - suffix)) {
+                suffix++;
+            }
+
+            return new CodeDiff(prefix, from.length() - prefix - suffix, to.substring(prefix, to.length() - suffix));
+        }
+
+        public String applyTo(String code) {
+            String base = code != null ? code : "";
+            return base.substring(0, start) + insert + base.substring(start + deleteCount);
+        }
+    }
+}
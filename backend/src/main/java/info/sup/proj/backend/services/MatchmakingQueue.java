@@ -0,0 +1,174 @@
+package info.sup.proj.backend.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory index of players searching for an opponent, ordered by the Elo rating cached when they joined the
+ * lobby. Finding an opponent walks outward from the searcher's rating, past players whose own window is too narrow,
+ * until the rating difference exceeds the searcher's window; it never touches the database. Players with the same
+ * rating are matched in the order they started searching.
+ * <p>
+ * A searcher's Elo window starts at the range they asked for and widens by {@code widenPerSecond} for every second
+ * they wait, up to {@code maxEloRange}; two players are only paired when each is inside the other's window.
+ * <p>
+ * All operations are atomic: a matched opponent is removed in the same step, so two concurrent searches can
+ * never claim the same player.
+ */
+public class MatchmakingQueue {
+
+    record Searcher(String userId, int elo, long sequence, int eloRange, long enqueuedAtNanos) {}
+
+    public record Match(String firstId, String secondId, long firstWaitNanos, long secondWaitNanos) {}
+
+    private static final Comparator<Searcher> BY_RATING = Comparator
+        .comparingInt(Searcher::elo)
+        .thenComparingLong(Searcher::sequence);
+
+    private final TreeSet<Searcher> byRating = new TreeSet<>(BY_RATING);
+    private final Map<String, Searcher> byUserId = new HashMap<>();
+    private final int widenPerSecond;
+    private final int maxEloRange;
+    private final LongSupplier nanoTime;
+    private long nextSequence;
+
+    public MatchmakingQueue() {
+        this(0, Integer.MAX_VALUE, System::nanoTime);
+    }
+
+    public MatchmakingQueue(int widenPerSecond, int maxEloRange, LongSupplier nanoTime) {
+        this.widenPerSecond = widenPerSecond;
+        this.maxEloRange = maxEloRange;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Matches {@code userId} with the closest-rated searcher within {@code eloRange}, removing that opponent from
+     * the queue. Without a suitable opponent the player is queued and waits for a later search or batch pass.
+     */
+    public synchronized Optional<Match> matchOrEnqueue(String userId, int elo, int eloRange) {
+        remove(userId);
+
+        long now = nanoTime.getAsLong();
+        Searcher searcher = new Searcher(userId, elo, nextSequence++, eloRange, now);
+        Searcher opponent = closest(searcher, now);
+        if (opponent != null) {
+            remove(opponent.userId());
+            return Optional.of(new Match(userId, opponent.userId(), 0, now - opponent.enqueuedAtNanos()));
+        }
+
+        add(searcher);
+        return Optional.empty();
+    }
+
+    /**
+     * Queues {@code userId} without looking for an opponent, e.g. to put back a player whose match fell through.
+     */
+    public synchronized void enqueue(String userId, int elo, int eloRange) {
+        remove(userId);
+        add(new Searcher(userId, elo, nextSequence++, eloRange, nanoTime.getAsLong()));
+    }
+
+    /**
+     * Pairs every waiting player that has a compatible opponent, longest waiting first, so players whose windows
+     * widened since they started searching are matched without waiting for someone new to search.
+     */
+    public synchronized List<Match> matchWaiting() {
+        long now = nanoTime.getAsLong();
+        List<Searcher> byWaitTime = new ArrayList<>(byRating);
+        byWaitTime.sort(Comparator.comparingLong(Searcher::sequence));
+
+        List<Match> matches = new ArrayList<>();
+        for (Searcher searcher : byWaitTime) {
+            if (!byRating.remove(searcher)) {
+                // Already taken as someone else's opponent in this pass
+                continue;
+            }
+
+            Searcher opponent = closest(searcher, now);
+            if (opponent == null) {
+                byRating.add(searcher);
+                continue;
+            }
+
+            byRating.remove(opponent);
+            byUserId.remove(searcher.userId());
+            byUserId.remove(opponent.userId());
+            matches.add(new Match(searcher.userId(), opponent.userId(),
+                now - searcher.enqueuedAtNanos(), now - opponent.enqueuedAtNanos()));
+        }
+        return matches;
+    }
+
+    public synchronized boolean remove(String userId) {
+        Searcher searcher = byUserId.remove(userId);
+        return searcher != null && byRating.remove(searcher);
+    }
+
+    public synchronized boolean contains(String userId) {
+        return byUserId.containsKey(userId);
+    }
+
+    public synchronized int size() {
+        return byUserId.size();
+    }
+
+    int windowOf(Searcher searcher, long now) {
+        long waitedSeconds = (now - searcher.enqueuedAtNanos()) / 1_000_000_000L;
+        long widened = searcher.eloRange() + waitedSeconds * widenPerSecond;
+        return (int) Math.min(widened, Math.max(searcher.eloRange(), maxEloRange));
+    }
+
+    private void add(Searcher searcher) {
+        byRating.add(searcher);
+        byUserId.put(searcher.userId(), searcher);
+    }
+
+    /**
+     * Closest-rated searcher that accepts {@code searcher} and is accepted by it; {@code searcher} itself must
+     * not be in the rating index. On a tie the higher rating wins, and within a rating the longest waiting.
+     */
+    private Searcher closest(Searcher searcher, long now) {
+        int window = windowOf(searcher, now);
+        Searcher higher = null;
+        for (Searcher candidate : byRating.tailSet(firstAt(searcher.elo()), true)) {
+            if (candidate.elo() - searcher.elo() > window) {
+                break;
+            }
+            if (accepts(candidate, searcher, window, now)) {
+                higher = candidate;
+                break;
+            }
+        }
+
+        // Only look below for ratings strictly closer than the higher match, so ties keep going to the higher one
+        int lowerLimit = higher == null ? window : higher.elo() - searcher.elo() - 1;
+        Searcher lower = byRating.lower(firstAt(searcher.elo()));
+        while (lower != null && searcher.elo() - lower.elo() <= lowerLimit) {
+            int elo = lower.elo();
+            // Walk each rating from its longest waiting searcher, since lower() lands on the latest one
+            for (Searcher candidate : byRating.subSet(firstAt(elo), true, firstAt(elo + 1), false)) {
+                if (accepts(candidate, searcher, window, now)) {
+                    return candidate;
+                }
+            }
+            lower = byRating.lower(firstAt(elo));
+        }
+        return higher;
+    }
+
+    private boolean accepts(Searcher candidate, Searcher searcher, int searcherWindow, long now) {
+        int diff = Math.abs(candidate.elo() - searcher.elo());
+        return diff <= searcherWindow && diff <= windowOf(candidate, now);
+    }
+
+    private static Searcher firstAt(int elo) {
+        return new Searcher(null, elo, Long.MIN_VALUE, 0, 0);
+    }
+}
@@ -1,15 +1,27 @@
 package info.sup.proj.backend.services;
 
+import info.sup.proj.backend.events.EloChangedEvent;
 import info.sup.proj.backend.model.Player;
 import info.sup.proj.backend.model.User;
 import info.sup.proj.backend.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 
 @Service
@@ -17,19 +29,93 @@ public class MatchmakingService {
     private final Map<String, Player> availablePlayers = new ConcurrentHashMap<>();
     private final Map<String, Player> searchingPlayers = new ConcurrentHashMap<>();
     private final Map<String, String> playerChallenges = new ConcurrentHashMap<>();
+    // Ratings are cached when a player joins the lobby so matching never has to go to the database
+    private final Map<String, Integer> lobbyRatings = new ConcurrentHashMap<>();
+    private final Map<String, Integer> searchRanges = new ConcurrentHashMap<>();
+    private final MatchmakingQueue matchmakingQueue;
+    // Guards lobby membership changes so presence deltas go out in version order
+    private final Object lobbyLock = new Object();
+    private long lobbyVersion;
     private final GameService gameService;
     private final UserRepository userRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ScheduledExecutorService scheduler;
+    private final Duration tickInterval;
+    private final Timer timeToMatch;
+    private ScheduledFuture<?> matchmakingTick;
 
     private static final String USERNF = "User not found";
     private static final String QUEUE_GAME = "/queue/game";
+    private static final int DEFAULT_ELO_RANGE = 1000;
+    private static final String TOPIC_LOBBY = "/topic/lobby";
+    private static final String USER_ID = "userId";
+    private static final String VERSION = "version";
 
     private final Logger logger = LoggerFactory.getLogger(MatchmakingService.class);
 
-    public MatchmakingService(GameService gameService, UserRepository userRepository, SimpMessagingTemplate messagingTemplate) {
+    @Autowired
+    public MatchmakingService(
+            GameService gameService,
+            UserRepository userRepository,
+            SimpMessagingTemplate messagingTemplate,
+            ScheduledExecutorService scheduler,
+            @Value("${app.matchmaking.tick:PT1S}") Duration tickInterval,
+            @Value("${app.matchmaking.widen-per-second:25}") int widenPerSecond,
+            @Value("${app.matchmaking.max-elo-range:2000}") int maxEloRange,
+            MeterRegistry meterRegistry) {
+        this(gameService, userRepository, messagingTemplate, scheduler, tickInterval,
+            new MatchmakingQueue(widenPerSecond, maxEloRange, System::nanoTime), meterRegistry);
+    }
+
+    MatchmakingService(
+            GameService gameService,
+            UserRepository userRepository,
+            SimpMessagingTemplate messagingTemplate,
+            ScheduledExecutorService scheduler,
+            Duration tickInterval,
+            MatchmakingQueue matchmakingQueue,
+            MeterRegistry meterRegistry) {
         this.gameService = gameService;
         this.userRepository = userRepository;
         this.messagingTemplate = messagingTemplate;
+        this.scheduler = scheduler;
+        this.tickInterval = tickInterval;
+        this.matchmakingQueue = matchmakingQueue;
+        this.timeToMatch = Timer.builder("matchmaking.time.to.match")
+            .description("Time a player spent searching before being matched")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        meterRegistry.gauge("matchmaking.queue.depth", matchmakingQueue, MatchmakingQueue::size);
+    }
+
+    /**
+     * Starts the batch pass that re-matches waiting players every {@code app.matchmaking.tick}, on the shared
+     * scheduler so it needs no thread of its own.
+     */
+    @PostConstruct
+    public void startMatchmakingTick() {
+        long intervalMillis = tickInterval.toMillis();
+        if (intervalMillis > 0) {
+            matchmakingTick = scheduler.scheduleWithFixedDelay(this::runMatchmakingTick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stopMatchmakingTick() {
+        if (matchmakingTick != null) {
+            matchmakingTick.cancel(false);
+        }
+    }
+
+    void runMatchmakingTick() {
+        try {
+            for (MatchmakingQueue.Match match : matchmakingQueue.matchWaiting()) {
+                startMatchedGame(match);
+            }
+        } catch (Exception e) {
+            // An exception would cancel the scheduled tick, so log it and try again next time
+            logger.error("Matchmaking tick failed: {}", e.getMessage(), e);
+        }
     }
 
     public void addPlayerToLobby(Long userId) {
@@ -42,29 +128,81 @@ public class MatchmakingService {
             user.getPicture()
         );
 
-        availablePlayers.put(userId.toString(), player);
-        broadcastLobbyUpdate();
+        String id = userId.toString();
+        synchronized (lobbyLock) {
+            boolean wasVisible = isVisibleInLobby(id);
+            Integer previousElo = lobbyRatings.put(id, user.getElo());
+            availablePlayers.put(id, player);
+            if (wasVisible && !Objects.equals(previousElo, user.getElo())) {
+                publishEloChanged(id, user.getElo());
+            }
+            publishPresenceChange(id, wasVisible);
+        }
     }
 
     public void removePlayerFromLobby(String userId) {
-        availablePlayers.remove(userId);
-        searchingPlayers.remove(userId);
-        playerChallenges.remove(userId);
-        broadcastLobbyUpdate();
+        synchronized (lobbyLock) {
+            boolean wasVisible = isVisibleInLobby(userId);
+            availablePlayers.remove(userId);
+            stopSearchingForOpponent(userId);
+            playerChallenges.remove(userId);
+            lobbyRatings.remove(userId);
+            publishPresenceChange(userId, wasVisible);
+        }
     }
 
     public void startSearchingForOpponent(String userId, Map<String, Object> preferences) {
-        Player player = availablePlayers.get(userId);
-        if (player == null) {
-            throw new IllegalStateException("Player not in lobby");
-        }
+        synchronized (lobbyLock) {
+            Player player = availablePlayers.get(userId);
+            if (player == null) {
+                throw new IllegalStateException("Player not in lobby");
+            }
 
-        searchingPlayers.put(userId, player);
+            // Searching players are not offered for challenges, so they leave the visible lobby
+            boolean wasVisible = isVisibleInLobby(userId);
+            searchingPlayers.put(userId, player);
+            publishPresenceChange(userId, wasVisible);
+        }
         findMatch(userId, preferences);
     }
 
     public void stopSearchingForOpponent(String userId) {
-        searchingPlayers.remove(userId);
+        synchronized (lobbyLock) {
+            boolean wasVisible = isVisibleInLobby(userId);
+            matchmakingQueue.remove(userId);
+            searchingPlayers.remove(userId);
+            searchRanges.remove(userId);
+            publishPresenceChange(userId, wasVisible);
+        }
+    }
+
+    /**
+     * Current lobby for a client that just subscribed, tagged with the version of the last presence change it
+     * includes so the client can drop deltas it already has.
+     */
+    public Map<String, Object> getLobbySnapshot() {
+        synchronized (lobbyLock) {
+            List<Map<String, Object>> lobbyPlayers = availablePlayers.values().stream()
+                .filter(player -> !searchingPlayers.containsKey(player.getId()))
+                .map(this::lobbyEntry)
+                .toList();
+
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("type", "LOBBY_SNAPSHOT");
+            snapshot.put(VERSION, lobbyVersion);
+            snapshot.put("players", lobbyPlayers);
+            return snapshot;
+        }
+    }
+
+    @EventListener
+    public void onEloChanged(EloChangedEvent event) {
+        String userId = event.getUserId().toString();
+        synchronized (lobbyLock) {
+            if (lobbyRatings.computeIfPresent(userId, (id, elo) -> event.getElo()) != null && isVisibleInLobby(userId)) {
+                publishEloChanged(userId, event.getElo());
+            }
+        }
     }
 
     public void challengePlayer(String challengerId, String targetId) {
@@ -140,50 +278,61 @@ public class MatchmakingService {
         Player searchingPlayer = searchingPlayers.get(userId);
         if (searchingPlayer == null) return;
 
-        User searchingUser = userRepository.findById(Long.parseLong(userId))
-                .orElseThrow(() -> new IllegalArgumentException(USERNF));
-
-        int searchingElo = searchingUser.getElo();
         int eloRange = preferences != null && preferences.get("eloRange") != null 
             ? (Integer) preferences.get("eloRange") 
-            : 1000;
-
-        Optional<Player> opponent = searchingPlayers.entrySet().stream()
-            .filter(entry -> !entry.getKey().equals(userId))
-            .map(Map.Entry::getValue)
-            .filter(player -> {
-                User potentialOpponent = userRepository.findById(Long.parseLong(player.getId()))
-                        .orElse(null);
-                if (potentialOpponent == null) return false;
-
-                int eloDiff = Math.abs(searchingElo - potentialOpponent.getElo());
-                return eloDiff <= eloRange;
-            })
-            .findFirst();
-
-        if (opponent.isPresent()) {
-            Player opponentPlayer = opponent.get();
-            
-            try {
-                createAndStartGame(searchingPlayer, opponentPlayer);
+            : DEFAULT_ELO_RANGE;
+        searchRanges.put(userId, eloRange);
 
-                stopSearchingForOpponent(userId);
-                stopSearchingForOpponent(opponentPlayer.getId());
-                removePlayerFromLobby(userId);
-                removePlayerFromLobby(opponentPlayer.getId());
-            } catch (Exception e) {
-                logger.error("Error creating game: {}" , e.getMessage());
-            }
+        matchmakingQueue.matchOrEnqueue(userId, ratingOf(userId), eloRange)
+            .ifPresent(this::startMatchedGame);
+    }
+
+    private void startMatchedGame(MatchmakingQueue.Match match) {
+        Player first = searchingPlayers.get(match.firstId());
+        Player second = searchingPlayers.get(match.secondId());
+        if (first == null || second == null) {
+            // One of them stopped searching while being matched; the other keeps waiting
+            requeue(match.firstId());
+            requeue(match.secondId());
+            return;
+        }
+
+        try {
+            createAndStartGame(first, second);
+            timeToMatch.record(match.firstWaitNanos(), TimeUnit.NANOSECONDS);
+            timeToMatch.record(match.secondWaitNanos(), TimeUnit.NANOSECONDS);
+
+            removePlayerFromLobby(first.getId());
+            removePlayerFromLobby(second.getId());
+        } catch (Exception e) {
+            logger.error("Error creating game: {}" , e.getMessage());
+            // The queue already released both players, so put them back for the next pass
+            requeue(first.getId());
+            requeue(second.getId());
+        }
+    }
+
+    private void requeue(String userId) {
+        Integer elo = lobbyRatings.get(userId);
+        Integer eloRange = searchRanges.get(userId);
+        if (searchingPlayers.containsKey(userId) && elo != null && eloRange != null) {
+            matchmakingQueue.enqueue(userId, elo, eloRange);
         }
     }
 
+    private int ratingOf(String userId) {
+        Integer elo = lobbyRatings.get(userId);
+        if (elo == null) {
+            throw new IllegalStateException("Player not in lobby");
+        }
+        return elo;
+    }
+
     private void createAndStartGame(Player player1, Player player2) {
         var game = gameService.createGame(player1, player2);
 
         for (Player player : List.of(player1, player2)) {
             Player opponent = player.getId().equals(player1.getId()) ? player2 : player1;
-            User opponentUser = userRepository.findById(Long.parseLong(opponent.getId()))
-                    .orElseThrow(() -> new IllegalArgumentException("Opponent not found"));
 
             Map<String, Object> gameStartInfo = new HashMap<>();
             gameStartInfo.put("type", "GAME_STARTED");
@@ -191,7 +340,7 @@ public class MatchmakingService {
             gameStartInfo.put("opponentId", opponent.getId());
             gameStartInfo.put("opponentName", opponent.getUsername());
             gameStartInfo.put("opponentPicture", opponent.getPicture());
-            gameStartInfo.put("opponentElo", opponentUser.getElo());
+            gameStartInfo.put("opponentElo", ratingOf(opponent.getId()));
             gameStartInfo.put("rounds", game.getTotalRounds());
             gameStartInfo.put("currentRound", game.getCurrentRound());
             gameStartInfo.put("currentPuzzleId", game.getCurrentPuzzle().getId());
@@ -208,22 +357,46 @@ public class MatchmakingService {
         }
     }
 
-    private void broadcastLobbyUpdate() {
-        List<Map<String, Object>> lobbyPlayers = availablePlayers.values().stream()
-            .filter(player -> !searchingPlayers.containsKey(player.getId()))
-            .map(player -> {
-                User user = userRepository.findById(Long.parseLong(player.getId()))
-                        .orElseThrow(() -> new IllegalArgumentException(USERNF));
-                
-                Map<String, Object> playerInfo = new HashMap<>();
-                playerInfo.put("userId", Long.parseLong(player.getId()));
-                playerInfo.put("username", player.getUsername());
-                playerInfo.put("picture", player.getPicture());
-                playerInfo.put("elo", user.getElo());
-                return playerInfo;
-            })
-            .toList();
-
-        messagingTemplate.convertAndSend("/topic/lobby", lobbyPlayers);
+    private boolean isVisibleInLobby(String userId) {
+        return availablePlayers.containsKey(userId) && !searchingPlayers.containsKey(userId);
+    }
+
+    private void publishPresenceChange(String userId, boolean wasVisible) {
+        boolean visible = isVisibleInLobby(userId);
+        if (visible == wasVisible) {
+            return;
+        }
+
+        Map<String, Object> presence = new HashMap<>();
+        if (visible) {
+            presence.put("type", "PLAYER_JOINED");
+            presence.put("player", lobbyEntry(availablePlayers.get(userId)));
+        } else {
+            presence.put("type", "PLAYER_LEFT");
+            presence.put(USER_ID, Long.parseLong(userId));
+        }
+        publishLobbyDelta(presence);
+    }
+
+    private void publishEloChanged(String userId, int elo) {
+        Map<String, Object> eloChange = new HashMap<>();
+        eloChange.put("type", "ELO_CHANGED");
+        eloChange.put(USER_ID, Long.parseLong(userId));
+        eloChange.put("elo", elo);
+        publishLobbyDelta(eloChange);
+    }
+
+    private void publishLobbyDelta(Map<String, Object> delta) {
+        delta.put(VERSION, ++lobbyVersion);
+        messagingTemplate.convertAndSend(TOPIC_LOBBY, delta);
+    }
+
+    private Map<String, Object> lobbyEntry(Player player) {
+        Map<String, Object> playerInfo = new HashMap<>();
+        playerInfo.put(USER_ID, Long.parseLong(player.getId()));
+        playerInfo.put("username", player.getUsername());
+        playerInfo.put("picture", player.getPicture());
+        playerInfo.put("elo", lobbyRatings.get(player.getId()));
+        return playerInfo;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,250 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Puzzle;
+import info.sup.proj.backend.services.llm.LlmRequest;
+import info.sup.proj.backend.services.llm.TokenCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the chat requests {@link AiService} sends for a puzzle prompt.
+ * <p>
+ * The system prompt of a puzzle type is compacted once, when the class loads, and every request of that type starts
+ * with exactly the same bytes, so a provider that caches prompt prefixes can reuse it. The code context that follows
+ * grows with every code reply of a session; past {@code app.ai.prompt.code-context-tokens} (as estimated by
+ * {@link TokenCounter}) only its newest lines are sent, preceded by the declarations of the lines left out.
+ */
+@Component
+public class PromptAssembler {
+    private static final Logger logger = LoggerFactory.getLogger(PromptAssembler.class);
+
+    public static final int DEFAULT_CODE_CONTEXT_TOKENS = 1500;
+
+    static final String CODE_CONTEXT_HEADER = "Current code context:\n";
+    static final String OMITTED_MARKER = "// ... earlier code omitted ...";
+
+    private static final Map<Puzzle.Type, String> TYPE_SPECIFIC_PROMPTS = Map.of(
+        Puzzle.Type.BY_PASS, """
+        Custom Behavior Ruleset
+
+        You are an AI assistant following strict interaction rules defined below. Your task is to generate code that solves the problem.
+        Only produce code when the input complies with all conditions below.
+
+        ------------------------------
+        Forbidden Terms:
+        Do NOT fulfill requests if the input contains any of the following:
+        - code
+        - for loop
+        - loop
+        - generate
+        - array
+        - sort
+        - program
+
+        ------------------------------
+        Request Requirements:
+        - User must provide a sufficiently descriptive prompt with no forbidden words.
+        - The user cannot just copy the task he must provide a clear and self written prompt.
+        - If valid, respond with code only — no text, no comments.
+        - Do not ask if the user wants code; assume yes if rules are met.
+
+        ------------------------------
+        ⚠Failure Handling:
+        - After 3 invalid tries: give a helpful hint for rephrasing.
+        - After 6 invalid tries: return only the first sentence of a valid prompt.
+        - After 9 invalid tries: return a complete valid prompt (still no code).
+
+        ------------------------------
+        ⚙️ Post-Success Behavior:
+        - If the user's prompt is valid, respond with code formatted as code (code between ``` ```) and a congratulatory sentence.
+        - the code you send should be able to place in a empty .java file and should run.
+        - The code must be formatted as logic code. So not everything on one line.
+        - The code responses are by default in Java if not asked other wise.
+        - Never include explanations or comments.
+
+        Enforce these rules for the duration of the session. Do not break character.
+    """,
+
+        Puzzle.Type.FAULTY, """
+            You are a deceptive coding assistant designed for puzzle challenges. Your task is to generate faulty code snippets that appear correct at first glance but contain subtle or deliberate flaws. These flaws should test the user’s ability to debug, recognize syntax issues, or identify cross-language contamination.
+            Apply the following rules for every code response:
+            Inject at least one of the following fault types per response:
+            A syntax error (e.g., missing semicolon, bracket, wrong operator)
+            A cross-language element (e.g., using Python syntax in Java)
+            An incomplete implementation (e.g., a method that does not return a value)
+            A logic bug (e.g., wrong loop bounds, swapped conditionals)
+            Misleading naming or contradictory comments
+            Ensure the mistake is subtle but realistic, so the code looks almost correct.
+            Do not include any explanation or hint. Just output the faulty code as if it's correct.
+            Vary the programming language if prompted to do so (default: Java).
+            Never include more than one comment per snippet if needed — and it must be misleading or wrong.
+            Your goal is to challenge users to detect and correct the faults using minimal, strategic prompts.
+            If the user prompts you to correct existing mistakes you must correct them and return the entire code with the mistake resolved
+            Only correct a mistake when the user specifically ask you fix that mistake.
+            Add some textual responses outside the code block but they can be misleading to!
+            Make sure code is formated as code and send between ``` code ```
+            If the user just ask you to fix the mistakes. just anwser with a textual prompt full of gibberish
+            Dont tell in the code what is wrong with it!
+            """,
+
+        Puzzle.Type.MULTI_STEP, """
+            You are an AI assistant helping with multi-step challenges.
+            Guidelines:
+            1. Never suggest steps or ways to break down the problem
+            2. Never hint at what the next step should be
+            3. When a user requests a specific, well-defined subtask:
+               - Only then provide code for that specific subtask
+               - Include explanatory comments in the code
+            4. If the request is too broad or attempts multiple steps at once:
+               - Respond with: "That's too much to handle in one go. Break this down into smaller steps."
+            5. Never provide complete solutions all at once
+            6. Never suggest what step should come next
+            """
+    );
+
+    private static final String DEFAULT_SYSTEM_PROMPT = """
+        You are an AI assistant helping with coding challenges.
+        Important guidelines:
+        1. Never suggest how to break down problems
+        2. Only provide code for specific, well-defined subtasks when explicitly requested
+        3. Never hint at next steps
+        4. If users ask for complete solutions, respond with:
+           "That's too much to handle in one go. Break this down into smaller steps."
+        """;
+
+    private static final Pattern DECORATION = Pattern.compile("[\\p{So}\\x{FE0F}]+\\s*");
+    private static final Pattern SEPARATOR = Pattern.compile("[-=_*]{3,}");
+    private static final Pattern DECLARATION = Pattern.compile(
+        "(import|package|public|protected|private|static|final|abstract|class|interface|enum|record|def|function)\\b.*"
+            + "|[\\w<>\\[\\], ]+\\s\\w+\\s*\\(.*\\)\\s*(throws [\\w., ]+)?\\{?");
+    private static final Pattern CONTROL_FLOW = Pattern.compile("(if|else|for|while|switch|catch|try|do|return|new)\\b.*");
+
+    private static final Map<Puzzle.Type, String> SYSTEM_PROMPTS = new EnumMap<>(Puzzle.Type.class);
+    private static final String DEFAULT_PROMPT = compact(DEFAULT_SYSTEM_PROMPT);
+
+    static {
+        TYPE_SPECIFIC_PROMPTS.forEach((type, prompt) -> SYSTEM_PROMPTS.put(type, compact(prompt)));
+    }
+
+    private final int codeContextTokens;
+
+    public PromptAssembler(@Value("${app.ai.prompt.code-context-tokens:1500}") int codeContextTokens) {
+        this.codeContextTokens = Math.max(1, codeContextTokens);
+    }
+
+    public LlmRequest chatRequest(String userInput, String currentCode, Puzzle.Type puzzleType) {
+        List<LlmRequest.Message> messages = new ArrayList<>();
+        messages.add(new LlmRequest.Message(LlmRequest.Role.SYSTEM, systemPrompt(puzzleType)));
+
+        if (currentCode != null && !currentCode.trim().isEmpty()) {
+            messages.add(new LlmRequest.Message(LlmRequest.Role.ASSISTANT, CODE_CONTEXT_HEADER + codeContext(currentCode)));
+        }
+
+        messages.add(new LlmRequest.Message(LlmRequest.Role.USER, userInput));
+
+        return new LlmRequest(messages, 0.7, 800, puzzleType, LlmRequest.Purpose.CHAT);
+    }
+
+    /**
+     * The compacted system prompt of {@code puzzleType}; the same instance on every call.
+     */
+    static String systemPrompt(Puzzle.Type puzzleType) {
+        String prompt = puzzleType != null ? SYSTEM_PROMPTS.get(puzzleType) : null;
+        return prompt != null ? prompt : DEFAULT_PROMPT;
+    }
+
+    /**
+     * Returns {@code code} unchanged when it fits the budget. Otherwise the newest lines are kept, since every code
+     * reply is appended to the end, and the older lines are reduced to their declarations so the model still knows
+     * which types and methods exist.
+     */
+    String codeContext(String code) {
+        int tokens = TokenCounter.count(code);
+        if (tokens <= codeContextTokens) {
+            return code;
+        }
+
+        String[] lines = code.split("\n", -1);
+        int markerTokens = TokenCounter.count(OMITTED_MARKER) + 1;
+        int tailBudget = Math.max(0, codeContextTokens * 3 / 4 - markerTokens);
+
+        int start = lines.length;
+        int tailTokens = 0;
+        while (start > 0) {
+            int lineTokens = TokenCounter.count(lines[start - 1]) + 1;
+            if (tailTokens + lineTokens > tailBudget) {
+                break;
+            }
+            tailTokens += lineTokens;
+            start--;
+        }
+
+        StringBuilder context = new StringBuilder();
+        int outlineBudget = codeContextTokens - markerTokens - tailTokens;
+        for (int i = 0; i < start; i++) {
+            String line = lines[i];
+            if (!isDeclaration(line)) {
+                continue;
+            }
+            int lineTokens = TokenCounter.count(line) + 1;
+            if (lineTokens > outlineBudget) {
+                break;
+            }
+            context.append(line).append('\n');
+            outlineBudget -= lineTokens;
+        }
+        context.append(OMITTED_MARKER).append('\n');
+
+        if (start == lines.length) {
+            // Not even the last line fits; keep its end, at about four characters per token
+            String last = lines[lines.length - 1];
+            context.append(last, Math.max(0, last.length() - tailBudget * 4), last.length());
+        } else {
+            context.append(String.join("\n", List.of(lines).subList(start, lines.length)));
+        }
+
+        String trimmed = context.toString();
+        logger.debug("Trimmed code context [from={}, to={}, lines={}]", tokens, TokenCounter.count(trimmed), lines.length);
+        return trimmed;
+    }
+
+    static boolean isDeclaration(String line) {
+        String trimmed = line.strip();
+        return !trimmed.isEmpty()
+            && !CONTROL_FLOW.matcher(trimmed).matches()
+            && DECLARATION.matcher(trimmed).matches();
+    }
+
+    /**
+     * Drops what costs tokens without changing the instructions: indentation shared by all lines, trailing spaces,
+     * separator lines, decorative symbols and repeated blank lines.
+     */
+    static String compact(String prompt) {
+        StringBuilder compacted = new StringBuilder();
+        boolean blank = true;
+        for (String line : prompt.stripTrailing().stripIndent().lines().toList()) {
+            String cleaned = DECORATION.matcher(line).replaceAll("").stripTrailing();
+            if (SEPARATOR.matcher(cleaned.strip()).matches()) {
+                continue;
+            }
+            if (cleaned.isEmpty()) {
+                if (!blank) {
+                    compacted.append('\n');
+                }
+                blank = true;
+                continue;
+            }
+            compacted.append(cleaned).append('\n');
+            blank = false;
+        }
+        return compacted.toString().strip();
+    }
+}
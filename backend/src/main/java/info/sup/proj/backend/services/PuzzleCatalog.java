@@ -0,0 +1,134 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Puzzle;
+import info.sup.proj.backend.repositories.PuzzleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * In-memory, immutable view of the puzzle table used to pick puzzles when games and rounds start.
+ * The catalog is loaded once the application is ready (after {@code DataInitializer} has seeded the
+ * database) and is replaced by a new version whenever {@link PuzzleService} saves or deletes puzzles.
+ */
+@Component
+public class PuzzleCatalog {
+    private static final Logger logger = LoggerFactory.getLogger(PuzzleCatalog.class);
+
+    private final PuzzleRepository puzzleRepository;
+    private volatile Snapshot snapshot;
+
+    public PuzzleCatalog(PuzzleRepository puzzleRepository) {
+        this.puzzleRepository = puzzleRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refresh();
+    }
+
+    /**
+     * Reloads the puzzle table and publishes it as the next catalog version.
+     */
+    public synchronized Snapshot refresh() {
+        long version = snapshot != null ? snapshot.version() + 1 : 1;
+        snapshot = new Snapshot(version, puzzleRepository.findAll());
+        logger.info("Loaded puzzle catalog version {} with {} puzzles", version, snapshot.size());
+        return snapshot;
+    }
+
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        return current != null ? current : loadIfAbsent();
+    }
+
+    private synchronized Snapshot loadIfAbsent() {
+        return snapshot != null ? snapshot : refresh();
+    }
+
+    public Puzzle randomPuzzle() {
+        return current().random();
+    }
+
+    public Puzzle randomPuzzleExcluding(Collection<Integer> excludedIds) {
+        return current().randomExcluding(excludedIds);
+    }
+
+    public static final class Snapshot {
+        private final long version;
+        private final List<Puzzle> puzzles;
+        private final Map<Integer, Integer> positions;
+
+        Snapshot(long version, List<Puzzle> puzzles) {
+            this.version = version;
+            this.puzzles = List.copyOf(puzzles);
+
+            Map<Integer, Integer> byId = new HashMap<>();
+            for (int i = 0; i < this.puzzles.size(); i++) {
+                byId.put(this.puzzles.get(i).getId(), i);
+            }
+            this.positions = Collections.unmodifiableMap(byId);
+        }
+
+        public long version() {
+            return version;
+        }
+
+        public int size() {
+            return puzzles.size();
+        }
+
+        public List<Puzzle> puzzles() {
+            return puzzles;
+        }
+
+        public Optional<Puzzle> findById(Integer id) {
+            Integer position = positions.get(id);
+            return position != null ? Optional.of(puzzles.get(position)) : Optional.empty();
+        }
+
+        public Puzzle random() {
+            if (puzzles.isEmpty()) {
+                return null;
+            }
+            return puzzles.get(ThreadLocalRandom.current().nextInt(puzzles.size()));
+        }
+
+        /**
+         * Picks a puzzle uniformly among those whose id is not excluded. A random slot is drawn from the
+         * remaining positions and shifted past the excluded ones, so the cost depends on the number of
+         * exclusions rather than on the catalog size.
+         */
+        public Puzzle randomExcluding(Collection<Integer> excludedIds) {
+            if (excludedIds == null || excludedIds.isEmpty()) {
+                return random();
+            }
+
+            int[] excluded = excludedIds.stream()
+                .map(positions::get)
+                .filter(Objects::nonNull)
+                .distinct()
+                .mapToInt(Integer::intValue)
+                .sorted()
+                .toArray();
+
+            int available = puzzles.size() - excluded.length;
+            if (available <= 0) {
+                return null;
+            }
+
+            int slot = ThreadLocalRandom.current().nextInt(available);
+            for (int position : excluded) {
+                if (position <= slot) {
+                    slot++;
+                }
+            }
+            return puzzles.get(slot);
+        }
+    }
+}
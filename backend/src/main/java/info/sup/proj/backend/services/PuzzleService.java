@@ -10,9 +10,11 @@ import java.util.Optional;
 @Service
 public class PuzzleService {
     private final PuzzleRepository puzzleRepository;
+    private final PuzzleCatalog puzzleCatalog;
 
-    public PuzzleService(PuzzleRepository puzzleRepository) {
+    public PuzzleService(PuzzleRepository puzzleRepository, PuzzleCatalog puzzleCatalog) {
         this.puzzleRepository = puzzleRepository;
+        this.puzzleCatalog = puzzleCatalog;
     }
 
     public List<Puzzle> getAllPuzzles() {
@@ -30,10 +32,19 @@ public class PuzzleService {
     }
 
     public Puzzle savePuzzle(Puzzle puzzle) {
-        return puzzleRepository.save(puzzle);
+        Puzzle saved = puzzleRepository.save(puzzle);
+        puzzleCatalog.refresh();
+        return saved;
+    }
+
+    public List<Puzzle> savePuzzles(List<Puzzle> puzzles) {
+        List<Puzzle> saved = puzzleRepository.saveAll(puzzles);
+        puzzleCatalog.refresh();
+        return saved;
     }
 
     public void deletePuzzle(Integer id) {
         puzzleRepository.deleteById(id);
+        puzzleCatalog.refresh();
     }
 }
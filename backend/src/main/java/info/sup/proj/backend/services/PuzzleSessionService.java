@@ -1,33 +1,53 @@
 package info.sup.proj.backend.services;
 
 import info.sup.proj.backend.model.PuzzleSession;
+import info.sup.proj.backend.model.SessionInteraction;
 import info.sup.proj.backend.model.User;
 import info.sup.proj.backend.repositories.PuzzleRepository;
 import info.sup.proj.backend.repositories.PuzzleSessionRepository;
+import info.sup.proj.backend.repositories.SessionInteractionRepository;
 import info.sup.proj.backend.repositories.UserRepository;
+import info.sup.proj.backend.dto.InteractionPageDto;
 import info.sup.proj.backend.dto.SessionMetricsDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.aop.framework.AopContext;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 @Service
 public class PuzzleSessionService {
+    private static final Logger logger = LoggerFactory.getLogger(PuzzleSessionService.class);
+    static final int MAX_HISTORY_PAGE = 200;
+
     private final PuzzleSessionRepository sessionRepository;
+    private final SessionInteractionRepository interactionRepository;
     private final PuzzleRepository puzzleRepository;
     private final UserRepository userRepository;
     private final ScoreService scoreService;
+    private final SessionInteractionBuffer interactionBuffer;
 
     public PuzzleSessionService(
             PuzzleSessionRepository sessionRepository, 
+            SessionInteractionRepository interactionRepository,
             PuzzleRepository puzzleRepository,
             UserRepository userRepository,
-            ScoreService scoreService) {
+            ScoreService scoreService,
+            SessionInteractionBuffer interactionBuffer) {
         this.sessionRepository = sessionRepository;
+        this.interactionRepository = interactionRepository;
         this.puzzleRepository = puzzleRepository;
         this.userRepository = userRepository;
         this.scoreService = scoreService;
+        this.interactionBuffer = interactionBuffer;
     }
 
     @Transactional
@@ -48,25 +68,27 @@ public class PuzzleSessionService {
 
     }
 
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillInteractionCounts() {
+        int backfilled = sessionRepository.backfillInteractionCounts();
+        if (backfilled > 0) {
+            logger.info("Counted the interactions of {} sessions created before the interaction counter", backfilled);
+        }
+    }
+
     private PuzzleSessionService getProxy() {
         return (PuzzleSessionService) AopContext.currentProxy();
     }
 
-    @Transactional
-    public PuzzleSession addInteraction(Integer puzzleId, Long userId, String userInput, String aiTextResponse, String aiCodeResponse) {
-        PuzzleSession session = getProxy().getOrCreateSession(puzzleId, userId);
-        
-        session.addInteraction(userInput, aiTextResponse, aiCodeResponse);
-        
-        if (aiCodeResponse != null && !aiCodeResponse.isEmpty()) {
-            if (session.getCurrentCode() != null && !session.getCurrentCode().isEmpty()) {
-                session.setCurrentCode(session.getCurrentCode() + "\n\n" + aiCodeResponse);
-            } else {
-                session.setCurrentCode(aiCodeResponse);
-            }
-        }
-        
-        return sessionRepository.save(session);
+    /**
+     * Records a prompt and the AI reply, appending the reply's code to the session's code. The interaction is
+     * buffered and written in the background (see {@link SessionInteractionBuffer}); returns the session's code
+     * including the reply.
+     */
+    public String addInteraction(Integer puzzleId, Long userId, String userInput, String aiTextResponse, String aiCodeResponse) {
+        return interactionBuffer.append(puzzleId, userId, () -> getProxy().getOrCreateSession(puzzleId, userId),
+            userInput, aiTextResponse, aiCodeResponse);
     }
 
     private PuzzleSession createNewSession(Integer puzzleId, Long userId) {
@@ -85,6 +107,7 @@ public class PuzzleSessionService {
 
     @Transactional
     public void resetSession(Integer puzzleId, Long userId) {
+        interactionBuffer.evict(puzzleId, userId);
         Optional<PuzzleSession> existingSession = sessionRepository.findByPuzzleIdAndUserId(puzzleId, userId);
         
         Integer bestInteractionCount = null;
@@ -98,6 +121,7 @@ public class PuzzleSessionService {
             bestTimeSeconds = session.getBestTimeSeconds();
             attemptCount = session.getAttemptCount() != null ? session.getAttemptCount() + 1 : 1;
 
+            interactionRepository.deleteBySessionId(session.getId());
             sessionRepository.delete(session);
             sessionRepository.flush();
         }
@@ -111,20 +135,21 @@ public class PuzzleSessionService {
         sessionRepository.save(newSession);
     }
 
-    @Transactional
     public String getCurrentCode(Integer puzzleId, Long userId) {
-        return getProxy().getOrCreateSession(puzzleId, userId).getCurrentCode();
+        return interactionBuffer.currentCode(puzzleId, userId, () -> getProxy().getOrCreateSession(puzzleId, userId));
     }
     
     @Transactional
     public SessionMetricsDto markSessionCompleted(Integer puzzleId, Long userId) {
+        interactionBuffer.flush(puzzleId, userId);
         PuzzleSession session = getProxy().getOrCreateSession(puzzleId, userId);
         session.setIsCompleted(true);
         session.updateBestMetrics();
         sessionRepository.save(session);
         
         SessionMetricsDto scoreDetails = scoreService.calculateScore(session);
-        SessionMetricsDto metrics = getProxy().getSessionMetrics(puzzleId, userId);
+        // Already flushed above; going through getSessionMetrics would flush the session a second time
+        SessionMetricsDto metrics = readSessionMetrics(puzzleId, userId);
         
         return SessionMetricsDto.builder()
             .totalScore(scoreDetails.getTotalScore())
@@ -146,13 +171,73 @@ public class PuzzleSessionService {
     
     @Transactional
     public SessionMetricsDto getSessionMetrics(Integer puzzleId, Long userId) {
+        interactionBuffer.flush(puzzleId, userId);
+        return readSessionMetrics(puzzleId, userId);
+    }
+
+    private SessionMetricsDto readSessionMetrics(Integer puzzleId, Long userId) {
         PuzzleSession session = getProxy().getOrCreateSession(puzzleId, userId);
         return SessionMetricsDto.builder()
             .attemptCount(session.getAttemptCount())
             .bestInteractionCount(session.getBestInteractionCount())
             .bestTimeSeconds(session.getBestTimeSeconds())
             .isCompleted(session.getIsCompleted())
-            .currentInteractionCount(session.getInteractions().size())
+            .currentInteractionCount(session.getInteractionCount())
+            .build();
+    }
+
+    /**
+     * A page of up to {@code limit} interactions of the session, oldest first: the ones after {@code after}, the
+     * ones before {@code before}, or the newest ones when neither is given. Pages are read by (session, seq) key
+     * ranges, so their cost does not grow with the length of the session.
+     */
+    @Transactional(readOnly = true)
+    public InteractionPageDto getInteractionHistory(Integer puzzleId, Long userId, Integer after, Integer before,
+                                                    int limit) {
+        interactionBuffer.flush(puzzleId, userId);
+        Optional<Long> sessionId = sessionRepository.findIdByPuzzleIdAndUserId(puzzleId, userId);
+        if (sessionId.isEmpty()) {
+            return InteractionPageDto.builder().items(List.of()).build();
+        }
+
+        int pageSize = Math.clamp(limit, 1, MAX_HISTORY_PAGE);
+        // One row more than the page tells whether there is another page in that direction
+        Limit fetch = Limit.of(pageSize + 1);
+        List<SessionInteraction> rows;
+        boolean ascending = after != null;
+        if (ascending) {
+            rows = new ArrayList<>(interactionRepository.findBySessionIdAndSeqGreaterThanOrderBySeqAsc(
+                sessionId.get(), after, fetch));
+        } else {
+            rows = new ArrayList<>(interactionRepository.findBySessionIdAndSeqLessThanOrderBySeqDesc(
+                sessionId.get(), before != null ? before : Integer.MAX_VALUE, fetch));
+        }
+
+        boolean more = rows.size() > pageSize;
+        if (more) {
+            rows.removeLast();
+        }
+        if (!ascending) {
+            Collections.reverse(rows);
+        }
+
+        List<InteractionPageDto.Item> items = rows.stream()
+            .map(row -> new InteractionPageDto.Item(row.getSeq(), row.getUserInput(), row.getAiTextResponse(),
+                row.getAiCodeResponse(), row.getCreatedAt()))
+            .toList();
+        if (items.isEmpty()) {
+            return InteractionPageDto.builder().items(items).build();
+        }
+        Integer first = items.getFirst().getSeq();
+        Integer last = items.getLast().getSeq();
+        // Orders start at 0 and only have gaps where the buffer dropped an interaction, so only the fetched
+        // direction needs the extra row to know what is left
+        boolean newer = ascending ? more : before != null;
+        boolean older = ascending ? first > 0 : more;
+        return InteractionPageDto.builder()
+            .items(items)
+            .nextAfter(newer ? last : null)
+            .nextBefore(older ? first : null)
             .build();
     }
 }
\ No newline at end of file
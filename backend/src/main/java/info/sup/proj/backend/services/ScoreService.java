@@ -2,21 +2,25 @@ package info.sup.proj.backend.services;
 
 import info.sup.proj.backend.model.Puzzle;
 import info.sup.proj.backend.model.PuzzleSession;
+import info.sup.proj.backend.model.User;
 import info.sup.proj.backend.dto.SessionMetricsDto;
 import info.sup.proj.backend.dto.CodeEvaluationDto;
+import info.sup.proj.backend.services.llm.AiRequestScheduler;
 import org.springframework.stereotype.Service;
 
 @Service
 public class ScoreService {
 
     private final AiService aiService;
+    private final EvaluationCache evaluationCache;
 
-    public ScoreService(AiService aiService) {
+    public ScoreService(AiService aiService, EvaluationCache evaluationCache) {
         this.aiService = aiService;
+        this.evaluationCache = evaluationCache;
     }
 
     public SessionMetricsDto calculateScore(PuzzleSession session) {
-        int interactionCount = session.getInteractions().size();
+        int interactionCount = session.getInteractionCount() != null ? session.getInteractionCount() : 0;
         long timeSeconds = session.getBestTimeSeconds() != null 
             ? session.getBestTimeSeconds() 
             : java.time.Duration.between(session.getCreatedAt(), session.getLastUpdatedAt()).getSeconds();
@@ -37,7 +41,7 @@ public class ScoreService {
             timeScore = calculateTimeScore(timeSeconds, puzzle.getDifficulty());
             efficiencyScore = calculateEfficiencyScore(interactionCount, puzzle.getDifficulty());
             
-            CodeEvaluationDto aiEvaluation = evaluateCodeWithAi(currentCode, puzzle);
+            CodeEvaluationDto aiEvaluation = evaluateCodeWithAi(currentCode, puzzle, session.getUser());
             correctnessScore = aiEvaluation.getCorrectness();
             qualityScore = aiEvaluation.getQuality();
             tokenScore = calculateTokenScore(interactionCount, puzzle.getDifficulty());
@@ -78,7 +82,7 @@ public class ScoreService {
             .build();
     }
     
-    private int calculateTimeScore(long seconds, Puzzle.Difficulty difficulty) {
+    int calculateTimeScore(long seconds, Puzzle.Difficulty difficulty) {
         long expectedTime = switch (difficulty) {
             case EASY -> 600;
             case MEDIUM -> 450;
@@ -104,7 +108,7 @@ public class ScoreService {
         }
     }
     
-    private int calculateEfficiencyScore(int interactionCount, Puzzle.Difficulty difficulty) {
+    int calculateEfficiencyScore(int interactionCount, Puzzle.Difficulty difficulty) {
         int expectedInteractions = switch (difficulty) {
             case EASY -> 9;
             case MEDIUM -> 6;
@@ -130,7 +134,7 @@ public class ScoreService {
         }
     }
 
-    private int calculateTokenScore(int interactionCount, Puzzle.Difficulty difficulty) {
+    int calculateTokenScore(int interactionCount, Puzzle.Difficulty difficulty) {
         int expectedTokenUsage = switch (difficulty) {
             case EASY -> 12;
             case MEDIUM -> 8;
@@ -158,11 +162,21 @@ public class ScoreService {
         }
     }
     
-    private CodeEvaluationDto evaluateCodeWithAi(String code, Puzzle puzzle) {
+    private CodeEvaluationDto evaluateCodeWithAi(String code, Puzzle puzzle, User user) {
         try {
-            String evaluationPrompt = createEvaluationPrompt(code, puzzle);
-            String evaluationResponse = aiService.getCodeEvaluation(evaluationPrompt, code, puzzle.getType());
-            return parseAiEvaluation(evaluationResponse, puzzle.getType() == Puzzle.Type.BY_PASS);
+            CodeEvaluationDto evaluation = evaluationCache.getOrCompute(
+                EvaluationCache.keyFor(puzzle, code),
+                () -> {
+                    String evaluationPrompt = createEvaluationPrompt(code, puzzle);
+                    return parseAiEvaluation(aiService.getCodeEvaluation(
+                        AiRequestScheduler.Caller.practice(user != null ? user.getId() : null),
+                        evaluationPrompt, code, puzzle.getType()));
+                }
+            );
+            if (evaluation == null) {
+                return getDefaultEvaluation(puzzle.getType() == Puzzle.Type.BY_PASS);
+            }
+            return applyByPassFloor(evaluation, puzzle.getType() == Puzzle.Type.BY_PASS);
         } catch (Exception e) {
             return getDefaultEvaluation(puzzle.getType() == Puzzle.Type.BY_PASS);
         }
@@ -192,36 +206,40 @@ public class ScoreService {
         );
     }
     
-    private CodeEvaluationDto parseAiEvaluation(String evaluationResponse, boolean isByPassPuzzle) {
+    /**
+     * Returns the scores of an evaluation reply, or {@code null} when the AI gave no reply or the reply does not
+     * hold both scores. The cache does not keep {@code null}, so an unscored evaluation is asked for again.
+     */
+    private CodeEvaluationDto parseAiEvaluation(String evaluationResponse) {
+        if (evaluationResponse == null
+                || !evaluationResponse.contains("\"correctness\":") || !evaluationResponse.contains("\"quality\":")) {
+            return null;
+        }
         try {
-            int correctness = 75;
-            int quality = 70;
-            
-            if (evaluationResponse.contains("\"correctness\":")) {
-                int correctnessIndex = evaluationResponse.indexOf("\"correctness\":");
-                int commaIndex = evaluationResponse.indexOf(",", correctnessIndex);
-                String correctnessStr = evaluationResponse.substring(correctnessIndex + 14, commaIndex).trim();
-                correctness = Integer.parseInt(correctnessStr);
-            }
-            
-            if (evaluationResponse.contains("\"quality\":")) {
-                int qualityIndex = evaluationResponse.indexOf("\"quality\":");
-                int endIndex = evaluationResponse.indexOf("}", qualityIndex);
-                String qualityStr = evaluationResponse.substring(qualityIndex + 10, endIndex).trim();
-                quality = Integer.parseInt(qualityStr);
-            }
+            int correctnessIndex = evaluationResponse.indexOf("\"correctness\":");
+            int commaIndex = evaluationResponse.indexOf(",", correctnessIndex);
+            int correctness = Integer.parseInt(evaluationResponse.substring(correctnessIndex + 14, commaIndex).trim());
+
+            int qualityIndex = evaluationResponse.indexOf("\"quality\":");
+            int endIndex = evaluationResponse.indexOf("}", qualityIndex);
+            int quality = Integer.parseInt(evaluationResponse.substring(qualityIndex + 10, endIndex).trim());
 
-            if (isByPassPuzzle) {
-                correctness = Math.max(correctness, 85);
-                quality = Math.max(quality, 80);
-            }
-            
             return CodeEvaluationDto.builder()
                 .correctness(correctness)
                 .quality(quality)
                 .build();
         } catch (Exception e) {
-            return getDefaultEvaluation(isByPassPuzzle);
+            return null;
         }
     }
+
+    private CodeEvaluationDto applyByPassFloor(CodeEvaluationDto evaluation, boolean isByPassPuzzle) {
+        if (!isByPassPuzzle) {
+            return evaluation;
+        }
+        return CodeEvaluationDto.builder()
+            .correctness(Math.max(evaluation.getCorrectness(), 85))
+            .quality(Math.max(evaluation.getQuality(), 80))
+            .build();
+    }
 }
\ No newline at end of file
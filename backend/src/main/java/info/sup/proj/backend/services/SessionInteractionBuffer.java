@@ -0,0 +1,502 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.PuzzleSession;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind buffer for practice session interactions. The id, current code and next interaction order of
+ * recently used sessions are kept in memory, so a prompt reads and appends without loading the session; appended
+ * interactions are written every {@code app.session.write-behind.flush-interval}, or as soon as
+ * {@code app.session.write-behind.batch-size} are waiting, as batched JDBC inserts into {@code session_interactions}
+ * together with one update of each session's code. Going through JDBC also avoids Hibernate rewriting the whole
+ * ordered element collection when one interaction is added.
+ * <p>
+ * Durability: an interaction is only in memory until the next flush, so a crash loses at most one flush interval.
+ * A failed write stays buffered and is retried on the next flush, more than
+ * {@code app.session.write-behind.max-pending} buffered interactions make the caller flush before returning, and the
+ * buffer is flushed on shutdown. Reads that need the whole session (metrics, completion) flush it first. When the
+ * batch of all sessions fails, the sessions are written again one at a time, so a bad row only holds back its own
+ * session; after {@value #MAX_ATTEMPTS} failed flushes a session's rows are written one by one and the ones that
+ * still fail are dropped, leaving a gap in the interaction orders. With
+ * {@code app.session.write-behind.enabled=false} every interaction is flushed before the request returns and nothing
+ * is cached, which also suits deployments where one session's requests reach several instances.
+ * <p>
+ * Flush latency and batch sizes are recorded as {@code session.interactions.flush} and
+ * {@code session.interactions.flush.batch}; {@code session.interactions.flushed},
+ * {@code session.interactions.failed} and {@code session.interactions.dropped} count written interactions, failed
+ * writes and given-up interactions, {@code session.interactions.pending} and {@code session.interactions.hot} are the
+ * buffered interactions and cached sessions.
+ */
+@Component
+public class SessionInteractionBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(SessionInteractionBuffer.class);
+    static final int MAX_ATTEMPTS = 3;
+
+    static final String INSERT_INTERACTION = "INSERT INTO session_interactions "
+        + "(session_id, interaction_order, user_input, ai_text_response, ai_code_response, created_at) "
+        + "VALUES (?, ?, ?, ?, ?, ?)";
+    static final String UPDATE_SESSION = "UPDATE puzzle_sessions SET current_code = ?, last_updated_at = ?, "
+        + "interaction_count = COALESCE(interaction_count, 0) + ? WHERE id = ?";
+    static final String NEXT_ORDER = "SELECT COALESCE(MAX(interaction_order) + 1, 0) FROM session_interactions "
+        + "WHERE session_id = ?";
+
+    private record Key(Integer puzzleId, Long userId) {}
+
+    private record Pending(long sessionId, int order, String userInput, String aiTextResponse,
+                           String aiCodeResponse, Timestamp createdAt) {}
+
+    /**
+     * A session kept in memory, with the interactions not written yet.
+     */
+    private static final class HotSession {
+        private final long id;
+        private String currentCode;
+        // Code not written yet, or interactions in pending
+        private boolean dirty;
+        private int nextOrder;
+        private final List<Pending> pending = new ArrayList<>();
+        private long lastUsed;
+        private int failures;
+        // Removed from the map; a caller still holding it looks the session up again
+        private boolean evicted;
+
+        private HotSession(long id, String currentCode, int nextOrder, long lastUsed) {
+            this.id = id;
+            this.currentCode = currentCode != null ? currentCode : "";
+            this.nextOrder = nextOrder;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private record Drained(HotSession session, List<Pending> rows, String currentCode) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService scheduler;
+    private final boolean enabled;
+    private final Duration flushInterval;
+    private final int batchSize;
+    private final int maxPending;
+    private final Duration idleTimeout;
+    private final Map<Key, HotSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter flushed;
+    private final Counter failed;
+    private final Counter dropped;
+    private final LongSupplier clock;
+    private ScheduledFuture<?> flushTask;
+
+    @Autowired
+    public SessionInteractionBuffer(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ScheduledExecutorService scheduler,
+            @Value("${app.session.write-behind.enabled:true}") boolean enabled,
+            @Value("${app.session.write-behind.flush-interval:PT1S}") Duration flushInterval,
+            @Value("${app.session.write-behind.batch-size:100}") int batchSize,
+            @Value("${app.session.write-behind.max-pending:5000}") int maxPending,
+            @Value("${app.session.write-behind.idle-timeout:PT10M}") Duration idleTimeout,
+            MeterRegistry meterRegistry) {
+        this(jdbcTemplate, transactionManager, scheduler, enabled, flushInterval, batchSize, maxPending, idleTimeout,
+            meterRegistry, System::currentTimeMillis);
+    }
+
+    SessionInteractionBuffer(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                             ScheduledExecutorService scheduler, boolean enabled, Duration flushInterval,
+                             int batchSize, int maxPending, Duration idleTimeout, MeterRegistry meterRegistry,
+                             LongSupplier clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Flushes commit on their own, also when triggered from inside a request's transaction
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.scheduler = scheduler;
+        this.enabled = enabled;
+        this.flushInterval = flushInterval;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxPending = Math.max(this.batchSize, maxPending);
+        this.idleTimeout = idleTimeout;
+        this.flushTimer = meterRegistry.timer("session.interactions.flush");
+        this.batchSizes = meterRegistry.summary("session.interactions.flush.batch");
+        this.flushed = meterRegistry.counter("session.interactions.flushed");
+        this.failed = meterRegistry.counter("session.interactions.failed");
+        this.dropped = meterRegistry.counter("session.interactions.dropped");
+        this.clock = clock;
+        meterRegistry.gauge("session.interactions.pending", pendingCount);
+        meterRegistry.gauge("session.interactions.hot", sessions, Map::size);
+    }
+
+    @PostConstruct
+    public void startFlushing() {
+        long intervalMillis = flushInterval.toMillis();
+        if (enabled && intervalMillis > 0) {
+            flushTask = scheduler.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stopFlushing() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        flushQuietly();
+    }
+
+    /**
+     * The current code of the session, from memory if the session is hot. {@code loader} loads or creates the
+     * session otherwise.
+     */
+    public String currentCode(Integer puzzleId, Long userId, Supplier<PuzzleSession> loader) {
+        if (!enabled) {
+            String code = loader.get().getCurrentCode();
+            return code != null ? code : "";
+        }
+        Key key = new Key(puzzleId, userId);
+        while (true) {
+            HotSession session = hot(key, loader);
+            long now = clock.getAsLong();
+            synchronized (session) {
+                if (!session.evicted) {
+                    session.lastUsed = now;
+                    return session.currentCode;
+                }
+            }
+            sessions.remove(key, session);
+        }
+    }
+
+    /**
+     * Buffers an interaction and appends its code to the session's code. Returns the session's code afterwards.
+     */
+    public String append(Integer puzzleId, Long userId, Supplier<PuzzleSession> loader, String userInput,
+                         String aiTextResponse, String aiCodeResponse) {
+        if (!enabled) {
+            return appendThrough(loader, userInput, aiTextResponse, aiCodeResponse);
+        }
+
+        // The session can be evicted between the lookup and the add; the interaction then goes to a fresh one
+        Key key = new Key(puzzleId, userId);
+        String currentCode;
+        while (true) {
+            HotSession session = hot(key, loader);
+            currentCode = add(session, userInput, aiTextResponse, aiCodeResponse);
+            if (currentCode != null) {
+                break;
+            }
+            // A dropped session is marked before it leaves the map; do not find it again
+            sessions.remove(key, session);
+        }
+        int pending = pendingCount.incrementAndGet();
+
+        if (pending > maxPending) {
+            // The database is not keeping up; slow this request down rather than buffering without bound
+            flush();
+        } else if (pending >= batchSize && flushRequested.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+        return currentCode;
+    }
+
+    /**
+     * Write-through: the interaction is stored before the request returns, or the request fails. Serialized, so
+     * two requests of a session cannot pick the same interaction order.
+     */
+    private synchronized String appendThrough(Supplier<PuzzleSession> loader, String userInput,
+                                              String aiTextResponse, String aiCodeResponse) {
+        HotSession session = load(loader);
+        String currentCode = add(session, userInput, aiTextResponse, aiCodeResponse);
+        pendingCount.incrementAndGet();
+        RuntimeException failure = flush(List.of(session)).get(session);
+        if (failure != null) {
+            // The session is not kept, so neither is its interaction
+            pendingCount.addAndGet(-session.pending.size());
+            throw failure;
+        }
+        return currentCode;
+    }
+
+    /**
+     * Buffers an interaction in the session and returns its code afterwards, or {@code null} when the session was
+     * evicted and nothing was added.
+     */
+    private String add(HotSession session, String userInput, String aiTextResponse, String aiCodeResponse) {
+        long now = clock.getAsLong();
+        synchronized (session) {
+            if (session.evicted) {
+                return null;
+            }
+            session.pending.add(new Pending(session.id, session.nextOrder++, userInput, aiTextResponse,
+                aiCodeResponse, new Timestamp(now)));
+            if (aiCodeResponse != null && !aiCodeResponse.isEmpty()) {
+                session.currentCode = session.currentCode.isEmpty()
+                    ? aiCodeResponse
+                    : session.currentCode + "\n\n" + aiCodeResponse;
+            }
+            session.dirty = true;
+            session.lastUsed = now;
+            return session.currentCode;
+        }
+    }
+
+    /**
+     * Writes the buffered interactions of one session, so a read of the session entity sees all of them. Throws
+     * when they could not be written.
+     */
+    public void flush(Integer puzzleId, Long userId) {
+        HotSession session = sessions.get(new Key(puzzleId, userId));
+        if (session != null) {
+            RuntimeException failure = flush(List.of(session)).get(session);
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Forgets a session whose rows are about to be replaced, with the interactions not written yet.
+     */
+    public synchronized void evict(Integer puzzleId, Long userId) {
+        HotSession session = sessions.remove(new Key(puzzleId, userId));
+        if (session != null) {
+            synchronized (session) {
+                pendingCount.addAndGet(-session.pending.size());
+                session.pending.clear();
+                session.dirty = false;
+                session.evicted = true;
+            }
+        }
+    }
+
+    int pending() {
+        return pendingCount.get();
+    }
+
+    int hotSessions() {
+        return sessions.size();
+    }
+
+    private HotSession hot(Key key, Supplier<PuzzleSession> loader) {
+        HotSession session = sessions.get(key);
+        if (session != null) {
+            return session;
+        }
+
+        // Loaded outside the map so a slow load does not block other sessions
+        HotSession loaded = load(loader);
+        HotSession existing = sessions.putIfAbsent(key, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private HotSession load(Supplier<PuzzleSession> loader) {
+        PuzzleSession entity = loader.get();
+        // The counter includes dropped interactions, so it is the next order; sessions not backfilled yet ask the table
+        Integer nextOrder = entity.getInteractionCount() != null
+            ? entity.getInteractionCount()
+            : jdbcTemplate.queryForObject(NEXT_ORDER, Integer.class, entity.getId());
+        return new HotSession(entity.getId(), entity.getCurrentCode(), nextOrder != null ? nextOrder : 0,
+            clock.getAsLong());
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+            evictIdle();
+        } catch (RuntimeException e) {
+            // A scheduled task that throws is cancelled; the batch stays buffered for the next run
+            logger.error("Failed to flush session interactions: {}", e.getMessage(), e);
+        }
+    }
+
+    void flush() {
+        flush(sessions.values());
+    }
+
+    /**
+     * Writes the given sessions and returns the ones that failed, with their error. Failed sessions keep their
+     * interactions for the next flush.
+     */
+    private synchronized Map<HotSession, RuntimeException> flush(Collection<HotSession> targets) {
+        flushRequested.set(false);
+
+        List<Drained> drained = new ArrayList<>();
+        int interactions = 0;
+        for (HotSession session : targets) {
+            synchronized (session) {
+                if (session.dirty) {
+                    drained.add(new Drained(session, List.copyOf(session.pending), session.currentCode));
+                    interactions += session.pending.size();
+                }
+            }
+        }
+        if (drained.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<HotSession, RuntimeException> failures = new HashMap<>();
+        Timer.Sample sample = Timer.start();
+        try {
+            write(drained);
+            drained.forEach(entry -> written(entry, 0));
+        } catch (RuntimeException e) {
+            if (drained.size() == 1) {
+                failed(drained.getFirst(), e, failures);
+            } else {
+                // Find the sessions that cannot be written, so the others do not wait for them
+                for (Drained entry : drained) {
+                    try {
+                        write(List.of(entry));
+                        written(entry, 0);
+                    } catch (RuntimeException sessionFailure) {
+                        failed(entry, sessionFailure, failures);
+                    }
+                }
+            }
+        }
+        sample.stop(flushTimer);
+        batchSizes.record(interactions);
+        return failures;
+    }
+
+    private void write(List<Drained> entries) {
+        write(entries, -1);
+    }
+
+    /**
+     * Inserts the rows of the entries and updates their sessions in one transaction. The counter of each session is
+     * raised by its number of rows, or by {@code counted} when that is not negative.
+     */
+    private void write(List<Drained> entries, int counted) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Pending> rows = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>(entries.size());
+        for (Drained entry : entries) {
+            rows.addAll(entry.rows());
+            int count = counted >= 0 ? counted : entry.rows().size();
+            updates.add(new Object[] {entry.currentCode(), now, count, entry.session().id});
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            insert(rows);
+            jdbcTemplate.batchUpdate(UPDATE_SESSION, updates);
+        });
+    }
+
+    private void insert(List<Pending> rows) {
+        jdbcTemplate.batchUpdate(INSERT_INTERACTION, rows, batchSize, (statement, interaction) -> {
+            statement.setLong(1, interaction.sessionId());
+            statement.setInt(2, interaction.order());
+            statement.setString(3, interaction.userInput());
+            statement.setString(4, interaction.aiTextResponse());
+            statement.setString(5, interaction.aiCodeResponse());
+            statement.setTimestamp(6, interaction.createdAt());
+        });
+    }
+
+    private void written(Drained entry, int lost) {
+        HotSession session = entry.session();
+        synchronized (session) {
+            // Interactions appended during the flush stay for the next one
+            session.pending.subList(0, entry.rows().size()).clear();
+            session.dirty = !session.pending.isEmpty() || session.currentCode != entry.currentCode();
+            session.failures = 0;
+        }
+        pendingCount.addAndGet(-entry.rows().size());
+        flushed.increment(entry.rows().size() - lost);
+        dropped.increment(lost);
+    }
+
+    private void failed(Drained entry, RuntimeException e, Map<HotSession, RuntimeException> failures) {
+        HotSession session = entry.session();
+        failed.increment(entry.rows().size());
+        if (++session.failures < MAX_ATTEMPTS) {
+            logger.warn("Failed to write {} interactions of session {} (attempt {} of {}): {}",
+                entry.rows().size(), session.id, session.failures, MAX_ATTEMPTS, e.getMessage());
+            failures.put(session, e);
+            return;
+        }
+        writeOneByOne(entry, failures);
+    }
+
+    /**
+     * Last attempt for a session that failed {@value #MAX_ATTEMPTS} flushes in a row: its code and counter are
+     * written first, then each interaction in a transaction of its own, dropping the ones that still fail. A session
+     * whose own row cannot be updated is dropped from the buffer with its interactions and reloaded on its next use.
+     */
+    private void writeOneByOne(Drained entry, Map<HotSession, RuntimeException> failures) {
+        HotSession session = entry.session();
+        try {
+            // The counter includes the interactions dropped below, since their orders are used up
+            write(List.of(new Drained(session, List.of(), entry.currentCode())), entry.rows().size());
+        } catch (RuntimeException e) {
+            logger.error("Dropping session {} with its buffered interactions after {} failed flushes: {}",
+                session.id, MAX_ATTEMPTS, e.getMessage(), e);
+            int lost;
+            synchronized (session) {
+                lost = session.pending.size();
+                session.pending.clear();
+                session.dirty = false;
+                session.evicted = true;
+            }
+            sessions.values().remove(session);
+            pendingCount.addAndGet(-lost);
+            dropped.increment(lost);
+            failures.put(session, e);
+            return;
+        }
+
+        int lost = 0;
+        for (Pending row : entry.rows()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> insert(List.of(row)));
+            } catch (RuntimeException e) {
+                logger.error("Dropping interaction {} of session {} after {} failed flushes: {}",
+                    row.order(), session.id, MAX_ATTEMPTS, e.getMessage());
+                lost++;
+            }
+        }
+        written(entry, lost);
+    }
+
+    private synchronized void evictIdle() {
+        long idleSince = clock.getAsLong() - idleTimeout.toMillis();
+        sessions.values().removeIf(session -> {
+            synchronized (session) {
+                session.evicted = !session.dirty && session.lastUsed < idleSince;
+                return session.evicted;
+            }
+        });
+    }
+}
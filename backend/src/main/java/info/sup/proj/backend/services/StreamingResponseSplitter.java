@@ -0,0 +1,100 @@
+package info.sup.proj.backend.services;
+
+import java.util.function.Consumer;
+
+/**
+ * Incremental counterpart of {@code AiService.splitResponse} for streamed completions. Chunks are fed in
+ * as they arrive and forwarded as text or code deltas: text until the first {@code ```} fence, code inside
+ * that fence (without the language line), and text again after it closes. A backtick run at the end of a
+ * chunk is held back until the next chunk shows whether it is a fence.
+ * <p>
+ * The deltas are a preview only; the final split of the complete content is still done by
+ * {@code AiService.splitResponse}, which also handles responses without fences.
+ */
+public class StreamingResponseSplitter {
+    private static final String FENCE = "```";
+
+    private enum Mode { TEXT, FENCE_INFO, CODE, TRAILING_TEXT }
+
+    private final Consumer<AiService.ResponseDelta> listener;
+    private final StringBuilder pending = new StringBuilder();
+    private Mode mode = Mode.TEXT;
+
+    public StreamingResponseSplitter(Consumer<AiService.ResponseDelta> listener) {
+        this.listener = listener;
+    }
+
+    public void accept(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        pending.append(chunk);
+        drain(false);
+    }
+
+    /**
+     * Flushes whatever is still held back once the stream has ended.
+     */
+    public void finish() {
+        drain(true);
+    }
+
+    private void drain(boolean endOfStream) {
+        boolean progress = true;
+        while (progress && !pending.isEmpty()) {
+            progress = switch (mode) {
+                case TEXT -> drainUntilFence(AiService.Channel.TEXT, Mode.FENCE_INFO, endOfStream);
+                case FENCE_INFO -> skipFenceInfo(endOfStream);
+                case CODE -> drainUntilFence(AiService.Channel.CODE, Mode.TRAILING_TEXT, endOfStream);
+                case TRAILING_TEXT -> {
+                    emit(AiService.Channel.TEXT, pending.length());
+                    yield false;
+                }
+            };
+        }
+    }
+
+    private boolean drainUntilFence(AiService.Channel channel, Mode next, boolean endOfStream) {
+        int fence = pending.indexOf(FENCE);
+        if (fence != -1) {
+            emit(channel, fence);
+            pending.delete(0, FENCE.length());
+            mode = next;
+            return true;
+        }
+
+        int safe = endOfStream ? pending.length() : pending.length() - trailingBackticks();
+        emit(channel, safe);
+        return false;
+    }
+
+    private boolean skipFenceInfo(boolean endOfStream) {
+        int newline = pending.indexOf("\n");
+        if (newline == -1) {
+            if (endOfStream) {
+                pending.setLength(0);
+            }
+            return false;
+        }
+        pending.delete(0, newline + 1);
+        mode = Mode.CODE;
+        return true;
+    }
+
+    private int trailingBackticks() {
+        int count = 0;
+        for (int i = pending.length() - 1; i >= 0 && count < FENCE.length() - 1 && pending.charAt(i) == '`'; i--) {
+            count++;
+        }
+        return count;
+    }
+
+    private void emit(AiService.Channel channel, int length) {
+        if (length <= 0) {
+            return;
+        }
+        String content = pending.substring(0, length);
+        pending.delete(0, length);
+        listener.accept(new AiService.ResponseDelta(channel, content));
+    }
+}
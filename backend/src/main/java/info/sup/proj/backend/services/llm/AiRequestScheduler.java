@@ -0,0 +1,282 @@
+package info.sup.proj.backend.services.llm;
+
+import info.sup.proj.backend.config.AiSchedulerConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Single gate in front of the AI deployment for practice prompts, in-game prompts and code evaluations. A request
+ * costs its prompt tokens, as estimated by {@link TokenCounter}, plus its {@code maxTokens}; it is let through once
+ * a token bucket refilled at {@code tokensPerMinute} holds that many tokens and fewer than {@code maxConcurrent}
+ * requests are in flight. When it completes, the cost is settled against the tokens it actually used, so short
+ * answers give most of their completion budget back.
+ * <p>
+ * Waiting requests are ordered by {@link Priority} first, so in-game evaluations never wait behind practice prompts.
+ * Within a priority they are ordered by self-clocked weighted fair queuing: each user's requests get finish tags that
+ * advance by their cost, so one user sending many large prompts only delays their own requests. The callers block
+ * while they wait, which is cheap on virtual threads; a full queue or a wait beyond {@code maxWait} is rejected
+ * with a {@link RejectedExecutionException}.
+ */
+@Component
+public class AiRequestScheduler {
+
+    public enum Priority { GAME_EVALUATION, GAME_PROMPT, PRACTICE }
+
+    public record Caller(String userId, Priority priority) {
+
+        public static Caller gameEvaluation(String playerId) {
+            return new Caller(playerId, Priority.GAME_EVALUATION);
+        }
+
+        public static Caller gamePrompt(String playerId) {
+            return new Caller(playerId, Priority.GAME_PROMPT);
+        }
+
+        public static Caller practice(Object userId) {
+            return new Caller(String.valueOf(userId), Priority.PRACTICE);
+        }
+    }
+
+    private static final Comparator<Ticket> ORDER = Comparator
+        .comparing((Ticket ticket) -> ticket.caller.priority())
+        .thenComparingDouble(ticket -> ticket.finish)
+        .thenComparingLong(ticket -> ticket.sequence);
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+    private final LongSupplier clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>(ORDER);
+    private final Map<Caller, Flow> flows = new HashMap<>();
+    private final double[] virtualTime = new double[Priority.values().length];
+    private volatile double tokens;
+    private long lastRefill;
+    private long sequence;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<Priority, AtomicInteger> queued = new EnumMap<>(Priority.class);
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+
+    @Autowired
+    public AiRequestScheduler(AiSchedulerConfig config, MeterRegistry meterRegistry) {
+        this(config, meterRegistry, System::nanoTime);
+    }
+
+    AiRequestScheduler(AiSchedulerConfig config, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.capacity = config.getBurstTokens();
+        this.tokensPerNano = config.getTokensPerMinute() / (double) TimeUnit.MINUTES.toNanos(1);
+        this.maxConcurrent = config.getMaxConcurrent();
+        this.maxQueued = config.getMaxQueued();
+        this.maxWaitNanos = config.getMaxWait().toNanos();
+        this.clock = clock;
+        this.tokens = capacity;
+        this.lastRefill = clock.getAsLong();
+
+        for (Priority priority : Priority.values()) {
+            AtomicInteger depth = new AtomicInteger();
+            queued.put(priority, depth);
+            String tag = priority.name().toLowerCase();
+            Gauge.builder("ai.scheduler.queue.depth", depth, AtomicInteger::get)
+                .tag("priority", tag)
+                .register(meterRegistry);
+            waitTimers.put(priority, meterRegistry.timer("ai.scheduler.wait", "priority", tag));
+        }
+        Gauge.builder("ai.scheduler.in.flight", inFlight, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("ai.scheduler.tokens.available", this, scheduler -> scheduler.tokens).register(meterRegistry);
+        this.rejectedQueueFull = meterRegistry.counter("ai.scheduler.rejected", "reason", "queue-full");
+        this.rejectedTimeout = meterRegistry.counter("ai.scheduler.rejected", "reason", "timeout");
+    }
+
+    /**
+     * Waits for a turn to send {@code request}, runs {@code call} on the calling thread and settles the token cost
+     * against the prompt and the returned completion.
+     */
+    public String execute(Caller caller, LlmRequest request, Supplier<String> call) {
+        int promptTokens = TokenCounter.count(request);
+        Ticket ticket = acquire(caller, promptTokens + request.maxTokens());
+
+        String completion = null;
+        try {
+            completion = call.get();
+            return completion;
+        } finally {
+            // A failed call is charged for its prompt only
+            release(ticket, promptTokens + TokenCounter.count(completion));
+        }
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    int queued(Priority priority) {
+        return queued.get(priority).get();
+    }
+
+    Ticket acquire(Caller caller, long cost) {
+        long enqueuedAt = clock.getAsLong();
+        lock.lock();
+        try {
+            if (queue.size() >= maxQueued) {
+                rejectedQueueFull.increment();
+                throw new RejectedExecutionException("AI request queue is full");
+            }
+
+            Ticket ticket = enqueue(caller, cost);
+            long deadline = enqueuedAt + maxWaitNanos;
+            while (!ticket.granted) {
+                long now = clock.getAsLong();
+                long untilTokens = dispatch(now);
+                if (ticket.granted) {
+                    break;
+                }
+
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    withdraw(ticket);
+                    rejectedTimeout.increment();
+                    throw new RejectedExecutionException("Timed out waiting for AI capacity");
+                }
+                try {
+                    changed.awaitNanos(Math.min(remaining, untilTokens));
+                } catch (InterruptedException e) {
+                    if (ticket.granted) {
+                        // Granted while this thread was waking up: give back the slot and the whole cost
+                        release(ticket, 0);
+                    } else {
+                        withdraw(ticket);
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting for AI capacity", e);
+                }
+            }
+
+            waitTimers.get(caller.priority()).record(clock.getAsLong() - enqueuedAt, TimeUnit.NANOSECONDS);
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(Ticket ticket, long usedTokens) {
+        lock.lock();
+        try {
+            inFlight.decrementAndGet();
+            long now = clock.getAsLong();
+            refill(now);
+            // The refund may push the bucket past its capacity or, for an answer longer than estimated, below zero
+            tokens = Math.min(capacity, tokens + ticket.cost - usedTokens);
+            dispatch(now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Ticket enqueue(Caller caller, long cost) {
+        int level = caller.priority().ordinal();
+        Flow flow = flows.computeIfAbsent(caller, key -> new Flow());
+        double start = Math.max(virtualTime[level], flow.lastFinish);
+        Ticket ticket = new Ticket(caller, cost, start + cost, sequence++);
+        flow.lastFinish = ticket.finish;
+        flow.queued++;
+        queue.add(ticket);
+        queued.get(caller.priority()).incrementAndGet();
+        return ticket;
+    }
+
+    private void withdraw(Ticket ticket) {
+        queue.remove(ticket);
+        dequeued(ticket);
+        // The head may have changed, so the others re-check
+        changed.signalAll();
+    }
+
+    private void dequeued(Ticket ticket) {
+        queued.get(ticket.caller.priority()).decrementAndGet();
+        Flow flow = flows.get(ticket.caller);
+        // Once a user has nothing queued, their last finish tag is behind the virtual time and can be forgotten
+        if (flow != null && --flow.queued == 0) {
+            flows.remove(ticket.caller);
+        }
+    }
+
+    /**
+     * Grants queued tickets in order while capacity allows. Returns how long the head has to wait for tokens, or
+     * {@code Long.MAX_VALUE} when nothing is waiting on tokens.
+     */
+    private long dispatch(long now) {
+        refill(now);
+        boolean granted = false;
+        long untilTokens = Long.MAX_VALUE;
+        while (inFlight.get() < maxConcurrent && !queue.isEmpty()) {
+            Ticket head = queue.peek();
+            // A request larger than the bucket goes once the bucket is full instead of never
+            double needed = Math.min(head.cost, capacity);
+            if (tokens < needed) {
+                untilTokens = Math.max(1, (long) Math.ceil((needed - tokens) / tokensPerNano));
+                break;
+            }
+
+            queue.poll();
+            dequeued(head);
+            tokens -= head.cost;
+            virtualTime[head.caller.priority().ordinal()] = head.finish;
+            inFlight.incrementAndGet();
+            head.granted = true;
+            granted = true;
+        }
+        if (granted) {
+            changed.signalAll();
+        }
+        return untilTokens;
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+
+    static final class Ticket {
+        private final Caller caller;
+        private final long cost;
+        private final double finish;
+        private final long sequence;
+        private boolean granted;
+
+        private Ticket(Caller caller, long cost, double finish, long sequence) {
+            this.caller = caller;
+            this.cost = cost;
+            this.finish = finish;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Flow {
+        private double lastFinish;
+        private int queued;
+    }
+}
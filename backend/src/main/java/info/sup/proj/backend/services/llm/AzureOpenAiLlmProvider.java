@@ -0,0 +1,74 @@
+package info.sup.proj.backend.services.llm;
+
+import com.azure.ai.openai.OpenAIClient;
+import com.azure.ai.openai.OpenAIClientBuilder;
+import com.azure.ai.openai.models.*;
+import com.azure.core.credential.AzureKeyCredential;
+import info.sup.proj.backend.config.AzureOpenAiConfig;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+@Component
+@ConditionalOnProperty(name = "app.ai.provider", havingValue = "azure", matchIfMissing = true)
+public class AzureOpenAiLlmProvider implements LlmProvider {
+    private final OpenAIClient client;
+    private final String deploymentName;
+
+    public AzureOpenAiLlmProvider(AzureOpenAiConfig config) {
+        this.client = createOpenAIClient(config);
+        this.deploymentName = config.getDeploymentName();
+    }
+
+    protected OpenAIClient createOpenAIClient(AzureOpenAiConfig config) {
+        return new OpenAIClientBuilder()
+            .endpoint(config.getEndpoint())
+            .credential(new AzureKeyCredential(config.getApiKey()))
+            .buildClient();
+    }
+
+    @Override
+    public String complete(LlmRequest request) {
+        ChatCompletions completions = client.getChatCompletions(deploymentName, toOptions(request));
+
+        if (completions != null && completions.getChoices() != null && !completions.getChoices().isEmpty()) {
+            return completions.getChoices().getFirst().getMessage().getContent();
+        }
+        return null;
+    }
+
+    @Override
+    public void stream(LlmRequest request, Consumer<String> onChunk) {
+        for (ChatCompletions chunk : client.getChatCompletionsStream(deploymentName, toOptions(request))) {
+            if (chunk.getChoices() == null) {
+                continue;
+            }
+            for (ChatChoice choice : chunk.getChoices()) {
+                ChatResponseMessage delta = choice.getDelta();
+                if (delta != null && delta.getContent() != null) {
+                    onChunk.accept(delta.getContent());
+                }
+            }
+        }
+    }
+
+    private ChatCompletionsOptions toOptions(LlmRequest request) {
+        List<ChatRequestMessage> messages = request.messages().stream()
+            .map(AzureOpenAiLlmProvider::toChatMessage)
+            .toList();
+
+        return new ChatCompletionsOptions(messages)
+            .setTemperature(request.temperature())
+            .setMaxTokens(request.maxTokens());
+    }
+
+    private static ChatRequestMessage toChatMessage(LlmRequest.Message message) {
+        return switch (message.role()) {
+            case SYSTEM -> new ChatRequestSystemMessage(message.content());
+            case ASSISTANT -> new ChatRequestAssistantMessage(message.content());
+            case USER -> new ChatRequestUserMessage(message.content());
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package info.sup.proj.backend.services.llm;
+
+import java.util.function.Consumer;
+
+/**
+ * Backend that answers the chat completions issued by {@code AiService}. The active implementation is
+ * chosen with {@code app.ai.provider}: {@code azure} (default) or {@code simulated}.
+ */
+public interface LlmProvider {
+
+    /**
+     * Returns the content of the first completion choice, or {@code null} when the model returned none.
+     */
+    String complete(LlmRequest request);
+
+    /**
+     * Passes the completion to {@code onChunk} piece by piece as it is generated. Providers without
+     * streaming support deliver the whole completion as a single chunk.
+     */
+    default void stream(LlmRequest request, Consumer<String> onChunk) {
+        String content = complete(request);
+        if (content != null && !content.isEmpty()) {
+            onChunk.accept(content);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package info.sup.proj.backend.services.llm;
+
+import info.sup.proj.backend.model.Puzzle;
+
+import java.util.List;
+
+/**
+ * Provider-neutral chat completion request. {@code puzzleType} and {@code purpose} are not sent to the model;
+ * they let providers such as {@link SimulatedLlmProvider} shape their answer without parsing the prompt.
+ */
+public record LlmRequest(
+    List<Message> messages,
+    double temperature,
+    int maxTokens,
+    Puzzle.Type puzzleType,
+    Purpose purpose
+) {
+    public enum Role { SYSTEM, ASSISTANT, USER }
+
+    public enum Purpose { CHAT, EVALUATION, EVALUATION_BATCH }
+
+    public record Message(Role role, String content) {
+    }
+
+    public LlmRequest {
+        messages = List.copyOf(messages);
+    }
+}
@@ -0,0 +1,187 @@
+package info.sup.proj.backend.services.llm;
+
+import info.sup.proj.backend.config.SimulatedLlmConfig;
+import info.sup.proj.backend.model.Puzzle;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.StringJoiner;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.random.RandomGenerator;
+
+/**
+ * In-process stand-in for the AI endpoint, used to load-test the game loop without calling Azure. Each call
+ * waits for a latency drawn from the configured distribution, fails with the configured error rate and
+ * otherwise answers with a canned response for the puzzle type. Evaluation scores are derived from the
+ * submitted content, so the same code always gets the same score.
+ */
+@Component
+@ConditionalOnProperty(name = "app.ai.provider", havingValue = "simulated")
+public class SimulatedLlmProvider implements LlmProvider {
+    // Standard normal quantile of the 99th percentile
+    private static final double Z_99 = 2.326;
+    private static final Pattern SOLUTION_TAG = Pattern.compile("<solution-([0-9a-f]+)>");
+    private static final Pattern SOLUTION_TAGS = Pattern.compile("(</?solution)-[0-9a-f]+>");
+
+    private static final Map<Puzzle.Type, String> DEFAULT_RESPONSES = new EnumMap<>(Map.of(
+        Puzzle.Type.BY_PASS, """
+            Well done, that prompt follows the rules!
+            ```java
+            public class Solution {
+                public static void main(String[] args) {
+                    System.out.println("Hello, world!");
+                }
+            }
+            ```""",
+        Puzzle.Type.FAULTY, """
+            Here is a working implementation.
+            ```java
+            public int sum(int[] values) {
+                int total = 0;
+                for (int i = 0; i <= values.length; i++) {
+                    total += values[i];
+                }
+            }
+            ```""",
+        Puzzle.Type.MULTI_STEP, """
+            This handles that step.
+            ```java
+            // Reads every line of the input file
+            List<String> lines = Files.readAllLines(Path.of("input.txt"));
+            ```"""
+    ));
+
+    private static final String DEFAULT_RESPONSE = "That's too much to handle in one go. Break this down into smaller steps.";
+
+    private final SimulatedLlmConfig config;
+    private final Random seededRandom;
+    private final double medianMillis;
+    private final double sigma;
+
+    public SimulatedLlmProvider(SimulatedLlmConfig config) {
+        this.config = config;
+        this.seededRandom = config.getSeed() != null ? new Random(config.getSeed()) : null;
+        this.medianMillis = config.getLatencyMedian().toNanos() / 1_000_000.0;
+
+        double p99Millis = config.getLatencyP99().toNanos() / 1_000_000.0;
+        this.sigma = medianMillis > 0 && p99Millis > medianMillis
+            ? Math.log(p99Millis / medianMillis) / Z_99
+            : 0.0;
+    }
+
+    @Override
+    public String complete(LlmRequest request) {
+        simulateLatency(sampleLatencyMillis());
+        failRandomly();
+        return responseFor(request);
+    }
+
+    @Override
+    public void stream(LlmRequest request, Consumer<String> onChunk) {
+        long latencyMillis = sampleLatencyMillis();
+        String content = responseFor(request);
+        int chunkChars = Math.max(1, config.getStreamChunkChars());
+        int chunks = Math.max(1, (content.length() + chunkChars - 1) / chunkChars);
+
+        // Time to first token takes a third of the latency, the rest is spread evenly over the chunks
+        simulateLatency(latencyMillis / 3);
+        failRandomly();
+        long perChunkMillis = (latencyMillis - latencyMillis / 3) / chunks;
+        for (int start = 0; start < content.length(); start += chunkChars) {
+            onChunk.accept(content.substring(start, Math.min(content.length(), start + chunkChars)));
+            simulateLatency(perChunkMillis);
+        }
+    }
+
+    long sampleLatencyMillis() {
+        if (medianMillis <= 0) {
+            return 0;
+        }
+        return Math.round(medianMillis * Math.exp(sigma * random().nextGaussian()));
+    }
+
+    private String responseFor(LlmRequest request) {
+        if (request.purpose() == LlmRequest.Purpose.EVALUATION) {
+            return evaluationFor(request);
+        }
+        if (request.purpose() == LlmRequest.Purpose.EVALUATION_BATCH) {
+            return batchEvaluationFor(request);
+        }
+
+        String configured = request.puzzleType() != null ? config.getResponses().get(request.puzzleType()) : null;
+        if (configured != null) {
+            return configured;
+        }
+        return request.puzzleType() != null
+            ? DEFAULT_RESPONSES.getOrDefault(request.puzzleType(), DEFAULT_RESPONSE)
+            : DEFAULT_RESPONSE;
+    }
+
+    private String evaluationFor(LlmRequest request) {
+        int hash = 0;
+        for (LlmRequest.Message message : request.messages()) {
+            if (message.role() == LlmRequest.Role.USER) {
+                hash = 31 * hash + hashOf(message.content());
+            }
+        }
+        return evaluationFor(hash);
+    }
+
+    /**
+     * One score object per submission, each the score that submission would get when evaluated on its own, echoing
+     * the id of the submission's tags.
+     */
+    private String batchEvaluationFor(LlmRequest request) {
+        StringJoiner scores = new StringJoiner(", ", "[", "]");
+        for (LlmRequest.Message message : request.messages()) {
+            if (message.role() == LlmRequest.Role.USER) {
+                String score = evaluationFor(hashOf(message.content()));
+                Matcher tag = SOLUTION_TAG.matcher(message.content());
+                scores.add(tag.find() ? "{\"id\": \"" + tag.group(1) + "\", " + score.substring(1) : score);
+            }
+        }
+        return scores.toString();
+    }
+
+    /**
+     * Hash of a submission without the random id of its tags, so the same code always gets the same score.
+     */
+    private static int hashOf(String content) {
+        return SOLUTION_TAGS.matcher(content).replaceAll("$1>").hashCode();
+    }
+
+    private static String evaluationFor(int hash) {
+        int mixed = hash ^ (hash >>> 16);
+        int correctness = 60 + Math.floorMod(mixed, 41);
+        int quality = 55 + Math.floorMod(mixed >>> 8, 46);
+        return "{\"correctness\": " + correctness + ", \"quality\": " + quality + "}";
+    }
+
+    private void failRandomly() {
+        if (config.getErrorRate() > 0 && random().nextDouble() < config.getErrorRate()) {
+            throw new IllegalStateException("Simulated LLM failure");
+        }
+    }
+
+    private RandomGenerator random() {
+        return seededRandom != null ? seededRandom : ThreadLocalRandom.current();
+    }
+
+    private static void simulateLatency(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for simulated LLM response", e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package info.sup.proj.backend.services.llm;
+
+/**
+ * Estimates how many tokens a text costs without loading the model's tokenizer. Words and numbers are counted at
+ * about four characters per token, every punctuation character as a token of its own and every line break as one
+ * token; other whitespace is free. That tracks BPE tokenizers closely on source code, where punctuation is dense,
+ * and stays at the usual four characters per token on prose.
+ */
+public final class TokenCounter {
+
+    private TokenCounter() {
+    }
+
+    public static int count(String text) {
+        if (text == null) {
+            return 0;
+        }
+
+        int tokens = 0;
+        int wordLength = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '_') {
+                wordLength++;
+                continue;
+            }
+
+            tokens += (wordLength + 3) / 4;
+            wordLength = 0;
+            if (c == '\n' || !Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        return tokens + (wordLength + 3) / 4;
+    }
+
+    /**
+     * Tokens of all messages of {@code request}, without the completion.
+     */
+    public static int count(LlmRequest request) {
+        int tokens = 0;
+        for (LlmRequest.Message message : request.messages()) {
+            tokens += count(message.content());
+        }
+        return tokens;
+    }
+}
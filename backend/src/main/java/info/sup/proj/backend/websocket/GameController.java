@@ -2,13 +2,14 @@ package info.sup.proj.backend.websocket;
 
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 import info.sup.proj.backend.services.GameService;
 import info.sup.proj.backend.services.AiService;
+import info.sup.proj.backend.services.CodeSyncCoalescer;
 import info.sup.proj.backend.model.Game;
 import info.sup.proj.backend.services.AiService.ChatResponse;
+import info.sup.proj.backend.services.llm.AiRequestScheduler;
 import java.util.Map;
 import java.util.HashMap;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -20,21 +21,22 @@ public class GameController {
 
     private final GameService gameService;
     private final AiService aiService;
+    private final CodeSyncCoalescer codeSyncCoalescer;
     private final SimpMessagingTemplate messagingTemplate;
     private static final Logger logger = LoggerFactory.getLogger(GameController.class);
 
-    private static final String GAMESTATE = "GAME_STATE";
     private static final String PAYLOAD = "payload";
-    private static final String TOPICGAME = "/topic/game/";
     private static final String QUEUEGAME = "/queue/game";
     private static final String ERROR = "ERROR";
     private static final String MESSAGE = "message";
     private static final String GAMEID = "gameId";
     private static final String PLAYERID = "playerId";
 
-    public GameController(GameService gameService, AiService aiService, SimpMessagingTemplate messagingTemplate) {
+    public GameController(GameService gameService, AiService aiService, CodeSyncCoalescer codeSyncCoalescer,
+                          SimpMessagingTemplate messagingTemplate) {
         this.gameService = gameService;
         this.aiService = aiService;
+        this.codeSyncCoalescer = codeSyncCoalescer;
         this.messagingTemplate = messagingTemplate;
     }
 
@@ -53,21 +55,11 @@ public class GameController {
                     game = gameService.initializeGameWithPuzzle(gameId);
                 }
 
-                Map<String, Object> gameState = new HashMap<>();
-                gameState.put("type", GAMESTATE);
-                gameState.put(PAYLOAD, game);
-
                 logger.info("Sending game state to player {} with puzzle: {}", playerId, game.getCurrentPuzzle() != null ? game.getCurrentPuzzle().getName() : "null");
 
-                messagingTemplate.convertAndSendToUser(
-                    playerId,
-                    QUEUEGAME,
-                    gameState
-                );
-                
-                messagingTemplate.convertAndSend(TOPICGAME + gameId, gameState);
+                gameService.sendGameState(game, playerId);
                 
-                logger.info("Game state sent to player {} and broadcast to game {}", playerId, gameId);
+                logger.info("Game state sent to player {} in game {}", playerId, gameId);
             } else {
                 logger.warn("Player {} attempted to join game {} but is not a participant", playerId, gameId);
                 
@@ -115,11 +107,34 @@ public class GameController {
                 }
                 
                 try {
-                    ChatResponse aiResponse = aiService.generateResponse(
-                        prompt,
-                        currentCode,
-                        game.getCurrentPuzzle().getType()
-                    );
+                    ChatResponse aiResponse;
+                    if (Boolean.TRUE.equals(message.get("stream"))) {
+                        aiResponse = aiService.generateResponseStream(
+                            AiRequestScheduler.Caller.gamePrompt(playerId),
+                            prompt,
+                            currentCode,
+                            game.getCurrentPuzzle().getType(),
+                            delta -> {
+                                Map<String, Object> deltaFrame = new HashMap<>();
+                                deltaFrame.put("type", "AI_RESPONSE_DELTA");
+                                deltaFrame.put("channel", delta.channel());
+                                deltaFrame.put("delta", delta.content());
+
+                                messagingTemplate.convertAndSendToUser(
+                                    playerId,
+                                    QUEUEGAME,
+                                    deltaFrame
+                                );
+                            }
+                        );
+                    } else {
+                        aiResponse = aiService.generateResponse(
+                            AiRequestScheduler.Caller.gamePrompt(playerId),
+                            prompt,
+                            currentCode,
+                            game.getCurrentPuzzle().getType()
+                        );
+                    }
 
                     Map<String, Object> response = new HashMap<>();
                     response.put("type", "AI_RESPONSE");
@@ -131,6 +146,7 @@ public class GameController {
                         QUEUEGAME,
                         response
                     );
+                    gameService.recordPrompt(gameId, playerId, prompt, aiResponse);
                 } catch (Exception e) {
                     Map<String, Object> errorResponse = new HashMap<>();
                     errorResponse.put("type", "AI_RESPONSE");
@@ -184,21 +200,10 @@ public class GameController {
         
         Game game = gameService.getGame(gameId);
         if (game != null && game.hasPlayer(playerId)) {
-            Map<String, Object> result = gameService.submitSolution(playerId, code);
-            
-            result.put(GAMEID, gameId);
-            
-            messagingTemplate.convertAndSendToUser(
-                playerId,
-                QUEUEGAME,
-                result
-            );
-            
-            Map<String, Object> gameState = new HashMap<>();
-            gameState.put("type", GAMESTATE);
-            gameState.put(PAYLOAD, game);
-            
-            messagingTemplate.convertAndSend(TOPICGAME + gameId, gameState);
+            // The submission carries the latest code, so a pending code sync would only overwrite it later
+            codeSyncCoalescer.discard(gameId, playerId);
+            // Scoring runs asynchronously; GameService acknowledges and pushes the score to the player
+            gameService.submitSolution(playerId, code);
         } else {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("type", ERROR);
@@ -214,18 +219,17 @@ public class GameController {
         }
     }
 
+    // The resulting state reaches the players as a delta on /topic/game/{gameId}
     @MessageMapping("/game/{gameId}/complete")
-    @SendTo("/topic/game/{gameId}")
-    public Game handlePuzzleCompletion(@Payload Map<String, Object> message, @DestinationVariable String gameId) {
+    public void handlePuzzleCompletion(@Payload Map<String, Object> message, @DestinationVariable String gameId) {
         String playerId = (String) message.get(PLAYERID);
-        return gameService.completePuzzle(playerId);
+        gameService.completePuzzle(playerId);
     }
 
     @MessageMapping("/game/{gameId}/forfeit")
-    @SendTo("/topic/game/{gameId}")
-    public Game handleForfeit(@Payload Map<String, Object> message, @DestinationVariable String gameId) {
+    public void handleForfeit(@Payload Map<String, Object> message, @DestinationVariable String gameId) {
         String playerId = (String) message.get(PLAYERID);
-        return gameService.forfeitGame(playerId);
+        gameService.forfeitGame(playerId);
     }
 
     @MessageMapping("/game/{gameId}/code")
@@ -237,21 +241,25 @@ public class GameController {
             throw new IllegalArgumentException("Missing required parameters: playerId or code");
         }
         
+        codeSyncCoalescer.submit(gameId, playerId, code);
+    }
+
+    @MessageMapping("/game/{gameId}/resync")
+    public void handleResync(@Payload Map<String, Object> message, @DestinationVariable String gameId) {
+        String playerId = (String) message.get(PLAYERID);
+        
+        if (playerId == null) {
+            throw new IllegalArgumentException("Missing required parameter: playerId");
+        }
+        
         Game game = gameService.getGame(gameId);
         if (game != null && game.hasPlayer(playerId)) {
-            game.updateCurrentCode(playerId, code);
-            
-            Map<String, Object> gameState = new HashMap<>();
-            gameState.put("type", GAMESTATE);
-            gameState.put(PAYLOAD, game);
-            
-            messagingTemplate.convertAndSend(TOPICGAME + gameId, gameState);
+            gameService.sendGameState(game, playerId);
         }
     }
 
     @MessageMapping("/game/{gameId}/next-round")
-    @SendTo("/topic/game/{gameId}")
-    public Game handleNextRound(@Payload Map<String, Object> message, @DestinationVariable String gameId) {
+    public void handleNextRound(@Payload Map<String, Object> message, @DestinationVariable String gameId) {
         String playerId = (String) message.get(PLAYERID);
         
         if (playerId == null) {
@@ -270,7 +278,7 @@ public class GameController {
         }
         
         try {
-            return gameService.startNextRound(gameId, playerId);
+            gameService.startNextRound(gameId, playerId);
         } catch (Exception e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("type", ERROR);
@@ -283,7 +291,6 @@ public class GameController {
                 QUEUEGAME,
                 errorResponse
             );
-            return null;
         }
     }
 } 
\ No newline at end of file
@@ -2,6 +2,7 @@ package info.sup.proj.backend.websocket;
 
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.stereotype.Controller;
 import info.sup.proj.backend.services.MatchmakingService;
 import java.util.Map;
@@ -15,6 +16,14 @@ public class MatchmakingController {
         this.matchmakingService = matchmakingService;
     }
 
+    /**
+     * Subscribing to {@code /app/lobby} returns the current lobby once; changes follow on {@code /topic/lobby}.
+     */
+    @SubscribeMapping("/lobby")
+    public Map<String, Object> lobbySnapshot() {
+        return matchmakingService.getLobbySnapshot();
+    }
+
     @MessageMapping("/game/join-lobby")
     public void joinLobby(@Payload Map<String, Object> message) {
         Long userId = ((Number) message.get(USERID)).longValue();
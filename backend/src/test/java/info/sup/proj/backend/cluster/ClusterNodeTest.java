@@ -0,0 +1,344 @@
+package info.sup.proj.backend.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.sup.proj.backend.events.GameCreatedEvent;
+import info.sup.proj.backend.events.LateEvaluationEvent;
+import info.sup.proj.backend.model.Game;
+import info.sup.proj.backend.model.Player;
+import info.sup.proj.backend.model.Puzzle;
+import info.sup.proj.backend.repositories.PuzzleRepository;
+import info.sup.proj.backend.repositories.UserRepository;
+import info.sup.proj.backend.services.AiService;
+import info.sup.proj.backend.services.EvaluationBatcher;
+import info.sup.proj.backend.services.EvaluationCache;
+import info.sup.proj.backend.services.GameMailboxes;
+import info.sup.proj.backend.services.GameEventLog;
+import info.sup.proj.backend.services.GameJournal;
+import info.sup.proj.backend.services.GameService;
+import info.sup.proj.backend.services.GameStateBroadcaster;
+import info.sup.proj.backend.services.PuzzleCatalog;
+import info.sup.proj.backend.services.TimingWheel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs several cluster nodes in one JVM, each with its own {@link GameService}, joined through an
+ * {@link InProcessClusterTransport}.
+ */
+public class ClusterNodeTest {
+
+    private final InProcessClusterTransport transport = new InProcessClusterTransport();
+    private final List<TestNode> nodes = new ArrayList<>();
+    private final ExecutorService evaluationExecutor = Executors.newSingleThreadExecutor();
+    private final PuzzleRepository puzzleRepository = mock(PuzzleRepository.class);
+    private final AiService aiService = mock(AiService.class);
+
+    private record TestNode(ClusterNode cluster, GameService games, HashRing ring,
+                            SimpMessagingTemplate messagingTemplate, MessageChannel clientInbound,
+                            MessageChannel broker) {}
+
+    @BeforeEach
+    void setUp() {
+        Puzzle first = new Puzzle("Sum", Puzzle.Difficulty.EASY, Puzzle.Type.MULTI_STEP, "Add the numbers");
+        first.setId(1);
+        Puzzle second = new Puzzle("Max", Puzzle.Difficulty.EASY, Puzzle.Type.MULTI_STEP, "Find the maximum");
+        second.setId(2);
+        when(puzzleRepository.findAll()).thenReturn(List.of(first, second));
+    }
+
+    @AfterEach
+    void tearDown() {
+        evaluationExecutor.shutdownNow();
+    }
+
+    @Test
+    void testCreateGame_handsGameToItsOwner() {
+        // Arrange
+        TestNode a = startNode("a");
+        TestNode b = startNode("b");
+        TestNode c = startNode("c");
+
+        // Act
+        List<Game> created = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            created.add(a.games().createGame(player(2 * i), player(2 * i + 1)));
+        }
+
+        // Assert
+        for (Game game : created) {
+            assertHostedOnlyByOwner(game.getId());
+        }
+        assertFalse(b.games().listAllGames().isEmpty());
+        assertFalse(c.games().listAllGames().isEmpty());
+    }
+
+    @Test
+    void testJoin_movesOnlyGamesOwnedByTheNewNode() {
+        // Arrange
+        TestNode a = startNode("a");
+        startNode("b");
+        List<Game> created = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            created.add(a.games().createGame(player(2 * i), player(2 * i + 1)));
+        }
+        Map<String, String> ownersBefore = new HashMap<>();
+        created.forEach(game -> ownersBefore.put(game.getId(), hostOf(game.getId())));
+
+        // Act
+        TestNode c = startNode("c");
+
+        // Assert
+        for (Game game : created) {
+            assertHostedOnlyByOwner(game.getId());
+            String host = hostOf(game.getId());
+            if (!host.equals(ownersBefore.get(game.getId()))) {
+                assertEquals("c", host);
+            }
+        }
+        assertFalse(c.games().listAllGames().isEmpty());
+    }
+
+    @Test
+    void testStop_handsGamesToRemainingNodes() {
+        // Arrange
+        TestNode a = startNode("a");
+        TestNode b = startNode("b");
+        startNode("c");
+        List<Game> created = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            created.add(a.games().createGame(player(2 * i), player(2 * i + 1)));
+        }
+
+        // Act
+        b.cluster().stop();
+        nodes.remove(b);
+
+        // Assert
+        assertTrue(b.games().listAllGames().isEmpty());
+        created.forEach(game -> assertHostedOnlyByOwner(game.getId()));
+    }
+
+    @Test
+    void testAdoptedGame_continuesStateSequence() {
+        // Arrange
+        TestNode a = startNode("a");
+        Game game = a.games().createGame(player(1), player(2));
+        TestNode b = startNode("b");
+        TestNode owner = a.games().getGame(game.getId()) != null ? a : b;
+
+        // Act
+        owner.games().updatePlayerCode(game.getId(), "1", "int x;");
+
+        // Assert
+        assertSame(game, owner.games().findGameByPlayerId("1"));
+        ArgumentCaptor<Object> frames = ArgumentCaptor.forClass(Object.class);
+        verify(owner.messagingTemplate(), atLeastOnce()).convertAndSend(eq("/topic/game/" + game.getId()), frames.capture());
+        Map<?, ?> last = assertInstanceOf(Map.class, frames.getValue());
+        assertEquals("GAME_STATE_DELTA", last.get("type"));
+        assertEquals(2L, last.get("seq"));
+    }
+
+    @Test
+    void testSubmitSolution_scoreFinishingAfterHandoverIsAppliedByTheNewOwner() throws Exception {
+        // Arrange - a game hosted on a, with a submission still being scored when a leaves
+        TestNode a = startNode("a");
+        TestNode b = startNode("b");
+        Game game = null;
+        for (int i = 0; game == null; i++) {
+            Game created = a.games().createGame(player(2 * i), player(2 * i + 1));
+            game = a.games().getGame(created.getId());
+        }
+        String playerId = game.getPlayers().getFirst().getId();
+        CountDownLatch scoring = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(aiService.getCodeEvaluation(any(), anyString(), eq("int x;"), any())).thenAnswer(invocation -> {
+            scoring.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return "{\"correctness\": 90, \"quality\": 80}";
+        });
+        CompletableFuture<Map<String, Object>> submission = a.games().submitSolution(playerId, "int x;");
+        assertTrue(scoring.await(5, TimeUnit.SECONDS));
+
+        // Act
+        a.cluster().stop();
+        nodes.remove(a);
+        release.countDown();
+        submission.get(5, TimeUnit.SECONDS);
+
+        // Assert - only the new owner scored the game and told the player
+        assertSame(game, b.games().getGame(game.getId()));
+        verify(b.messagingTemplate(), timeout(5_000)).convertAndSendToUser(eq(playerId), eq("/queue/game"),
+            argThat(message -> message instanceof Map<?, ?> map && "SUBMISSION_SCORED".equals(map.get("type"))));
+        verify(a.messagingTemplate(), never()).convertAndSendToUser(eq(playerId), eq("/queue/game"),
+            argThat(message -> message instanceof Map<?, ?> map && "SUBMISSION_SCORED".equals(map.get("type"))));
+        assertTrue(game.getPlayerStatus().get(playerId).getScore() > 0);
+    }
+
+    @Test
+    void testGameRouter_forwardsGameMessagesToOwner() {
+        // Arrange
+        TestNode a = startNode("a");
+        TestNode b = startNode("b");
+        String gameId = gameIdOwnedBy("b");
+        GameRouter router = new GameRouter("a", a.ring(), transport, new ObjectMapper(), new SimpleMeterRegistry());
+        Message<byte[]> submit = clientMessage("/app/game/" + gameId + "/submit", "{\"code\":\"x\"}");
+
+        // Act
+        Message<?> local = router.preSend(submit, a.clientInbound());
+
+        // Assert
+        assertNull(local);
+        ArgumentCaptor<Message<?>> forwarded = ArgumentCaptor.forClass(Message.class);
+        verify(b.clientInbound()).send(forwarded.capture());
+        assertEquals("a", forwarded.getValue().getHeaders().get(GameRouter.FORWARDED_FROM));
+        assertNotNull(router.preSend(forwarded.getValue(), b.clientInbound()));
+    }
+
+    @Test
+    void testGameRouter_readsGameIdOfJoinFromBody() {
+        // Arrange
+        TestNode a = startNode("a");
+        TestNode b = startNode("b");
+        GameRouter router = new GameRouter("a", a.ring(), transport, new ObjectMapper(), new SimpleMeterRegistry());
+
+        // Act
+        Message<?> ownedHere = router.preSend(
+            clientMessage("/app/game/join", "{\"gameId\":\"" + gameIdOwnedBy("a") + "\",\"playerId\":\"1\"}"),
+            a.clientInbound());
+        Message<?> ownedThere = router.preSend(
+            clientMessage("/app/game/join", "{\"gameId\":\"" + gameIdOwnedBy("b") + "\",\"playerId\":\"1\"}"),
+            a.clientInbound());
+
+        // Assert
+        assertNotNull(ownedHere);
+        assertNull(ownedThere);
+        verify(b.clientInbound()).send(any());
+    }
+
+    @Test
+    void testBrokerBridge_deliversGameTopicsOnEveryOtherNode() {
+        // Arrange
+        TestNode a = startNode("a");
+        TestNode b = startNode("b");
+        TestNode c = startNode("c");
+        BrokerBridge bridge = new BrokerBridge("a", transport, new SimpleMeterRegistry());
+        Message<byte[]> state = clientMessage("/topic/game/game-1", "{}");
+
+        // Act
+        bridge.preSend(state, a.broker());
+        bridge.preSend(clientMessage("/topic/lobby", "{}"), a.broker());
+
+        // Assert
+        ArgumentCaptor<Message<?>> bridged = ArgumentCaptor.forClass(Message.class);
+        verify(b.broker()).send(bridged.capture());
+        verify(c.broker()).send(any());
+        verify(a.broker(), never()).send(any());
+        assertSame(bridged.getValue(), bridge.preSend(bridged.getValue(), b.broker()));
+        verify(c.broker(), times(1)).send(any());
+    }
+
+    private TestNode startNode(String nodeId) {
+        TimingWheel timers = mock(TimingWheel.class);
+        doReturn(mock(TimingWheel.Timeout.class)).when(timers).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+
+        List<ClusterNode> self = new ArrayList<>();
+        ApplicationEventPublisher eventPublisher = event -> {
+            if (event instanceof GameCreatedEvent created && !self.isEmpty()) {
+                self.getFirst().onGameCreated(created);
+            } else if (event instanceof LateEvaluationEvent late && !self.isEmpty()) {
+                self.getFirst().onLateEvaluation(late);
+            }
+        };
+
+        GameService gameService = new GameService(
+            new PuzzleCatalog(puzzleRepository),
+            eventPublisher,
+            messagingTemplate,
+            new GameStateBroadcaster(messagingTemplate, new SimpleMeterRegistry()),
+            timers,
+            new EvaluationBatcher(aiService, evaluationExecutor, mock(ScheduledExecutorService.class),
+                Duration.ZERO, 1, new SimpleMeterRegistry()),
+            new EvaluationCache(100, Duration.ofMinutes(30), new SimpleMeterRegistry()),
+            new GameMailboxes(Runnable::run),
+            mock(GameEventLog.class),
+            mock(GameJournal.class),
+            mock(UserRepository.class)
+        );
+
+        HashRing ring = new HashRing(64);
+        MessageChannel clientInbound = mock(MessageChannel.class);
+        MessageChannel broker = mock(MessageChannel.class);
+        ClusterNode cluster = new ClusterNode(nodeId, ring, transport, gameService, clientInbound, broker,
+            new SimpleMeterRegistry());
+        self.add(cluster);
+
+        TestNode node = new TestNode(cluster, gameService, ring, messagingTemplate, clientInbound, broker);
+        nodes.add(node);
+        cluster.start();
+        return node;
+    }
+
+    private void assertHostedOnlyByOwner(String gameId) {
+        String owner = nodes.getFirst().ring().ownerOf(gameId);
+        for (TestNode node : nodes) {
+            assertEquals(node.cluster().getNodeId().equals(owner), node.games().getGame(gameId) != null,
+                "Game " + gameId + " on node " + node.cluster().getNodeId() + ", owner " + owner);
+        }
+    }
+
+    private String hostOf(String gameId) {
+        return nodes.stream()
+            .filter(node -> node.games().getGame(gameId) != null)
+            .map(node -> node.cluster().getNodeId())
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private String gameIdOwnedBy(String nodeId) {
+        HashRing ring = nodes.getFirst().ring();
+        for (int i = 0; ; i++) {
+            if (nodeId.equals(ring.ownerOf("game-" + i))) {
+                return "game-" + i;
+            }
+        }
+    }
+
+    private static Player player(int id) {
+        return new Player(String.valueOf(id), "Player " + id, null);
+    }
+
+    private static Message<byte[]> clientMessage(String destination, String body) {
+        return MessageBuilder.withPayload(body.getBytes(StandardCharsets.UTF_8))
+            .setHeader(SimpMessageHeaderAccessor.MESSAGE_TYPE_HEADER, SimpMessageType.MESSAGE)
+            .setHeader(SimpMessageHeaderAccessor.DESTINATION_HEADER, destination)
+            .build();
+    }
+}
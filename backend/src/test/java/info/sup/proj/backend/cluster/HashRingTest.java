@@ -0,0 +1,83 @@
+package info.sup.proj.backend.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashRingTest {
+
+    private static final List<String> KEYS = IntStream.range(0, 10_000).mapToObj(i -> "game-" + i).toList();
+
+    @Test
+    void testOwnerOf_emptyRingHasNoOwner() {
+        assertNull(new HashRing(16).ownerOf("game-1"));
+    }
+
+    @Test
+    void testOwnerOf_doesNotDependOnMembershipOrder() {
+        // Arrange
+        HashRing ring = new HashRing(64);
+        HashRing reversed = new HashRing(64);
+        ring.setNodes(List.of("a", "b", "c"));
+        reversed.setNodes(List.of("c", "b", "a"));
+
+        // Assert
+        KEYS.forEach(key -> assertEquals(ring.ownerOf(key), reversed.ownerOf(key)));
+    }
+
+    @Test
+    void testOwnerOf_spreadsKeysEvenly() {
+        // Arrange
+        HashRing ring = new HashRing(128);
+        ring.setNodes(List.of("a", "b", "c", "d"));
+
+        // Act
+        Map<String, Integer> counts = new HashMap<>();
+        KEYS.forEach(key -> counts.merge(ring.ownerOf(key), 1, Integer::sum));
+
+        // Assert
+        assertEquals(4, counts.size());
+        counts.values().forEach(count -> assertTrue(count > 1_750 && count < 3_250, "Unbalanced share: " + count));
+    }
+
+    @Test
+    void testSetNodes_addingNodeOnlyMovesKeysToIt() {
+        // Arrange
+        HashRing ring = new HashRing(128);
+        ring.setNodes(List.of("a", "b", "c"));
+        Map<String, String> before = new HashMap<>();
+        KEYS.forEach(key -> before.put(key, ring.ownerOf(key)));
+
+        // Act
+        ring.setNodes(List.of("a", "b", "c", "d"));
+
+        // Assert
+        long moved = KEYS.stream().filter(key -> !before.get(key).equals(ring.ownerOf(key))).count();
+        KEYS.stream()
+            .filter(key -> !before.get(key).equals(ring.ownerOf(key)))
+            .forEach(key -> assertEquals("d", ring.ownerOf(key)));
+        assertTrue(moved > 1_750 && moved < 3_250, "Moved " + moved + " of " + KEYS.size());
+    }
+
+    @Test
+    void testSetNodes_removingNodeOnlyMovesItsKeys() {
+        // Arrange
+        HashRing ring = new HashRing(128);
+        ring.setNodes(List.of("a", "b", "c"));
+        Map<String, String> before = new HashMap<>();
+        KEYS.forEach(key -> before.put(key, ring.ownerOf(key)));
+
+        // Act
+        ring.setNodes(List.of("a", "c"));
+
+        // Assert
+        KEYS.stream()
+            .filter(key -> !before.get(key).equals("b"))
+            .forEach(key -> assertEquals(before.get(key), ring.ownerOf(key)));
+    }
+}
@@ -0,0 +1,160 @@
+package info.sup.proj.backend.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Drives a broker handler the way the WebSocket layer does, without WebSockets: client sessions connect and
+ * subscribe through the client inbound channel, messages are published on the broker channel, and every frame the
+ * broker sends to a session is counted on the client outbound channel. Used to compare the simple broker with the
+ * relay against {@link EmbeddedStompBroker}.
+ */
+final class BrokerFanOut implements AutoCloseable {
+
+    private static final List<String> PREFIXES = List.of("/topic", "/queue");
+
+    private final ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+    private final ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+    private final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+    private final AbstractBrokerMessageHandler broker;
+    private final AtomicLong delivered = new AtomicLong();
+    private final Set<String> connected = ConcurrentHashMap.newKeySet();
+    private final Set<String> receipts = ConcurrentHashMap.newKeySet();
+    private int sessions;
+
+    private interface HandlerFactory {
+        AbstractBrokerMessageHandler create(SubscribableChannel clientInbound, MessageChannel clientOutbound,
+                                            SubscribableChannel brokerChannel);
+    }
+
+    private BrokerFanOut(HandlerFactory factory) {
+        this.broker = factory.create(clientInbound, clientOutbound, brokerChannel);
+        clientOutbound.subscribe(this::onOutbound);
+        broker.start();
+    }
+
+    static BrokerFanOut simple() {
+        return new BrokerFanOut((inbound, outbound, brokerChannel) ->
+            new SimpleBrokerMessageHandler(inbound, outbound, brokerChannel, PREFIXES));
+    }
+
+    static BrokerFanOut relay(int port) {
+        return new BrokerFanOut((inbound, outbound, brokerChannel) -> {
+            StompBrokerRelayMessageHandler relay =
+                new StompBrokerRelayMessageHandler(inbound, outbound, brokerChannel, PREFIXES);
+            relay.setRelayHost("127.0.0.1");
+            relay.setRelayPort(port);
+            return relay;
+        });
+    }
+
+    /**
+     * Connects {@code count} new sessions, each subscribed to the destination {@code destinationOf} gives for its
+     * index, and waits until the broker confirmed every subscription.
+     */
+    void subscribe(int count, IntFunction<String> destinationOf, Duration timeout)
+        throws TimeoutException, InterruptedException {
+        awaitBrokerAvailable(timeout);
+        for (int i = 0; i < count; i++) {
+            String sessionId = "session-" + sessions++;
+            clientInbound.send(frame(StompCommand.CONNECT, sessionId, accessor -> {
+                accessor.setAcceptVersion("1.2");
+                accessor.setHeartbeat(0, 0);
+            }));
+            await(() -> connected.contains(sessionId), timeout);
+
+            String destination = destinationOf.apply(i);
+            clientInbound.send(frame(StompCommand.SUBSCRIBE, sessionId, accessor -> {
+                accessor.setSubscriptionId("sub-" + sessionId);
+                accessor.setDestination(destination);
+                accessor.setReceipt("receipt-" + sessionId);
+            }));
+            if (broker instanceof StompBrokerRelayMessageHandler) {
+                // The simple broker registers subscriptions synchronously and sends no receipts
+                await(() -> receipts.contains("receipt-" + sessionId), timeout);
+            }
+        }
+    }
+
+    void publish(String destination, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        brokerChannel.send(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+    }
+
+    long delivered() {
+        return delivered.get();
+    }
+
+    void awaitDelivered(long count, Duration timeout) throws TimeoutException, InterruptedException {
+        await(() -> delivered.get() >= count, timeout);
+    }
+
+    @Override
+    public void close() {
+        broker.stop();
+    }
+
+    private void awaitBrokerAvailable(Duration timeout) throws TimeoutException, InterruptedException {
+        await(broker::isBrokerAvailable, timeout);
+    }
+
+    private void onOutbound(Message<?> message) {
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (type == SimpMessageType.MESSAGE) {
+            delivered.incrementAndGet();
+        } else if (type == SimpMessageType.CONNECT_ACK) {
+            // The simple broker acknowledges CONNECT itself
+            connected.add(sessionId);
+        } else {
+            // Frames relayed from the external broker
+            StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+            if (accessor.getCommand() == StompCommand.CONNECTED) {
+                connected.add(sessionId);
+            } else if (accessor.getCommand() == StompCommand.RECEIPT) {
+                receipts.add(accessor.getReceiptId());
+            }
+        }
+    }
+
+    private static Message<byte[]> frame(StompCommand command, String sessionId,
+                                         Consumer<StompHeaderAccessor> headers) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId(sessionId);
+        headers.accept(accessor);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static void await(BooleanSupplier condition, Duration timeout)
+        throws TimeoutException, InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new TimeoutException("Broker did not answer within " + timeout);
+            }
+            TimeUnit.MICROSECONDS.sleep(50);
+        }
+    }
+}
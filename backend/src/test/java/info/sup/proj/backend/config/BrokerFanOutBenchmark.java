@@ -0,0 +1,80 @@
+package info.sup.proj.backend.config;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out throughput of the in-memory simple broker against the STOMP relay to an embedded Artemis broker, with
+ * {@code sessions} subscribed clients. On {@code game} every two sessions share a {@code /topic/game/{id}} topic and
+ * one operation publishes a state delta to every game; on {@code lobby} all sessions share {@code /topic/lobby} and
+ * one operation publishes a single presence delta. Either way an operation ends once all {@code sessions} frames have
+ * reached the client outbound channel, so operations/s times {@code sessions} is frames delivered per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BrokerFanOutBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    @Param({"simple", "relay"})
+    private String broker;
+
+    @Param({"game", "lobby"})
+    private String topic;
+
+    @Param({"200"})
+    private int sessions;
+
+    private EmbeddedStompBroker embeddedBroker;
+    private BrokerFanOut fanOut;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (broker.equals("relay")) {
+            embeddedBroker = new EmbeddedStompBroker().start();
+            fanOut = BrokerFanOut.relay(embeddedBroker.getPort());
+        } else {
+            fanOut = BrokerFanOut.simple();
+        }
+
+        if (topic.equals("game")) {
+            fanOut.subscribe(sessions, i -> "/topic/game/game-" + i / 2, TIMEOUT);
+        } else {
+            fanOut.subscribe(sessions, i -> "/topic/lobby", TIMEOUT);
+        }
+
+        // Roughly the size of a code delta or a presence delta
+        payload = "{\"type\":\"GAME_STATE_DELTA\",\"gameId\":\"5f1c3e1a\",\"seq\":42,\"playerStatus\":{\"1\":{\"codeDiff\":{\"start\":120,\"deleteCount\":0,\"insert\":\"return a + b;\"}}}}"
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fanOut.close();
+        if (embeddedBroker != null) {
+            embeddedBroker.close();
+        }
+    }
+
+    @Benchmark
+    public long fanOut() throws Exception {
+        long target = fanOut.delivered() + sessions;
+        if (topic.equals("game")) {
+            for (int game = 0; game < (sessions + 1) / 2; game++) {
+                fanOut.publish("/topic/game/game-" + game, payload);
+            }
+        } else {
+            fanOut.publish("/topic/lobby", payload);
+        }
+        fanOut.awaitDelivered(target, TIMEOUT);
+        return target;
+    }
+}
@@ -0,0 +1,53 @@
+package info.sup.proj.backend.config;
+
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+
+/**
+ * ActiveMQ Artemis with a single STOMP acceptor on a free local port, standing in for the external broker of the
+ * relay mode in tests and benchmarks. Nothing is persisted and security is off, so any login is accepted.
+ * {@code /topic/...} destinations are multicast and {@code /queue/...} destinations anycast, matching how the
+ * relay uses them.
+ */
+public class EmbeddedStompBroker implements AutoCloseable {
+
+    private final EmbeddedActiveMQ server = new EmbeddedActiveMQ();
+    private final int port;
+
+    public EmbeddedStompBroker() {
+        this.port = freePort();
+    }
+
+    public EmbeddedStompBroker start() throws Exception {
+        ConfigurationImpl configuration = new ConfigurationImpl();
+        configuration.setPersistenceEnabled(false);
+        configuration.setSecurityEnabled(false);
+        configuration.setJMXManagementEnabled(false);
+        configuration.addAcceptorConfiguration("stomp", "tcp://127.0.0.1:" + port
+            + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/");
+        server.setConfiguration(configuration);
+        server.start();
+        return this;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public void close() throws Exception {
+        server.stop();
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package info.sup.proj.backend.config;
+
+import info.sup.proj.backend.model.Puzzle;
+import info.sup.proj.backend.services.AiService;
+import info.sup.proj.backend.services.llm.AiRequestScheduler;
+import info.sup.proj.backend.services.llm.LlmProvider;
+import info.sup.proj.backend.services.llm.SimulatedLlmProvider;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Peak number of AI requests in flight at once when a burst of {@code requests} prompts, each a blocking
+ * {@link AiService} call to the simulated provider with a fixed {@code latencyMillis}, lands on one instance.
+ * {@code inbound} is the default executor of the STOMP inbound channel (two platform threads per core),
+ * {@code tomcat} the default Tomcat pool of 200 platform threads and {@code virtual} the executor used with
+ * {@code spring.threads.virtual.enabled}. The {@code peakInFlight} counter is the number to compare; the time per
+ * burst follows from it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InFlightAiRequestsBenchmark {
+
+    @Param({"inbound", "tomcat", "virtual"})
+    private String executor;
+
+    @Param({"2000"})
+    private int requests;
+
+    @Param({"200"})
+    private int latencyMillis;
+
+    private Executor taskExecutor;
+    private ThreadPoolTaskExecutor pool;
+    private AiService aiService;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long peakInFlight;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            peakInFlight = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimulatedLlmConfig config = new SimulatedLlmConfig();
+        config.setLatencyMedian(Duration.ofMillis(latencyMillis));
+        config.setLatencyP99(Duration.ofMillis(latencyMillis));
+        LlmProvider simulated = new SimulatedLlmProvider(config);
+
+        aiService = new AiService(request -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                return simulated.complete(request);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+
+        taskExecutor = switch (executor) {
+            case "inbound" -> pool(Runtime.getRuntime().availableProcessors() * 2);
+            case "tomcat" -> pool(200);
+            default -> new VirtualThreadTaskExecutor("ai-request-");
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeak() {
+        peak.set(0);
+    }
+
+    @Benchmark
+    public int burst(Counters counters) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(requests);
+        for (int i = 0; i < requests; i++) {
+            AiRequestScheduler.Caller caller = AiRequestScheduler.Caller.practice(i);
+            String prompt = "Write a method that sums the numbers in list " + i;
+            taskExecutor.execute(() -> {
+                try {
+                    aiService.generateResponse(caller, prompt, "", Puzzle.Type.BY_PASS);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        counters.peakInFlight = peak.get();
+        return requests;
+    }
+
+    private ThreadPoolTaskExecutor pool(int threads) {
+        pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(threads);
+        pool.setMaxPoolSize(threads);
+        pool.setThreadNamePrefix("ai-request-");
+        pool.initialize();
+        return pool;
+    }
+}
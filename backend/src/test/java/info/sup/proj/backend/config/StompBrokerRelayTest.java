@@ -0,0 +1,64 @@
+package info.sup.proj.backend.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StompBrokerRelayTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final byte[] PAYLOAD = "{\"type\":\"GAME_STATE_DELTA\"}".getBytes(StandardCharsets.UTF_8);
+
+    private EmbeddedStompBroker embeddedBroker;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        embeddedBroker = new EmbeddedStompBroker().start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        embeddedBroker.close();
+    }
+
+    @Test
+    void testRelay_fansOutGameAndLobbyTopicsThroughExternalBroker() throws Exception {
+        try (BrokerFanOut relay = BrokerFanOut.relay(embeddedBroker.getPort())) {
+            // Arrange
+            relay.subscribe(2, i -> "/topic/game/game-1", TIMEOUT);
+            relay.subscribe(1, i -> "/topic/game/game-2", TIMEOUT);
+            relay.subscribe(3, i -> "/topic/lobby", TIMEOUT);
+
+            // Act
+            relay.publish("/topic/game/game-1", PAYLOAD);
+            relay.publish("/topic/lobby", PAYLOAD);
+
+            // Assert
+            relay.awaitDelivered(5, TIMEOUT);
+            Thread.sleep(200);
+            assertEquals(5, relay.delivered());
+        }
+    }
+
+    @Test
+    void testSimple_fansOutLikeTheRelay() throws Exception {
+        try (BrokerFanOut simple = BrokerFanOut.simple()) {
+            // Arrange
+            simple.subscribe(2, i -> "/topic/game/game-1", TIMEOUT);
+            simple.subscribe(1, i -> "/topic/game/game-2", TIMEOUT);
+            simple.subscribe(3, i -> "/topic/lobby", TIMEOUT);
+
+            // Act
+            simple.publish("/topic/game/game-1", PAYLOAD);
+            simple.publish("/topic/lobby", PAYLOAD);
+
+            // Assert
+            assertEquals(5, simple.delivered());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package info.sup.proj.backend.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+
+import static org.mockito.Mockito.*;
+
+public class WebSocketConfigTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRegisterStompEndpoints_preservesTheReceiveOrderOfEachSession() {
+        // Arrange - inbound frames may run on one virtual thread each, so code syncs of a session must not reorder
+        WebSocketConfig config = new WebSocketConfig(mock(ObjectProvider.class), mock(ObjectProvider.class),
+            new StompBrokerConfig());
+        StompEndpointRegistry registry = mock(StompEndpointRegistry.class, RETURNS_DEEP_STUBS);
+
+        // Act
+        config.registerStompEndpoints(registry);
+
+        // Assert
+        verify(registry).setPreserveReceiveOrder(true);
+    }
+}
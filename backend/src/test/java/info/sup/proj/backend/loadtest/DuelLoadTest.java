@@ -0,0 +1,158 @@
+package info.sup.proj.backend.loadtest;
+
+import info.sup.proj.backend.model.User;
+import info.sup.proj.backend.repositories.UserRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end duel load test. Boots the backend on H2 with the simulated AI provider and runs stages of virtual
+ * players, each repeatedly playing complete duels over STOMP until the stage ends. Prints latency percentiles
+ * per message type and games per second for every stage; the stage where games/sec stops growing marks the
+ * saturation point of one instance.
+ * <p>
+ * Excluded from the regular build; run with {@code mvn -Ploadtest test -Dloadtest.stages=50,200,800}.
+ */
+@Tag("loadtest")
+@ActiveProfiles("test")
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+        "app.ai.provider=simulated",
+        "app.ai.simulated.latency-median=${loadtest.ai-latency-median:300ms}",
+        "app.ai.simulated.latency-p99=${loadtest.ai-latency-p99:1500ms}",
+        "spring.jpa.show-sql=false",
+        "logging.level.info.sup.proj.backend=WARN"
+    }
+)
+class DuelLoadTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void duelsUnderIncreasingLoad() throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        List<Long> userIds = createUsers(settings.maxPlayers());
+
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        String url = "ws://localhost:" + port + "/game";
+
+        StringBuilder report = new StringBuilder();
+        int totalGames = 0;
+        for (int players : settings.stages()) {
+            StageResult result = runStage(stompClient, url, userIds.subList(0, players), settings);
+            report.append(result.format(players));
+            totalGames += result.games();
+        }
+
+        System.out.println(report);
+        writeReport(report.toString());
+        assertTrue(totalGames > 0, "No duel completed during the load test");
+    }
+
+    private StageResult runStage(WebSocketStompClient stompClient, String url, List<Long> userIds,
+                                 LoadTestSettings settings) throws InterruptedException {
+        LatencyRecorder recorder = new LatencyRecorder();
+        AtomicInteger completedPlays = new AtomicInteger();
+        AtomicInteger unmatched = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+
+        long start = System.nanoTime();
+        long deadline = start + settings.stageDuration().toNanos();
+        long rampStepNanos = settings.rampUp().toNanos() / Math.max(1, userIds.size());
+
+        try (ExecutorService players = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < userIds.size(); i++) {
+                VirtualPlayer player = new VirtualPlayer(stompClient, url, userIds.get(i), settings, recorder);
+                long startAt = start + i * rampStepNanos;
+                players.submit(() -> {
+                    sleepUntil(startAt);
+                    while (System.nanoTime() < deadline) {
+                        try {
+                            if (player.playOneGame() == VirtualPlayer.Outcome.COMPLETED) {
+                                completedPlays.incrementAndGet();
+                            } else {
+                                unmatched.incrementAndGet();
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            players.shutdown();
+            players.awaitTermination(settings.stageDuration().plus(settings.stepTimeout().multipliedBy(20)).toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        // Both players of a duel count it as completed
+        return new StageResult(completedPlays.get() / 2, unmatched.get(), failures.get(), elapsedSeconds, recorder);
+    }
+
+    private List<Long> createUsers(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setEmail("load-" + i + "@loadtest.local");
+            user.setName("Load Player " + i);
+            user.setUsername("load-" + i);
+            user.setCountry("NL");
+            user.setElo(1000);
+            users.add(user);
+        }
+        return userRepository.saveAll(users).stream().map(User::getId).toList();
+    }
+
+    private static void sleepUntil(long nanoTime) {
+        long remaining = nanoTime - System.nanoTime();
+        if (remaining > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void writeReport(String report) throws IOException {
+        Path path = Path.of("target", "loadtest-report.txt");
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, report, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private record StageResult(int games, int unmatched, int failures, double elapsedSeconds, LatencyRecorder recorder) {
+        String format(int players) {
+            return String.format(
+                "=== %d players: %d games in %.1f s = %.2f games/sec (unmatched searches: %d, failed plays: %d) ===%n%s%n",
+                players, games, elapsedSeconds, games / elapsedSeconds, unmatched, failures, recorder.format());
+        }
+    }
+}
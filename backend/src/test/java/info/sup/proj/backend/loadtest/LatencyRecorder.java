@@ -0,0 +1,66 @@
+package info.sup.proj.backend.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects request/response latencies per message type for one load stage.
+ */
+class LatencyRecorder {
+    private final Map<String, Samples> samples = new ConcurrentHashMap<>();
+
+    void record(String type, long nanos) {
+        samples.computeIfAbsent(type, k -> new Samples()).add(nanos);
+    }
+
+    void recordError(String type) {
+        samples.computeIfAbsent(type, k -> new Samples()).errors.incrementAndGet();
+    }
+
+    String format() {
+        StringBuilder report = new StringBuilder(String.format(
+            "%-16s %8s %8s %9s %9s %9s %9s %7s%n", "type", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms", "err %"));
+        new TreeMap<>(samples).forEach((type, typeSamples) -> report.append(typeSamples.format(type)));
+        return report.toString();
+    }
+
+    private static final class Samples {
+        private long[] values = new long[64];
+        private int size;
+        private final AtomicLong errors = new AtomicLong();
+
+        synchronized void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        synchronized String format(String type) {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            long errorCount = errors.get();
+            double errorRate = size + errorCount == 0 ? 0 : 100.0 * errorCount / (size + errorCount);
+            return String.format("%-16s %8d %8d %9.1f %9.1f %9.1f %9.1f %6.2f%%%n",
+                type, size, errorCount,
+                millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.90)),
+                millis(percentile(sorted, 0.99)), millis(size == 0 ? 0 : sorted[size - 1]),
+                errorRate);
+        }
+
+        private static long percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+        }
+
+        private static double millis(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package info.sup.proj.backend.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Load test knobs, read from system properties so they can be passed on the Maven command line,
+ * e.g. {@code -Dloadtest.stages=50,200,800 -Dloadtest.stage-duration=PT2M}.
+ */
+record LoadTestSettings(
+    List<Integer> stages,
+    Duration stageDuration,
+    Duration rampUp,
+    Duration stepTimeout,
+    Duration thinkTime,
+    int rounds
+) {
+    static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+            Arrays.stream(System.getProperty("loadtest.stages", "10,40").split(","))
+                .map(String::trim)
+                .map(Integer::parseInt)
+                .map(players -> players + players % 2)
+                .toList(),
+            Duration.parse(System.getProperty("loadtest.stage-duration", "PT30S")),
+            Duration.parse(System.getProperty("loadtest.ramp-up", "PT5S")),
+            Duration.parse(System.getProperty("loadtest.step-timeout", "PT30S")),
+            Duration.parse(System.getProperty("loadtest.think-time", "PT0.1S")),
+            Integer.getInteger("loadtest.rounds", 3)
+        );
+    }
+
+    int maxPlayers() {
+        return stages.stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+}
@@ -0,0 +1,425 @@
+package info.sup.proj.backend.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * One simulated duel client, driving the same STOMP flow as the frontend: connect to {@code /game}, join the lobby,
+ * search for an opponent, then play every round with prompt, code update, submit and complete before disconnecting.
+ * Each step is timed from sending the request until the frame that answers it arrives.
+ */
+class VirtualPlayer {
+    private static final String QUEUE_PREFIX = "/user/";
+    private static final String TYPE = "type";
+    private static final String PLAYER_ID = "playerId";
+    private static final String GAME_STATE = "GAME_STATE";
+    private static final String GAME_STATE_DELTA = "GAME_STATE_DELTA";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    enum Outcome { COMPLETED, UNMATCHED }
+
+    private final WebSocketStompClient stompClient;
+    private final String url;
+    private final long userId;
+    private final String playerId;
+    private final LoadTestSettings settings;
+    private final LatencyRecorder recorder;
+    private final Inbox inbox = new Inbox();
+    private final GameMirror mirror = new GameMirror();
+
+    private StompSession session;
+    private String gameId;
+    private int iteration;
+    private long roundMark;
+
+    VirtualPlayer(WebSocketStompClient stompClient, String url, long userId, LoadTestSettings settings, LatencyRecorder recorder) {
+        this.stompClient = stompClient;
+        this.url = url;
+        this.userId = userId;
+        this.playerId = Long.toString(userId);
+        this.settings = settings;
+        this.recorder = recorder;
+    }
+
+    Outcome playOneGame() throws Exception {
+        iteration++;
+        try {
+            connect();
+            session.subscribe(QUEUE_PREFIX + playerId + "/queue/game", handler("queue"));
+            session.subscribe("/topic/lobby", handler("lobby"));
+
+            long mark = inbox.mark();
+            long start = System.nanoTime();
+            session.send("/app/game/join-lobby", Map.of("userId", userId));
+            await("join-lobby", start, mark, message -> "lobby".equals(message.source()) && joinedLobby(message.payload()));
+
+            mark = inbox.mark();
+            start = System.nanoTime();
+            session.send("/app/game/find-opponent", Map.of("userId", playerId));
+            Message started;
+            try {
+                // Waiting for an opponent to show up is not an error, so this step is only recorded on success
+                started = inbox.await(mark, message -> isType(message, "GAME_STARTED"), settings.stepTimeout());
+                recorder.record("find-opponent", System.nanoTime() - start);
+            } catch (TimeoutException e) {
+                session.send("/app/game/leave-lobby", Map.of("userId", playerId));
+                return Outcome.UNMATCHED;
+            }
+
+            gameId = started.payload().get("gameId").toString();
+            session.subscribe("/topic/game/" + gameId, handler("game"));
+
+            mark = inbox.mark();
+            roundMark = mark;
+            start = System.nanoTime();
+            session.send("/app/game/join", Map.of("gameId", gameId, PLAYER_ID, playerId));
+            await("join-game", start, mark, message -> "queue".equals(message.source()) && isType(message, GAME_STATE));
+
+            for (int round = 1; round <= settings.rounds(); round++) {
+                playRound(gameId, round);
+            }
+            return Outcome.COMPLETED;
+        } finally {
+            disconnect();
+        }
+    }
+
+    private void playRound(String gameId, int round) throws Exception {
+        // The round may already have started before this player finished the previous one, so look back to roundMark
+        awaitUntracked(roundMark, message -> {
+            Map<String, Object> game = gameState(message);
+            return game != null && ((Number) game.get("currentRound")).intValue() >= round;
+        });
+        inbox.discardBefore(roundMark);
+        think();
+
+        long mark = inbox.mark();
+        long start = System.nanoTime();
+        session.send("/app/game/prompt", Map.of("gameId", gameId, PLAYER_ID, playerId, "prompt", "Write the next step for round " + round));
+        await("prompt", start, mark, message -> isType(message, "AI_RESPONSE"));
+        think();
+
+        // Unique per player, iteration and round so submissions are not answered from the evaluation cache
+        String code = "class Solution { int answer() { return " + playerId + iteration + round + "; } }";
+        mark = inbox.mark();
+        start = System.nanoTime();
+        session.send("/app/game/" + gameId + "/code", Map.of(PLAYER_ID, playerId, "code", code));
+        await("code", start, mark, message -> code.equals(playerCode(gameState(message))));
+        think();
+
+        mark = inbox.mark();
+        start = System.nanoTime();
+        session.send("/app/game/" + gameId + "/submit", Map.of(PLAYER_ID, playerId, "code", code));
+        await("submit-ack", start, mark, message -> isType(message, "SCORING"));
+        Message scored = await("submit-scored", start, mark,
+            message -> isType(message, "SUBMISSION_SCORED") || isType(message, "SUBMISSION_REJECTED") || isType(message, "ERROR"));
+        if (!isType(scored, "SUBMISSION_SCORED")) {
+            recorder.recordError("submit-scored");
+        }
+
+        mark = inbox.mark();
+        roundMark = mark;
+        start = System.nanoTime();
+        session.send("/app/game/" + gameId + "/complete", Map.of(PLAYER_ID, playerId));
+        await("complete", start, mark,
+            message -> isType(message, "PLAYER_COMPLETION") && playerId.equals(message.payload().get(PLAYER_ID)));
+
+        if (round == settings.rounds()) {
+            awaitUntracked(mark, message -> {
+                Map<String, Object> game = gameState(message);
+                return game != null && "ENDED".equals(game.get("state"));
+            });
+        }
+    }
+
+    private void connect() throws Exception {
+        inbox.clear();
+        mirror.reset();
+        long start = System.nanoTime();
+        try {
+            session = stompClient.connectAsync(url, new StompSessionHandlerAdapter() { })
+                .get(settings.stepTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            recorder.record("connect", System.nanoTime() - start);
+        } catch (Exception e) {
+            recorder.recordError("connect");
+            throw e;
+        }
+    }
+
+    private void disconnect() {
+        if (session != null && session.isConnected()) {
+            session.disconnect();
+        }
+        session = null;
+        gameId = null;
+    }
+
+    private void think() throws InterruptedException {
+        Duration thinkTime = settings.thinkTime();
+        if (!thinkTime.isZero()) {
+            Thread.sleep(thinkTime);
+        }
+    }
+
+    private Message await(String type, long start, long mark, Predicate<Message> predicate) throws Exception {
+        try {
+            Message message = inbox.await(mark, predicate, settings.stepTimeout());
+            recorder.record(type, System.nanoTime() - start);
+            return message;
+        } catch (TimeoutException e) {
+            recorder.recordError(type);
+            throw e;
+        }
+    }
+
+    private void awaitUntracked(long mark, Predicate<Message> predicate) throws Exception {
+        inbox.await(mark, predicate, settings.stepTimeout());
+    }
+
+    private boolean joinedLobby(Map<String, Object> payload) {
+        return "PLAYER_JOINED".equals(payload.get(TYPE))
+            && payload.get("player") instanceof Map<?, ?> player
+            && Objects.equals(String.valueOf(player.get("userId")), playerId);
+    }
+
+    private static boolean isType(Message message, String type) {
+        return type.equals(message.payload().get(TYPE));
+    }
+
+    /**
+     * Game states are rebuilt by {@link GameMirror} and queued as {@code {type: GAME_STATE, payload: view}}.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> gameState(Message message) {
+        Map<String, Object> payload = message.payload();
+        if (GAME_STATE.equals(payload.get(TYPE)) && payload.get("payload") instanceof Map<?, ?> game) {
+            return (Map<String, Object>) game;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String playerCode(Map<String, Object> game) {
+        if (game == null || !(game.get("playerStatus") instanceof Map<?, ?> statuses)) {
+            return null;
+        }
+        Object status = statuses.get(playerId);
+        return status instanceof Map<?, ?> map ? (String) ((Map<String, Object>) map).get("code") : null;
+    }
+
+    private StompFrameHandler handler(String source) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void handleFrame(StompHeaders headers, Object body) {
+                Object payload;
+                try {
+                    payload = OBJECT_MAPPER.readValue((byte[]) body, Object.class);
+                } catch (IOException e) {
+                    recorder.recordError("decode");
+                    return;
+                }
+
+                if (payload instanceof Map<?, ?> map) {
+                    Map<String, Object> frame = (Map<String, Object>) map;
+                    Object type = frame.get(TYPE);
+                    if (GAME_STATE.equals(type) || GAME_STATE_DELTA.equals(type)) {
+                        Map<String, Object> view = mirror.apply(frame);
+                        if (view != null) {
+                            inbox.add(new Message(source, Map.of(TYPE, GAME_STATE, "payload", view)));
+                        }
+                    } else {
+                        inbox.add(new Message(source, frame));
+                    }
+                }
+            }
+        };
+    }
+
+    record Message(String source, Map<String, Object> payload) {
+    }
+
+    /**
+     * Client-side copy of the fields the flow waits on, kept current from snapshots and sequenced deltas the way
+     * the frontend store does. A gap in the sequence is counted as an error and answered with a resync request.
+     */
+    private final class GameMirror {
+        private long sequence = -1;
+        private boolean resyncing;
+        private int currentRound;
+        private Object state;
+        private final Map<String, String> codes = new HashMap<>();
+
+        synchronized void reset() {
+            sequence = -1;
+            resyncing = false;
+            codes.clear();
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized Map<String, Object> apply(Map<String, Object> frame) {
+            long seq = ((Number) frame.get("seq")).longValue();
+            if (GAME_STATE.equals(frame.get(TYPE))) {
+                if (seq < sequence || !(frame.get("payload") instanceof Map<?, ?> game)) {
+                    return null;
+                }
+                sequence = seq;
+                resyncing = false;
+                currentRound = ((Number) game.get("currentRound")).intValue();
+                state = game.get("state");
+                codes.clear();
+                ((Map<String, Map<String, Object>>) game.get("playerStatus"))
+                    .forEach((id, status) -> codes.put(id, (String) status.get("code")));
+                return view();
+            }
+
+            // Deltas that arrive before the join snapshot are already covered by it
+            if (sequence < 0 || seq <= sequence) {
+                return null;
+            }
+            if (seq != sequence + 1) {
+                if (!resyncing) {
+                    resyncing = true;
+                    recorder.recordError("state-gap");
+                    session.send("/app/game/" + gameId + "/resync", Map.of(PLAYER_ID, playerId));
+                }
+                return null;
+            }
+
+            sequence = seq;
+            if (frame.get("currentRound") instanceof Number round) {
+                currentRound = round.intValue();
+            }
+            if (frame.containsKey("state")) {
+                state = frame.get("state");
+            }
+            if (frame.get("playerStatus") instanceof Map<?, ?> statuses) {
+                ((Map<String, Map<String, Object>>) statuses).forEach((id, status) -> {
+                    if (status.get("codeDiff") instanceof Map<?, ?> diff) {
+                        codes.put(id, applyDiff(codes.get(id), (Map<String, Object>) diff));
+                    }
+                });
+            }
+            return view();
+        }
+
+        private Map<String, Object> view() {
+            Map<String, Object> statuses = new HashMap<>();
+            codes.forEach((id, code) -> statuses.put(id, Map.of("code", code != null ? code : "")));
+            Map<String, Object> view = new HashMap<>();
+            view.put("currentRound", currentRound);
+            view.put("state", state);
+            view.put("playerStatus", statuses);
+            return view;
+        }
+
+        private static String applyDiff(String code, Map<String, Object> diff) {
+            String base = code != null ? code : "";
+            int start = ((Number) diff.get("start")).intValue();
+            int deleteCount = ((Number) diff.get("deleteCount")).intValue();
+            return base.substring(0, start) + diff.get("insert") + base.substring(start + deleteCount);
+        }
+    }
+
+    /**
+     * Frames received by this player in arrival order. Every step takes a mark before sending its request and
+     * waits for a matching frame after that mark; frames are dropped once per round.
+     */
+    private static final class Inbox {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition arrived = lock.newCondition();
+        private final Deque<Message> messages = new ArrayDeque<>();
+        private long firstSequence;
+
+        void add(Message message) {
+            lock.lock();
+            try {
+                messages.addLast(message);
+                arrived.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long mark() {
+            lock.lock();
+            try {
+                return firstSequence + messages.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void discardBefore(long sequence) {
+            lock.lock();
+            try {
+                while (firstSequence < sequence && !messages.isEmpty()) {
+                    messages.removeFirst();
+                    firstSequence++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                firstSequence += messages.size();
+                messages.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Message await(long mark, Predicate<Message> predicate, Duration timeout) throws InterruptedException, TimeoutException {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            lock.lock();
+            try {
+                long checked = Math.max(mark, firstSequence);
+                while (true) {
+                    long end = firstSequence + messages.size();
+                    long sequence = firstSequence;
+                    for (Message message : messages) {
+                        if (sequence >= checked && predicate.test(message)) {
+                            return message;
+                        }
+                        sequence++;
+                    }
+                    checked = end;
+
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new TimeoutException("No matching frame within " + timeout);
+                    }
+                    arrived.awaitNanos(remaining);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
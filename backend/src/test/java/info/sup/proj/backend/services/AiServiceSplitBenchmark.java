@@ -0,0 +1,68 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.services.llm.LlmProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Measures how {@link AiService} splits a model reply into text and code, on replies of roughly 800 tokens:
+ * text with a fenced code block, text followed by unfenced code (found through the code indicators) and prose
+ * without any code, which scans for every indicator before giving up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AiServiceSplitBenchmark {
+    // Roughly 800 tokens at about four characters per token
+    private static final int TARGET_CHARS = 3200;
+
+    private static final String PROSE = "This step reads the numbers from the input and keeps a running total, so the "
+        + "method only walks the list once and never needs a second buffer for intermediate results. ";
+
+    private static final String CODE_LINE = "        total += values.get(i) * weights.get(i); // weighted sum of the current window\n";
+
+    @Param({"fenced", "unfenced", "prose"})
+    private String shape;
+
+    private AiService aiService;
+    private String content;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        aiService = new AiService(mock(LlmProvider.class, withSettings().stubOnly()));
+        content = switch (shape) {
+            case "fenced" -> prose(TARGET_CHARS / 3) + "\n```java\n" + code(TARGET_CHARS / 2) + "```\n" + prose(TARGET_CHARS / 6);
+            case "unfenced" -> prose(TARGET_CHARS / 3) + "\npublic class WeightedSum {\n" + code(TARGET_CHARS * 2 / 3) + "}\n";
+            case "prose" -> prose(TARGET_CHARS);
+            default -> throw new IllegalArgumentException("Unknown shape " + shape);
+        };
+    }
+
+    private static String prose(int chars) {
+        return PROSE.repeat(chars / PROSE.length() + 1).substring(0, chars);
+    }
+
+    private static String code(int chars) {
+        StringBuilder code = new StringBuilder("    public long sum(List<Long> values, List<Long> weights) {\n        long total = 0;\n");
+        while (code.length() < chars) {
+            code.append("        for (int i = 0; i < values.size(); i++) {\n").append(CODE_LINE).append("        }\n");
+        }
+        return code.append("        return total;\n    }\n").toString();
+    }
+
+    @Benchmark
+    public String[] splitResponse() {
+        return aiService.splitResponse(content);
+    }
+
+    @Benchmark
+    public String[] splitByCodeIndicator() {
+        return aiService.splitByCodeIndicator(content);
+    }
+}
@@ -0,0 +1,129 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Game;
+import info.sup.proj.backend.model.Player;
+import info.sup.proj.backend.model.Puzzle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CodeSyncCoalescerTest {
+
+    @Mock
+    private GameService gameService;
+
+    @Mock
+    private ScheduledExecutorService scheduler;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CodeSyncCoalescer coalescer;
+    private Game game;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        coalescer = new CodeSyncCoalescer(gameService, scheduler, Duration.ofMillis(150), meterRegistry);
+
+        Puzzle puzzle = new Puzzle("Sum", Puzzle.Difficulty.EASY, Puzzle.Type.MULTI_STEP, "Add the numbers");
+        game = new Game("game-1", List.of(
+            new Player("1", "Player One", null),
+            new Player("2", "Player Two", null)
+        ), puzzle, 3);
+        lenient().when(gameService.getGame("game-1")).thenReturn(game);
+    }
+
+    @Test
+    void testSubmit_emitsLatestCodeOncePerWindow() {
+        // Act
+        coalescer.submit("game-1", "1", "i");
+        coalescer.submit("game-1", "1", "in");
+        coalescer.submit("game-1", "1", "int");
+        scheduledFlush().run();
+
+        // Assert
+        verify(scheduler, times(1)).schedule(any(Runnable.class), eq(150L), eq(TimeUnit.MILLISECONDS));
+        verify(gameService, times(1)).updatePlayerCode(anyString(), anyString(), anyString());
+        verify(gameService).updatePlayerCode("game-1", "1", "int");
+        assertEquals(3.0, meterRegistry.counter("code.sync.received").count());
+        assertEquals(1.0, meterRegistry.counter("code.sync.emitted").count());
+    }
+
+    @Test
+    void testSubmit_keepsPlayersSeparate() {
+        // Act
+        coalescer.submit("game-1", "1", "a");
+        coalescer.submit("game-1", "2", "b");
+
+        // Assert
+        ArgumentCaptor<Runnable> flushes = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler, times(2)).schedule(flushes.capture(), anyLong(), any(TimeUnit.class));
+        flushes.getAllValues().forEach(Runnable::run);
+        verify(gameService).updatePlayerCode("game-1", "1", "a");
+        verify(gameService).updatePlayerCode("game-1", "2", "b");
+    }
+
+    @Test
+    void testSubmit_opensNewWindowAfterFlush() {
+        // Arrange
+        coalescer.submit("game-1", "1", "a");
+        scheduledFlush().run();
+
+        // Act
+        coalescer.submit("game-1", "1", "ab");
+
+        // Assert
+        verify(scheduler, times(2)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    void testFlush_dropsDiscardedAndStaleRoundUpdates() {
+        // Arrange
+        coalescer.submit("game-1", "1", "submitted");
+        coalescer.discard("game-1", "1");
+        Runnable discardedFlush = scheduledFlush();
+        coalescer.submit("game-1", "2", "old round");
+        game.startNextRoundWithExplicitNumber(null, 2);
+
+        // Act
+        discardedFlush.run();
+        ArgumentCaptor<Runnable> flushes = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler, times(2)).schedule(flushes.capture(), anyLong(), any(TimeUnit.class));
+        flushes.getAllValues().get(1).run();
+
+        // Assert
+        verify(gameService, never()).updatePlayerCode(anyString(), anyString(), anyString());
+        assertEquals(0.0, meterRegistry.counter("code.sync.emitted").count());
+    }
+
+    @Test
+    void testSubmit_passesThroughWithoutWindow() {
+        // Arrange
+        coalescer = new CodeSyncCoalescer(gameService, scheduler, Duration.ZERO, meterRegistry);
+
+        // Act
+        coalescer.submit("game-1", "1", "int x;");
+
+        // Assert
+        verify(gameService).updatePlayerCode("game-1", "1", "int x;");
+        verifyNoInteractions(scheduler);
+    }
+
+    private Runnable scheduledFlush() {
+        ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(flush.capture(), anyLong(), any(TimeUnit.class));
+        return flush.getValue();
+    }
+}
@@ -0,0 +1,126 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.config.SimulatedLlmConfig;
+import info.sup.proj.backend.model.Puzzle;
+import info.sup.proj.backend.services.llm.LlmProvider;
+import info.sup.proj.backend.services.llm.SimulatedLlmProvider;
+import info.sup.proj.backend.services.llm.TokenCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Round end of {@code games} duels: both players of every game submit at once and every submission is scored.
+ * {@code maxBatch=1} is one AI call per submission, as before batching; larger values score the submissions of one
+ * window together. The {@code callsPerSubmission} and {@code tokensPerSubmission} counters (prompt plus completion, as
+ * estimated by {@link TokenCounter}) are the numbers to compare; the time per round end is reported alongside.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EvaluationBatcherBenchmark {
+
+    @Param({"1", "2", "8"})
+    private int maxBatch;
+
+    @Param({"50"})
+    private int games;
+
+    private ExecutorService evaluationExecutor;
+    private ScheduledExecutorService scheduler;
+    private EvaluationBatcher batcher;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong tokens = new AtomicLong();
+    private int round;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public double callsPerSubmission;
+        public double tokensPerSubmission;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimulatedLlmConfig config = new SimulatedLlmConfig();
+        config.setLatencyMedian(Duration.ofMillis(20));
+        config.setLatencyP99(Duration.ofMillis(20));
+        LlmProvider simulated = new SimulatedLlmProvider(config);
+
+        AiService aiService = new AiService(request -> {
+            String completion = simulated.complete(request);
+            calls.incrementAndGet();
+            tokens.addAndGet(TokenCounter.count(request) + TokenCounter.count(completion));
+            return completion;
+        });
+
+        evaluationExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        batcher = new EvaluationBatcher(aiService, evaluationExecutor, scheduler, Duration.ofMillis(50), maxBatch,
+            new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        evaluationExecutor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    @Benchmark
+    public int roundEnd(Counters counters) {
+        // A fresh round every invocation, so no submission repeats an earlier one
+        round++;
+        List<CompletableFuture<String>> scores = new ArrayList<>(games * 2);
+        for (int game = 0; game < games; game++) {
+            String evaluationPrompt = evaluationPrompt("Puzzle " + game);
+            for (int player = 0; player < 2; player++) {
+                String code = "public int solve(int[] values) {\n"
+                    + "    int total = " + round + ";\n"
+                    + "    for (int value : values) {\n"
+                    + "        total += value * " + player + ";\n"
+                    + "    }\n"
+                    + "    return total;\n"
+                    + "}";
+                scores.add(batcher.evaluate(game + "-" + player, evaluationPrompt, code, Puzzle.Type.MULTI_STEP));
+            }
+        }
+        CompletableFuture.allOf(scores.toArray(CompletableFuture[]::new)).join();
+
+        int submissions = scores.size();
+        counters.callsPerSubmission = (double) calls.get() / submissions;
+        counters.tokensPerSubmission = (double) tokens.get() / submissions;
+        calls.set(0);
+        tokens.set(0);
+        return submissions;
+    }
+
+    /**
+     * Same wording as the prompt {@code GameService} builds for a submission.
+     */
+    private static String evaluationPrompt(String puzzleName) {
+        return String.format(
+            """
+            Please evaluate this code solution for the following puzzle:
+            Puzzle: %s
+            Description: %s
+            Evaluate the following aspects on a scale from 0-100:
+            1. Correctness: Does the code correctly solve the problem as described?
+            2. Code quality: Is the code well-structured, efficient, and following best practices?
+            Respond in JSON format: {correctness: X, quality: Y} where X and Y are scores from 0-100.""",
+            puzzleName,
+            "Sum the values of the list, skipping nothing and counting each value once."
+        );
+    }
+}
@@ -0,0 +1,123 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Puzzle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class EvaluationBatcherTest {
+
+    private static final String FIRST_SCORE = "{\"correctness\": 90, \"quality\": 80}";
+    private static final String SECOND_SCORE = "{\"correctness\": 40, \"quality\": 55}";
+
+    @Mock
+    private AiService aiService;
+
+    private ExecutorService evaluationExecutor;
+    private ScheduledExecutorService scheduler;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        evaluationExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        evaluationExecutor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void testEvaluate_scoresSubmissionsOfOneWindowInOneCall() throws Exception {
+        // Arrange
+        EvaluationBatcher batcher = batcher(Duration.ofMillis(50), 8);
+        when(aiService.getCodeEvaluations(any(), anyList())).thenReturn(List.of(FIRST_SCORE, SECOND_SCORE));
+
+        // Act
+        CompletableFuture<String> first = batcher.evaluate("1", "Evaluate", "int x = 1;", Puzzle.Type.MULTI_STEP);
+        CompletableFuture<String> second = batcher.evaluate("2", "Evaluate", "int y = 2;", Puzzle.Type.MULTI_STEP);
+
+        // Assert
+        assertEquals(FIRST_SCORE, first.get(5, TimeUnit.SECONDS));
+        assertEquals(SECOND_SCORE, second.get(5, TimeUnit.SECONDS));
+        verify(aiService).getCodeEvaluations(any(), argThat(submissions -> submissions.size() == 2
+            && submissions.get(0).code().equals("int x = 1;")
+            && submissions.get(1).code().equals("int y = 2;")));
+        verify(aiService, never()).getCodeEvaluation(any(), anyString(), anyString(), any());
+        assertEquals(1.0, meterRegistry.counter("evaluation.batch.calls").count());
+        assertEquals(2.0, meterRegistry.counter("evaluation.batch.submissions").count());
+    }
+
+    @Test
+    void testEvaluate_sendsAFullBatchWithoutWaitingForTheWindow() throws Exception {
+        // Arrange
+        EvaluationBatcher batcher = batcher(Duration.ofHours(1), 2);
+        when(aiService.getCodeEvaluations(any(), anyList())).thenReturn(List.of(FIRST_SCORE, SECOND_SCORE));
+
+        // Act
+        CompletableFuture<String> first = batcher.evaluate("1", "Evaluate", "int x = 1;", Puzzle.Type.MULTI_STEP);
+        CompletableFuture<String> second = batcher.evaluate("2", "Evaluate", "int y = 2;", Puzzle.Type.MULTI_STEP);
+
+        // Assert
+        assertEquals(FIRST_SCORE, first.get(5, TimeUnit.SECONDS));
+        assertEquals(SECOND_SCORE, second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testEvaluate_evaluatesAloneWhenTheBatchReplyCannotBeSplit() throws Exception {
+        // Arrange
+        EvaluationBatcher batcher = batcher(Duration.ofHours(1), 2);
+        when(aiService.getCodeEvaluations(any(), anyList())).thenReturn(null);
+        when(aiService.getCodeEvaluation(any(), anyString(), eq("int x = 1;"), any())).thenReturn(FIRST_SCORE);
+        when(aiService.getCodeEvaluation(any(), anyString(), eq("int y = 2;"), any())).thenReturn(SECOND_SCORE);
+
+        // Act
+        CompletableFuture<String> first = batcher.evaluate("1", "Evaluate", "int x = 1;", Puzzle.Type.MULTI_STEP);
+        CompletableFuture<String> second = batcher.evaluate("2", "Evaluate", "int y = 2;", Puzzle.Type.MULTI_STEP);
+
+        // Assert
+        assertEquals(FIRST_SCORE, first.get(5, TimeUnit.SECONDS));
+        assertEquals(SECOND_SCORE, second.get(5, TimeUnit.SECONDS));
+        assertEquals(3.0, meterRegistry.counter("evaluation.batch.calls").count());
+    }
+
+    @Test
+    void testEvaluate_failsWhenTheEvaluationExecutorIsSaturated() {
+        // Arrange
+        EvaluationBatcher batcher = batcher(Duration.ZERO, 8);
+        evaluationExecutor.shutdown();
+
+        // Act
+        CompletableFuture<String> result = batcher.evaluate("1", "Evaluate", "int x = 1;", Puzzle.Type.MULTI_STEP);
+
+        // Assert
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        verifyNoInteractions(aiService);
+    }
+
+    private EvaluationBatcher batcher(Duration window, int maxBatch) {
+        return new EvaluationBatcher(aiService, evaluationExecutor, scheduler, window, maxBatch, meterRegistry);
+    }
+}
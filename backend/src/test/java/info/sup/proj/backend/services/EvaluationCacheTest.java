@@ -0,0 +1,143 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.dto.CodeEvaluationDto;
+import info.sup.proj.backend.model.Puzzle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvaluationCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicLong clock;
+    private EvaluationCache evaluationCache;
+    private Puzzle puzzle;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new AtomicLong();
+        evaluationCache = new EvaluationCache(2, Duration.ofMinutes(10), meterRegistry, clock::get);
+
+        puzzle = new Puzzle();
+        puzzle.setId(1);
+        puzzle.setType(Puzzle.Type.MULTI_STEP);
+    }
+
+    @Test
+    void testKeyFor_ignoresTrailingWhitespaceAndBlankLines() {
+        // Arrange
+        String original = "int add(int a, int b) {\n    return a + b;\n}";
+        String repasted = "\nint add(int a, int b) {   \r\n\n    return a + b;\t\r\n}\n\n";
+
+        // Act & Assert
+        assertEquals(EvaluationCache.keyFor(puzzle, original), EvaluationCache.keyFor(puzzle, repasted));
+        assertNotEquals(EvaluationCache.keyFor(puzzle, original), EvaluationCache.keyFor(puzzle, "int add(int a, int b) {\n    return a - b;\n}"));
+    }
+
+    @Test
+    void testKeyFor_keepsIndentationAndDoubleSlashes() {
+        // Arrange - in Python the indentation decides which loop the return belongs to
+        String inside = "for x in xs:\n    total += x\n    return total";
+        String after = "for x in xs:\n    total += x\nreturn total";
+
+        // Act & Assert
+        assertNotEquals(EvaluationCache.keyFor(puzzle, inside), EvaluationCache.keyFor(puzzle, after));
+        assertNotEquals(EvaluationCache.keyFor(puzzle, "half = a // 2"), EvaluationCache.keyFor(puzzle, "half = a // 3"));
+        assertNotEquals(
+            EvaluationCache.keyFor(puzzle, "String url = \"http://a\";"),
+            EvaluationCache.keyFor(puzzle, "String url = \"http://b\";")
+        );
+    }
+
+    @Test
+    void testKeyFor_separatesPuzzles() {
+        // Arrange
+        Puzzle otherPuzzle = new Puzzle();
+        otherPuzzle.setId(2);
+        otherPuzzle.setType(Puzzle.Type.MULTI_STEP);
+
+        // Act & Assert
+        assertNotEquals(EvaluationCache.keyFor(puzzle, "x = 1;"), EvaluationCache.keyFor(otherPuzzle, "x = 1;"));
+    }
+
+    @Test
+    void testGetOrCompute_callsLoaderOncePerKey() {
+        // Arrange
+        AtomicInteger loads = new AtomicInteger();
+        EvaluationCache.Key key = EvaluationCache.keyFor(puzzle, "x = 1;");
+
+        // Act
+        CodeEvaluationDto first = evaluationCache.getOrCompute(key, () -> evaluation(loads.incrementAndGet() * 10, 70));
+        CodeEvaluationDto second = evaluationCache.getOrCompute(key, () -> evaluation(loads.incrementAndGet() * 10, 70));
+
+        // Assert
+        assertEquals(1, loads.get());
+        assertEquals(10, first.getCorrectness());
+        assertEquals(10, second.getCorrectness());
+        assertEquals(1.0, meterRegistry.counter("evaluation.cache.hits").count());
+        assertEquals(1.0, meterRegistry.counter("evaluation.cache.misses").count());
+    }
+
+    @Test
+    void testGetOrCompute_doesNotCacheFailures() {
+        // Arrange
+        EvaluationCache.Key key = EvaluationCache.keyFor(puzzle, "x = 1;");
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> evaluationCache.getOrCompute(key, () -> {
+            throw new IllegalStateException("AI unavailable");
+        }));
+
+        // Assert
+        assertNull(evaluationCache.getIfPresent(key));
+        assertEquals(0, evaluationCache.size());
+    }
+
+    @Test
+    void testGetIfPresent_expiresAfterTtl() {
+        // Arrange
+        EvaluationCache.Key key = EvaluationCache.keyFor(puzzle, "x = 1;");
+        evaluationCache.put(key, evaluation(90, 80));
+
+        // Act
+        clock.addAndGet(Duration.ofMinutes(10).toNanos());
+
+        // Assert
+        assertNull(evaluationCache.getIfPresent(key));
+        assertEquals(1.0, meterRegistry.counter("evaluation.cache.evictions", "cause", "expired").count());
+    }
+
+    @Test
+    void testPut_evictsLeastRecentlyUsed() {
+        // Arrange
+        EvaluationCache.Key first = EvaluationCache.keyFor(puzzle, "a();");
+        EvaluationCache.Key second = EvaluationCache.keyFor(puzzle, "b();");
+        EvaluationCache.Key third = EvaluationCache.keyFor(puzzle, "c();");
+        evaluationCache.put(first, evaluation(90, 80));
+        evaluationCache.put(second, evaluation(90, 80));
+        evaluationCache.getIfPresent(first);
+
+        // Act
+        evaluationCache.put(third, evaluation(90, 80));
+
+        // Assert
+        assertEquals(2, evaluationCache.size());
+        assertNotNull(evaluationCache.getIfPresent(first));
+        assertNull(evaluationCache.getIfPresent(second));
+        assertEquals(1.0, meterRegistry.counter("evaluation.cache.evictions", "cause", "size").count());
+    }
+
+    private CodeEvaluationDto evaluation(int correctness, int quality) {
+        return CodeEvaluationDto.builder()
+            .correctness(correctness)
+            .quality(quality)
+            .build();
+    }
+}
@@ -0,0 +1,136 @@
+package info.sup.proj.backend.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.sup.proj.backend.model.Game;
+import info.sup.proj.backend.model.GameEvent;
+import info.sup.proj.backend.model.Player;
+import info.sup.proj.backend.model.Puzzle;
+import info.sup.proj.backend.repositories.GameEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class GameEventLogTest {
+
+    @Mock
+    private GameEventRepository repository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private GameEventLog eventLog;
+    private Game game;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        eventLog = new GameEventLog(repository, new ObjectMapper(), Duration.ofSeconds(1), 2, 3, meterRegistry);
+
+        Puzzle puzzle = new Puzzle();
+        puzzle.setId(7);
+        puzzle.setName("Sum");
+        puzzle.setType(Puzzle.Type.MULTI_STEP);
+        game = new Game("game-1", List.of(new Player("1", "One", null), new Player("2", "Two", null)), puzzle, 3);
+    }
+
+    @Test
+    void testAppend_queuesUntilFlushAndWritesInBatches() {
+        // Arrange
+        eventLog.gameStarted(game);
+        eventLog.roundStarted(game);
+        eventLog.codeSnapshot(game, "1", "int x = 1;");
+
+        // Act
+        eventLog.flush();
+
+        // Assert - the queue is written two events at a time
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<GameEvent>> batches = ArgumentCaptor.forClass(List.class);
+        verify(repository, times(2)).saveAll(batches.capture());
+        assertEquals(2, batches.getAllValues().get(0).size());
+        assertEquals(1, batches.getAllValues().get(1).size());
+
+        GameEvent snapshot = batches.getAllValues().get(1).getFirst();
+        assertEquals(GameEvent.Type.CODE_SNAPSHOT, snapshot.getType());
+        assertEquals("game-1", snapshot.getGameId());
+        assertEquals("1", snapshot.getPlayerId());
+        assertEquals(1, snapshot.getRound());
+        assertEquals("{\"code\":\"int x = 1;\"}", snapshot.getPayload());
+        assertEquals(3.0, meterRegistry.counter("game.events.written").count());
+        assertEquals(0, eventLog.pending());
+    }
+
+    @Test
+    void testAppend_fullBatchWakesTheWriterBeforeTheFlushInterval() throws Exception {
+        // Arrange
+        eventLog = new GameEventLog(repository, new ObjectMapper(), Duration.ofHours(1), 2, 3, meterRegistry);
+        eventLog.startFlushing();
+
+        try {
+            // Act
+            eventLog.gameStarted(game);
+            eventLog.roundStarted(game);
+
+            // Assert
+            verify(repository, timeout(5_000)).saveAll(argThat(batch -> ((List<?>) batch).size() == 2));
+        } finally {
+            eventLog.stopFlushing();
+        }
+    }
+
+    @Test
+    void testAppend_dropsEventsBeyondMaxPending() {
+        // Act
+        for (int i = 0; i < 5; i++) {
+            eventLog.playerCompleted(game, "1");
+        }
+
+        // Assert
+        assertEquals(3, eventLog.pending());
+        assertEquals(2.0, meterRegistry.counter("game.events.dropped").count());
+    }
+
+    @Test
+    void testFlush_countsFailedBatchAndKeepsTheRestQueued() {
+        // Arrange
+        when(repository.saveAll(anyList())).thenThrow(new IllegalStateException("database down"));
+        eventLog.playerCompleted(game, "1");
+        eventLog.playerCompleted(game, "2");
+        eventLog.gameEnded(game);
+
+        // Act
+        assertDoesNotThrow(() -> eventLog.flush());
+
+        // Assert
+        assertEquals(2.0, meterRegistry.counter("game.events.failed").count());
+        assertEquals(1, eventLog.pending());
+    }
+
+    @Test
+    void testEvents_addsQueuedEventsOfTheGameWithoutWritingThem() {
+        // Arrange
+        GameEvent stored = new GameEvent("game-1", 1L, GameEvent.Type.GAME_STARTED, 1, null, "{}");
+        when(repository.findByGameIdOrderByOccurredAtAscIdAsc("game-1")).thenReturn(List.of(stored));
+        Game other = new Game("game-2", game.getPlayers(), game.getCurrentPuzzle(), 3);
+        eventLog.forfeit(other, "1");
+        eventLog.forfeit(game, "2");
+
+        // Act
+        List<GameEvent> events = eventLog.events("game-1");
+
+        // Assert
+        assertEquals(List.of(GameEvent.Type.GAME_STARTED, GameEvent.Type.FORFEIT),
+            events.stream().map(GameEvent::getType).toList());
+        verify(repository, never()).saveAll(anyList());
+        assertEquals(2, eventLog.pending());
+    }
+}
@@ -0,0 +1,145 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Game;
+import info.sup.proj.backend.model.Player;
+import info.sup.proj.backend.model.Puzzle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures how long {@link GameJournal} takes to bring back {@code games} live games after a restart, and what a
+ * checkpoint costs. With {@code source=snapshot} the last checkpoint holds every game and recovery reads one
+ * snapshot; with {@code source=wal} no checkpoint ran and every game is rebuilt from its WAL records (created, three
+ * code syncs, a score). {@code checkpoint} snapshots the games after a tenth of them changed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GameJournalBenchmark {
+
+    @Param({"50000"})
+    private int games;
+
+    @Param({"snapshot", "wal"})
+    private String source;
+
+    private Puzzle puzzle;
+    private Path template;
+    private Path directory;
+    private GameJournal journal;
+    private List<Game> live;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        puzzle = new Puzzle("Benchmark", Puzzle.Difficulty.EASY, Puzzle.Type.MULTI_STEP, "Benchmark puzzle");
+        puzzle.setId(1);
+
+        template = Files.createTempDirectory("game-journal-template");
+        GameJournal writer = journal(template);
+        writer.open();
+        for (int i = 0; i < games; i++) {
+            Game game = new Game("game-" + i, List.of(new Player(String.valueOf(2 * i), "Player " + i, null),
+                new Player(String.valueOf(2 * i + 1), "Player " + i + "b", null)), puzzle, 3);
+            writer.created(game);
+            for (int line = 1; line <= 3; line++) {
+                String code = "int total = 0;\n".repeat(line * 4);
+                game.updateCurrentCode(game.getPlayers().getFirst().getId(), code);
+                writer.codeUpdated(game, game.getPlayers().getFirst().getId(), code);
+            }
+            game.updatePlayerScore(game.getPlayers().getFirst().getId(), 75);
+            writer.scored(game, game.getPlayers().getFirst().getId(), 75);
+        }
+        if ("snapshot".equals(source)) {
+            writer.checkpoint();
+        }
+        writer.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void copyJournal() throws IOException {
+        // Opening a journal compacts it, so every iteration starts from a fresh copy of the same files
+        directory = Files.createTempDirectory("game-journal");
+        try (Stream<Path> files = Files.list(template)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, directory.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeJournal() throws Exception {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        delete(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        delete(template);
+    }
+
+    @Benchmark
+    public List<Game> recover() throws IOException {
+        journal = journal(directory);
+        journal.open();
+        List<Game> recovered = new ArrayList<>(games);
+        for (Game.Snapshot snapshot : journal.recover()) {
+            Game game = Game.restore(snapshot, puzzle);
+            journal.track(game);
+            recovered.add(game);
+        }
+        live = recovered;
+        return recovered;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Checkpoint {
+        private GameJournal journal;
+        private List<Game> games;
+
+        @Setup(Level.Iteration)
+        public void setUp(GameJournalBenchmark benchmark) throws IOException {
+            benchmark.recover();
+            journal = benchmark.journal;
+            games = benchmark.live;
+            for (int i = 0; i < games.size(); i += 10) {
+                Game game = games.get(i);
+                journal.codeUpdated(game, game.getPlayers().getLast().getId(), "return total;");
+            }
+        }
+    }
+
+    @Benchmark
+    public int checkpoint(Checkpoint state) throws IOException {
+        state.journal.checkpoint();
+        return state.games.size();
+    }
+
+    private static GameJournal journal(Path directory) {
+        return new GameJournal(true, directory.toString(), Duration.ZERO, 8, true, new GameMailboxes(Runnable::run),
+            new SimpleMeterRegistry());
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Game;
+import info.sup.proj.backend.model.Player;
+import info.sup.proj.backend.model.Puzzle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * How late a 1ms game timer fires while {@link GameJournal} checkpoints {@code games} live games back to back. The
+ * timers run on a {@link TimingWheel} that hands expiries to a 2-thread scheduler, as in {@code ExecutorConfig};
+ * every 10ms that scheduler also runs 5ms of blocking work standing in for matchmaking ticks and code sync flushes.
+ * {@code checkpoints=none} takes no checkpoints, {@code journal} lets the journal checkpoint on its own thread, and
+ * {@code scheduler} runs the checkpoints on the shared scheduler as they used to. Every checkpoint is a full one,
+ * forced to disk. The sampled time minus the 1ms delay is the lateness.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameJournalCheckpointLatenessBenchmark {
+
+    @Param({"20000"})
+    private int games;
+
+    @Param({"none", "journal", "scheduler"})
+    private String checkpoints;
+
+    private Path directory;
+    private ScheduledExecutorService scheduler;
+    private TimingWheel wheel;
+    private GameJournal journal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("game-journal-lateness");
+        scheduler = Executors.newScheduledThreadPool(2);
+        wheel = new TimingWheel(Duration.ofMillis(1), 512, scheduler);
+
+        Duration interval = "journal".equals(checkpoints) ? Duration.ofMillis(1) : Duration.ZERO;
+        journal = new GameJournal(true, directory.toString(), interval, 1, true, new GameMailboxes(Runnable::run),
+            new SimpleMeterRegistry());
+        journal.open();
+
+        Puzzle puzzle = new Puzzle("Benchmark", Puzzle.Difficulty.EASY, Puzzle.Type.MULTI_STEP, "Benchmark puzzle");
+        puzzle.setId(1);
+        for (int i = 0; i < games; i++) {
+            Game game = new Game("game-" + i, List.of(new Player(String.valueOf(2 * i), "Player " + i, null),
+                new Player(String.valueOf(2 * i + 1), "Player " + i + "b", null)), puzzle, 3);
+            journal.created(game);
+            journal.codeUpdated(game, game.getPlayers().getFirst().getId(), "int total = 0;\n".repeat(8));
+        }
+
+        scheduler.scheduleAtFixedRate(() -> LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5)), 0, 10,
+            TimeUnit.MILLISECONDS);
+        if ("scheduler".equals(checkpoints)) {
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    journal.checkpoint();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }, 1, 1, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        wheel.stop();
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public CountDownLatch timer() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        wheel.schedule(fired::countDown, 1, TimeUnit.MILLISECONDS);
+        fired.await();
+        return fired;
+    }
+}
@@ -0,0 +1,223 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Game;
+import info.sup.proj.backend.model.Player;
+import info.sup.proj.backend.model.Puzzle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class GameJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private GameJournal journal;
+    private Puzzle firstPuzzle;
+    private Puzzle secondPuzzle;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        firstPuzzle = puzzle(7);
+        secondPuzzle = puzzle(8);
+        journal = open();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        journal.close();
+    }
+
+    @Test
+    void testRecover_appliesWalWrittenAfterTheLastCheckpoint() throws Exception {
+        // Arrange
+        Game game = newGame("game-1");
+        journal.created(game);
+        game.updateCurrentCode("1", "int x = 1;");
+        journal.codeUpdated(game, "1", "int x = 1;");
+        journal.checkpoint();
+
+        game.updatePlayerScore("1", 80);
+        journal.scored(game, "1", 80);
+        game.markPlayerCompleted("1");
+        journal.completed(game, "1");
+        game.startNextRound(secondPuzzle);
+        journal.roundStarted(game);
+        game.updateCurrentCode("2", "int y = 2;");
+        journal.codeUpdated(game, "2", "int y = 2;");
+        journal.close();
+
+        // Act
+        journal = open();
+        List<Game.Snapshot> recovered = journal.recover();
+
+        // Assert - the score is counted once although the checkpoint and the WAL both saw the game
+        assertEquals(1, recovered.size());
+        assertSameState(game.snapshot(), recovered.getFirst());
+        assertTrue(journal.recover().isEmpty());
+    }
+
+    @Test
+    void testRecover_stopsAtTornRecordAtTheEndOfTheWal() throws Exception {
+        // Arrange
+        Game game = newGame("game-1");
+        journal.created(game);
+        game.forfeit("2");
+        journal.forfeited(game, "2");
+        journal.close();
+
+        // The process died halfway through the next record
+        Path wal = files("wal-").getLast();
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(wal, StandardOpenOption.APPEND))) {
+            out.writeInt(200);
+            out.writeInt(42);
+            out.write(new byte[17]);
+        }
+
+        // Act
+        journal = open();
+        List<Game.Snapshot> recovered = journal.recover();
+
+        // Assert
+        assertEquals(1, recovered.size());
+        assertSameState(game.snapshot(), recovered.getFirst());
+        assertEquals(Game.GameState.ENDED, recovered.getFirst().state());
+        assertTrue(recovered.getFirst().statuses().get("2").forfeit());
+    }
+
+    @Test
+    void testCheckpoint_dropsRemovedGamesAndCoveredWalFiles() throws Exception {
+        // Arrange
+        Game kept = newGame("game-1");
+        Game removed = newGame("game-2");
+        journal.created(kept);
+        journal.created(removed);
+        journal.checkpoint();
+        journal.removed("game-2");
+
+        // Act
+        journal.checkpoint();
+        journal.close();
+        journal = open();
+
+        // Assert - two incremental snapshots were compacted into one full snapshot on startup
+        List<Game.Snapshot> recovered = journal.recover();
+        assertEquals(List.of("game-1"), recovered.stream().map(Game.Snapshot::id).toList());
+        assertEquals(1, files("snapshot-").size());
+        assertTrue(files("wal-").size() <= 1);
+    }
+
+    @Test
+    void testTrack_journalsRecoveredGamesWithoutRewritingThem() throws Exception {
+        // Arrange
+        Game game = newGame("game-1");
+        journal.created(game);
+        journal.close();
+        journal = open();
+        Game restored = Game.restore(journal.recover().getFirst(), firstPuzzle);
+
+        // Act
+        journal.track(restored);
+        restored.updatePlayerScore("2", 55);
+        journal.scored(restored, "2", 55);
+        journal.close();
+        journal = open();
+
+        // Assert
+        assertEquals(55, journal.recover().getFirst().statuses().get("2").score());
+    }
+
+    @Test
+    void testTrack_resumesTheStateSequenceThePlayersSaw() throws Exception {
+        // Arrange - the publish after the last record is not journaled
+        Game game = newGame("game-1");
+        journal.created(game);
+        journal.published(game, 5);
+        game.updateCurrentCode("1", "int x = 1;");
+        journal.codeUpdated(game, "1", "int x = 1;");
+        journal.published(game, 6);
+        journal.close();
+        journal = open();
+        Game restored = Game.restore(journal.recover().getFirst(), firstPuzzle);
+
+        // Act
+        long fromWal = journal.track(restored);
+        journal.published(restored, 9);
+        journal.checkpoint();
+        journal.close();
+        journal = open();
+        long fromSnapshot = journal.track(Game.restore(journal.recover().getFirst(), firstPuzzle));
+
+        // Assert
+        assertEquals(6, fromWal);
+        assertEquals(10, fromSnapshot);
+    }
+
+    @Test
+    void testAppend_ignoredWhenDisabled() throws Exception {
+        // Arrange
+        GameJournal disabled = new GameJournal(false, directory.resolve("disabled").toString(), Duration.ZERO, 3,
+            false, new GameMailboxes(Runnable::run), new SimpleMeterRegistry());
+        disabled.open();
+
+        // Act
+        disabled.created(newGame("game-1"));
+        disabled.checkpoint();
+
+        // Assert
+        assertFalse(Files.exists(directory.resolve("disabled")));
+        assertTrue(disabled.recover().isEmpty());
+    }
+
+    private GameJournal open() throws IOException {
+        // No scheduled checkpoints, the tests call checkpoint() themselves
+        GameJournal opened = new GameJournal(true, directory.toString(), Duration.ZERO, 3, false,
+            new GameMailboxes(Runnable::run), new SimpleMeterRegistry());
+        opened.open();
+        return opened;
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing.filter(path -> path.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    private Game newGame(String id) {
+        return new Game(id, List.of(new Player("1", "One", "one.jpg"), new Player("2", "Two", null)), firstPuzzle, 3);
+    }
+
+    private static Puzzle puzzle(int id) {
+        Puzzle puzzle = new Puzzle();
+        puzzle.setId(id);
+        puzzle.setName("Puzzle " + id);
+        puzzle.setType(Puzzle.Type.MULTI_STEP);
+        return puzzle;
+    }
+
+    private static void assertSameState(Game.Snapshot expected, Game.Snapshot actual) {
+        assertEquals(expected.id(), actual.id());
+        assertEquals(expected.players().stream().map(Player::getId).toList(),
+            actual.players().stream().map(Player::getId).toList());
+        assertEquals(expected.players().getFirst().getPicture(), actual.players().getFirst().getPicture());
+        assertEquals(expected.totalRounds(), actual.totalRounds());
+        assertEquals(expected.currentRound(), actual.currentRound());
+        assertEquals(expected.currentTurn(), actual.currentTurn());
+        assertEquals(expected.puzzleId(), actual.puzzleId());
+        assertEquals(expected.state(), actual.state());
+        assertEquals(expected.roundStartTime(), actual.roundStartTime());
+        assertEquals(expected.statuses(), actual.statuses());
+    }
+}
@@ -0,0 +1,148 @@
+package info.sup.proj.backend.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameMailboxesTest {
+
+    private ExecutorService executor;
+    private GameMailboxes mailboxes;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        mailboxes = new GameMailboxes(executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testExecute_runsTasksOfOneGameOneAtATime() throws Exception {
+        // Arrange
+        int[] counter = new int[1];
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(10_000);
+
+        // Act - an unsynchronized counter only ends up exact if no two tasks overlap
+        try (ExecutorService callers = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 10_000; i++) {
+                callers.execute(() -> mailboxes.execute("game-1", () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    counter[0]++;
+                    running.decrementAndGet();
+                    done.countDown();
+                }));
+            }
+        }
+
+        // Assert
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+        assertEquals(10_000, mailboxes.call("game-1", () -> counter[0]));
+    }
+
+    @Test
+    void testExecute_runsDifferentGamesInParallel() throws Exception {
+        // Arrange
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+
+        // Act - each task only finishes once the other game's task has started too
+        for (String gameId : List.of("game-1", "game-2")) {
+            results.add(mailboxes.submit(gameId, () -> {
+                bothStarted.countDown();
+                try {
+                    return bothStarted.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }));
+        }
+
+        // Assert
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testClose_keepsTheMailboxUntilQueuedTasksHaveRun() throws Exception {
+        // Arrange
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        mailboxes = new GameMailboxes(executor, meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> queued = mailboxes.submit("game-1", () -> {
+            awaitQuietly(release);
+            order.add("queued");
+            return null;
+        });
+
+        // Act - a task arriving after the close must still wait for the one already queued
+        mailboxes.close("game-1");
+        CompletableFuture<Void> late = mailboxes.submit("game-1", () -> {
+            order.add("late");
+            return null;
+        });
+        release.countDown();
+
+        // Assert
+        CompletableFuture.allOf(queued, late).get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("queued", "late"), order);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("game.mailboxes").gauge().value() > 0) {
+            assertTrue(System.nanoTime() < deadline, "closed mailbox was not retired");
+            Thread.sleep(5);
+        }
+        assertEquals(1, mailboxes.call("game-1", () -> 1));
+    }
+
+    @Test
+    void testCall_runsInlineWhenAlreadyOnTheGamesMailbox() {
+        // Act - waiting on its own mailbox would deadlock if the nested call were queued
+        String result = mailboxes.call("game-1", () -> mailboxes.call("game-1", () -> "nested"));
+
+        // Assert
+        assertEquals("nested", result);
+    }
+
+    @Test
+    void testCall_rethrowsTaskException() {
+        // Act & Assert
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+            () -> mailboxes.call("game-1", () -> {
+                throw new IllegalStateException("Game not found");
+            }));
+        assertEquals("Game not found", exception.getMessage());
+
+        // The mailbox keeps working after a failed task
+        assertEquals(1, mailboxes.call("game-1", () -> 1));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package info.sup.proj.backend.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.sup.proj.backend.dto.GameTimelineDto;
+import info.sup.proj.backend.model.GameEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class GameReplayServiceTest {
+
+    @Mock
+    private GameEventLog eventLog;
+
+    private GameReplayService replayService;
+
+    @BeforeEach
+    void setUp() {
+        replayService = new GameReplayService(eventLog, new ObjectMapper());
+    }
+
+    @Test
+    void testReplay_rebuildsRoundsAndScores() {
+        // Arrange
+        when(eventLog.events("game-1")).thenReturn(List.of(
+            event(1_000, GameEvent.Type.GAME_STARTED, 1, null,
+                "{\"totalRounds\":2,\"players\":[{\"id\":\"1\",\"username\":\"One\"},{\"id\":\"2\",\"username\":\"Two\"}]}"),
+            event(1_000, GameEvent.Type.ROUND_STARTED, 1, null,
+                "{\"puzzleId\":7,\"puzzleName\":\"Sum\",\"puzzleType\":\"MULTI_STEP\"}"),
+            event(2_000, GameEvent.Type.PROMPT, 1, "1", "{\"prompt\":\"Add the numbers\",\"text\":\"Here\",\"code\":\"x\"}"),
+            event(3_000, GameEvent.Type.SUBMISSION, 1, "1", "{\"code\":\"x\",\"correctness\":90,\"quality\":80,\"timeBonus\":100,\"score\":90}"),
+            event(4_000, GameEvent.Type.CODE_SNAPSHOT, 1, "2", "{\"code\":\"y\"}"),
+            event(5_000, GameEvent.Type.ROUND_STARTED, 2, null, "{\"puzzleId\":8,\"puzzleName\":\"Sort\",\"puzzleType\":\"FAULTY\"}"),
+            event(6_000, GameEvent.Type.SUBMISSION, 2, "2", "{\"code\":\"z\",\"correctness\":50,\"quality\":50,\"timeBonus\":100,\"score\":65}"),
+            event(7_000, GameEvent.Type.FORFEIT, 2, "1", "{}"),
+            event(7_000, GameEvent.Type.GAME_ENDED, 2, null, "{\"scores\":{\"1\":90,\"2\":65}}")
+        ));
+
+        // Act
+        GameTimelineDto timeline = replayService.replay("game-1").orElseThrow();
+
+        // Assert
+        assertEquals(2, timeline.getTotalRounds());
+        assertEquals(List.of("1", "2"), timeline.getPlayers().stream().map(p -> p.getId()).toList());
+        assertEquals(1_000L, timeline.getStartedAt());
+        assertEquals(7_000L, timeline.getEndedAt());
+        assertEquals("1", timeline.getForfeitedBy());
+        assertEquals(Map.of("1", 90, "2", 65), timeline.getFinalScores());
+
+        assertEquals(2, timeline.getRounds().size());
+        GameTimelineDto.Round first = timeline.getRounds().get(0);
+        assertEquals("Sum", first.getPuzzleName());
+        assertEquals(7, first.getPuzzleId());
+        assertEquals(List.of(GameEvent.Type.PROMPT, GameEvent.Type.SUBMISSION, GameEvent.Type.CODE_SNAPSHOT),
+            first.getEntries().stream().map(GameTimelineDto.Entry::getType).toList());
+        assertEquals(Map.of("1", 90, "2", 0), first.getScores());
+
+        GameTimelineDto.Round second = timeline.getRounds().get(1);
+        assertEquals("FAULTY", second.getPuzzleType());
+        assertEquals(Map.of("1", 90, "2", 65), second.getScores());
+    }
+
+    @Test
+    void testReplay_emptyForUnknownGame() {
+        // Arrange
+        when(eventLog.events("missing")).thenReturn(List.of());
+
+        // Act & Assert
+        assertTrue(replayService.replay("missing").isEmpty());
+    }
+
+    private static GameEvent event(long occurredAt, GameEvent.Type type, int round, String playerId, String payload) {
+        return new GameEvent("game-1", occurredAt, type, round, playerId, payload);
+    }
+}
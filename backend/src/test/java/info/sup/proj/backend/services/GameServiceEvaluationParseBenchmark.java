@@ -0,0 +1,85 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.repositories.PuzzleRepository;
+import info.sup.proj.backend.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Measures {@link GameService#parseAiEvaluation} on the response shapes the evaluator produces: bare JSON,
+ * JSON wrapped in prose and a code fence, and a reply without the expected fields that falls back to defaults.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameServiceEvaluationParseBenchmark {
+
+    @Param({"json", "wrapped", "malformed"})
+    private String shape;
+
+    private ScheduledExecutorService scheduler;
+    private TimingWheel timers;
+    private ExecutorService evaluationExecutor;
+    private GameService gameService;
+    private String response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scheduler = Executors.newScheduledThreadPool(1);
+        timers = new TimingWheel(Duration.ofMillis(100), 512, scheduler);
+        evaluationExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        gameService = new GameService(
+            new PuzzleCatalog(mock(PuzzleRepository.class, withSettings().stubOnly())),
+            mock(ApplicationEventPublisher.class, withSettings().stubOnly()),
+            mock(SimpMessagingTemplate.class, withSettings().stubOnly()),
+            new GameStateBroadcaster(mock(SimpMessagingTemplate.class, withSettings().stubOnly()), new SimpleMeterRegistry()),
+            timers,
+            new EvaluationBatcher(mock(AiService.class, withSettings().stubOnly()), evaluationExecutor, scheduler,
+                Duration.ZERO, 1, new SimpleMeterRegistry()),
+            new EvaluationCache(100, Duration.ofMinutes(30), new SimpleMeterRegistry()),
+            new GameMailboxes(Runnable::run),
+            mock(GameEventLog.class, withSettings().stubOnly()),
+            mock(GameJournal.class, withSettings().stubOnly()),
+            mock(UserRepository.class, withSettings().stubOnly())
+        );
+
+        response = switch (shape) {
+            case "json" -> "{\"correctness\": 85, \"quality\": 78}";
+            case "wrapped" -> """
+                Here is my evaluation of the submitted solution. The loop bounds are correct and the method
+                returns the expected values, but the variable names could be clearer.
+                ```json
+                {"correctness": 92, "quality": 74}
+                ```
+                Overall this is a solid solution for the puzzle.""";
+            case "malformed" -> "Correctness: 85/100. Quality: 70/100. The solution handles the main cases.";
+            default -> throw new IllegalArgumentException("Unknown shape " + shape);
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        timers.stop();
+        scheduler.shutdownNow();
+        evaluationExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public Map<String, Integer> parseAiEvaluation() {
+        return gameService.parseAiEvaluation(response);
+    }
+}
@@ -0,0 +1,101 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Game;
+import info.sup.proj.backend.model.Player;
+import info.sup.proj.backend.model.Puzzle;
+import info.sup.proj.backend.repositories.PuzzleRepository;
+import info.sup.proj.backend.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Measures {@link GameService#findGameByPlayerId} while the number of live games grows.
+ * The indexed lookup should stay flat; {@code scanLookup} reproduces the old linear scan for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameServiceLookupBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int liveGames;
+
+    private ScheduledExecutorService scheduler;
+    private TimingWheel timers;
+    private GameService gameService;
+    private String[] playerIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Puzzle puzzle = new Puzzle("Benchmark", Puzzle.Difficulty.EASY, Puzzle.Type.MULTI_STEP, "Benchmark puzzle");
+        puzzle.setId(1);
+
+        PuzzleRepository puzzleRepository = mock(PuzzleRepository.class, withSettings().stubOnly());
+        when(puzzleRepository.findAll()).thenReturn(List.of(puzzle));
+
+        scheduler = Executors.newScheduledThreadPool(1);
+        timers = new TimingWheel(Duration.ofMillis(100), 512, scheduler);
+        gameService = new GameService(
+            new PuzzleCatalog(puzzleRepository),
+            mock(ApplicationEventPublisher.class, withSettings().stubOnly()),
+            mock(SimpMessagingTemplate.class, withSettings().stubOnly()),
+            new GameStateBroadcaster(mock(SimpMessagingTemplate.class, withSettings().stubOnly()), new SimpleMeterRegistry()),
+            timers,
+            new EvaluationBatcher(mock(AiService.class, withSettings().stubOnly()), Executors.newVirtualThreadPerTaskExecutor(),
+                scheduler, Duration.ZERO, 1, new SimpleMeterRegistry()),
+            new EvaluationCache(100, Duration.ofMinutes(30), new SimpleMeterRegistry()),
+            new GameMailboxes(Runnable::run),
+            mock(GameEventLog.class, withSettings().stubOnly()),
+            mock(GameJournal.class, withSettings().stubOnly()),
+            mock(UserRepository.class, withSettings().stubOnly())
+        );
+
+        playerIds = new String[liveGames * 2];
+        for (int i = 0; i < liveGames; i++) {
+            Player player1 = new Player("p" + (2 * i), "Player " + (2 * i), null);
+            Player player2 = new Player("p" + (2 * i + 1), "Player " + (2 * i + 1), null);
+            gameService.createGame(player1, player2);
+            playerIds[2 * i] = player1.getId();
+            playerIds[2 * i + 1] = player2.getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        timers.stop();
+        scheduler.shutdownNow();
+    }
+
+    private String nextPlayerId() {
+        next = (next + 1) % playerIds.length;
+        return playerIds[next];
+    }
+
+    @Benchmark
+    public Game indexedLookup() {
+        return gameService.findGameByPlayerId(nextPlayerId());
+    }
+
+    @Benchmark
+    public Game scanLookup() {
+        String playerId = nextPlayerId();
+        return gameService.listAllGames().stream()
+            .filter(game -> game.hasPlayer(playerId))
+            .findFirst()
+            .orElse(null);
+    }
+}
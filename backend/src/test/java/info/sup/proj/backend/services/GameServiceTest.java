@@ -6,20 +6,28 @@ import info.sup.proj.backend.model.Puzzle;
 import info.sup.proj.backend.model.User;
 import info.sup.proj.backend.repositories.PuzzleRepository;
 import info.sup.proj.backend.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -41,13 +49,21 @@ public class GameServiceTest {
     private SimpMessagingTemplate messagingTemplate;
 
     @Mock
-    private ScheduledExecutorService scheduler;
+    private TimingWheel timers;
 
     @Mock
     private UserRepository userRepository;
 
     @Mock
-    private ScheduledFuture<?> scheduledFuture;
+    private TimingWheel.Timeout timeout;
+
+    @Mock
+    private GameEventLog eventLog;
+
+    @Mock
+    private GameJournal journal;
+
+    private ExecutorService evaluationExecutor;
 
     private GameService gameService;
 
@@ -60,15 +76,23 @@ public class GameServiceTest {
 
     @BeforeEach
     void setUp() {
-        // Setup scheduler mock
-        lenient().doReturn(scheduledFuture).when(scheduler).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        // Setup timer mock
+        lenient().doReturn(timeout).when(timers).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        evaluationExecutor = Executors.newSingleThreadExecutor();
 
         gameService = new GameService(
-            puzzleRepository,
-            aiService,
+            new PuzzleCatalog(puzzleRepository),
             eventPublisher,
             messagingTemplate,
-            scheduler,
+            new GameStateBroadcaster(messagingTemplate, new SimpleMeterRegistry()),
+            timers,
+            // No batching window, so every submission is evaluated on its own right away
+            new EvaluationBatcher(aiService, evaluationExecutor, mock(ScheduledExecutorService.class), Duration.ZERO, 1,
+                new SimpleMeterRegistry()),
+            new EvaluationCache(100, Duration.ofMinutes(30), new SimpleMeterRegistry()),
+            new GameMailboxes(Runnable::run),
+            eventLog,
+            journal,
             userRepository
         );
         
@@ -98,6 +122,11 @@ public class GameServiceTest {
         lenient().when(userRepository.findById(2L)).thenReturn(Optional.of(user2));
     }
 
+    @AfterEach
+    void tearDown() {
+        evaluationExecutor.shutdownNow();
+    }
+
     @Test
     void testCreateGame_success() {
         // Arrange
@@ -118,6 +147,105 @@ public class GameServiceTest {
         assertEquals(player1.getId(), game.getCurrentTurn());
     }
 
+    @Test
+    void testSubmitSolution_recordsScoreBreakdown() {
+        // Arrange
+        when(puzzleRepository.findAll())
+                .thenReturn(List.of(testPuzzle));
+        Game game = gameService.createGame(player1, player2);
+        when(aiService.getCodeEvaluation(any(), anyString(), eq("int x = 1;"), any()))
+                .thenReturn("{\"correctness\": 90, \"quality\": 80}");
+
+        // Act
+        Map<String, Object> result = gameService.submitSolution(player1.getId(), "int x = 1;").join();
+
+        // Assert
+        verify(eventLog).gameStarted(game);
+        verify(eventLog).roundStarted(game);
+        verify(eventLog).submission(game, player1.getId(), "int x = 1;", 90, 80,
+            (Integer) result.get("timeBonus"), (Integer) result.get("score"));
+    }
+
+    @Test
+    void testCompletePuzzle_recordsCodeSnapshotOncePerPlayer() {
+        // Arrange
+        Game game = gameService.createGame(player1, player2);
+        gameService.updatePlayerCode(game.getId(), player1.getId(), "int y = 2;");
+
+        // Act
+        gameService.completePuzzle(player1.getId());
+        gameService.completePuzzle(player1.getId());
+
+        // Assert
+        verify(eventLog).codeSnapshot(game, player1.getId(), "int y = 2;");
+        verify(eventLog).playerCompleted(game, player1.getId());
+    }
+
+    @Test
+    void testCompletePuzzle_journalsCodeScoreAndCompletion() {
+        // Arrange
+        Game game = gameService.createGame(player1, player2);
+
+        // Act
+        gameService.updatePlayerCode(game.getId(), player1.getId(), "int y = 2;");
+        gameService.completePuzzle(player1.getId());
+
+        // Assert
+        var order = inOrder(journal);
+        order.verify(journal).created(game);
+        order.verify(journal).codeUpdated(game, player1.getId(), "int y = 2;");
+        order.verify(journal).completed(game, player1.getId());
+    }
+
+    @Test
+    void testRecoverGames_hostsRecoveredGamesAndResumesTheirRound() {
+        // Arrange
+        Game saved = new Game("game-1", List.of(player1, player2), secondPuzzle, 3);
+        saved.updatePlayerScore(player1.getId(), 70);
+        saved.updateCurrentCode(player2.getId(), "int z = 3;");
+        Game.Snapshot missingPuzzle = new Game("game-2", List.of(new Player("3", "Three", null),
+            new Player("4", "Four", null)), createTestPuzzle(99, "Removed"), 3).snapshot();
+        when(journal.recover()).thenReturn(List.of(saved.snapshot(), missingPuzzle));
+
+        // Act
+        gameService.recoverGames();
+
+        // Assert
+        Game recovered = gameService.findGameByPlayerId(player2.getId());
+        assertNotNull(recovered);
+        assertEquals("game-1", recovered.getId());
+        assertEquals(secondPuzzle, recovered.getCurrentPuzzle());
+        assertEquals(70, recovered.getPlayerStatus().get(player1.getId()).getScore());
+        assertEquals("int z = 3;", recovered.getPlayerStatus().get(player2.getId()).getCode());
+        verify(journal).track(recovered);
+        verify(journal, never()).created(any());
+        verify(timers).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+        assertNull(gameService.getGame("game-2"));
+    }
+
+    @Test
+    void testRecoverGames_playerReconnectingAfterRestartKeepsTheirSequence() {
+        // Arrange - before the restart the players had seen up to sequence 41
+        Game saved = new Game("game-1", List.of(player1, player2), secondPuzzle, 3);
+        when(journal.recover()).thenReturn(List.of(saved.snapshot()));
+        when(journal.track(any(Game.class))).thenReturn(41L);
+        gameService.recoverGames();
+        Game recovered = gameService.getGame("game-1");
+
+        // Act - the client reconnects, joins again and the game moves on
+        gameService.sendGameState(recovered, player1.getId());
+        gameService.updatePlayerCode("game-1", player2.getId(), "int y = 2;");
+
+        // Assert - the join snapshot and the next delta continue the sequence instead of restarting at 1
+        ArgumentCaptor<Object> snapshot = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSendToUser(eq(player1.getId()), eq("/queue/game"), snapshot.capture());
+        assertEquals(41L, ((Map<?, ?>) snapshot.getValue()).get("seq"));
+        ArgumentCaptor<Object> delta = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/game/game-1"), delta.capture());
+        assertEquals(42L, ((Map<?, ?>) delta.getValue()).get("seq"));
+        verify(journal).published(recovered, 42L);
+    }
+
     @Test
     void testCreateGame_noPuzzlesAvailable() {
         // Arrange
@@ -142,11 +270,11 @@ public class GameServiceTest {
         String solutionCode = "public class Solution { /* implementation */ }";
         
         // Mock AI evaluation
-        when(aiService.getCodeEvaluation(anyString(), eq(solutionCode), any()))
+        when(aiService.getCodeEvaluation(any(), anyString(), eq(solutionCode), any()))
                 .thenReturn("{\"correctness\": 90, \"quality\": 85}");
 
         // Act
-        Map<String, Object> result = gameService.submitSolution(player1.getId(), solutionCode);
+        Map<String, Object> result = gameService.submitSolution(player1.getId(), solutionCode).join();
 
         // Assert
         assertNotNull(result);
@@ -162,6 +290,48 @@ public class GameServiceTest {
         assertEquals(solutionCode, game.getPlayerStatus().get(player1.getId()).getCode());
     }
 
+    @Test
+    void testSubmitSolution_acknowledgesBeforeScoring() throws Exception {
+        // Arrange
+        gameService.createGame(player1, player2);
+        CountDownLatch evaluationStarted = new CountDownLatch(1);
+        CountDownLatch releaseEvaluation = new CountDownLatch(1);
+        when(aiService.getCodeEvaluation(any(), anyString(), anyString(), any())).thenAnswer(invocation -> {
+            evaluationStarted.countDown();
+            releaseEvaluation.await();
+            return "{\"correctness\": 90, \"quality\": 85}";
+        });
+
+        // Act
+        CompletableFuture<Map<String, Object>> pending = gameService.submitSolution(player1.getId(), "int x = 1;");
+        evaluationStarted.await();
+
+        // Assert - the player is told the submission is being scored while the AI call is still running
+        assertFalse(pending.isDone());
+        verify(messagingTemplate).convertAndSendToUser(
+            eq(player1.getId()),
+            eq("/queue/game"),
+            argThat((Map<String, Object> message) -> "SCORING".equals(message.get("type")))
+        );
+
+        // A second submission from the same player is rejected while the first is in flight
+        CompletableFuture<Map<String, Object>> duplicate = gameService.submitSolution(player1.getId(), "int x = 2;");
+        assertThrows(CompletionException.class, duplicate::join);
+        verify(messagingTemplate).convertAndSendToUser(
+            eq(player1.getId()),
+            eq("/queue/game"),
+            argThat((Map<String, Object> message) -> "SUBMISSION_REJECTED".equals(message.get("type")))
+        );
+
+        releaseEvaluation.countDown();
+        Map<String, Object> result = pending.join();
+        assertEquals("SUBMISSION_SCORED", result.get("type"));
+
+        // Once scored, the player may submit again
+        gameService.submitSolution(player1.getId(), "int x = 3;").join();
+        verify(aiService, times(2)).getCodeEvaluation(any(), anyString(), anyString(), any());
+    }
+
     @Test
     void testCompletePuzzle_allPlayersCompleted_notFinalRound() {
         // Arrange
@@ -178,7 +348,7 @@ public class GameServiceTest {
         assertTrue(updatedGame.getPlayerStatus().get(player1.getId()).isHasCompleted());
         assertTrue(updatedGame.getPlayerStatus().get(player2.getId()).isHasCompleted());
         assertEquals(Game.GameState.IN_PROGRESS, updatedGame.getState());
-        verify(scheduler).schedule(any(Runnable.class), eq(2L), eq(TimeUnit.SECONDS));
+        verify(timers).schedule(any(Runnable.class), eq(2L), eq(TimeUnit.SECONDS));
     }
 
     @Test
@@ -241,6 +411,30 @@ public class GameServiceTest {
         assertNull(found);
     }
 
+    @Test
+    void testFindGameByPlayerId_followsLatestGameAndDelayedRemoval() {
+        // Arrange
+        Game firstGame = gameService.createGame(player1, player2);
+        gameService.forfeitGame(player1.getId());
+
+        ArgumentCaptor<Runnable> removal = ArgumentCaptor.forClass(Runnable.class);
+        verify(timers).schedule(removal.capture(), eq(5L), eq(TimeUnit.MINUTES));
+
+        // Ended games stay reachable until they are removed
+        assertSame(firstGame, gameService.findGameByPlayerId(player2.getId()));
+
+        // Act - player 1 starts a new game before the old one is cleaned up
+        Player player3 = new Player("3", "Player Three", "player3.jpg");
+        Game secondGame = gameService.createGame(player1, player3);
+        removal.getValue().run();
+
+        // Assert
+        assertSame(secondGame, gameService.findGameByPlayerId(player1.getId()));
+        assertSame(secondGame, gameService.findGameByPlayerId(player3.getId()));
+        assertNull(gameService.findGameByPlayerId(player2.getId()));
+        assertNull(gameService.getGame(firstGame.getId()));
+    }
+
     @Test
     void testGetNextDifferentPuzzle_success() {
         // Arrange
@@ -301,23 +495,78 @@ public class GameServiceTest {
         String solutionCode = "public class Solution { /* implementation */ }";
         
         // Mock AI evaluation
-        when(aiService.getCodeEvaluation(anyString(), eq(solutionCode), any()))
+        when(aiService.getCodeEvaluation(any(), anyString(), eq(solutionCode), any()))
                 .thenReturn("{\"correctness\": 90, \"quality\": 85}");
 
         // Act - Submit solutions for two rounds
-        gameService.submitSolution(player1.getId(), solutionCode); // First round
+        gameService.submitSolution(player1.getId(), solutionCode).join(); // First round
         int firstScore = game.getPlayerStatus().get(player1.getId()).getScore();
         
         game.startNextRoundWithExplicitNumber(testPuzzle, 2);
-        gameService.submitSolution(player1.getId(), solutionCode); // Second round
+        gameService.submitSolution(player1.getId(), solutionCode).join(); // Second round
         int secondScore = game.getPlayerStatus().get(player1.getId()).getScore();
 
         // Assert
         assertTrue(secondScore > firstScore, "Second score should be higher than first score");
+        verify(aiService, times(1)).getCodeEvaluation(any(), anyString(), eq(solutionCode), any());
         assertTrue(game.getPlayerStatus().get(player1.getId()).getScore() >= firstScore + 50,
                 "Total score should accumulate between rounds");
     }
 
+    @Test
+    void testSubmitSolution_failureBeforeScoringDoesNotBlockTheNextSubmission() {
+        // Arrange
+        when(puzzleRepository.findAll())
+                .thenReturn(List.of(testPuzzle));
+        
+        gameService.createGame(player1, player2);
+        String solutionCode = "int x = 1;";
+        doThrow(new IllegalStateException("Journal unavailable")).doNothing()
+                .when(journal).codeUpdated(any(), eq(player1.getId()), eq(solutionCode));
+        when(aiService.getCodeEvaluation(any(), anyString(), eq(solutionCode), any()))
+                .thenReturn("{\"correctness\": 90, \"quality\": 85}");
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> gameService.submitSolution(player1.getId(), solutionCode));
+        Map<String, Object> result = gameService.submitSolution(player1.getId(), solutionCode).join();
+
+        // Assert - the failed submission did not stay marked as being scored
+        assertEquals(90, result.get("correctnessScore"));
+    }
+
+    @Test
+    void testSubmitSolution_doesNotCacheUnscoredEvaluation() {
+        // Arrange
+        when(puzzleRepository.findAll())
+                .thenReturn(List.of(testPuzzle));
+        
+        gameService.createGame(player1, player2);
+        String solutionCode = "int x = 1;";
+        when(aiService.getCodeEvaluation(any(), anyString(), eq(solutionCode), any()))
+                .thenReturn(null)
+                .thenReturn("{\"correctness\": 90, \"quality\": 85}");
+
+        // Act
+        Map<String, Object> unscored = gameService.submitSolution(player1.getId(), solutionCode).join();
+        Map<String, Object> scored = gameService.submitSolution(player1.getId(), solutionCode).join();
+
+        // Assert - the failed evaluation gets the default scores and the resubmission asks the AI again
+        assertEquals(75, unscored.get("correctnessScore"));
+        assertEquals(70, unscored.get("qualityScore"));
+        assertEquals(90, scored.get("correctnessScore"));
+        verify(aiService, times(2)).getCodeEvaluation(any(), anyString(), eq(solutionCode), any());
+    }
+
+    @Test
+    void testParseAiEvaluation_returnsNullWithoutBothScores() {
+        // Act & Assert
+        assertNull(gameService.parseAiEvaluation(null));
+        assertNull(gameService.parseAiEvaluation("Correctness: 85/100. Quality: 70/100."));
+        assertNull(gameService.parseAiEvaluation("{\"correctness\": 85}"));
+        assertEquals(Map.of("correctness", 85, "quality", 70),
+                gameService.parseAiEvaluation("{\"correctness\": 85, \"quality\": 70}"));
+    }
+
     @Test
     void testStartNextRoundWithExplicitNumber() {
         // Arrange
@@ -390,8 +639,8 @@ public class GameServiceTest {
         assertTrue(updatedGame.getPlayerStatus().get(player1.getId()).isHasCompleted());
         assertTrue(updatedGame.getPlayerStatus().get(player2.getId()).isHasCompleted());
         
-        // Verify scheduler was called to add delay
-        verify(scheduler).schedule(any(Runnable.class), eq(2L), eq(TimeUnit.SECONDS));
+        // Verify a delayed timer was scheduled
+        verify(timers).schedule(any(Runnable.class), eq(2L), eq(TimeUnit.SECONDS));
     }
 
     @Test
@@ -407,7 +656,7 @@ public class GameServiceTest {
         gameService.completePuzzle(player2.getId());
         
         // Verify round 2 starts after delay
-        verify(scheduler).schedule(any(Runnable.class), eq(2L), eq(TimeUnit.SECONDS));
+        verify(timers).schedule(any(Runnable.class), eq(2L), eq(TimeUnit.SECONDS));
         
         // Simulate round 2 start
         game.startNextRoundWithExplicitNumber(createTestPuzzle(2, "Different Puzzle"), 2);
@@ -422,7 +671,7 @@ public class GameServiceTest {
         gameService.completePuzzle(player2.getId());
         
         // Verify round 3 starts after delay
-        verify(scheduler, times(2)).schedule(any(Runnable.class), eq(2L), eq(TimeUnit.SECONDS));
+        verify(timers, times(2)).schedule(any(Runnable.class), eq(2L), eq(TimeUnit.SECONDS));
     }
 
     @Test
@@ -453,7 +702,7 @@ public class GameServiceTest {
         gameService.completePuzzle(player2.getId());
         
         // Verify round 2 starts after delay
-        verify(scheduler).schedule(any(Runnable.class), eq(2L), eq(TimeUnit.SECONDS));
+        verify(timers).schedule(any(Runnable.class), eq(2L), eq(TimeUnit.SECONDS));
     }
 
     private Puzzle createTestPuzzle(int id, String name) {
@@ -0,0 +1,151 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Game;
+import info.sup.proj.backend.model.Player;
+import info.sup.proj.backend.model.Puzzle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class GameStateBroadcasterTest {
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private GameStateBroadcaster broadcaster;
+    private Game game;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        broadcaster = new GameStateBroadcaster(messagingTemplate, meterRegistry);
+
+        Puzzle puzzle = new Puzzle("Sum", Puzzle.Difficulty.EASY, Puzzle.Type.MULTI_STEP, "Add the numbers");
+        puzzle.setId(1);
+        game = new Game("game-1", List.of(
+            new Player("1", "Player One", null),
+            new Player("2", "Player Two", null)
+        ), puzzle, 3);
+    }
+
+    @Test
+    void testPublish_sendsSnapshotFirstThenOnlyChangedFields() {
+        // Arrange
+        broadcaster.publish(game);
+        game.updatePlayerScore("1", 40);
+        game.updateCurrentCode("2", "int x;");
+
+        // Act
+        broadcaster.publish(game);
+
+        // Assert
+        List<Map<String, Object>> frames = topicFrames(2);
+        assertEquals(GameStateBroadcaster.GAME_STATE, frames.get(0).get("type"));
+        assertEquals(1L, frames.get(0).get("seq"));
+
+        Map<String, Object> delta = frames.get(1);
+        assertEquals(GameStateBroadcaster.GAME_STATE_DELTA, delta.get("type"));
+        assertEquals(2L, delta.get("seq"));
+        assertEquals(Map.of(
+            "1", Map.of("score", 40),
+            "2", Map.of("codeDiff", new GameStateBroadcaster.CodeDiff(0, 0, "int x;"))
+        ), delta.get("playerStatus"));
+        assertFalse(delta.containsKey("currentPuzzle"));
+        assertFalse(delta.containsKey("currentRound"));
+    }
+
+    @Test
+    void testPublish_skipsUnchangedState() {
+        // Arrange
+        broadcaster.publish(game);
+
+        // Act
+        broadcaster.publish(game);
+
+        // Assert
+        topicFrames(1);
+        assertEquals(1, broadcaster.sequence("game-1"));
+    }
+
+    @Test
+    void testPublish_includesPuzzleOnRoundChange() {
+        // Arrange
+        broadcaster.publish(game);
+        Puzzle nextPuzzle = new Puzzle("Reverse", Puzzle.Difficulty.MEDIUM, Puzzle.Type.FAULTY, "Reverse a string");
+        nextPuzzle.setId(2);
+
+        // Act
+        game.startNextRoundWithExplicitNumber(nextPuzzle, 2);
+        broadcaster.publish(game);
+
+        // Assert
+        Map<String, Object> delta = topicFrames(2).get(1);
+        assertEquals(2, delta.get("currentRound"));
+        assertSame(nextPuzzle, delta.get("currentPuzzle"));
+    }
+
+    @Test
+    void testSendSnapshot_flushesPendingChangesAndCarriesSequence() {
+        // Arrange
+        broadcaster.publish(game);
+        game.markPlayerCompleted("1");
+
+        // Act
+        broadcaster.sendSnapshot(game, "2");
+
+        // Assert
+        assertEquals(GameStateBroadcaster.GAME_STATE_DELTA, topicFrames(2).get(1).get("type"));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("2"), eq("/queue/game"), captor.capture());
+        assertEquals(2L, captor.getValue().get("seq"));
+        assertSame(game, captor.getValue().get("payload"));
+        assertEquals(2.0, meterRegistry.counter("game.state.messages", "kind", "snapshot").count());
+        assertEquals(1.0, meterRegistry.counter("game.state.messages", "kind", "delta").count());
+    }
+
+    @Test
+    void testCodeDiff_roundTripsEdits() {
+        // Arrange
+        String[][] edits = {
+            {"", "public class A {}"},
+            {"public class A {}", "public class AB {}"},
+            {"int a = 1;\nint b = 2;", "int a = 1;\nint b = 2;\nint c = 3;"},
+            {"return a + b;", "return b;"},
+            {"aaaa", "aa"},
+            {"x = 1;", ""},
+        };
+
+        for (String[] edit : edits) {
+            // Act
+            GameStateBroadcaster.CodeDiff diff = GameStateBroadcaster.CodeDiff.between(edit[0], edit[1]);
+
+            // Assert
+            assertEquals(edit[1], diff.applyTo(edit[0]));
+        }
+        assertEquals(new GameStateBroadcaster.CodeDiff(14, 0, "B"),
+            GameStateBroadcaster.CodeDiff.between("public class A {}", "public class AB {}"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> topicFrames(int expected) {
+        ArgumentCaptor<Map<String, Object>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(messagingTemplate, times(expected)).convertAndSend(eq("/topic/game/game-1"), captor.capture());
+        return captor.getAllValues();
+    }
+}
@@ -0,0 +1,88 @@
+package info.sup.proj.backend.services;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching throughput with {@code searching} players waiting for an opponent. Every operation is one new search:
+ * it either takes an opponent within {@code eloRange} or joins the queue, and a matched opponent is replaced by a
+ * fresh searcher so the queue stays at its size. {@code scanMatch} reproduces the old linear scan over all
+ * searchers, with the rating lookup served from a map instead of the database it used to hit per candidate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchmakingQueueBenchmark {
+
+    @Param({"10000"})
+    private int searching;
+
+    @Param({"25", "200"})
+    private int eloRange;
+
+    private MatchmakingQueue queue;
+    private Map<String, Integer> scanSearchers;
+    private Map<String, Integer> ratings;
+    private Random random;
+    private long nextId;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        random = new Random(42);
+        queue = new MatchmakingQueue();
+        scanSearchers = new LinkedHashMap<>();
+        ratings = new HashMap<>();
+        nextId = 0;
+        for (int i = 0; i < searching; i++) {
+            String userId = Long.toString(nextId++);
+            int elo = randomElo();
+            queue.enqueue(userId, elo, eloRange);
+            scanSearchers.put(userId, elo);
+            ratings.put(userId, elo);
+        }
+    }
+
+    @Benchmark
+    public Optional<MatchmakingQueue.Match> indexedMatch() {
+        Optional<MatchmakingQueue.Match> opponent = queue.matchOrEnqueue(Long.toString(nextId++), randomElo(), eloRange);
+        if (opponent.isPresent()) {
+            queue.enqueue(Long.toString(nextId++), randomElo(), eloRange);
+        }
+        return opponent;
+    }
+
+    @Benchmark
+    public Optional<String> scanMatch() {
+        String userId = Long.toString(nextId++);
+        int elo = randomElo();
+        ratings.put(userId, elo);
+
+        Optional<String> opponent = scanSearchers.keySet().stream()
+            .filter(candidate -> Math.abs(elo - ratings.get(candidate)) <= eloRange)
+            .findFirst();
+        if (opponent.isPresent()) {
+            scanSearchers.remove(opponent.get());
+            String replacement = Long.toString(nextId++);
+            int replacementElo = randomElo();
+            ratings.put(replacement, replacementElo);
+            scanSearchers.put(replacement, replacementElo);
+        } else {
+            scanSearchers.put(userId, elo);
+        }
+        return opponent;
+    }
+
+    private int randomElo() {
+        // Ratings cluster around the starting Elo like a real ladder
+        return (int) Math.round(1000 + random.nextGaussian() * 300);
+    }
+}
@@ -0,0 +1,167 @@
+package info.sup.proj.backend.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchmakingQueueTest {
+
+    private AtomicLong clock;
+    private MatchmakingQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        clock = new AtomicLong();
+        queue = new MatchmakingQueue(50, 400, clock::get);
+    }
+
+    @Test
+    void testMatchOrEnqueue_queuesWhenNoOpponentInRange() {
+        // Arrange
+        queue.enqueue("1", 1000, 200);
+
+        // Act
+        Optional<MatchmakingQueue.Match> opponent = queue.matchOrEnqueue("2", 1300, 200);
+
+        // Assert
+        assertTrue(opponent.isEmpty());
+        assertTrue(queue.contains("2"));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    void testMatchOrEnqueue_picksClosestRatingAndRemovesIt() {
+        // Arrange
+        queue.enqueue("low", 900, 1000);
+        queue.enqueue("near", 1040, 1000);
+        queue.enqueue("high", 1200, 1000);
+
+        // Act
+        Optional<MatchmakingQueue.Match> opponent = queue.matchOrEnqueue("searcher", 1050, 500);
+
+        // Assert
+        assertEquals("near", opponent.orElseThrow().secondId());
+        assertFalse(queue.contains("near"));
+        assertFalse(queue.contains("searcher"));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    void testMatchOrEnqueue_prefersLongestWaitingAtSameRating() {
+        // Arrange
+        queue.enqueue("first", 1000, 1000);
+        queue.enqueue("second", 1000, 1000);
+        queue.enqueue("third", 1000, 1000);
+
+        // Act & Assert
+        assertEquals("first", queue.matchOrEnqueue("a", 1000, 0).orElseThrow().secondId());
+        assertEquals("second", queue.matchOrEnqueue("b", 1010, 50).orElseThrow().secondId());
+        assertEquals("third", queue.matchOrEnqueue("c", 990, 50).orElseThrow().secondId());
+    }
+
+    @Test
+    void testMatchOrEnqueue_requeueingDoesNotMatchItself() {
+        // Arrange
+        queue.enqueue("1", 1000, 1000);
+
+        // Act
+        Optional<MatchmakingQueue.Match> opponent = queue.matchOrEnqueue("1", 1000, 1000);
+
+        // Assert
+        assertTrue(opponent.isEmpty());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    void testRemove_stopsPlayerFromBeingMatched() {
+        // Arrange
+        queue.enqueue("1", 1000, 1000);
+
+        // Act
+        assertTrue(queue.remove("1"));
+
+        // Assert
+        assertTrue(queue.matchOrEnqueue("2", 1000, 100).isEmpty());
+        assertFalse(queue.remove("1"));
+    }
+
+    @Test
+    void testMatchOrEnqueue_respectsOpponentWindow() {
+        // Arrange
+        queue.enqueue("narrow", 1000, 10);
+
+        // Act
+        Optional<MatchmakingQueue.Match> opponent = queue.matchOrEnqueue("wide", 1100, 1000);
+
+        // Assert
+        assertTrue(opponent.isEmpty());
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    void testMatchOrEnqueue_looksPastNeighboursThatRejectTheSearcher() {
+        // Arrange - the nearest searcher on each side only accepts their own rating
+        queue.enqueue("narrow-high", 1020, 0);
+        queue.enqueue("narrow-low", 980, 0);
+        queue.enqueue("wide-low", 980, 100);
+        queue.enqueue("wide-high", 1060, 100);
+
+        // Act
+        Optional<MatchmakingQueue.Match> opponent = queue.matchOrEnqueue("searcher", 1000, 100);
+
+        // Assert - the next one at the same rating is found, ahead of the farther one above
+        assertEquals("wide-low", opponent.orElseThrow().secondId());
+        assertEquals("wide-high", queue.matchOrEnqueue("next", 1000, 100).orElseThrow().secondId());
+        assertTrue(queue.matchOrEnqueue("last", 1000, 100).isEmpty());
+    }
+
+    @Test
+    void testMatchWaiting_widensWindowsWithWaitTime() {
+        // Arrange
+        queue.enqueue("1", 1000, 0);
+        queue.enqueue("2", 1120, 0);
+        assertTrue(queue.matchWaiting().isEmpty());
+
+        // Act
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        List<MatchmakingQueue.Match> tooEarly = queue.matchWaiting();
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        List<MatchmakingQueue.Match> matches = queue.matchWaiting();
+
+        // Assert
+        assertTrue(tooEarly.isEmpty());
+        assertEquals(1, matches.size());
+        assertEquals("1", matches.getFirst().firstId());
+        assertEquals("2", matches.getFirst().secondId());
+        assertEquals(Duration.ofSeconds(3).toNanos(), matches.getFirst().firstWaitNanos());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void testMatchWaiting_capsWindowAndServesLongestWaitingFirst() {
+        // Arrange
+        queue.enqueue("oldest", 1000, 0);
+        queue.enqueue("far", 1500, 0);
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        queue.enqueue("newer", 1000, 50);
+        queue.enqueue("newest", 1040, 50);
+        clock.addAndGet(Duration.ofMinutes(1).toNanos());
+
+        // Act
+        List<MatchmakingQueue.Match> matches = queue.matchWaiting();
+
+        // Assert
+        assertEquals(1, matches.size());
+        assertEquals("oldest", matches.getFirst().firstId());
+        assertEquals("newer", matches.getFirst().secondId());
+        // 460 apart stays beyond the 400 cap however long they wait
+        assertTrue(queue.contains("far"));
+        assertTrue(queue.contains("newest"));
+    }
+}
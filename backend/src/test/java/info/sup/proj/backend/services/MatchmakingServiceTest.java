@@ -1,9 +1,12 @@
 package info.sup.proj.backend.services;
 
+import info.sup.proj.backend.events.EloChangedEvent;
 import info.sup.proj.backend.model.Game;
 import info.sup.proj.backend.model.Player;
+import info.sup.proj.backend.model.Puzzle;
 import info.sup.proj.backend.model.User;
 import info.sup.proj.backend.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,9 +15,14 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -33,11 +41,19 @@ public class MatchmakingServiceTest {
     @Mock
     private SimpMessagingTemplate messagingTemplate;
 
+    @Mock
+    private ScheduledExecutorService scheduler;
+
+    private AtomicLong clock;
+    private SimpleMeterRegistry meterRegistry;
     private MatchmakingService matchmakingService;
 
     @BeforeEach
     void setUp() {
-        matchmakingService = new MatchmakingService(gameService, userRepository, messagingTemplate);
+        clock = new AtomicLong();
+        meterRegistry = new SimpleMeterRegistry();
+        matchmakingService = new MatchmakingService(gameService, userRepository, messagingTemplate, scheduler,
+            Duration.ofSeconds(1), new MatchmakingQueue(100, 2000, clock::get), meterRegistry);
     }
 
     @Test
@@ -143,6 +159,155 @@ public class MatchmakingServiceTest {
         }
     }
 
+    @Test
+    void testStartSearchingForOpponent_matchesFromCachedRatings() {
+        // Arrange
+        User first = new User();
+        first.setId(1L);
+        first.setUsername("first");
+        first.setElo(1200);
+
+        User second = new User();
+        second.setId(2L);
+        second.setUsername("second");
+        second.setElo(1250);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(first));
+        when(userRepository.findById(2L)).thenReturn(Optional.of(second));
+        matchmakingService.addPlayerToLobby(1L);
+        matchmakingService.addPlayerToLobby(2L);
+        matchmakingService.startSearchingForOpponent("1", Map.of("eloRange", 100));
+
+        Game game = mock(Game.class);
+        when(game.getId()).thenReturn("game-1");
+        when(game.getCurrentPuzzle()).thenReturn(new Puzzle());
+        when(gameService.createGame(any(Player.class), any(Player.class))).thenReturn(game);
+        clearInvocations(userRepository);
+
+        // Act
+        matchmakingService.startSearchingForOpponent("2", Map.of("eloRange", 100));
+
+        // Assert
+        verify(gameService).createGame(any(Player.class), any(Player.class));
+        verifyNoInteractions(userRepository);
+        verify(messagingTemplate).convertAndSendToUser(
+            eq("1"),
+            eq("/queue/game"),
+            argThat(map -> map instanceof Map && Integer.valueOf(1250).equals(((Map) map).get("opponentElo")))
+        );
+    }
+
+    @Test
+    void testMatchmakingTick_matchesPlayersOnceWindowsWiden() {
+        // Arrange
+        User first = new User();
+        first.setId(1L);
+        first.setUsername("first");
+        first.setElo(1000);
+
+        User second = new User();
+        second.setId(2L);
+        second.setUsername("second");
+        second.setElo(1250);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(first));
+        when(userRepository.findById(2L)).thenReturn(Optional.of(second));
+        matchmakingService.addPlayerToLobby(1L);
+        matchmakingService.addPlayerToLobby(2L);
+        matchmakingService.startSearchingForOpponent("1", Map.of("eloRange", 50));
+        matchmakingService.startSearchingForOpponent("2", Map.of("eloRange", 50));
+
+        Game game = mock(Game.class);
+        when(game.getId()).thenReturn("game-1");
+        when(game.getCurrentPuzzle()).thenReturn(new Puzzle());
+        when(gameService.createGame(any(Player.class), any(Player.class))).thenReturn(game);
+
+        // Act
+        matchmakingService.runMatchmakingTick();
+        verify(gameService, never()).createGame(any(Player.class), any(Player.class));
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        matchmakingService.runMatchmakingTick();
+
+        // Assert
+        verify(gameService).createGame(any(Player.class), any(Player.class));
+        assertEquals(0.0, meterRegistry.get("matchmaking.queue.depth").gauge().value());
+        assertEquals(2, meterRegistry.get("matchmaking.time.to.match").timer().count());
+        assertEquals(Duration.ofSeconds(2).toNanos(),
+            meterRegistry.get("matchmaking.time.to.match").timer().max(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    void testStartMatchmakingTick_schedulesOnSharedScheduler() {
+        // Act
+        matchmakingService.startMatchmakingTick();
+
+        // Assert
+        verify(scheduler).scheduleWithFixedDelay(any(Runnable.class), eq(1000L), eq(1000L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testLobbyPresence_sendsVersionedDeltas() {
+        // Arrange
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("testuser");
+        user.setElo(1100);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        // Act
+        matchmakingService.addPlayerToLobby(1L);
+        matchmakingService.onEloChanged(new EloChangedEvent(this, 1L, 1125));
+        matchmakingService.removePlayerFromLobby("1");
+
+        // Assert
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, times(3)).convertAndSend(eq("/topic/lobby"), captor.capture());
+        List<Map<?, ?>> deltas = captor.getAllValues().stream()
+            .<Map<?, ?>>map(delta -> assertInstanceOf(Map.class, delta))
+            .toList();
+
+        assertEquals("PLAYER_JOINED", deltas.get(0).get("type"));
+        assertEquals(1100, ((Map<?, ?>) deltas.get(0).get("player")).get("elo"));
+        assertEquals("ELO_CHANGED", deltas.get(1).get("type"));
+        assertEquals(1125, deltas.get(1).get("elo"));
+        assertEquals("PLAYER_LEFT", deltas.get(2).get("type"));
+        assertEquals(1L, deltas.get(2).get("userId"));
+        assertEquals(List.of(1L, 2L, 3L), deltas.stream().map(delta -> delta.get("version")).toList());
+        verify(userRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void testLobbySnapshot_excludesSearchingPlayers() {
+        // Arrange
+        User first = new User();
+        first.setId(1L);
+        first.setUsername("first");
+        first.setElo(1000);
+
+        User second = new User();
+        second.setId(2L);
+        second.setUsername("second");
+        second.setElo(1900);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(first));
+        when(userRepository.findById(2L)).thenReturn(Optional.of(second));
+        matchmakingService.addPlayerToLobby(1L);
+        matchmakingService.addPlayerToLobby(2L);
+
+        // Act
+        matchmakingService.startSearchingForOpponent("2", Map.of("eloRange", 10));
+        Map<String, Object> snapshot = matchmakingService.getLobbySnapshot();
+
+        // Assert
+        assertEquals("LOBBY_SNAPSHOT", snapshot.get("type"));
+        assertEquals(3L, snapshot.get("version"));
+        List<?> players = (List<?>) snapshot.get("players");
+        assertEquals(1, players.size());
+        assertEquals(1L, ((Map<?, ?>) players.getFirst()).get("userId"));
+        verify(messagingTemplate).convertAndSend(eq("/topic/lobby"),
+            argThat((Map<String, Object> map) -> "PLAYER_LEFT".equals(map.get("type")) && Long.valueOf(2L).equals(map.get("userId"))));
+    }
+
     @Test
     void testChallengePlayer_bothPlayersInLobby() {
         // Arrange
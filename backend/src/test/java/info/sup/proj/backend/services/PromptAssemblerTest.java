@@ -0,0 +1,126 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Puzzle;
+import info.sup.proj.backend.services.llm.LlmRequest;
+import info.sup.proj.backend.services.llm.TokenCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PromptAssemblerTest {
+
+    private PromptAssembler promptAssembler;
+
+    @BeforeEach
+    void setUp() {
+        promptAssembler = new PromptAssembler(200);
+    }
+
+    @Test
+    void testChatRequest_startsWithTheSameSystemPromptWhateverTheCode() {
+        // Act
+        LlmRequest first = promptAssembler.chatRequest("Sum the list", "int a = 1;", Puzzle.Type.BY_PASS);
+        LlmRequest second = promptAssembler.chatRequest("Now sort it", bigClass(50), Puzzle.Type.BY_PASS);
+
+        // Assert
+        LlmRequest.Message system = first.messages().getFirst();
+        assertEquals(LlmRequest.Role.SYSTEM, system.role());
+        assertEquals(system, second.messages().getFirst());
+        assertSame(PromptAssembler.systemPrompt(Puzzle.Type.BY_PASS), PromptAssembler.systemPrompt(Puzzle.Type.BY_PASS));
+    }
+
+    @Test
+    void testChatRequest_leavesOutEmptyCodeContext() {
+        // Act
+        LlmRequest request = promptAssembler.chatRequest("Sum the list", "  ", Puzzle.Type.FAULTY);
+
+        // Assert
+        assertEquals(2, request.messages().size());
+        assertEquals(LlmRequest.Role.USER, request.messages().get(1).role());
+        assertEquals("Sum the list", request.messages().get(1).content());
+    }
+
+    @Test
+    void testSystemPrompt_fallsBackToDefaultWithoutPuzzleType() {
+        // Act & Assert
+        assertTrue(PromptAssembler.systemPrompt(null).startsWith("You are an AI assistant helping with coding challenges."));
+    }
+
+    @Test
+    void testCompact_dropsSeparatorsDecorationAndRepeatedBlankLines() {
+        // Arrange
+        String prompt = """
+                Rules:   \s
+
+                ------------------------------
+
+
+                ⚠Failure Handling:
+                ⚙️ Post-Success Behavior:
+                   - keep nested indentation
+                """;
+
+        // Act
+        String compacted = PromptAssembler.compact(prompt);
+
+        // Assert
+        assertEquals("Rules:\n\nFailure Handling:\nPost-Success Behavior:\n   - keep nested indentation", compacted);
+    }
+
+    @Test
+    void testCompact_isStableForTheShippedPrompts() {
+        // Act & Assert
+        for (Puzzle.Type type : Puzzle.Type.values()) {
+            String prompt = PromptAssembler.systemPrompt(type);
+            assertEquals(prompt, PromptAssembler.compact(prompt));
+            assertFalse(prompt.contains("-----"));
+        }
+    }
+
+    @Test
+    void testCodeContext_keepsCodeWithinBudgetUnchanged() {
+        // Arrange
+        String code = bigClass(2);
+
+        // Act & Assert
+        assertSame(code, promptAssembler.codeContext(code));
+    }
+
+    @Test
+    void testCodeContext_keepsNewestLinesAndOutlineOfOlderCode() {
+        // Arrange
+        String code = bigClass(100);
+        assertTrue(TokenCounter.count(code) > 200);
+
+        // Act
+        String context = promptAssembler.codeContext(code);
+
+        // Assert
+        assertTrue(TokenCounter.count(context) <= 200);
+        assertTrue(context.startsWith("public class Big {\n    public int method0(int value) {\n"));
+        assertTrue(context.contains(PromptAssembler.OMITTED_MARKER));
+        assertFalse(context.contains("value * 0;"));
+        assertTrue(context.endsWith("        return value * 99;\n    }\n}"));
+    }
+
+    @Test
+    void testIsDeclaration_matchesSignaturesButNotStatements() {
+        // Act & Assert
+        assertTrue(PromptAssembler.isDeclaration("    private static int[] sorted(List<Integer> values) {"));
+        assertTrue(PromptAssembler.isDeclaration("import java.util.List;"));
+        assertFalse(PromptAssembler.isDeclaration("        if (value > max) {"));
+        assertFalse(PromptAssembler.isDeclaration("        total += compute(value);"));
+        assertFalse(PromptAssembler.isDeclaration("    }"));
+    }
+
+    private static String bigClass(int methods) {
+        StringBuilder code = new StringBuilder("public class Big {\n");
+        for (int i = 0; i < methods; i++) {
+            code.append("    public int method").append(i).append("(int value) {\n")
+                .append("        return value * ").append(i).append(";\n")
+                .append("    }\n");
+        }
+        return code.append("}").toString();
+    }
+}
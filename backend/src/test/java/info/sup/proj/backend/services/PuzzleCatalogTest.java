@@ -0,0 +1,117 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.Puzzle;
+import info.sup.proj.backend.repositories.PuzzleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PuzzleCatalogTest {
+
+    @Mock
+    private PuzzleRepository puzzleRepository;
+
+    private PuzzleCatalog puzzleCatalog;
+
+    private Puzzle puzzle1;
+    private Puzzle puzzle2;
+    private Puzzle puzzle3;
+
+    @BeforeEach
+    void setUp() {
+        puzzleCatalog = new PuzzleCatalog(puzzleRepository);
+
+        puzzle1 = createTestPuzzle(1);
+        puzzle2 = createTestPuzzle(2);
+        puzzle3 = createTestPuzzle(3);
+    }
+
+    @Test
+    void testCurrent_loadsOnceAndServesFromMemory() {
+        // Arrange
+        when(puzzleRepository.findAll()).thenReturn(List.of(puzzle1, puzzle2));
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(puzzleCatalog.randomPuzzle());
+        }
+
+        // Assert
+        assertEquals(1, puzzleCatalog.current().version());
+        verify(puzzleRepository, times(1)).findAll();
+    }
+
+    @Test
+    void testRefresh_publishesNewVersion() {
+        // Arrange
+        when(puzzleRepository.findAll())
+                .thenReturn(List.of(puzzle1))
+                .thenReturn(List.of(puzzle1, puzzle2));
+        PuzzleCatalog.Snapshot first = puzzleCatalog.current();
+
+        // Act
+        PuzzleCatalog.Snapshot second = puzzleCatalog.refresh();
+
+        // Assert
+        assertEquals(1, first.size());
+        assertEquals(2, second.size());
+        assertEquals(first.version() + 1, second.version());
+        assertSame(second, puzzleCatalog.current());
+        assertTrue(second.findById(2).isPresent());
+    }
+
+    @Test
+    void testRandomPuzzleExcluding_neverReturnsExcludedIds() {
+        // Arrange
+        when(puzzleRepository.findAll()).thenReturn(List.of(puzzle1, puzzle2, puzzle3));
+        Set<Integer> seen = new HashSet<>();
+
+        // Act
+        for (int i = 0; i < 200; i++) {
+            Puzzle puzzle = puzzleCatalog.randomPuzzleExcluding(Set.of(2));
+            seen.add(puzzle.getId());
+        }
+
+        // Assert
+        assertEquals(Set.of(1, 3), seen);
+    }
+
+    @Test
+    void testRandomPuzzleExcluding_nothingLeft() {
+        // Arrange
+        when(puzzleRepository.findAll()).thenReturn(List.of(puzzle1));
+
+        // Act & Assert
+        assertNull(puzzleCatalog.randomPuzzleExcluding(Set.of(1)));
+        assertEquals(puzzle1, puzzleCatalog.randomPuzzleExcluding(Set.of(42)));
+    }
+
+    @Test
+    void testRandomPuzzle_emptyCatalog() {
+        // Arrange
+        when(puzzleRepository.findAll()).thenReturn(List.of());
+
+        // Act & Assert
+        assertNull(puzzleCatalog.randomPuzzle());
+    }
+
+    private Puzzle createTestPuzzle(int id) {
+        Puzzle puzzle = new Puzzle();
+        puzzle.setId(id);
+        puzzle.setName("Puzzle " + id);
+        puzzle.setDescription("Test puzzle " + id);
+        puzzle.setType(Puzzle.Type.MULTI_STEP);
+        puzzle.setDifficulty(Puzzle.Difficulty.EASY);
+        return puzzle;
+    }
+}
@@ -22,6 +22,9 @@ public class PuzzleServiceTest {
     @Mock
     private PuzzleRepository puzzleRepository;
 
+    @Mock
+    private PuzzleCatalog puzzleCatalog;
+
     @InjectMocks
     private PuzzleService puzzleService;
 
@@ -108,6 +111,7 @@ public class PuzzleServiceTest {
         assertNotNull(savedPuzzle);
         assertEquals(newPuzzle, savedPuzzle);
         verify(puzzleRepository).save(newPuzzle);
+        verify(puzzleCatalog).refresh();
     }
 
     @Test
@@ -121,5 +125,6 @@ public class PuzzleServiceTest {
 
         // Assert
         verify(puzzleRepository).deleteById(puzzleId);
+        verify(puzzleCatalog).refresh();
     }
 }
\ No newline at end of file
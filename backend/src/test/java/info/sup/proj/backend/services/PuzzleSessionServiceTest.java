@@ -2,10 +2,13 @@ package info.sup.proj.backend.services;
 
 import info.sup.proj.backend.model.Puzzle;
 import info.sup.proj.backend.model.PuzzleSession;
+import info.sup.proj.backend.model.SessionInteraction;
 import info.sup.proj.backend.model.User;
 import info.sup.proj.backend.repositories.PuzzleRepository;
 import info.sup.proj.backend.repositories.PuzzleSessionRepository;
+import info.sup.proj.backend.repositories.SessionInteractionRepository;
 import info.sup.proj.backend.repositories.UserRepository;
+import info.sup.proj.backend.dto.InteractionPageDto;
 import info.sup.proj.backend.dto.SessionMetricsDto;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,8 +19,11 @@ import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.aop.framework.AopContext;
+import org.springframework.data.domain.Limit;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -28,6 +34,9 @@ public class PuzzleSessionServiceTest {
     @Mock
     private PuzzleSessionRepository sessionRepository;
 
+    @Mock
+    private SessionInteractionRepository interactionRepository;
+
     @Mock
     private PuzzleRepository puzzleRepository;
 
@@ -37,6 +46,9 @@ public class PuzzleSessionServiceTest {
     @Mock
     private ScoreService scoreService;
 
+    @Mock
+    private SessionInteractionBuffer interactionBuffer;
+
     @InjectMocks
     private PuzzleSessionService sessionService;
 
@@ -137,16 +149,17 @@ public class PuzzleSessionServiceTest {
         
         when(sessionRepository.findByPuzzleIdAndUserId(puzzleId, userId))
             .thenReturn(Optional.of(testSession));
-        when(sessionRepository.save(any(PuzzleSession.class))).thenReturn(testSession);
+        when(interactionBuffer.append(eq(puzzleId), eq(userId), any(), eq(userInput), eq(aiTextResponse),
+                eq(aiCodeResponse)))
+            .thenAnswer(invocation -> loadWith(invocation.getArgument(2)).getCurrentCode() + "\n\n" + aiCodeResponse);
         
         // Act
-        PuzzleSession result = sessionService.addInteraction(puzzleId, userId, userInput, aiTextResponse, aiCodeResponse);
+        String result = sessionService.addInteraction(puzzleId, userId, userInput, aiTextResponse, aiCodeResponse);
         
-        // Assert
-        assertNotNull(result);
-        assertTrue(result.getCurrentCode().contains("import java.io.FileInputStream;"));
+        // Assert - the interaction goes to the buffer, which loads the session through the service
+        assertTrue(result.contains("import java.io.FileInputStream;"));
         verify(sessionRepository).findByPuzzleIdAndUserId(puzzleId, userId);
-        verify(sessionRepository).save(testSession);
+        verify(sessionRepository, never()).save(any(PuzzleSession.class));
     }
 
     @Test
@@ -156,6 +169,8 @@ public class PuzzleSessionServiceTest {
         Long userId = 1L;
         when(sessionRepository.findByPuzzleIdAndUserId(puzzleId, userId))
             .thenReturn(Optional.of(testSession));
+        when(interactionBuffer.currentCode(eq(puzzleId), eq(userId), any()))
+            .thenAnswer(invocation -> loadWith(invocation.getArgument(2)).getCurrentCode());
         
         // Act
         String result = sessionService.getCurrentCode(puzzleId, userId);
@@ -185,7 +200,8 @@ public class PuzzleSessionServiceTest {
         // Act
         SessionMetricsDto result = sessionService.markSessionCompleted(puzzleId, userId);
         
-        // Assert
+        // Assert - buffered interactions are written before the session is scored
+        verify(interactionBuffer).flush(puzzleId, userId);
         assertTrue(testSession.getIsCompleted());
         assertEquals(85, result.getTotalScore());
         assertEquals(78, result.getCodeQualityScore());
@@ -205,6 +221,7 @@ public class PuzzleSessionServiceTest {
         testSession.setBestInteractionCount(5);
         testSession.setBestTimeSeconds(300L);
         testSession.setIsCompleted(true);
+        testSession.setInteractionCount(4);
         
         when(sessionRepository.findByPuzzleIdAndUserId(puzzleId, userId))
             .thenReturn(Optional.of(testSession));
@@ -213,10 +230,86 @@ public class PuzzleSessionServiceTest {
         SessionMetricsDto metrics = sessionService.getSessionMetrics(puzzleId, userId);
         
         // Assert
+        assertEquals(4, metrics.getCurrentInteractionCount());
         assertEquals(2, metrics.getAttemptCount());
         assertEquals(5, metrics.getBestInteractionCount());
         assertEquals(300L, metrics.getBestTimeSeconds());
         assertTrue(metrics.getIsCompleted());
         verify(sessionRepository).findByPuzzleIdAndUserId(puzzleId, userId);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testResetSession_evictsBufferedSession() {
+        // Arrange
+        Integer puzzleId = 1;
+        Long userId = 1L;
+        when(sessionRepository.findByPuzzleIdAndUserId(puzzleId, userId))
+            .thenReturn(Optional.of(testSession));
+        when(puzzleRepository.findById(puzzleId)).thenReturn(Optional.of(testPuzzle));
+        when(userRepository.findById(userId)).thenReturn(Optional.of(testUser));
+        when(sessionRepository.save(any(PuzzleSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        sessionService.resetSession(puzzleId, userId);
+
+        // Assert
+        var order = inOrder(interactionBuffer, interactionRepository, sessionRepository);
+        order.verify(interactionBuffer).evict(puzzleId, userId);
+        order.verify(interactionRepository).deleteBySessionId(1L);
+        order.verify(sessionRepository).delete(testSession);
+    }
+
+    @Test
+    void testGetInteractionHistory_returnsNewestPageOldestFirst() {
+        // Arrange
+        when(sessionRepository.findIdByPuzzleIdAndUserId(1, 1L)).thenReturn(Optional.of(1L));
+        when(interactionRepository.findBySessionIdAndSeqLessThanOrderBySeqDesc(1L, Integer.MAX_VALUE, Limit.of(3)))
+            .thenReturn(List.of(interaction(9), interaction(8), interaction(7)));
+
+        // Act
+        InteractionPageDto page = sessionService.getInteractionHistory(1, 1L, null, null, 2);
+
+        // Assert - the third row only tells that an older page exists
+        assertEquals(List.of(8, 9), page.getItems().stream().map(InteractionPageDto.Item::getSeq).toList());
+        assertEquals(8, page.getNextBefore());
+        assertNull(page.getNextAfter());
+        verify(interactionBuffer).flush(1, 1L);
+    }
+
+    @Test
+    void testGetInteractionHistory_pagesForwardFromCursor() {
+        // Arrange
+        when(sessionRepository.findIdByPuzzleIdAndUserId(1, 1L)).thenReturn(Optional.of(1L));
+        when(interactionRepository.findBySessionIdAndSeqGreaterThanOrderBySeqAsc(1L, 7, Limit.of(3)))
+            .thenReturn(List.of(interaction(8), interaction(9)));
+
+        // Act
+        InteractionPageDto page = sessionService.getInteractionHistory(1, 1L, 7, null, 2);
+
+        // Assert
+        assertEquals(List.of(8, 9), page.getItems().stream().map(InteractionPageDto.Item::getSeq).toList());
+        assertNull(page.getNextAfter());
+        assertEquals(8, page.getNextBefore());
+    }
+
+    @Test
+    void testGetInteractionHistory_emptyWithoutSession() {
+        // Arrange
+        when(sessionRepository.findIdByPuzzleIdAndUserId(1, 1L)).thenReturn(Optional.empty());
+
+        // Act
+        InteractionPageDto page = sessionService.getInteractionHistory(1, 1L, null, null, 50);
+
+        // Assert
+        assertTrue(page.getItems().isEmpty());
+        verifyNoInteractions(interactionRepository);
+    }
+
+    private static SessionInteraction interaction(int seq) {
+        return new SessionInteraction(1L, seq, "Prompt " + seq, "Reply " + seq, null, null);
+    }
+
+    private static PuzzleSession loadWith(Supplier<PuzzleSession> loader) {
+        return loader.get();
+    }
+}
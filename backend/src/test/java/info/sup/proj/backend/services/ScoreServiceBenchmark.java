@@ -0,0 +1,100 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.dto.SessionMetricsDto;
+import info.sup.proj.backend.model.Puzzle;
+import info.sup.proj.backend.model.PuzzleSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Measures {@link ScoreService#calculateScore} and its three score ladders. The ladder benchmarks sweep every
+ * branch by cycling through times and interaction counts from instant to far past the expected values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreServiceBenchmark {
+    private static final int INPUTS = 1024;
+
+    @Param({"EASY", "MEDIUM", "HARD"})
+    private Puzzle.Difficulty difficulty;
+
+    private ScoreService scoreService;
+    private PuzzleSession session;
+    private long[] seconds;
+    private int[] interactionCounts;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AiService aiService = mock(AiService.class, withSettings().stubOnly());
+        when(aiService.getCodeEvaluation(any(), anyString(), anyString(), any())).thenReturn("{\"correctness\": 88, \"quality\": 81}");
+        scoreService = new ScoreService(aiService, new EvaluationCache(1000, Duration.ofMinutes(30), new SimpleMeterRegistry()));
+
+        Puzzle puzzle = new Puzzle("Fibonacci Sequence", difficulty, Puzzle.Type.MULTI_STEP,
+            "Write a function that returns the nth number in the Fibonacci sequence.");
+        puzzle.setId(3);
+
+        session = new PuzzleSession();
+        session.setPuzzle(puzzle);
+        session.setBestTimeSeconds(420L);
+        session.setCurrentCode("""
+            public class Fibonacci {
+                public static long fib(int n) {
+                    long previous = 0;
+                    long current = 1;
+                    for (int i = 0; i < n; i++) {
+                        long next = previous + current;
+                        previous = current;
+                        current = next;
+                    }
+                    return previous;
+                }
+            }
+            """);
+        session.setInteractionCount(6);
+
+        // Spread inputs over every rung of the ladders: up to four times the expected time and interactions
+        seconds = new long[INPUTS];
+        interactionCounts = new int[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            seconds[i] = i * 2400L / INPUTS;
+            interactionCounts[i] = i * 48 / INPUTS;
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (INPUTS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public SessionMetricsDto calculateScore() {
+        return scoreService.calculateScore(session);
+    }
+
+    @Benchmark
+    public int timeScoreLadder() {
+        return scoreService.calculateTimeScore(seconds[nextIndex()], difficulty);
+    }
+
+    @Benchmark
+    public int efficiencyScoreLadder() {
+        return scoreService.calculateEfficiencyScore(interactionCounts[nextIndex()], difficulty);
+    }
+
+    @Benchmark
+    public int tokenScoreLadder() {
+        return scoreService.calculateTokenScore(interactionCounts[nextIndex()], difficulty);
+    }
+}
@@ -4,13 +4,14 @@ import info.sup.proj.backend.model.Puzzle;
 import info.sup.proj.backend.model.PuzzleSession;
 import info.sup.proj.backend.model.User;
 import info.sup.proj.backend.dto.SessionMetricsDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 
@@ -24,7 +25,6 @@ public class ScoreServiceTest {
     @Mock
     private AiService aiService;
 
-    @InjectMocks
     private ScoreService scoreService;
 
     private PuzzleSession session;
@@ -35,6 +35,7 @@ public class ScoreServiceTest {
 
     @BeforeEach
     void setUp() {
+        scoreService = new ScoreService(aiService, new EvaluationCache(100, Duration.ofMinutes(30), new SimpleMeterRegistry()));
         now = LocalDateTime.now();
         tenMinutesAgo = now.minus(10, ChronoUnit.MINUTES);
         
@@ -70,11 +71,9 @@ public class ScoreServiceTest {
 
     @Test
     void testCalculateScore_GoodSubmission() {
-        session.addInteraction("How do I read a file?", "You can use FileInputStream", "import java.io.*;");
-        session.addInteraction("How to parse CSV?", "Use a library", "import csv.*;");
-        session.addInteraction("How to sort data?", "Use Collections.sort", "Collections.sort(list);");
+        session.setInteractionCount(3);
         
-        when(aiService.getCodeEvaluation(anyString(), anyString(), eq(Puzzle.Type.MULTI_STEP)))
+        when(aiService.getCodeEvaluation(any(), anyString(), anyString(), eq(Puzzle.Type.MULTI_STEP)))
             .thenReturn("{\"correctness\": 90, \"quality\": 85}");
         
         SessionMetricsDto scoreDetails = scoreService.calculateScore(session);
@@ -89,14 +88,12 @@ public class ScoreServiceTest {
         long timeSeconds = scoreDetails.getTimeSeconds();
         assertTrue(timeSeconds >= 590L && timeSeconds <= 610L, "Time should be approximately 600 seconds");
         
-        verify(aiService).getCodeEvaluation(anyString(), eq(session.getCurrentCode()), eq(Puzzle.Type.MULTI_STEP));
+        verify(aiService).getCodeEvaluation(any(), anyString(), eq(session.getCurrentCode()), eq(Puzzle.Type.MULTI_STEP));
     }
     
     @Test
     void testCalculateScore_EmptyCode() {
-        session.addInteraction("How do I read a file?", "You can use FileInputStream", "");
-        session.addInteraction("How to parse CSV?", "Use a library", "");
-        session.addInteraction("How to sort data?", "Use Collections.sort", "");
+        session.setInteractionCount(3);
         session.setCurrentCode("");
         
         SessionMetricsDto scoreDetails = scoreService.calculateScore(session);
@@ -109,8 +106,7 @@ public class ScoreServiceTest {
     
     @Test
     void testCalculateScore_ExceptionalPerformance() {
-        session.addInteraction("How do I solve this efficiently?", "Here's an approach", "import java.util.*;");
-        session.addInteraction("How to optimize?", "Try this algorithm", "public void optimizedSolution() {}");
+        session.setInteractionCount(2);
         
         LocalDateTime twoMinutesAgo = now.minus(2, ChronoUnit.MINUTES);
         try {
@@ -121,7 +117,7 @@ public class ScoreServiceTest {
             System.err.println("Failed to update createdAt field: " + e.getMessage());
         }
         
-        when(aiService.getCodeEvaluation(anyString(), anyString(), eq(Puzzle.Type.MULTI_STEP)))
+        when(aiService.getCodeEvaluation(any(), anyString(), anyString(), eq(Puzzle.Type.MULTI_STEP)))
             .thenReturn("{\"correctness\": 100, \"quality\": 95}");
         
         SessionMetricsDto scoreDetails = scoreService.calculateScore(session);
@@ -136,16 +132,14 @@ public class ScoreServiceTest {
         long timeSeconds = scoreDetails.getTimeSeconds();
         assertTrue(timeSeconds >= 110L && timeSeconds <= 130L, "Time should be approximately 120 seconds");
         
-        verify(aiService).getCodeEvaluation(anyString(), eq(session.getCurrentCode()), eq(Puzzle.Type.MULTI_STEP));
+        verify(aiService).getCodeEvaluation(any(), anyString(), eq(session.getCurrentCode()), eq(Puzzle.Type.MULTI_STEP));
     }
     
     @Test
     void testCalculateScore_AIEvaluationFailure() {
-        session.addInteraction("How do I read a file?", "You can use FileInputStream", "import java.io.*;");
-        session.addInteraction("How to parse CSV?", "Use a library", "import csv.*;");
-        session.addInteraction("How to sort data?", "Use Collections.sort", "Collections.sort(list);");
+        session.setInteractionCount(3);
         
-        when(aiService.getCodeEvaluation(anyString(), anyString(), eq(Puzzle.Type.MULTI_STEP)))
+        when(aiService.getCodeEvaluation(any(), anyString(), anyString(), eq(Puzzle.Type.MULTI_STEP)))
             .thenThrow(new RuntimeException("AI evaluation failed"));
         
         SessionMetricsDto scoreDetails = scoreService.calculateScore(session);
@@ -156,7 +150,29 @@ public class ScoreServiceTest {
         assertEquals(75, scoreDetails.getCorrectnessScore());
         assertEquals(70, scoreDetails.getCodeQualityScore());
         
-        verify(aiService).getCodeEvaluation(anyString(), eq(session.getCurrentCode()), eq(Puzzle.Type.MULTI_STEP));
+        verify(aiService).getCodeEvaluation(any(), anyString(), eq(session.getCurrentCode()), eq(Puzzle.Type.MULTI_STEP));
+    }
+    
+    @Test
+    void testCalculateScore_UnscoredEvaluationIsNotCached() {
+        session.setInteractionCount(3);
+        
+        when(aiService.getCodeEvaluation(any(), anyString(), anyString(), eq(Puzzle.Type.MULTI_STEP)))
+            .thenReturn(null)
+            .thenReturn("I could not evaluate this code.")
+            .thenReturn("{\"correctness\": 90, \"quality\": 85}");
+        
+        SessionMetricsDto noReply = scoreService.calculateScore(session);
+        SessionMetricsDto noScores = scoreService.calculateScore(session);
+        SessionMetricsDto scored = scoreService.calculateScore(session);
+        
+        assertEquals(75, noReply.getCorrectnessScore());
+        assertEquals(70, noReply.getCodeQualityScore());
+        assertEquals(75, noScores.getCorrectnessScore());
+        assertEquals(90, scored.getCorrectnessScore());
+        assertEquals(85, scored.getCodeQualityScore());
+        
+        verify(aiService, times(3)).getCodeEvaluation(any(), anyString(), eq(session.getCurrentCode()), eq(Puzzle.Type.MULTI_STEP));
     }
     
     @Test
@@ -170,29 +186,18 @@ public class ScoreServiceTest {
         puzzle.setDifficulty(Puzzle.Difficulty.HARD);
         testScoreWithDifficulty();
 
-        // Verify total number of calls after all difficulty tests
-        verify(aiService, times(3)).getCodeEvaluation(anyString(), eq(session.getCurrentCode()), eq(puzzle.getType()));
+        // The code and puzzle stay the same, so only the first score asks the AI; the others hit the evaluation cache
+        verify(aiService, times(1)).getCodeEvaluation(any(), anyString(), eq(session.getCurrentCode()), eq(puzzle.getType()));
     }
     
     private void testScoreWithDifficulty() {
-        try {
-            java.lang.reflect.Field interactionsField = PuzzleSession.class.getDeclaredField("interactions");
-            interactionsField.setAccessible(true);
-            interactionsField.set(session, new java.util.ArrayList<>());
-        } catch (Exception e) {
-            System.err.println("Failed to clear interactions: " + e.getMessage());
-        }
-        
         switch (puzzle.getDifficulty()) {
             case EASY:
-                session.addInteraction("How do I solve this?", "Try this approach", "some code;");
-                session.addInteraction("How to optimize?", "Use this algorithm", "optimized code;");
-                session.addInteraction("Final question", "Final answer", "final code;");
+                session.setInteractionCount(3);
                 break;
             case MEDIUM:
             case HARD:
-                session.addInteraction("How do I solve this?", "Try this approach", "some code;");
-                session.addInteraction("How to optimize?", "Use this algorithm", "optimized code;");
+                session.setInteractionCount(2);
                 break;
         }
         
@@ -218,7 +223,7 @@ public class ScoreServiceTest {
             System.err.println("Failed to update createdAt field: " + e.getMessage());
         }
         
-        when(aiService.getCodeEvaluation(anyString(), anyString(), eq(puzzle.getType())))
+        lenient().when(aiService.getCodeEvaluation(any(), anyString(), anyString(), eq(puzzle.getType())))
             .thenReturn("{\"correctness\": 95, \"quality\": 90}");
         
         SessionMetricsDto scoreDetails = scoreService.calculateScore(session);
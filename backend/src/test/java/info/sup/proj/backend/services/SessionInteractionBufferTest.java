@@ -0,0 +1,361 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.model.PuzzleSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SessionInteractionBufferTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ScheduledExecutorService scheduler;
+
+    @Mock
+    private Supplier<PuzzleSession> loader;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SessionInteractionBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        buffer = buffer(true, 3, 4);
+
+        PuzzleSession session = new PuzzleSession();
+        session.setId(5L);
+        session.setCurrentCode("int a;");
+        session.setInteractionCount(2);
+        lenient().when(loader.get()).thenReturn(session);
+    }
+
+    @Test
+    void testAppend_buffersUntilFlushAndWritesOneBatch() throws Exception {
+        // Act
+        String afterFirst = buffer.append(1, 1L, loader, "Add b", "Here", "int b;");
+        String afterSecond = buffer.append(1, 1L, loader, "Explain", "It adds b", null);
+
+        // Assert - the session is loaded once and nothing is written before the flush
+        assertEquals("int a;\n\nint b;", afterFirst);
+        assertEquals("int a;\n\nint b;", afterSecond);
+        assertEquals("int a;\n\nint b;", buffer.currentCode(1, 1L, loader));
+        verify(loader, times(1)).get();
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        assertEquals(2, buffer.pending());
+
+        // Act
+        buffer.flush();
+
+        // Assert - interaction orders continue after the ones already stored
+        ArgumentCaptor<Collection<Object>> rows = rowsCaptor();
+        ArgumentCaptor<ParameterizedPreparedStatementSetter<Object>> setter = setterCaptor();
+        verify(jdbcTemplate).batchUpdate(eq(SessionInteractionBuffer.INSERT_INTERACTION), rows.capture(), eq(3),
+            setter.capture());
+        PreparedStatement statement = mock(PreparedStatement.class);
+        for (Object row : rows.getValue()) {
+            setter.getValue().setValues(statement, row);
+        }
+        verify(statement, times(2)).setLong(1, 5L);
+        verify(statement).setInt(2, 2);
+        verify(statement).setInt(2, 3);
+        verify(statement).setString(3, "Add b");
+        verify(statement, times(2)).setTimestamp(eq(6), any());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> updates = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(SessionInteractionBuffer.UPDATE_SESSION), updates.capture());
+        assertEquals("int a;\n\nint b;", updates.getValue().getFirst()[0]);
+        assertEquals(2, updates.getValue().getFirst()[2]);
+        assertEquals(5L, updates.getValue().getFirst()[3]);
+
+        assertEquals(0, buffer.pending());
+        assertEquals(1, meterRegistry.summary("session.interactions.flush.batch").count());
+        assertEquals(2.0, meterRegistry.counter("session.interactions.flushed").count());
+        assertEquals(1, meterRegistry.timer("session.interactions.flush").count());
+    }
+
+    @Test
+    void testFlush_keepsFailedBatchForTheNextFlush() {
+        // Arrange
+        when(jdbcTemplate.batchUpdate(eq(SessionInteractionBuffer.INSERT_INTERACTION), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+            .thenThrow(new DataAccessResourceFailureException("database down"))
+            .thenReturn(new int[0][]);
+        buffer.append(1, 1L, loader, "Add b", "Here", "int b;");
+
+        // Act
+        buffer.flush();
+
+        // Assert
+        assertEquals(1, buffer.pending());
+        assertEquals(1.0, meterRegistry.counter("session.interactions.failed").count());
+        verify(transactionManager).rollback(any());
+
+        // Act
+        buffer.flush();
+
+        // Assert
+        assertEquals(0, buffer.pending());
+        assertEquals(1.0, meterRegistry.counter("session.interactions.flushed").count());
+    }
+
+    @Test
+    void testFlush_rethrowsFailureOfTheRequestedSession() {
+        // Arrange
+        when(jdbcTemplate.batchUpdate(eq(SessionInteractionBuffer.INSERT_INTERACTION), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+            .thenThrow(new DataAccessResourceFailureException("database down"));
+        buffer.append(1, 1L, loader, "Add b", "Here", "int b;");
+
+        // Act & Assert
+        assertThrows(DataAccessResourceFailureException.class, () -> buffer.flush(1, 1L));
+        assertEquals(1, buffer.pending());
+    }
+
+    @Test
+    void testFlush_writesTextOnlyInteractionAppendedDuringAFlush() throws Exception {
+        // Arrange - a hint without code arrives while the first interaction is being written
+        when(jdbcTemplate.batchUpdate(eq(SessionInteractionBuffer.INSERT_INTERACTION), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+            .thenAnswer(invocation -> {
+                buffer.append(1, 1L, loader, "Any hint?", "Try a loop", null);
+                return new int[0][];
+            })
+            .thenReturn(new int[0][]);
+        buffer.append(1, 1L, loader, "Add b", "Here", "int b;");
+
+        // Act
+        buffer.flush();
+
+        // Assert - the code was written but the hint is still waiting
+        assertEquals(1, buffer.pending());
+
+        // Act
+        buffer.flush();
+
+        // Assert
+        ArgumentCaptor<Collection<Object>> rows = rowsCaptor();
+        ArgumentCaptor<ParameterizedPreparedStatementSetter<Object>> setter = setterCaptor();
+        verify(jdbcTemplate, times(2)).batchUpdate(eq(SessionInteractionBuffer.INSERT_INTERACTION), rows.capture(),
+            eq(3), setter.capture());
+        PreparedStatement statement = mock(PreparedStatement.class);
+        for (Object row : rows.getAllValues().getLast()) {
+            setter.getValue().setValues(statement, row);
+        }
+        verify(statement).setString(3, "Any hint?");
+        assertEquals(0, buffer.pending());
+        assertEquals(2.0, meterRegistry.counter("session.interactions.flushed").count());
+    }
+
+    @Test
+    void testFlush_isolatesAFailingSessionAndDropsItsBadRowAfterRepeatedFailures() throws Exception {
+        // Arrange - session 6 has a prompt the database rejects, session 5 is fine
+        PuzzleSession other = new PuzzleSession();
+        other.setId(6L);
+        other.setInteractionCount(0);
+        @SuppressWarnings("unchecked")
+        Supplier<PuzzleSession> otherLoader = mock(Supplier.class);
+        when(otherLoader.get()).thenReturn(other);
+
+        PreparedStatement statement = mock(PreparedStatement.class);
+        lenient().doThrow(new SQLException("String or binary data would be truncated"))
+            .when(statement).setString(3, "Too long");
+        when(jdbcTemplate.batchUpdate(eq(SessionInteractionBuffer.INSERT_INTERACTION), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+            .thenAnswer(invocation -> {
+                Collection<Object> batch = invocation.getArgument(1);
+                ParameterizedPreparedStatementSetter<Object> rowSetter = invocation.getArgument(3);
+                for (Object row : batch) {
+                    try {
+                        rowSetter.setValues(statement, row);
+                    } catch (SQLException e) {
+                        throw new DataIntegrityViolationException(e.getMessage(), e);
+                    }
+                }
+                return new int[0][];
+            });
+        buffer.append(1, 1L, loader, "Add b", "Here", "int b;");
+        buffer.append(2, 1L, otherLoader, "Too long", "Here", null);
+        buffer.append(2, 1L, otherLoader, "Fine", "Here", null);
+
+        // Act
+        buffer.flush();
+
+        // Assert - session 5 was written although the batch of both sessions failed
+        assertEquals(2, buffer.pending());
+        assertEquals(1.0, meterRegistry.counter("session.interactions.flushed").count());
+
+        // Act
+        for (int attempt = 2; attempt <= SessionInteractionBuffer.MAX_ATTEMPTS; attempt++) {
+            buffer.flush();
+        }
+
+        // Assert - the last attempt writes the good row on its own and gives up on the bad one
+        assertEquals(0, buffer.pending());
+        assertEquals(2.0, meterRegistry.counter("session.interactions.flushed").count());
+        assertEquals(1.0, meterRegistry.counter("session.interactions.dropped").count());
+        assertDoesNotThrow(() -> buffer.flush(2, 1L));
+    }
+
+    @Test
+    void testAppend_requestsEarlyFlushAtBatchSizeAndFlushesInlineBeyondMaxPending() {
+        // Act
+        for (int i = 0; i < 3; i++) {
+            buffer.append(1, 1L, loader, "Prompt " + i, "Reply", null);
+        }
+
+        // Assert
+        verify(scheduler).execute(any(Runnable.class));
+        assertEquals(3, buffer.pending());
+
+        // Act
+        buffer.append(1, 1L, loader, "Prompt 3", "Reply", null);
+        buffer.append(1, 1L, loader, "Prompt 4", "Reply", null);
+
+        // Assert - the fifth buffered interaction exceeds max-pending and is written by the caller
+        assertEquals(0, buffer.pending());
+        verify(jdbcTemplate).batchUpdate(eq(SessionInteractionBuffer.UPDATE_SESSION), anyList());
+    }
+
+    @Test
+    void testAppend_countsStoredInteractionsWhenTheCounterIsMissing() throws Exception {
+        // Arrange - a session written before the interaction counter existed
+        PuzzleSession legacy = new PuzzleSession();
+        legacy.setId(6L);
+        legacy.setInteractionCount(null);
+        when(loader.get()).thenReturn(legacy);
+        when(jdbcTemplate.queryForObject(SessionInteractionBuffer.NEXT_ORDER, Integer.class, 6L)).thenReturn(4);
+
+        // Act
+        buffer.append(2, 1L, loader, "Add b", "Here", "int b;");
+        buffer.flush();
+
+        // Assert
+        ArgumentCaptor<Collection<Object>> rows = rowsCaptor();
+        ArgumentCaptor<ParameterizedPreparedStatementSetter<Object>> setter = setterCaptor();
+        verify(jdbcTemplate).batchUpdate(eq(SessionInteractionBuffer.INSERT_INTERACTION), rows.capture(), eq(3),
+            setter.capture());
+        PreparedStatement statement = mock(PreparedStatement.class);
+        setter.getValue().setValues(statement, rows.getValue().iterator().next());
+        verify(statement).setInt(2, 4);
+    }
+
+    @Test
+    void testEvict_dropsTheSessionAndItsBufferedInteractions() {
+        // Arrange
+        buffer.append(1, 1L, loader, "Add b", "Here", "int b;");
+
+        // Act
+        buffer.evict(1, 1L);
+        buffer.flush();
+
+        // Assert
+        assertEquals(0, buffer.pending());
+        assertEquals(0, buffer.hotSessions());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void testAppend_goesToAFreshSessionWhenTheHeldOneIsEvictedIdle() throws Exception {
+        // Arrange - the clock read by the second append runs the idle eviction after the append found the session
+        PuzzleSession entity = new PuzzleSession();
+        entity.setId(5L);
+        entity.setInteractionCount(2);
+        when(loader.get()).thenReturn(entity);
+        AtomicLong now = new AtomicLong(1_000_000);
+        AtomicReference<Runnable> onClock = new AtomicReference<>();
+        buffer = new SessionInteractionBuffer(jdbcTemplate, transactionManager, scheduler, true, Duration.ofSeconds(1),
+            3, 4, Duration.ofMinutes(10), meterRegistry, () -> {
+                Runnable hook = onClock.getAndSet(null);
+                if (hook != null) {
+                    hook.run();
+                }
+                return now.get();
+            });
+        buffer.startFlushing();
+        ArgumentCaptor<Runnable> flushTask = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).scheduleWithFixedDelay(flushTask.capture(), anyLong(), anyLong(), any());
+        buffer.append(1, 1L, loader, "Add b", "Here", "int b;");
+        buffer.flush();
+        onClock.set(() -> {
+            now.addAndGet(Duration.ofMinutes(11).toMillis());
+            flushTask.getValue().run();
+            entity.setInteractionCount(3);
+        });
+
+        // Act
+        buffer.append(1, 1L, loader, "Explain", "It adds b", null);
+        buffer.flush();
+
+        // Assert - the interaction was written with the next order instead of staying in the evicted session
+        assertEquals(0, buffer.pending());
+        assertEquals(1, buffer.hotSessions());
+        verify(loader, times(2)).get();
+        ArgumentCaptor<Collection<Object>> rows = rowsCaptor();
+        ArgumentCaptor<ParameterizedPreparedStatementSetter<Object>> setter = setterCaptor();
+        verify(jdbcTemplate, times(2)).batchUpdate(eq(SessionInteractionBuffer.INSERT_INTERACTION), rows.capture(),
+            eq(3), setter.capture());
+        PreparedStatement statement = mock(PreparedStatement.class);
+        setter.getValue().setValues(statement, rows.getAllValues().getLast().iterator().next());
+        verify(statement).setInt(2, 3);
+        verify(statement).setString(3, "Explain");
+    }
+
+    @Test
+    void testAppend_writesThroughWhenDisabled() {
+        // Arrange
+        buffer = buffer(false, 3, 4);
+
+        // Act
+        String code = buffer.append(1, 1L, loader, "Add b", "Here", "int b;");
+
+        // Assert
+        assertEquals("int a;\n\nint b;", code);
+        verify(jdbcTemplate).batchUpdate(eq(SessionInteractionBuffer.UPDATE_SESSION), anyList());
+        assertEquals(0, buffer.pending());
+        assertEquals(0, buffer.hotSessions());
+    }
+
+    private SessionInteractionBuffer buffer(boolean enabled, int batchSize, int maxPending) {
+        return new SessionInteractionBuffer(jdbcTemplate, transactionManager, scheduler, enabled, Duration.ofSeconds(1),
+            batchSize, maxPending, Duration.ofMinutes(10), meterRegistry);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ArgumentCaptor<Collection<Object>> rowsCaptor() {
+        return (ArgumentCaptor) ArgumentCaptor.forClass(Collection.class);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ArgumentCaptor<ParameterizedPreparedStatementSetter<Object>> setterCaptor() {
+        return (ArgumentCaptor) ArgumentCaptor.forClass(ParameterizedPreparedStatementSetter.class);
+    }
+}
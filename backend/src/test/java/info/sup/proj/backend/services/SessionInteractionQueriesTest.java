@@ -0,0 +1,129 @@
+package info.sup.proj.backend.services;
+
+import info.sup.proj.backend.dto.InteractionPageDto;
+import info.sup.proj.backend.model.Puzzle;
+import info.sup.proj.backend.model.User;
+import info.sup.proj.backend.repositories.PuzzleRepository;
+import info.sup.proj.backend.repositories.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts the statements of the practice session reads against a session with {@value #INTERACTIONS} interactions.
+ * None of them may load the interactions of the session, so every count stays the same however long the session gets.
+ */
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+    "app.ai.provider=simulated",
+    "spring.jpa.show-sql=false",
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "app.session.write-behind.flush-interval=PT0S",
+    "logging.level.info.sup.proj.backend=WARN"
+})
+class SessionInteractionQueriesTest {
+
+    private static final int INTERACTIONS = 600;
+
+    @Autowired
+    private PuzzleSessionService sessionService;
+
+    @Autowired
+    private SessionInteractionBuffer interactionBuffer;
+
+    @Autowired
+    private PuzzleRepository puzzleRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Integer puzzleId;
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Puzzle puzzle = puzzleRepository.save(new Puzzle("Long session", Puzzle.Difficulty.EASY,
+            Puzzle.Type.MULTI_STEP, "A puzzle with a long practice session"));
+        User user = new User();
+        user.setEmail("long-session-" + System.nanoTime() + "@test.local");
+        user.setName("Long Session");
+        user.setUsername("long-session-" + System.nanoTime());
+        user.setCountry("NL");
+        user.setElo(1000);
+        puzzleId = puzzle.getId();
+        userId = userRepository.save(user).getId();
+
+        for (int i = 0; i < INTERACTIONS; i++) {
+            String code = i % 10 == 0 ? "int x" + i + ";" : null;
+            sessionService.addInteraction(puzzleId, userId, "Prompt " + i, "Reply " + i, code);
+        }
+        interactionBuffer.flush();
+    }
+
+    @Test
+    void testSessionReads_useAFixedNumberOfStatements() {
+        // Arrange
+        interactionBuffer.evict(puzzleId, userId);
+
+        // Act
+        long coldCode = statements(() -> sessionService.getCurrentCode(puzzleId, userId));
+        long metrics = statements(() -> sessionService.getSessionMetrics(puzzleId, userId));
+        InteractionPageDto newest = sessionService.getInteractionHistory(puzzleId, userId, null, null, 50);
+        long newestPage = statements(() -> sessionService.getInteractionHistory(puzzleId, userId, null, null, 50));
+        long olderPage = statements(() ->
+            sessionService.getInteractionHistory(puzzleId, userId, null, newest.getNextBefore(), 50));
+
+        // Assert
+        assertEquals(INTERACTIONS, sessionService.getSessionMetrics(puzzleId, userId).getCurrentInteractionCount());
+        assertEquals(50, newest.getItems().size());
+        assertEquals(INTERACTIONS - 50, newest.getItems().getFirst().getSeq());
+        assertEquals(INTERACTIONS - 1, newest.getItems().getLast().getSeq());
+        assertNull(newest.getNextAfter());
+
+        assertEquals(1, coldCode);
+        assertEquals(1, metrics);
+        assertEquals(2, newestPage);
+        assertEquals(2, olderPage);
+    }
+
+    @Test
+    void testInteractionHistory_walksTheWholeSessionWithoutGapsOrRepeats() {
+        // Act
+        int expected = INTERACTIONS - 1;
+        Integer before = null;
+        int pages = 0;
+        do {
+            InteractionPageDto page = sessionService.getInteractionHistory(puzzleId, userId, null, before, 200);
+            for (int i = page.getItems().size() - 1; i >= 0; i--) {
+                assertEquals(expected--, page.getItems().get(i).getSeq());
+            }
+            before = page.getNextBefore();
+            pages++;
+        } while (before != null);
+
+        // Assert
+        assertEquals(-1, expected);
+        assertEquals(3, pages);
+    }
+
+    private long statements(Supplier<?> request) {
+        statistics.clear();
+        assertNotNull(request.get());
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,73 @@
+package info.sup.proj.backend.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingResponseSplitterTest {
+
+    private List<AiService.ResponseDelta> deltas;
+    private StreamingResponseSplitter splitter;
+
+    @BeforeEach
+    void setUp() {
+        deltas = new ArrayList<>();
+        splitter = new StreamingResponseSplitter(deltas::add);
+    }
+
+    @Test
+    void testAccept_splitsTextAndCodeAcrossChunks() {
+        // Act
+        splitter.accept("Here is a hint.\n`");
+        splitter.accept("``py");
+        splitter.accept("thon\nprint('hi')\n`");
+        splitter.accept("``\nGood luck!");
+        splitter.finish();
+
+        // Assert
+        assertEquals("Here is a hint.\n\nGood luck!", collect(AiService.Channel.TEXT));
+        assertEquals("print('hi')\n", collect(AiService.Channel.CODE));
+    }
+
+    @Test
+    void testAccept_holdsBackTrailingBackticksUntilResolved() {
+        // Act
+        splitter.accept("Use `x``");
+
+        // Assert
+        assertEquals("Use `x", collect(AiService.Channel.TEXT));
+
+        // Act
+        splitter.accept(" here");
+        splitter.finish();
+
+        // Assert
+        assertEquals("Use `x`` here", collect(AiService.Channel.TEXT));
+        assertEquals("", collect(AiService.Channel.CODE));
+    }
+
+    @Test
+    void testFinish_flushesUnterminatedCodeBlock() {
+        // Act
+        splitter.accept("```java\nint x = 1;`");
+        splitter.finish();
+
+        // Assert
+        assertEquals("", collect(AiService.Channel.TEXT));
+        assertEquals("int x = 1;`", collect(AiService.Channel.CODE));
+    }
+
+    private String collect(AiService.Channel channel) {
+        StringBuilder content = new StringBuilder();
+        for (AiService.ResponseDelta delta : deltas) {
+            if (delta.channel() == channel) {
+                content.append(delta.content());
+            }
+        }
+        return content.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package info.sup.proj.backend.services;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cost of re-arming a round timer with {@code liveTimers} games holding one each, as {@code GameService} does
+ * every round: cancel the game's timer and schedule a fresh 300s timeout. {@code executor} is the previous
+ * 2-thread {@code ScheduledThreadPoolExecutor} (with remove-on-cancel so its queue stays at size), {@code wheel}
+ * the {@link TimingWheel} with the default 100ms tick and 512 buckets. The contended variants re-arm from
+ * four threads at once, as STOMP inbound and scheduler threads do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimingWheelBenchmark {
+
+    private static final Runnable NOOP = () -> { };
+
+    @Param({"1000", "100000"})
+    private int liveTimers;
+
+    private ScheduledThreadPoolExecutor executor;
+    private ScheduledExecutorService expiryExecutor;
+    private TimingWheel wheel;
+    private AtomicReferenceArray<ScheduledFuture<?>> futures;
+    private AtomicReferenceArray<TimingWheel.Timeout> timeouts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = new ScheduledThreadPoolExecutor(2);
+        executor.setRemoveOnCancelPolicy(true);
+        expiryExecutor = Executors.newScheduledThreadPool(2);
+        wheel = new TimingWheel(Duration.ofMillis(100), 512, expiryExecutor);
+
+        futures = new AtomicReferenceArray<>(liveTimers);
+        timeouts = new AtomicReferenceArray<>(liveTimers);
+        for (int i = 0; i < liveTimers; i++) {
+            futures.set(i, executor.schedule(NOOP, 300, TimeUnit.SECONDS));
+            timeouts.set(i, wheel.schedule(NOOP, 300, TimeUnit.SECONDS));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        wheel.stop();
+        expiryExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public Object executorRearm() {
+        int game = ThreadLocalRandom.current().nextInt(liveTimers);
+        ScheduledFuture<?> timer = executor.schedule(NOOP, 300, TimeUnit.SECONDS);
+        futures.getAndSet(game, timer).cancel(false);
+        return timer;
+    }
+
+    @Benchmark
+    public Object wheelRearm() {
+        int game = ThreadLocalRandom.current().nextInt(liveTimers);
+        TimingWheel.Timeout timer = wheel.schedule(NOOP, 300, TimeUnit.SECONDS);
+        timeouts.getAndSet(game, timer).cancel();
+        return timer;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object executorRearmContended() {
+        return executorRearm();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object wheelRearmContended() {
+        return wheelRearm();
+    }
+}
@@ -0,0 +1,94 @@
+package info.sup.proj.backend.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+
+    private TimingWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        // A small wheel so that the longer timeouts need several turns
+        wheel = new TimingWheel(Duration.ofMillis(10), 8, Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    void testSchedule_runsTaskNotBeforeItsDelay() throws Exception {
+        // Arrange
+        CountDownLatch ran = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        // Act
+        wheel.schedule(ran::countDown, 50, TimeUnit.MILLISECONDS);
+
+        // Assert
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(0, wheel.pendingTimeouts());
+    }
+
+    @Test
+    void testSchedule_runsTimeoutsLongerThanOneTurnInDeadlineOrder() throws Exception {
+        // Arrange
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CountDownLatch ran = new CountDownLatch(3);
+
+        // Act - one turn of the wheel is 80ms
+        wheel.schedule(() -> { order.add(250); ran.countDown(); }, 250, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> { order.add(30); ran.countDown(); }, 30, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> { order.add(130); ran.countDown(); }, 130, TimeUnit.MILLISECONDS);
+
+        // Assert
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of(30, 130, 250), order);
+    }
+
+    @Test
+    void testCancel_preventsTaskFromRunning() throws Exception {
+        // Arrange
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch sentinel = new CountDownLatch(1);
+        TimingWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+
+        // Act
+        assertTrue(timeout.cancel());
+        wheel.schedule(sentinel::countDown, 60, TimeUnit.MILLISECONDS);
+
+        // Assert
+        assertTrue(sentinel.await(2, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.cancel());
+        assertEquals(0, wheel.pendingTimeouts());
+    }
+
+    @Test
+    void testCancel_afterRunReturnsFalse() throws Exception {
+        // Arrange
+        CountDownLatch ran = new CountDownLatch(1);
+        TimingWheel.Timeout timeout = wheel.schedule(ran::countDown, 0, TimeUnit.MILLISECONDS);
+
+        // Act
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+
+        // Assert
+        assertFalse(timeout.cancel());
+        assertFalse(timeout.isCancelled());
+    }
+}
@@ -0,0 +1,218 @@
+package info.sup.proj.backend.services.llm;
+
+import info.sup.proj.backend.config.AiSchedulerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AiRequestSchedulerTest {
+    // Waiting requests block their thread, so each gets its own
+    private static final Executor THREAD_PER_TASK = Thread::startVirtualThread;
+
+    private AiSchedulerConfig config;
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicLong clock;
+
+    @BeforeEach
+    void setUp() {
+        config = new AiSchedulerConfig();
+        config.setBurstTokens(1_000);
+        config.setTokensPerMinute(60_000);
+        config.setMaxConcurrent(1);
+        config.setMaxWait(Duration.ofSeconds(5));
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new AtomicLong();
+    }
+
+    @Test
+    void testExecute_chargesPromptAndRefundsUnusedCompletionBudget() {
+        // Arrange
+        config.setMaxWait(Duration.ZERO);
+        AiRequestScheduler scheduler = scheduler();
+        LlmRequest request = request("x".repeat(400), 600);
+
+        // Act - the 700 token estimate is settled at 100 prompt tokens plus 25 completion tokens
+        String completion = scheduler.execute(AiRequestScheduler.Caller.practice(1L), request, () -> "y".repeat(100));
+
+        // Assert - 875 tokens left, so a second request of the same estimate fits without waiting
+        assertEquals(100, completion.length());
+        assertDoesNotThrow(() -> scheduler.execute(AiRequestScheduler.Caller.practice(1L), request, () -> ""));
+        assertEquals(0, scheduler.inFlight());
+    }
+
+    @Test
+    void testAcquire_rejectsWhenTokensDoNotArriveBeforeMaxWait() {
+        // Arrange
+        config.setMaxWait(Duration.ZERO);
+        config.setMaxConcurrent(10);
+        AiRequestScheduler scheduler = scheduler();
+        scheduler.acquire(AiRequestScheduler.Caller.practice(1L), 800);
+
+        // Act & Assert
+        assertThrows(RejectedExecutionException.class,
+            () -> scheduler.acquire(AiRequestScheduler.Caller.practice(2L), 800));
+        assertEquals(0, scheduler.queued(AiRequestScheduler.Priority.PRACTICE));
+        assertEquals(1.0, meterRegistry.counter("ai.scheduler.rejected", "reason", "timeout").count());
+    }
+
+    @Test
+    void testAcquire_waitsForTheBucketToRefill() throws Exception {
+        // Arrange
+        config.setMaxConcurrent(10);
+        AiRequestScheduler scheduler = scheduler();
+        scheduler.acquire(AiRequestScheduler.Caller.practice(1L), 1_000);
+
+        // Act
+        CompletableFuture<AiRequestScheduler.Ticket> waiting = CompletableFuture.supplyAsync(
+            () -> scheduler.acquire(AiRequestScheduler.Caller.practice(2L), 500), THREAD_PER_TASK);
+        awaitQueued(scheduler, AiRequestScheduler.Priority.PRACTICE, 1);
+        Thread.sleep(50);
+        boolean grantedBeforeRefill = waiting.isDone();
+        // 1000 tokens per second, so half a second refills enough
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+
+        // Assert
+        assertFalse(grantedBeforeRefill);
+        assertNotNull(waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(2, scheduler.inFlight());
+    }
+
+    @Test
+    void testAcquire_servesGameEvaluationsBeforePracticePrompts() throws Exception {
+        // Arrange
+        AiRequestScheduler scheduler = scheduler();
+        AiRequestScheduler.Ticket running = scheduler.acquire(AiRequestScheduler.Caller.practice(1L), 100);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Void> practice = queue(scheduler, AiRequestScheduler.Caller.practice(2L), order);
+        awaitQueued(scheduler, AiRequestScheduler.Priority.PRACTICE, 1);
+        CompletableFuture<Void> evaluation = queue(scheduler, AiRequestScheduler.Caller.gameEvaluation("3"), order);
+        awaitQueued(scheduler, AiRequestScheduler.Priority.GAME_EVALUATION, 1);
+
+        // Act
+        scheduler.release(running, 100);
+        CompletableFuture.allOf(practice, evaluation).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(List.of("3", "2"), order);
+    }
+
+    @Test
+    void testAcquire_interleavesUsersWithinAPriority() throws Exception {
+        // Arrange
+        AiRequestScheduler scheduler = scheduler();
+        AiRequestScheduler.Ticket running = scheduler.acquire(AiRequestScheduler.Caller.practice(0L), 100);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        // The heavy user queues three requests before the light user queues one
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[4];
+        for (int i = 0; i < 3; i++) {
+            requests[i] = queue(scheduler, AiRequestScheduler.Caller.practice("heavy"), order);
+            awaitQueued(scheduler, AiRequestScheduler.Priority.PRACTICE, i + 1);
+        }
+        requests[3] = queue(scheduler, AiRequestScheduler.Caller.practice("light"), order);
+        awaitQueued(scheduler, AiRequestScheduler.Priority.PRACTICE, 4);
+
+        // Act
+        scheduler.release(running, 100);
+        CompletableFuture.allOf(requests).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(List.of("heavy", "light", "heavy", "heavy"), order);
+    }
+
+    @Test
+    void testAcquire_rejectsWhenQueueIsFull() {
+        // Arrange
+        config.setMaxQueued(0);
+        AiRequestScheduler scheduler = scheduler();
+
+        // Act & Assert
+        assertThrows(RejectedExecutionException.class,
+            () -> scheduler.acquire(AiRequestScheduler.Caller.practice(1L), 100));
+        assertEquals(1.0, meterRegistry.counter("ai.scheduler.rejected", "reason", "queue-full").count());
+    }
+
+    @Test
+    void testAcquire_returnsTicketGrantedToAnInterruptedWaiter() throws Exception {
+        // Arrange - the clock read by release() interrupts the waiter before the release grants it the slot
+        AtomicReference<Runnable> onClock = new AtomicReference<>();
+        AiRequestScheduler scheduler = new AiRequestScheduler(config, meterRegistry, () -> {
+            Runnable hook = onClock.getAndSet(null);
+            if (hook != null) {
+                hook.run();
+            }
+            return clock.get();
+        });
+        AiRequestScheduler.Ticket running = scheduler.acquire(AiRequestScheduler.Caller.practice(1L), 600);
+        CompletableFuture<RuntimeException> outcome = new CompletableFuture<>();
+        Thread waiter = Thread.startVirtualThread(() -> {
+            try {
+                scheduler.acquire(AiRequestScheduler.Caller.practice(2L), 600);
+                outcome.complete(null);
+            } catch (RuntimeException e) {
+                outcome.complete(e);
+            }
+        });
+        awaitQueued(scheduler, AiRequestScheduler.Priority.PRACTICE, 1);
+        onClock.set(() -> {
+            waiter.interrupt();
+            // Let the waiter see the interrupt before the grant signals it, or awaitNanos returns normally
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        });
+
+        // Act
+        scheduler.release(running, 0);
+
+        // Assert - the waiter gave up, and its slot and tokens went back instead of leaking
+        assertInstanceOf(RejectedExecutionException.class, outcome.get(5, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.inFlight());
+        assertEquals(0, scheduler.queued(AiRequestScheduler.Priority.PRACTICE));
+        assertEquals(1_000, meterRegistry.get("ai.scheduler.tokens.available").gauge().value());
+    }
+
+    private AiRequestScheduler scheduler() {
+        return new AiRequestScheduler(config, meterRegistry, clock::get);
+    }
+
+    /**
+     * Queues a request of 100 tokens that, once granted, records its user and completes right away.
+     */
+    private static CompletableFuture<Void> queue(AiRequestScheduler scheduler, AiRequestScheduler.Caller caller,
+                                                 List<String> order) {
+        return CompletableFuture.runAsync(() -> {
+            AiRequestScheduler.Ticket ticket = scheduler.acquire(caller, 100);
+            order.add(caller.userId());
+            scheduler.release(ticket, 100);
+        }, THREAD_PER_TASK);
+    }
+
+    private static void awaitQueued(AiRequestScheduler scheduler, AiRequestScheduler.Priority priority, int count)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.queued(priority) < count) {
+            assertTrue(System.nanoTime() < deadline, "request was not queued in time");
+            Thread.sleep(5);
+        }
+    }
+
+    private static LlmRequest request(String prompt, int maxTokens) {
+        return new LlmRequest(
+            List.of(new LlmRequest.Message(LlmRequest.Role.USER, prompt)),
+            0.7, maxTokens, null, LlmRequest.Purpose.CHAT
+        );
+    }
+}
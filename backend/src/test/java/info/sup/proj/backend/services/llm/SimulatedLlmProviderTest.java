@@ -0,0 +1,134 @@
+package info.sup.proj.backend.services.llm;
+
+import info.sup.proj.backend.config.SimulatedLlmConfig;
+import info.sup.proj.backend.model.Puzzle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulatedLlmProviderTest {
+
+    private SimulatedLlmConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new SimulatedLlmConfig();
+        config.setLatencyMedian(Duration.ZERO);
+        config.setSeed(42L);
+    }
+
+    @Test
+    void testComplete_returnsCannedResponsePerPuzzleType() {
+        // Arrange
+        config.getResponses().put(Puzzle.Type.FAULTY, "Configured answer");
+        SimulatedLlmProvider provider = new SimulatedLlmProvider(config);
+
+        // Act
+        String faulty = provider.complete(chatRequest(Puzzle.Type.FAULTY));
+        String multiStep = provider.complete(chatRequest(Puzzle.Type.MULTI_STEP));
+
+        // Assert
+        assertEquals("Configured answer", faulty);
+        assertTrue(multiStep.contains("```"));
+    }
+
+    @Test
+    void testComplete_evaluationIsDeterministicPerCode() {
+        // Arrange
+        SimulatedLlmProvider provider = new SimulatedLlmProvider(config);
+
+        // Act
+        String first = provider.complete(evaluationRequest("int x = 1;"));
+        String second = provider.complete(evaluationRequest("int x = 1;"));
+
+        // Assert
+        assertEquals(first, second);
+        assertTrue(first.matches("\\{\"correctness\": \\d+, \"quality\": \\d+}"));
+    }
+
+    @Test
+    void testComplete_batchEvaluationScoresEachSubmissionAsOnItsOwn() {
+        // Arrange
+        SimulatedLlmProvider provider = new SimulatedLlmProvider(config);
+        LlmRequest batch = new LlmRequest(
+            List.of(
+                new LlmRequest.Message(LlmRequest.Role.SYSTEM, "Score every solution"),
+                new LlmRequest.Message(LlmRequest.Role.USER, "Evaluate\nint x = 1;"),
+                new LlmRequest.Message(LlmRequest.Role.USER, "Evaluate\nint y = 2;")
+            ),
+            0.1, 68, null, LlmRequest.Purpose.EVALUATION_BATCH
+        );
+
+        // Act
+        String scores = provider.complete(batch);
+
+        // Assert
+        assertEquals("[" + provider.complete(evaluationRequest("int x = 1;")) + ", "
+            + provider.complete(evaluationRequest("int y = 2;")) + "]", scores);
+    }
+
+    @Test
+    void testComplete_failsAtConfiguredErrorRate() {
+        // Arrange
+        config.setErrorRate(1.0);
+        SimulatedLlmProvider provider = new SimulatedLlmProvider(config);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> provider.complete(chatRequest(Puzzle.Type.BY_PASS)));
+    }
+
+    @Test
+    void testStream_chunksReassembleToCompleteResponse() {
+        // Arrange
+        config.setStreamChunkChars(5);
+        SimulatedLlmProvider provider = new SimulatedLlmProvider(config);
+        StringBuilder streamed = new StringBuilder();
+
+        // Act
+        provider.stream(chatRequest(Puzzle.Type.BY_PASS), chunk -> {
+            assertTrue(chunk.length() <= 5);
+            streamed.append(chunk);
+        });
+
+        // Assert
+        assertEquals(provider.complete(chatRequest(Puzzle.Type.BY_PASS)), streamed.toString());
+    }
+
+    @Test
+    void testSampleLatency_followsConfiguredPercentiles() {
+        // Arrange
+        config.setLatencyMedian(Duration.ofMillis(100));
+        config.setLatencyP99(Duration.ofMillis(1000));
+        SimulatedLlmProvider provider = new SimulatedLlmProvider(config);
+
+        // Act
+        long[] samples = new long[10_000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = provider.sampleLatencyMillis();
+        }
+        Arrays.sort(samples);
+
+        // Assert
+        assertEquals(100, samples[samples.length / 2], 10);
+        assertEquals(1000, samples[samples.length * 99 / 100], 200);
+    }
+
+    private LlmRequest chatRequest(Puzzle.Type type) {
+        return new LlmRequest(
+            List.of(new LlmRequest.Message(LlmRequest.Role.USER, "Help me")),
+            0.7, 800, type, LlmRequest.Purpose.CHAT
+        );
+    }
+
+    private LlmRequest evaluationRequest(String code) {
+        return new LlmRequest(
+            List.of(new LlmRequest.Message(LlmRequest.Role.USER, "Evaluate\n" + code)),
+            0.1, 200, Puzzle.Type.MULTI_STEP, LlmRequest.Purpose.EVALUATION
+        );
+    }
+}
@@ -1,5 +1,5 @@
 import { defineStore } from 'pinia'
-import type { Player, GameState, WebSocketMessage } from '../types/game'
+import type { Player, GameState, GameStateDelta, WebSocketMessage } from '../types/game'
 import { Client } from '@stomp/stompjs'
 
 export const useGameStore = defineStore('game', {
@@ -11,6 +11,10 @@ export const useGameStore = defineStore('game', {
     stompClient: null as Client | null,
     aiResponse: null as { text: string; code: any; completeCode?: string } | null,
     connectionAttempts: 0,
+    isScoring: false,
+    streamingResponse: { text: '', code: '' },
+    stateSeq: 0,
+    awaitingResync: false,
   }),
 
   actions: {
@@ -60,7 +64,9 @@ export const useGameStore = defineStore('game', {
             }
           })
 
-          // Join the game
+          // Join the game. The join snapshot is taken whatever its seq: after a server restart the game
+          // carries on from the sequence the server journaled, which can be behind the one seen here
+          this.awaitingResync = true
           console.log('Sending join game message for game:', gameId)
           this.stompClient?.publish({
             destination: '/app/game/join',
@@ -109,15 +115,29 @@ export const useGameStore = defineStore('game', {
       switch (message.type) {
         case 'GAME_STATE':
           if (message.payload && typeof message.payload === 'object' && 'id' in message.payload) {
+            if (!this.awaitingResync && message.seq !== undefined && message.seq < this.stateSeq) {
+              break
+            }
             console.log('Updating game state:', message.payload)
-            console.log('Game state puzzle:', message.payload.puzzle)
             this.gameState = message.payload
-            console.log('Game state after update:', this.gameState)
+            this.stateSeq = message.seq ?? this.stateSeq
+            this.awaitingResync = false
           } else {
             console.error('Invalid game state payload:', message.payload)
           }
           break
+        case 'GAME_STATE_DELTA':
+          this.applyGameStateDelta(message.seq ?? 0, message)
+          break
+        case 'AI_RESPONSE_DELTA':
+          if (message.channel === 'CODE') {
+            this.streamingResponse.code += message.delta || ''
+          } else {
+            this.streamingResponse.text += message.delta || ''
+          }
+          break
         case 'AI_RESPONSE':
+          this.streamingResponse = { text: '', code: '' }
           this.aiResponse = {
             text: message.text || '',
             code: message.code || '',
@@ -133,6 +153,16 @@ export const useGameStore = defineStore('game', {
             }
           }
           break
+        case 'SCORING':
+          this.isScoring = true
+          break
+        case 'SUBMISSION_SCORED':
+          this.isScoring = false
+          break
+        case 'SUBMISSION_REJECTED':
+          this.isScoring = false
+          this.lastError = { message: message.message || 'Submission rejected' }
+          break
         case 'ERROR':
           console.error('Received ERROR message from server:', message)
           this.lastError = { message: message.payload?.message || 'Unknown error' }
@@ -140,6 +170,49 @@ export const useGameStore = defineStore('game', {
       }
     },
 
+    applyGameStateDelta(seq: number, delta: GameStateDelta) {
+      // Until the join snapshot arrives there is nothing to apply the delta to; the snapshot covers it
+      if (!this.gameState || seq <= this.stateSeq) return
+
+      if (seq !== this.stateSeq + 1) {
+        this.requestResync()
+        return
+      }
+
+      const game = this.gameState
+      if (delta.currentRound !== undefined) game.currentRound = delta.currentRound
+      if (delta.currentTurn !== undefined) game.currentTurn = delta.currentTurn
+      if (delta.currentPuzzle !== undefined) game.currentPuzzle = delta.currentPuzzle
+      if (delta.state !== undefined) game.state = delta.state
+      if (delta.roundStartTime !== undefined) game.roundStartTime = delta.roundStartTime
+
+      Object.entries(delta.playerStatus ?? {}).forEach(([playerId, changes]) => {
+        const status = game.playerStatus[playerId] ?? (game.playerStatus[playerId] = { score: 0, hasCompleted: false })
+        if (changes.score !== undefined) status.score = changes.score
+        if (changes.hasCompleted !== undefined) status.hasCompleted = changes.hasCompleted
+        if (changes.hasForfeit !== undefined) status.hasForfeit = changes.hasForfeit
+        if (changes.codeDiff) {
+          const code = status.code ?? ''
+          const { start, deleteCount, insert } = changes.codeDiff
+          status.code = code.slice(0, start) + insert + code.slice(start + deleteCount)
+        }
+      })
+
+      this.stateSeq = seq
+    },
+
+    requestResync() {
+      if (this.awaitingResync || !this.stompClient || !this.isConnected || !this.currentPlayer || !this.gameState) return
+
+      this.awaitingResync = true
+      this.stompClient.publish({
+        destination: `/app/game/${this.gameState.id}/resync`,
+        body: JSON.stringify({
+          playerId: this.currentPlayer.id,
+        }),
+      })
+    },
+
     submitSolution(code: string) {
       if (!this.stompClient || !this.isConnected || !this.currentPlayer || !this.gameState) {
         return Promise.reject(new Error('Not connected to game server'))
@@ -193,6 +266,7 @@ export const useGameStore = defineStore('game', {
         return Promise.reject(new Error('Not connected to game server'))
       }
 
+      this.streamingResponse = { text: '', code: '' }
       return new Promise((resolve, reject) => {
         try {
           this.stompClient?.publish({
@@ -201,6 +275,7 @@ export const useGameStore = defineStore('game', {
               gameId: this.gameState?.id,
               playerId: this.currentPlayer?.id,
               prompt: prompt,
+              stream: true,
             }),
           })
           resolve(true)
@@ -220,6 +295,10 @@ export const useGameStore = defineStore('game', {
       this.isConnected = false
       this.lastError = null
       this.aiResponse = null
+      this.isScoring = false
+      this.streamingResponse = { text: '', code: '' }
+      this.stateSeq = 0
+      this.awaitingResync = false
     },
   },
 })
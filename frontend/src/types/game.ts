@@ -19,6 +19,7 @@ export interface Puzzle {
 export interface PlayerStatus {
   score: number;
   hasCompleted: boolean;
+  hasForfeit?: boolean;
   code?: string;
 }
 
@@ -32,19 +33,49 @@ export interface GameState {
   playerStatus: Record<string, PlayerStatus>;
   scores?: Record<string, number>;
   state?: 'IN_PROGRESS' | 'ENDED';
+  roundStartTime?: number;
+}
+
+export interface CodeDiff {
+  start: number;
+  deleteCount: number;
+  insert: string;
+}
+
+export interface PlayerStatusDelta {
+  score?: number;
+  hasCompleted?: boolean;
+  hasForfeit?: boolean;
+  codeDiff?: CodeDiff;
+}
+
+// Only the fields that changed since the previous sequence number are present
+export interface GameStateDelta {
+  currentRound?: number;
+  currentTurn?: string;
+  currentPuzzle?: Puzzle;
+  state?: 'IN_PROGRESS' | 'ENDED';
+  roundStartTime?: number;
+  playerStatus?: Record<string, PlayerStatusDelta>;
 }
 
 export type WebSocketMessageType =
   | 'GAME_STATE'
+  | 'GAME_STATE_DELTA'
   | 'ERROR'
   | 'SUBMIT_SOLUTION'
   | 'COMPLETE_PUZZLE'
   | 'FORFEIT'
   | 'AI_RESPONSE'
-  | 'PLAYER_COMPLETION';
+  | 'AI_RESPONSE_DELTA'
+  | 'PLAYER_COMPLETION'
+  | 'SCORING'
+  | 'SUBMISSION_SCORED'
+  | 'SUBMISSION_REJECTED';
 
 export interface WebSocketMessage {
   type: WebSocketMessageType;
+  gameId?: string;
   payload?: any;
   text?: string;
   code?: string;
@@ -56,6 +87,15 @@ export interface WebSocketMessage {
   timeBonus?: number;
   playerId?: string;
   message?: string;
+  channel?: 'TEXT' | 'CODE';
+  delta?: string;
+  seq?: number;
+  currentRound?: number;
+  currentTurn?: string;
+  currentPuzzle?: Puzzle;
+  state?: 'IN_PROGRESS' | 'ENDED';
+  roundStartTime?: number;
+  playerStatus?: Record<string, PlayerStatusDelta>;
 }
 
 export interface GameError {